@@ -0,0 +1,179 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import com.marklogic.xcc.ResultChannelName;
+import com.marklogic.xcc.ResultItem;
+import com.marklogic.xcc.ResultSequence;
+import com.marklogic.xcc.ValueFactory;
+import com.marklogic.xcc.impl.ResultItemImpl;
+import com.marklogic.xcc.types.ValueType;
+import com.marklogic.xcc.types.XdmItem;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * A fully cached, rewindable ResultSequence of xs:string items, used by the
+ * benchmarks in place of a mock so that the measurements are not skewed by
+ * invocation recording.
+ *
+ * @since 2.4.6
+ */
+public class BenchmarkResultSequence implements ResultSequence {
+
+    private final ResultItem[] items;
+    private int index = -1;
+    private boolean closed;
+
+    public BenchmarkResultSequence(String... values) {
+        items = new ResultItem[values.length];
+        for (int i = 0; i < values.length; i++) {
+            items[i] = new ResultItemImpl(ValueFactory.newXSString(values[i]), i, null, null);
+        }
+    }
+
+    /**
+     * Generate a sequence of URIs with the given prefix.
+     *
+     * @param prefix
+     * @param count
+     * @return
+     */
+    public static BenchmarkResultSequence ofUris(String prefix, int count) {
+        String[] uris = new String[count];
+        for (int i = 0; i < count; i++) {
+            uris[i] = prefix + i + ".xml";
+        }
+        return new BenchmarkResultSequence(uris);
+    }
+
+    @Override
+    public int size() {
+        return items.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return items.length == 0;
+    }
+
+    @Override
+    public boolean isCached() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return index + 1 < items.length;
+    }
+
+    @Override
+    public ResultItem next() {
+        return hasNext() ? items[++index] : null;
+    }
+
+    @Override
+    public ResultItem current() {
+        return index < 0 ? null : items[index];
+    }
+
+    @Override
+    public ResultItem resultItemAt(int i) {
+        return items[i];
+    }
+
+    @Override
+    public XdmItem itemAt(int i) {
+        return items[i].getItem();
+    }
+
+    @Override
+    public void rewind() {
+        index = -1;
+        closed = false;
+    }
+
+    @Override
+    public Iterator<ResultItem> iterator() {
+        return Arrays.asList(items).iterator();
+    }
+
+    @Override
+    public ResultSequence toCached() {
+        return this;
+    }
+
+    @Override
+    public ResultItem[] toResultItemArray() {
+        return items.clone();
+    }
+
+    @Override
+    public ResultSequence getChannel(ResultChannelName channel) {
+        return this;
+    }
+
+    @Override
+    public XdmItem[] toArray() {
+        XdmItem[] xdmItems = new XdmItem[items.length];
+        for (int i = 0; i < items.length; i++) {
+            xdmItems[i] = items[i].getItem();
+        }
+        return xdmItems;
+    }
+
+    @Override
+    public String asString(String separator) {
+        return String.join(separator, asStrings());
+    }
+
+    @Override
+    public String asString() {
+        return asString("\n");
+    }
+
+    @Override
+    public String[] asStrings() {
+        String[] strings = new String[items.length];
+        for (int i = 0; i < items.length; i++) {
+            strings[i] = items[i].asString();
+        }
+        return strings;
+    }
+
+    @Override
+    public ValueType getValueType() {
+        return ValueType.SEQUENCE;
+    }
+
+    @Override
+    public String toString() {
+        return "BenchmarkResultSequence [size=" + items.length + ']';
+    }
+}
@@ -0,0 +1,112 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures submitting short tasks to the pool and waiting for all of them to
+ * complete, with an ExecutorCompletionService drained by a single thread, as
+ * the Monitor used to, and with the CompletionTracker.
+ *
+ * @since 2.4.6
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompletionTrackerBenchmark {
+
+    private static final String[] URIS = new String[]{"/benchmark/completion.xml"};
+
+    @Param({"100000"})
+    public int taskCount;
+
+    @Param({"8"})
+    public int threadCount;
+
+    private ThreadPoolExecutor pool;
+    private final Callable<String[]> task = () -> URIS;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = new ThreadPoolExecutor(threadCount, threadCount, 16, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(10000), new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.prestartAllCoreThreads();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public long completionService() throws InterruptedException, ExecutionException {
+        CompletionService<String[]> completionService = new ExecutorCompletionService<>(pool);
+        Thread submitter = new Thread(() -> {
+            for (int i = 0; i < taskCount; i++) {
+                completionService.submit(task);
+            }
+        });
+        submitter.start();
+        long completed = 0;
+        for (int i = 0; i < taskCount; i++) {
+            completed += completionService.take().get().length;
+        }
+        submitter.join();
+        return completed;
+    }
+
+    @Benchmark
+    public long completionTracker() throws InterruptedException {
+        CompletionTracker tracker = new CompletionTracker(pool);
+        Thread submitter = new Thread(() -> {
+            for (int i = 0; i < taskCount; i++) {
+                tracker.submit(task);
+            }
+        });
+        submitter.start();
+        while (tracker.getCompletedTaskCount() < taskCount) {
+            tracker.await(100, TimeUnit.MILLISECONDS);
+        }
+        submitter.join();
+        return tracker.getCompletedUriCount();
+    }
+}
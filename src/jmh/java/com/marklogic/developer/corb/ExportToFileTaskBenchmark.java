@@ -0,0 +1,77 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures ExportToFileTask.write() serializing a ResultSequence to an
+ * in-memory OutputStream, so that only the per-item conversion and write
+ * overhead is measured and not the disk.
+ *
+ * @since 2.4.6
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportToFileTaskBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int itemCount;
+
+    private ExportToFileTask task;
+    private BenchmarkResultSequence resultSequence;
+    private ByteArrayOutputStream outputStream;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        task = new ExportToFileTask();
+        String[] values = new String[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            values[i] = "/benchmark/export/" + i + ".xml,processed,2020-01-01T00:00:00Z";
+        }
+        resultSequence = new BenchmarkResultSequence(values);
+        outputStream = new ByteArrayOutputStream(itemCount * 64);
+    }
+
+    @Benchmark
+    public int write() throws IOException {
+        resultSequence.rewind();
+        outputStream.reset();
+        task.write(resultSequence, outputStream);
+        return outputStream.size();
+    }
+}
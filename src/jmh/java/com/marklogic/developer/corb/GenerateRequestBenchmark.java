@@ -0,0 +1,103 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import com.marklogic.xcc.Request;
+import com.marklogic.xcc.Session;
+import com.marklogic.xcc.impl.ModuleImpl;
+import java.lang.reflect.Proxy;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures AbstractTask.generateRequest() for a batch of URIs, with a
+ * RequestTemplate shared by all tasks as created by the TaskFactory, and
+ * with the settings resolved from the job and System properties by each task.
+ *
+ * @since 2.4.6
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GenerateRequestBenchmark {
+
+    @Param({"1", "100"})
+    public int batchSize;
+
+    @Param({"10", "100"})
+    public int propertyCount;
+
+    private Session session;
+    private Properties properties;
+    private RequestTemplate requestTemplate;
+    private String[] uris;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        session = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> "newModuleInvoke".equals(method.getName()) ? new ModuleImpl(null, (String) args[0], null, false) : null);
+        properties = new Properties();
+        for (int i = 0; i < propertyCount; i++) {
+            properties.setProperty("BENCHMARK-OPTION-" + i, Integer.toString(i));
+        }
+        properties.setProperty(Options.PROCESS_MODULE + ".FOO", "bar");
+        properties.setProperty(Options.BATCH_SIZE, Integer.toString(batchSize));
+        requestTemplate = new RequestTemplate(Options.PROCESS_MODULE, "/benchmark.xqy", null, null, null, properties);
+        uris = new String[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            uris[i] = "/benchmark/uris/" + i + ".xml";
+        }
+    }
+
+    private Transform newTask() {
+        Transform task = new Transform();
+        task.setModuleType(Options.PROCESS_MODULE);
+        task.setModuleURI("/benchmark.xqy");
+        task.setProperties(properties);
+        task.setInputURI(uris);
+        return task;
+    }
+
+    @Benchmark
+    public Request withSharedTemplate() throws CorbException {
+        Transform task = newTask();
+        task.setRequestTemplate(requestTemplate);
+        return task.generateRequest(session);
+    }
+
+    @Benchmark
+    public Request withoutTemplate() throws CorbException {
+        return newTask().generateRequest(session);
+    }
+}
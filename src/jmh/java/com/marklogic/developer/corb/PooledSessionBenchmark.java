@@ -0,0 +1,192 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import com.marklogic.xcc.ContentSource;
+import com.marklogic.xcc.Request;
+import com.marklogic.xcc.ResultSequence;
+import com.marklogic.xcc.Session;
+import com.marklogic.xcc.exceptions.RequestException;
+import com.marklogic.xcc.impl.ContentSourceImpl;
+import com.marklogic.xcc.impl.SessionImpl;
+import com.marklogic.xcc.impl.SocketPoolProvider;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the client-side overhead of acquiring a ContentSource from the
+ * pool, opening a Session, submitting a request and closing the Session, as
+ * each process task does. The XCC session is stubbed so no connection is made.
+ * <p>
+ * {@code pooled} uses the delegating wrappers returned by
+ * DefaultContentSourcePool, {@code reflectiveProxy} reproduces the
+ * java.lang.reflect.Proxy wrapping used before 2.4.6, and {@code direct}
+ * is the unwrapped baseline.
+ * </p>
+ *
+ * @since 2.4.6
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class PooledSessionBenchmark {
+
+    @Param({"ROUND-ROBIN", "LOAD"})
+    public String connectionPolicy;
+
+    private DefaultContentSourcePool contentSourcePool;
+    private ContentSource contentSource;
+    private Request request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty(Options.CONNECTION_POLICY, connectionPolicy);
+        contentSource = new StubContentSource();
+        contentSourcePool = new DefaultContentSourcePool();
+        contentSourcePool.init(properties, null, "");
+        contentSourcePool.contentSourceList.add(contentSource);
+        request = contentSource.newSession().newAdhocQuery("()");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        contentSourcePool.close();
+    }
+
+    @Benchmark
+    public ResultSequence direct() throws RequestException {
+        return submit(contentSource);
+    }
+
+    @Benchmark
+    public ResultSequence pooled() throws CorbException, RequestException {
+        return submit(contentSourcePool.get());
+    }
+
+    @Benchmark
+    public ResultSequence reflectiveProxy() throws CorbException, RequestException {
+        ContentSource cs = DefaultContentSourcePool.getContentSourceFromProxy(contentSourcePool.get());
+        ContentSource proxy = (ContentSource) Proxy.newProxyInstance(PooledSessionBenchmark.class.getClassLoader(),
+            new Class<?>[]{ContentSource.class}, new ReflectiveHandler(contentSourcePool, cs, null));
+        return submit(proxy);
+    }
+
+    private ResultSequence submit(ContentSource cs) throws RequestException {
+        try (Session session = cs.newSession()) {
+            return session.submitRequest(request);
+        }
+    }
+
+    /**
+     * Equivalent of the former ContentSource and Session invocation handlers,
+     * without the failover path, which is not exercised here.
+     */
+    private static class ReflectiveHandler implements InvocationHandler {
+        private final DefaultContentSourcePool csp;
+        private final ContentSource cs;
+        private final Object target;
+
+        ReflectiveHandler(DefaultContentSourcePool csp, ContentSource cs, Object target) {
+            this.csp = csp;
+            this.cs = cs;
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (target == null) {
+                Object session = method.invoke(cs, args);
+                if ("newSession".equals(method.getName()) && session instanceof Session) {
+                    return Proxy.newProxyInstance(PooledSessionBenchmark.class.getClassLoader(),
+                        new Class<?>[]{Session.class}, new ReflectiveHandler(csp, cs, session));
+                }
+                return session;
+            }
+            if ("commit".equals(method.getName()) || "rollback".equals(method.getName())) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            boolean isRequest = "submitRequest".equals(method.getName()) || "insertContent".equals(method.getName());
+            if (isRequest && csp.isLoadPolicy()) {
+                csp.hold(cs);
+            }
+            try {
+                Object result = method.invoke(target, args);
+                if (isRequest) {
+                    csp.success(cs);
+                    if (csp.isLoadPolicy()) {
+                        csp.release(cs);
+                    }
+                }
+                return result;
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+
+    private static class StubContentSource extends ContentSourceImpl {
+        StubContentSource() {
+            super(new SocketPoolProvider("localhost", 8000), "benchmark", "benchmark".toCharArray(), null);
+        }
+
+        @Override
+        public Session newSession() {
+            return new StubSession(this);
+        }
+    }
+
+    private static class StubSession extends SessionImpl {
+        StubSession(ContentSourceImpl contentSource) {
+            super(contentSource, contentSource.getConnectionProvider(), null, null);
+        }
+
+        @Override
+        public ResultSequence submitRequest(Request request) {
+            return null;
+        }
+
+        @Override
+        public void close() {
+            //nothing to release
+        }
+    }
+}
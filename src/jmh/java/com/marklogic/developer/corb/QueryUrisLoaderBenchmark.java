@@ -0,0 +1,82 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures QueryUrisLoader.populateQueue() draining a cached ResultSequence
+ * into an ArrayQueue, with and without {@value Options#URIS_REPLACE_PATTERN}
+ * replacements applied to each URI.
+ *
+ * @since 2.4.6
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryUrisLoaderBenchmark {
+
+    @Param({"", "/benchmark/,", "^/benchmark/uris/,/,\\.xml$,"})
+    public String urisReplacePattern;
+
+    @Param({"100000"})
+    public int uriCount;
+
+    private QueryUrisLoader loader;
+    private BenchmarkResultSequence resultSequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        //the first URI is logged at INFO for every invocation
+        Logger.getLogger(QueryUrisLoader.class.getName()).setLevel(java.util.logging.Level.WARNING);
+
+        Properties properties = new Properties();
+        properties.setProperty(Options.URIS_REPLACE_PATTERN, urisReplacePattern);
+        loader = new QueryUrisLoader();
+        loader.setOptions(new TransformOptions());
+        loader.setProperties(properties);
+        loader.parseUriReplacePatterns();
+        loader.setTotalCount(uriCount);
+        resultSequence = BenchmarkResultSequence.ofUris("/benchmark/uris/", uriCount);
+    }
+
+    @Benchmark
+    public Queue<String> populateQueue() {
+        resultSequence.rewind();
+        return loader.populateQueue(new ArrayQueue<>(uriCount), resultSequence);
+    }
+}
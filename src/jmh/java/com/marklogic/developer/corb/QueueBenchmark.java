@@ -0,0 +1,102 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import com.marklogic.developer.corb.util.FileUtils;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures filling and draining the URI queue, for both the in-memory
+ * ArrayQueue and the DiskQueue that spills to disk once maxInMemorySize is
+ * reached.
+ *
+ * @since 2.4.6
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueueBenchmark {
+
+    @Param({"ArrayQueue", "DiskQueue"})
+    public String queueType;
+
+    @Param({"100000"})
+    public int uriCount;
+
+    @Param({"10000"})
+    public int maxInMemorySize;
+
+    private String[] uris;
+    private File tempDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        uris = new String[uriCount];
+        for (int i = 0; i < uriCount; i++) {
+            uris[i] = "/benchmark/queue/" + i + ".xml";
+        }
+        tempDir = Files.createTempDirectory("corb-jmh").toFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteFile(tempDir);
+    }
+
+    protected Queue<String> newQueue() {
+        if ("DiskQueue".equals(queueType)) {
+            return new DiskQueue<>(maxInMemorySize, tempDir);
+        }
+        return new ArrayQueue<>(uriCount);
+    }
+
+    @Benchmark
+    public void offerThenPoll(Blackhole blackhole) {
+        Queue<String> queue = newQueue();
+        for (String uri : uris) {
+            queue.offer(uri);
+        }
+        String uri;
+        while ((uri = queue.poll()) != null) {
+            blackhole.consume(uri);
+        }
+        queue.clear();
+    }
+}
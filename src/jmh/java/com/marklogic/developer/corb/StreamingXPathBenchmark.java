@@ -0,0 +1,74 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures StreamingXPath.matches(), which FileUrisStreamingXMLLoader calls
+ * for every element start while streaming the {@value Options#XML_FILE}.
+ *
+ * @since 2.4.6
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamingXPathBenchmark {
+
+    @Param({"/*/*", "/root/child::item", "/root/descendant::b:item"})
+    public String xpath;
+
+    private StreamingXPath streamingXPath;
+    private final String[] paths = {
+        "/root",
+        "/root/item",
+        "/root/b:item",
+        "/root/group/item",
+        "/root/group/b:item",
+        "/root/group/subgroup/item/value"
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() throws CorbException {
+        streamingXPath = new StreamingXPath(xpath);
+    }
+
+    @Benchmark
+    public void matches(Blackhole blackhole) {
+        for (String path : paths) {
+            blackhole.consume(streamingXPath.matches(path));
+        }
+    }
+}
@@ -24,6 +24,8 @@ import static com.marklogic.developer.corb.Options.SSL_CONFIG_CLASS;
 import static com.marklogic.developer.corb.Options.XCC_CONNECTION_URI;
 import static com.marklogic.developer.corb.Options.XCC_DBNAME;
 import static com.marklogic.developer.corb.Options.XCC_HOSTNAME;
+import static com.marklogic.developer.corb.Options.XCC_HOST_DISCOVERY;
+import static com.marklogic.developer.corb.Options.XCC_HOST_DISCOVERY_INTERVAL;
 import static com.marklogic.developer.corb.Options.XCC_PASSWORD;
 import static com.marklogic.developer.corb.Options.XCC_PORT;
 import static com.marklogic.developer.corb.Options.XCC_USERNAME;
@@ -58,6 +60,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import static java.util.logging.Level.INFO;
 import static java.util.logging.Level.WARNING;
 import static java.util.logging.Level.SEVERE;
@@ -85,13 +88,16 @@ public abstract class AbstractManager {
     protected SSLConfig sslConfig;
     protected String collection;
     protected ContentSourcePool csp;
+    protected String[] connectionStrings;
     protected TransformOptions options = new TransformOptions();
     protected Properties properties = new Properties();
     protected Map<String, String> userProvidedOptions = new HashMap<>();
+    protected final Map<String, String> installedAdhocModules = new ConcurrentHashMap<>();
 
     protected static final int EXIT_CODE_SUCCESS = 0;
     protected static final int EXIT_CODE_INIT_ERROR = 1;
     protected static final int EXIT_CODE_PROCESSING_ERROR = 2;
+    protected static final int DEFAULT_HOST_DISCOVERY_INTERVAL = 300;
     protected static final String SPACE = " ";
 
     private static final Logger LOG = Logger.getLogger(AbstractManager.class.getName());
@@ -297,13 +303,28 @@ public abstract class AbstractManager {
             }
         }
 
+        connectionStrings = connectionUriList.toArray(new String[connectionUriList.size()]);
         csp = createContentSourcePool();
         LOG.info("Using the content source manager " + csp.getClass().getName());
-        csp.init(properties, sslConfig, connectionUriList.toArray(new String[connectionUriList.size()]));
+        csp.init(properties, sslConfig, connectionStrings);
 
         if (!csp.available()) {
             throw new CorbException("No connections available. Please check connection parameters or initialization errors");
         }
+
+        if (StringUtils.stringToBoolean(getOption(XCC_HOST_DISCOVERY))) {
+            initHostDiscovery(connectionUriList.get(0));
+        }
+    }
+
+    protected void initHostDiscovery(String connectionUri) {
+        if (csp instanceof DefaultContentSourcePool) {
+            String interval = getOption(XCC_HOST_DISCOVERY_INTERVAL);
+            DefaultContentSourcePool pool = (DefaultContentSourcePool) csp;
+            pool.startHostDiscovery(new HostDiscovery(pool, connectionUri), NumberUtils.toInt(interval, DEFAULT_HOST_DISCOVERY_INTERVAL));
+        } else {
+            LOG.log(WARNING, () -> MessageFormat.format("{0} is not supported by {1}", XCC_HOST_DISCOVERY, csp.getClass().getName()));
+        }
     }
 
     protected String tryToDecryptUriInParts(String connectionUri) {
@@ -525,9 +546,23 @@ public abstract class AbstractManager {
         this.userProvidedOptions = userProvidedOptions;
     }
 
+    /**
+     * @param module an ADHOC or INLINE module
+     * @return the URI that the module was installed at in the modules database,
+     * or null if it is sent as an adhoc query
+     * @since 2.4.6
+     */
+    public String getInstalledModuleUri(String module) {
+        return module == null ? null : installedAdhocModules.get(module);
+    }
+
     protected Request getRequestForModule(String processModule, Session session) {
         Request request;
-        if (isInlineOrAdhoc(processModule)) {
+        String installedModuleUri = getInstalledModuleUri(processModule);
+        if (installedModuleUri != null) {
+            LOG.log(INFO, () -> MessageFormat.format("invoking installed module {0}", installedModuleUri));
+            request = session.newModuleInvoke(installedModuleUri);
+        } else if (isInlineOrAdhoc(processModule)) {
             String adhocQuery;
             if (isInlineModule(processModule)) {
                 adhocQuery = StringUtils.getInlineModuleCode(processModule);
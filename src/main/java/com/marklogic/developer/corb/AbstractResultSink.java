@@ -0,0 +1,91 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static com.marklogic.developer.corb.Options.EXPORT_FILE_DIR;
+import static com.marklogic.developer.corb.util.StringUtils.isBlank;
+import static com.marklogic.developer.corb.util.StringUtils.isNotEmpty;
+import static com.marklogic.developer.corb.util.StringUtils.trim;
+
+import java.io.File;
+import java.util.Properties;
+
+/**
+ * @since 2.4.6
+ */
+public abstract class AbstractResultSink implements ResultSink {
+
+    public static final String FILE = "file";
+    public static final String ROLLING_FILE = "rolling-file";
+    public static final String STDOUT = "stdout";
+    public static final String AGGREGATE = "aggregate";
+
+    protected static final byte[] NEWLINE = AbstractTask.NEWLINE;
+
+    protected Properties properties;
+
+    /**
+     * @param name one of the built-in sinks: {@value #FILE}, {@value #ROLLING_FILE},
+     * {@value #STDOUT} or {@value #AGGREGATE}; or the name of a class that implements {@link ResultSink}
+     * @return a new sink
+     * @throws CorbException if the class can not be instantiated
+     */
+    public static ResultSink newInstance(String name) throws CorbException {
+        if (FILE.equalsIgnoreCase(name)) {
+            return new FileResultSink();
+        } else if (ROLLING_FILE.equalsIgnoreCase(name)) {
+            return new RollingFileResultSink();
+        } else if (STDOUT.equalsIgnoreCase(name)) {
+            return new StdoutResultSink();
+        } else if (AGGREGATE.equalsIgnoreCase(name)) {
+            return new AggregatingResultSink();
+        }
+        try {
+            Class<?> cls = Class.forName(name);
+            if (ResultSink.class.isAssignableFrom(cls)) {
+                return (ResultSink) cls.newInstance();
+            }
+            throw new IllegalArgumentException(name + " must implement " + ResultSink.class.getName());
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException ex) {
+            throw new CorbException("Unable to instantiate " + Options.RESULT_SINK + " " + name, ex);
+        }
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+        this.properties = properties;
+    }
+
+    protected String getProperty(String key) {
+        String val = System.getProperty(key);
+        if (properties != null && isBlank(val)) {
+            val = properties.getProperty(key);
+        }
+        return trim(val);
+    }
+
+    /**
+     * @param fileName
+     * @return the file in the {@value Options#EXPORT_FILE_DIR}, if specified
+     */
+    protected File getExportFile(String fileName) {
+        String exportDir = getProperty(EXPORT_FILE_DIR);
+        return isNotEmpty(exportDir) ? new File(exportDir, fileName) : new File(fileName);
+    }
+}
@@ -20,22 +20,15 @@ package com.marklogic.developer.corb;
 
 import static com.marklogic.developer.corb.Manager.DEFAULT_BATCH_URI_DELIM;
 import static com.marklogic.developer.corb.Manager.URIS_BATCH_REF;
-import static com.marklogic.developer.corb.Options.BATCH_SIZE;
 import static com.marklogic.developer.corb.Options.BATCH_URI_DELIM;
 import static com.marklogic.developer.corb.Options.ERROR_FILE_NAME;
-import static com.marklogic.developer.corb.Options.LOADER_VARIABLE;
-import static com.marklogic.developer.corb.Options.QUERY_RETRY_LIMIT;
-import static com.marklogic.developer.corb.Options.QUERY_RETRY_INTERVAL;
-import static com.marklogic.developer.corb.Options.QUERY_RETRY_ERROR_CODES;
-import static com.marklogic.developer.corb.Options.QUERY_RETRY_ERROR_MESSAGE;
+import static com.marklogic.developer.corb.TransformOptions.DEFERRED_URI_TOKEN;
 import static com.marklogic.developer.corb.TransformOptions.FAILED_URI_TOKEN;
 import com.marklogic.developer.corb.util.StringUtils;
-import static com.marklogic.developer.corb.util.StringUtils.commaSeparatedValuesToList;
 import static com.marklogic.developer.corb.util.StringUtils.isEmpty;
 import static com.marklogic.developer.corb.util.StringUtils.isNotEmpty;
 import static com.marklogic.developer.corb.util.StringUtils.trim;
 import com.marklogic.xcc.Request;
-import com.marklogic.xcc.RequestOptions;
 import com.marklogic.xcc.ResultSequence;
 import com.marklogic.xcc.Session;
 import com.marklogic.xcc.ValueFactory;
@@ -97,12 +90,21 @@ public abstract class AbstractTask implements Task {
     protected String language;
     protected TimeZone timeZone;
     protected String exportDir;
+    protected RequestTemplate requestTemplate;
+    protected RetryScheduler retryScheduler;
 
     protected static final int DEFAULT_QUERY_RETRY_INTERVAL = 20;
     protected static final int DEFAULT_QUERY_RETRY_LIMIT = 2;
 
     protected int retryCount = 0;
     protected boolean failOnError = true;
+    /**
+     * Returned when the task has been handed to the {@link RetryScheduler}. The
+     * retry may already be running on another thread, so the thread that
+     * deferred it must not touch the state of the task afterwards.
+     */
+    protected static final String[] DEFERRED = new String[0];
+    protected String host;
 
     private static final Logger LOG = Logger.getLogger(AbstractTask.class.getName());
     private static final String AT_URI = " at URI: ";
@@ -157,20 +159,68 @@ public abstract class AbstractTask implements Task {
         this.exportDir = exportFileDir;
     }
 
+    /**
+     * Use a template that has been resolved once for all of the tasks of a
+     * job, rather than resolving the request settings from the properties of
+     * this task.
+     *
+     * @param requestTemplate
+     * @since 2.4.6
+     */
+    public void setRequestTemplate(RequestTemplate requestTemplate) {
+        this.requestTemplate = requestTemplate;
+    }
+
+    /**
+     * Schedule retries with the {@link RetryScheduler}, instead of waiting for
+     * the retry interval on the worker thread. Only tasks that are submitted to
+     * the CompletionTracker of the job can be re-submitted by the scheduler.
+     *
+     * @param retryScheduler
+     * @since 2.4.6
+     */
+    public void setRetryScheduler(RetryScheduler retryScheduler) {
+        this.retryScheduler = retryScheduler;
+    }
+
+    /**
+     * @return the request template, or if one was not provided, a template
+     * resolved from the current settings of this task
+     * @since 2.4.6
+     */
+    protected RequestTemplate getRequestTemplate() {
+        if (requestTemplate == null) {
+            return new RequestTemplate(moduleType, moduleUri, adhocQuery, language, timeZone, properties);
+        }
+        return requestTemplate;
+    }
+
     public String getExportDir() {
         return this.exportDir;
     }
 
+    /**
+     * @param host the host to send the request to, if it is available
+     * @since 2.4.6
+     */
+    public void setHost(String host) {
+        this.host = host;
+    }
+
     public Session newSession() throws CorbException{
-        return csp.get().newSession();
+        return host == null ? csp.get().newSession() : csp.get(host).newSession();
     }
 
     @Override
     public String[] call() throws Exception {
+        String[] result = null;
         try {
-            return invokeModule();
+            result = invokeModule();
+            return result;
         } finally {
-            cleanup();
+            if (result != DEFERRED) {
+                cleanup();
+            }
         }
     }
 
@@ -183,16 +233,40 @@ public abstract class AbstractTask implements Task {
         Thread.yield();// try to avoid thread starvation
         try (Session session = newSession()) {
 
-            Request request = generateRequest(session);
+            Request request;
+            JobEvent event = beginEvent("build-request");
+            try {
+                request = generateRequest(session);
+            } finally {
+                event.close();
+            }
             //This is how the long running uris can be populated
             Thread.currentThread().setName(urisAsString(inputUris));
 
             Thread.yield();// try to avoid thread starvation
-            seq = session.submitRequest(request);
+            event = beginEvent("submit");
+            try {
+                seq = session.submitRequest(request);
+            } finally {
+                event.close();
+            }
             retryCount = 0;
+            if (JobEvents.isRecording()) {
+                event = beginEvent("first-result");
+                try {
+                    seq.hasNext();
+                } finally {
+                    event.close();
+                }
+            }
 
             Thread.yield();// try to avoid thread starvation
-            processResult(seq);
+            event = beginEvent("process-result");
+            try {
+                processResult(seq);
+            } finally {
+                event.close();
+            }
             seq.close();
             Thread.yield();// try to avoid thread starvation
 
@@ -210,56 +284,44 @@ public abstract class AbstractTask implements Task {
         }
     }
 
-    protected Request generateRequest(Session session) throws CorbException {
-        Request request;
-        //determine whether this is an eval or execution of installed module
-        if (moduleUri == null) {
-            request = session.newAdhocQuery(adhocQuery);
-        } else {
-            request = session.newModuleInvoke(moduleUri);
+    /**
+     * Begin a {@link JobEvents.Category#TASK} event for the URIs of this task.
+     *
+     * @param action
+     * @return the event, to be closed when the action is complete
+     * @since 2.4.6
+     */
+    protected JobEvent beginEvent(String action) {
+        JobEvent event = JobEvents.begin(JobEvents.Category.TASK, action);
+        if (event != JobEvent.NONE && inputUris != null) {
+            event.detail(urisAsString(inputUris)).count(inputUris.length);
         }
+        return event;
+    }
 
-        RequestOptions requestOptions = request.getOptions();
-        if (language != null) {
-            requestOptions.setQueryLanguage(language);
-        }
-        if (timeZone != null) {
-            requestOptions.setTimeZone(timeZone);
-        }
+    protected Request generateRequest(Session session) throws CorbException {
+        RequestTemplate template = getRequestTemplate();
+        Request request = template.newRequest(session);
 
         if (inputUris != null && inputUris.length > 0) {
-            if (REQUEST_VARIABLE_DOC.equalsIgnoreCase(properties.getProperty(LOADER_VARIABLE))) {
+            if (template.isDocRequestVariable()) {
                 setDocRequestVariable(request, inputUris);
             } else {
                 setUriRequestVariable(request, inputUris);
             }
         }
-
-        if (properties != null && properties.containsKey(URIS_BATCH_REF)) {
-            request.setNewStringVariable(URIS_BATCH_REF, properties.getProperty(URIS_BATCH_REF));
-        }
-
-        //set custom inputs
-        for (String customInputPropertyName : getCustomInputPropertyNames()) {
-            String varName = customInputPropertyName.substring(moduleType.length() + 1);
-            String value = getProperty(customInputPropertyName);
-            if (value != null) {
-                request.setNewStringVariable(varName, value);
-            }
-        }
         return request;
     }
 
     protected void setUriRequestVariable(Request request, String... inputUris) {
-        String delim = getBatchUriDelimiter();
+        String delim = getRequestTemplate().getBatchUriDelimiter();
         String uriValue = StringUtils.join(inputUris, delim);
         request.setNewStringVariable(REQUEST_VARIABLE_URI, uriValue);
     }
 
     protected void setDocRequestVariable(Request request, String... inputUris) throws CorbException {
-        String batchSize = properties.getProperty(BATCH_SIZE);
         //XCC does not allow sequences for request parameters
-        if (batchSize != null && Integer.parseInt(batchSize) > 1) {
+        if (getRequestTemplate().getBatchSize() > 1) {
             throw new CorbException("Cannot set BATCH-SIZE > 1 with REQUEST-VARIABLE-DOC. XCC does not allow sequences for request parameters.");
         }
         XdmItem[] xdmItems = toXdmItems(inputUris);
@@ -316,21 +378,21 @@ public abstract class AbstractTask implements Task {
         return doc;
     }
 
+    /**
+     * @return the names of the custom input properties of the module
+     * @deprecated the custom inputs are collected by the {@link RequestTemplate},
+     * use {@link RequestTemplate#getVariables()}
+     */
+    @Deprecated
     protected Set<String> getCustomInputPropertyNames() {
         Set<String> moduleCustomInputPropertyNames = new HashSet<>();
-        if (moduleType == null) {
+        RequestTemplate template = getRequestTemplate();
+        if (template.getModuleType() == null) {
             return moduleCustomInputPropertyNames;
         }
-        if (properties != null) {
-            for (String propName : properties.stringPropertyNames()) {
-                if (propName.startsWith(moduleType + '.')) {
-                    moduleCustomInputPropertyNames.add(propName);
-                }
-            }
-        }
-        for (String propName : System.getProperties().stringPropertyNames()) {
-            if (propName.startsWith(moduleType + '.')) {
-                moduleCustomInputPropertyNames.add(propName);
+        for (String name : template.getVariables().keySet()) {
+            if (!URIS_BATCH_REF.equals(name)) {
+                moduleCustomInputPropertyNames.add(template.getModuleType() + '.' + name);
             }
         }
         return moduleCustomInputPropertyNames;
@@ -345,7 +407,7 @@ public abstract class AbstractTask implements Task {
 
     protected boolean hasRetryableMessage(RequestException requestException) {
         String message = requestException.getMessage();
-        List<String> retryableMessages = commaSeparatedValuesToList(getProperty(QUERY_RETRY_ERROR_MESSAGE));
+        List<String> retryableMessages = getRequestTemplate().getQueryRetryErrorMessages();
         for (String messageFragment : retryableMessages) {
             if (message.contains(messageFragment)) {
                 return true;
@@ -356,7 +418,7 @@ public abstract class AbstractTask implements Task {
 
     protected boolean shouldRetry(QueryException queryException) {
         String errorCode = queryException.getCode();
-        List<String> retryableErrorCodes = commaSeparatedValuesToList(getProperty(QUERY_RETRY_ERROR_CODES));
+        List<String> retryableErrorCodes = getRequestTemplate().getQueryRetryErrorCodes();
         return queryException.isRetryable() || retryableErrorCodes.contains(errorCode);
     }
 
@@ -393,19 +455,25 @@ public abstract class AbstractTask implements Task {
 
     protected String[] handleRetry(RequestException requestException) throws CorbException {
         String exceptionName = requestException.getClass().getSimpleName();
-        int retryInterval = this.getQueryRetryInterval();
-        if (retryCount < getQueryRetryLimit()) {
+        int retryInterval = getRequestTemplate().getQueryRetryInterval();
+        if (retryCount < getRequestTemplate().getQueryRetryLimit()) {
             retryCount++;
 
             String errorCode = requestException instanceof QueryException ? ((QueryException)requestException).getCode() + ":" : "";
-            LOG.log(WARNING,
-                "Encountered {0} from MarkLogic Server. Retrying attempt {1} after {2} seconds..: {3}{4}{5}{6}",
-                new Object[]{exceptionName, retryCount, retryInterval, errorCode, requestException.getMessage(), AT_URI, urisAsString(inputUris)});
-            try {
-                Thread.sleep(retryInterval * 1000L);
-            } catch (InterruptedException ex) {
-                LOG.log(WARNING, "Interrupted!", ex);
-                Thread.currentThread().interrupt();
+            try (JobEvent event = beginEvent("retry")) {
+                event.count(retryCount);
+                if (retryScheduler != null) {
+                    return deferRetry(requestException, exceptionName, errorCode, retryInterval);
+                }
+                LOG.log(WARNING,
+                    "Encountered {0} from MarkLogic Server. Retrying attempt {1} after {2} seconds..: {3}{4}{5}{6}",
+                    new Object[]{exceptionName, retryCount, retryInterval, errorCode, requestException.getMessage(), AT_URI, urisAsString(inputUris)});
+                try {
+                    Thread.sleep(retryInterval * 1000L);
+                } catch (InterruptedException ex) {
+                    LOG.log(WARNING, "Interrupted!", ex);
+                    Thread.currentThread().interrupt();
+                }
             }
             return invokeModule();
         } else {
@@ -413,6 +481,34 @@ public abstract class AbstractTask implements Task {
         }
     }
 
+    /**
+     * Hand this task to the {@link RetryScheduler} to be submitted again after
+     * a backoff delay, and release the worker thread. The URIs are not counted
+     * as completed until the retry has completed.
+     *
+     * @param requestException
+     * @param exceptionName
+     * @param errorCode
+     * @param retryInterval
+     * @return an empty array, or the result of handling the exception if the retry budget is exhausted
+     * @throws CorbException
+     */
+    protected String[] deferRetry(RequestException requestException, String exceptionName, String errorCode, int retryInterval) throws CorbException {
+        int attempt = retryCount;
+        String uris = urisAsString(inputUris);
+        long delay = retryScheduler.schedule(this, retryCount, retryInterval * 1000L);
+        if (delay < 0) {
+            LOG.log(WARNING, "Encountered {0} from MarkLogic Server. The retry budget for the job is exhausted, not retrying{1}{2}",
+                new Object[]{exceptionName, AT_URI, uris});
+            return handleProcessException(requestException);
+        }
+        LOG.log(WARNING,
+            "Encountered {0} from MarkLogic Server. Retrying attempt {1} after {2} milliseconds..: {3}{4}{5}{6}",
+            new Object[]{exceptionName, attempt, delay, errorCode, requestException.getMessage(), AT_URI, uris});
+        Thread.currentThread().setName(DEFERRED_URI_TOKEN + Thread.currentThread().getName());
+        return DEFERRED;
+    }
+
     protected String[] handleProcessException(Exception ex) throws CorbException {
         String exceptionName = ex.getClass().getSimpleName();
         if (failOnError) {
@@ -421,6 +517,7 @@ public abstract class AbstractTask implements Task {
         } else {
             LOG.log(WARNING, failOnErrorIsFalseMessage(exceptionName, inputUris), ex);
             writeToErrorFile(inputUris, ex.getMessage());
+            Thread.currentThread().setName(FAILED_URI_TOKEN + Thread.currentThread().getName());
             return inputUris;
         }
     }
@@ -440,7 +537,7 @@ public abstract class AbstractTask implements Task {
      * @return
      */
     protected String urisAsString(String... uris) {
-        return (uris == null | StringUtils.stringToBoolean(getProperty(Options.URIS_REDACTED)) ) ? "" : StringUtils.join(uris, ",");
+        return (uris == null | getRequestTemplate().isUrisRedacted()) ? "" : StringUtils.join(uris, ",");
     }
 
     protected abstract String processResult(ResultSequence seq) throws CorbException;
@@ -452,10 +549,13 @@ public abstract class AbstractTask implements Task {
         moduleUri = null;
         properties = null;
         inputUris = null;
+        host = null;
         adhocQuery = null;
         language = null;
         timeZone = null;
         exportDir = null;
+        requestTemplate = null;
+        retryScheduler = null;
     }
 
     public String getProperty(String key) {
@@ -476,24 +576,6 @@ public abstract class AbstractTask implements Task {
         }
     }
 
-    private int getQueryRetryLimit() {
-        int queryRetryLimit = getIntProperty(QUERY_RETRY_LIMIT);
-        return queryRetryLimit < 0 ? DEFAULT_QUERY_RETRY_LIMIT : queryRetryLimit;
-    }
-
-    private int getQueryRetryInterval() {
-        int queryRetryInterval = getIntProperty(QUERY_RETRY_INTERVAL);
-        return queryRetryInterval < 0 ? DEFAULT_QUERY_RETRY_INTERVAL : queryRetryInterval;
-    }
-
-    private String getBatchUriDelimiter() {
-        String delim = getProperty(BATCH_URI_DELIM);
-        if (isEmpty(delim)) {
-            delim = DEFAULT_BATCH_URI_DELIM;
-        }
-        return delim;
-    }
-
     /**
      * Retrieves an int value.
      *
@@ -528,9 +610,21 @@ public abstract class AbstractTask implements Task {
         if (isEmpty(delim)) {
             delim = DEFAULT_BATCH_URI_DELIM;
         }
+        writeToErrorFile(new File(exportDir, errorFileName), uris, delim, message);
+    }
 
+    /**
+     * Append URIs to the {@value Options#ERROR_FILE_NAME}, one per line, followed
+     * by the delimiter and the message if there is one.
+     * @param errorFile
+     * @param uris
+     * @param delim
+     * @param message
+     * @since 2.4.6
+     */
+    protected static void writeToErrorFile(File errorFile, String[] uris, String delim, String message) {
         synchronized (ERROR_SYNC_OBJ) {
-            try (OutputStream writer = new BufferedOutputStream(new FileOutputStream(new File(exportDir, errorFileName), true))) {
+            try (OutputStream writer = new BufferedOutputStream(new FileOutputStream(errorFile, true))) {
                 for (String uri : uris) {
                     writer.write(uri.getBytes());
                     if (isNotEmpty(message)) {
@@ -44,6 +44,7 @@ public abstract class AbstractUrisLoader implements UrisLoader {
     private long total = 0;
     protected String[] replacements = new String[0];
     protected String batchRef;
+    protected MemoryGovernor memoryGovernor;
 
     public AbstractUrisLoader() {
         options = new TransformOptions();
@@ -73,6 +74,14 @@ public abstract class AbstractUrisLoader implements UrisLoader {
         this.properties = properties;
     }
 
+    /**
+     * @param memoryGovernor tells the loader when memory is short, or null
+     * @since 2.4.6
+     */
+    public void setMemoryGovernor(MemoryGovernor memoryGovernor) {
+        this.memoryGovernor = memoryGovernor;
+    }
+
     @Override
     public String getBatchRef() {
         return batchRef;
@@ -0,0 +1,206 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
+
+import com.marklogic.xcc.AdhocQuery;
+import com.marklogic.xcc.ResultSequence;
+import com.marklogic.xcc.Session;
+import com.marklogic.xcc.exceptions.RequestException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Periodically checks the load on the app server and the hosts of the group,
+ * and adjusts the number of process tasks that the pool will execute at the
+ * same time. When the load exceeds one of the configured watermarks, the number
+ * of tasks admitted is halved, and at twice the watermark dispatch is paused.
+ * Once the load drops below 80% of the watermarks, one more task is admitted
+ * on each check, until the pool runs unrestricted again. If the load cannot be
+ * checked, dispatch is never left paused, and after several consecutive
+ * failures the pool runs unrestricted until the checks succeed again. The
+ * checks run on their own daemon thread, so that a slow status query does not
+ * hold up the other scheduled tasks of the job.
+ *
+ * @since 2.4.6
+ */
+public class AdmissionController implements Runnable {
+
+    protected static final String STATUS_QUERY = "xquery version \"1.0-ml\";\n"
+            + "declare namespace ss = \"http://marklogic.com/xdmp/status/server\";\n"
+            + "declare namespace hs = \"http://marklogic.com/xdmp/status/host\";\n"
+            + "let $hosts := xdmp:group-hosts(xdmp:group())\n"
+            + "let $servers := $hosts ! xdmp:server-status(., xdmp:server())\n"
+            + "return (\n"
+            + "  sum($servers/ss:queue-size),\n"
+            + "  sum($servers ! count(ss:request-statuses/ss:request-status)),\n"
+            + "  sum($hosts ! xdmp:host-status(.)/hs:write-lock-rate)\n"
+            + ")";
+
+    protected static final double HIGH_WATERMARK = 1.0;
+    protected static final double PAUSE_WATERMARK = 2.0;
+    protected static final double LOW_WATERMARK = 0.8;
+    protected static final int MAX_CONSECUTIVE_FAILURES = 3;
+
+    private final ContentSourcePool csp;
+    private final PausableThreadPoolExecutor pool;
+    private final TransformOptions options;
+    private int consecutiveFailures = 0;
+    private ScheduledExecutorService scheduledExecutor;
+
+    private static final Logger LOG = Logger.getLogger(AdmissionController.class.getName());
+
+    public AdmissionController(ContentSourcePool csp, PausableThreadPoolExecutor pool, TransformOptions options) {
+        this.csp = csp;
+        this.pool = pool;
+        this.options = options;
+    }
+
+    /**
+     * Check the load of the server now, and every interval seconds after that,
+     * until closed.
+     *
+     * @param interval number of seconds between checks
+     */
+    public synchronized void start(long interval) {
+        if (scheduledExecutor == null) {
+            scheduledExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "admission-controller");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduledExecutor.scheduleWithFixedDelay(this, 0, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stop checking the load of the server.
+     */
+    public synchronized void close() {
+        if (scheduledExecutor != null) {
+            scheduledExecutor.shutdownNow();
+            scheduledExecutor = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        if (pool.isShutdown()) {
+            return;
+        }
+        try (Session session = csp.get().newSession()) {
+            AdhocQuery query = session.newAdhocQuery(STATUS_QUERY);
+            ResultSequence resultSequence = session.submitRequest(query);
+            long queueSize = Long.parseLong(resultSequence.next().asString());
+            long activeRequests = activeRequests(Long.parseLong(resultSequence.next().asString()));
+            double writeLockRate = Double.parseDouble(resultSequence.next().asString());
+            resultSequence.close();
+            consecutiveFailures = 0;
+            adjust(queueSize, activeRequests, writeLockRate);
+        } catch (CorbException | RequestException | RuntimeException ex) {
+            LOG.log(WARNING, "Unable to check the load of the server", ex);
+            onFailure();
+        }
+    }
+
+    /**
+     * Without a load to go by, a pause would never be lifted. Resume dispatch
+     * with a single task, and stop restricting tasks after
+     * MAX_CONSECUTIVE_FAILURES failed checks.
+     *
+     * @return the new admission limit
+     */
+    protected int onFailure() {
+        consecutiveFailures++;
+        int current = pool.getAdmissionLimit();
+        int limit = current;
+        if (consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) {
+            limit = Integer.MAX_VALUE;
+        } else if (current == 0) {
+            limit = 1;
+        }
+        if (limit != current) {
+            if (limit == Integer.MAX_VALUE) {
+                LOG.log(WARNING, "Unable to check the load of the server {0} times, no longer restricting tasks", consecutiveFailures);
+            } else {
+                LOG.log(WARNING, "Unable to check the load of the server, restricting to {0} tasks", limit);
+            }
+            pool.setAdmissionLimit(limit);
+        }
+        return limit;
+    }
+
+    /**
+     * Adjust the number of tasks the pool will execute at the same time, based
+     * upon the highest ratio of the server load to its watermark.
+     *
+     * @param queueSize number of requests waiting in the app server queue
+     * @param activeRequests number of requests executing on the app server
+     * @param writeLockRate write lock rate of the hosts
+     * @return the new admission limit
+     */
+    protected int adjust(long queueSize, long activeRequests, double writeLockRate) {
+        double load = Math.max(ratio(queueSize, options.getServerLoadMaxQueueSize()),
+                Math.max(ratio(activeRequests, options.getServerLoadMaxActiveRequests()),
+                        ratio(writeLockRate, options.getServerLoadMaxWriteLockRate())));
+        int threads = options.getThreadCount();
+        int current = pool.getAdmissionLimit();
+        int limit = current;
+        if (load > PAUSE_WATERMARK) {
+            limit = 0;
+        } else if (load > HIGH_WATERMARK) {
+            limit = Math.max(1, Math.min(current, threads) / 2);
+        } else if (load < LOW_WATERMARK && current < Integer.MAX_VALUE) {
+            limit = current + 1 >= threads ? Integer.MAX_VALUE : current + 1;
+        }
+        if (limit != current) {
+            if (limit == Integer.MAX_VALUE) {
+                LOG.log(INFO, "Server load is {0} of the watermark, no longer restricting tasks", percent(load));
+            } else {
+                LOG.log(INFO, "Server load is {0} of the watermark, restricting to {1} tasks",
+                        new Object[]{percent(load), limit});
+            }
+            pool.setAdmissionLimit(limit);
+        }
+        return limit;
+    }
+
+    /**
+     * The status query is itself one of the requests on the app server, but
+     * only on the host that evaluated it.
+     *
+     * @param requestStatuses number of request statuses summed over the hosts of the group
+     * @return number of requests executing on the app server, other than the status query
+     */
+    protected static long activeRequests(long requestStatuses) {
+        return Math.max(0, requestStatuses - 1);
+    }
+
+    private static double ratio(double value, double watermark) {
+        return watermark > 0 ? value / watermark : 0;
+    }
+
+    private static String percent(double load) {
+        return Math.round(load * 100) + "%";
+    }
+}
@@ -0,0 +1,128 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static com.marklogic.developer.corb.Options.EXPORT_FILE_NAME;
+import static com.marklogic.developer.corb.util.StringUtils.isNotEmpty;
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Counts how many times each distinct result is returned, in memory, for
+ * reports such as the number of documents of each type. When the sink is
+ * closed, the values and their counts are written, most frequent first and
+ * separated by a tab, to the {@value Options#EXPORT_FILE_NAME} if specified,
+ * or else logged. Results beyond {@value #MAX_DISTINCT_VALUES} distinct values
+ * are counted as other values.
+ *
+ * @since 2.4.6
+ */
+public class AggregatingResultSink extends AbstractResultSink {
+
+    public static final int MAX_DISTINCT_VALUES = 100000;
+
+    private final Map<String, Long> counts = new HashMap<>();
+    private long total;
+    private long otherValues;
+
+    private static final Logger LOG = Logger.getLogger(AggregatingResultSink.class.getName());
+
+    @Override
+    public void open() throws IOException {
+        counts.clear();
+        total = 0;
+        otherValues = 0;
+    }
+
+    @Override
+    public void write(String[] uris, byte[] result) throws IOException {
+        String value = new String(result, StandardCharsets.UTF_8);
+        total++;
+        Long count = counts.get(value);
+        if (count != null) {
+            counts.put(value, count + 1);
+        } else if (counts.size() < MAX_DISTINCT_VALUES) {
+            counts.put(value, 1L);
+        } else {
+            otherValues++;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        List<Map.Entry<String, Long>> entries = getSortedCounts();
+        String fileName = getProperty(EXPORT_FILE_NAME);
+        if (isNotEmpty(fileName)) {
+            File file = getExportFile(fileName);
+            try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Long> entry : entries) {
+                    writer.write(entry.getKey() + '\t' + entry.getValue());
+                    writer.newLine();
+                }
+            }
+        } else {
+            for (Map.Entry<String, Long> entry : entries) {
+                LOG.log(INFO, () -> MessageFormat.format("{0}\t{1,number,#}", entry.getKey(), entry.getValue()));
+            }
+        }
+        if (otherValues > 0) {
+            LOG.log(WARNING, () -> MessageFormat.format("{0,number} results were not counted by value, beyond {1,number} distinct values",
+                    otherValues, MAX_DISTINCT_VALUES));
+        }
+    }
+
+    /**
+     * @return the distinct values and their counts, most frequent first
+     */
+    public List<Map.Entry<String, Long>> getSortedCounts() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        return entries;
+    }
+
+    public Map<String, Long> getCounts() {
+        return counts;
+    }
+
+    /**
+     * @return the number of results written to the sink
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the number of results beyond the maximum number of distinct values
+     */
+    public long getOtherValues() {
+        return otherValues;
+    }
+}
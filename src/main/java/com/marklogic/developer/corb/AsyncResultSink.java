@@ -0,0 +1,184 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static java.util.logging.Level.SEVERE;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Hands results to a {@link ResultSink} on a thread of its own, through a
+ * bounded buffer, so that the threads executing tasks return to the pool as
+ * soon as they have read their results, rather than wait for slow writes.
+ * When the buffer is full, tasks wait for space. If the sink fails, the
+ * remaining results are discarded, and the failure is thrown to the tasks
+ * that submit results and when the sink is closed.
+ *
+ * @since 2.4.6
+ */
+public class AsyncResultSink implements Runnable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1000;
+
+    //compared by identity, to mark the end of the results
+    private static final Result END_OF_RESULTS = new Result(new String[0], new byte[0]);
+
+    private final ResultSink sink;
+    private final BlockingQueue<Result> queue;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private volatile Exception failure;
+    private Thread writer;
+
+    private static final Logger LOG = Logger.getLogger(AsyncResultSink.class.getName());
+
+    /**
+     * @param sink
+     * @param bufferSize maximum number of results waiting to be written
+     */
+    public AsyncResultSink(ResultSink sink, int bufferSize) {
+        this.sink = sink;
+        queue = new ArrayBlockingQueue<>(bufferSize > 0 ? bufferSize : DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Open the sink and start the thread that writes to it.
+     *
+     * @throws CorbException if the sink can not be opened
+     */
+    public void open() throws CorbException {
+        try {
+            sink.open();
+        } catch (IOException ex) {
+            throw new CorbException("Unable to open " + Options.RESULT_SINK + " " + sink.getClass().getName(), ex);
+        }
+        writer = new Thread(this, "result-sink");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Add a result to the buffer, waiting while it is full.
+     *
+     * @param uris the URIs of the task that returned the result
+     * @param result
+     * @throws CorbException if the sink has failed
+     * @throws InterruptedException
+     */
+    public void submit(String[] uris, byte[] result) throws CorbException, InterruptedException {
+        checkFailure();
+        queue.put(new Result(uris, result));
+        submitted.incrementAndGet();
+    }
+
+    @Override
+    public void run() {
+        try {
+            Result result;
+            while ((result = queue.take()) != END_OF_RESULTS) {
+                if (failure == null) {
+                    try {
+                        sink.write(result.uris, result.value);
+                        written.incrementAndGet();
+                    } catch (IOException | RuntimeException ex) {
+                        LOG.log(SEVERE, "Unable to write results to " + sink.getClass().getName(), ex);
+                        failure = ex;
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wait for the buffered results to be written, and close the sink.
+     *
+     * @throws CorbException if the sink failed
+     */
+    public void close() throws CorbException {
+        if (writer == null) {
+            return;
+        }
+        try {
+            queue.put(END_OF_RESULTS);
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            writer.interrupt();
+        } finally {
+            writer = null;
+            try {
+                sink.close();
+            } catch (IOException ex) {
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() throws CorbException {
+        Exception ex = failure;
+        if (ex != null) {
+            throw new CorbException("Unable to write results to " + sink.getClass().getName(), ex);
+        }
+    }
+
+    public ResultSink getResultSink() {
+        return sink;
+    }
+
+    /**
+     * @return the number of results submitted
+     */
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    /**
+     * @return the number of results written to the sink
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /**
+     * @return the number of results waiting to be written
+     */
+    public int getBufferedCount() {
+        return queue.size();
+    }
+
+    private static class Result {
+
+        private final String[] uris;
+        private final byte[] value;
+
+        Result(String[] uris, byte[] value) {
+            this.uris = uris;
+            this.value = value;
+        }
+    }
+}
@@ -21,8 +21,8 @@ package com.marklogic.developer.corb;
 import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 public class BaseMonitor {
 
@@ -36,7 +36,8 @@ public class BaseMonitor {
     protected long prevMillis = 0;
     protected long startMillis;
 
-    protected final List<Double> tpsForETCList;
+    protected final Deque<Double> tpsForETCList;
+    protected double tpsForETCSum = 0;
     protected final int numTpsForEtc;
 	protected Double avgTps = 0d;
     protected Double currentTps = 0d;
@@ -46,7 +47,7 @@ public class BaseMonitor {
         this.manager = manager;
         startMillis = System.currentTimeMillis();
         numTpsForEtc = manager !=null && manager.getOptions() != null ? manager.getOptions().getNumTpsForETC() : DEFAULT_NUM_TPS_FOR_ETC;
-        tpsForETCList = new ArrayList<>(this.numTpsForEtc);
+        tpsForETCList = new ArrayDeque<>(this.numTpsForEtc);
     }
 
     protected void populateTps(long completed){
@@ -61,7 +62,8 @@ public class BaseMonitor {
 
         boolean isPaused = manager.isPaused();
         double tpsForETC = calculateTpsForETC(currentTps, isPaused);
-        estimatedTimeOfCompletion = getEstimatedTimeCompletion(taskCount, completed, tpsForETC, isPaused);
+        //the time of completion can not be estimated while URIs are still being streamed
+        estimatedTimeOfCompletion = taskCount == UrisLoader.UNKNOWN_TOTAL_COUNT ? null : getEstimatedTimeCompletion(taskCount, completed, tpsForETC, isPaused);
     }
 
     protected static String getProgressMessage(long completed, long taskCount, double tps, double curTps, double tpsForETC, int threads, boolean isPaused) {
@@ -75,31 +77,29 @@ public class BaseMonitor {
 
     protected static String getProgressMessage(long completed, long taskCount, double tps, double curTps, String etc, int threads, long failedTasks) {
         String failedTaskMessage = failedTasks > 0 ? failedTasks + " tasks failed, " : "";
-    	return completed + "/" + taskCount + ", "
+    	return completed + "/" + (taskCount == UrisLoader.UNKNOWN_TOTAL_COUNT ? "?" : taskCount) + ", "
         		+ failedTaskMessage
                 + formatTransactionsPerSecond(tps) + " tps(avg), "
                 + formatTransactionsPerSecond(curTps) + " tps(cur), "
-                + "ETC " + etc + ", "
+                + (etc != null ? "ETC " + etc + ", " : "")
                 + threads + " active threads.";
     }
 
     protected double calculateTpsForETC(double currentTransactionsPerSecond, boolean isPaused) {
         if (isZero(currentTransactionsPerSecond) && isPaused) {
             tpsForETCList.clear();
+            tpsForETCSum = 0;
         } else {
             if (tpsForETCList.size() >= numTpsForEtc) {
-                tpsForETCList.remove(0);
+                tpsForETCSum -= tpsForETCList.removeFirst();
             }
-            tpsForETCList.add(currentTransactionsPerSecond);
+            tpsForETCList.addLast(currentTransactionsPerSecond);
+            tpsForETCSum += currentTransactionsPerSecond;
         }
 
         double transactionsPerSecondForETC = 0;
-        double sum = 0;
-        for (Double next : tpsForETCList) {
-            sum += next;
-        }
         if (!tpsForETCList.isEmpty()) {
-            transactionsPerSecondForETC = sum / tpsForETCList.size();
+            transactionsPerSecondForETC = tpsForETCSum / tpsForETCList.size();
         }
         return transactionsPerSecondForETC;
     }
@@ -0,0 +1,82 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static com.marklogic.developer.corb.Options.PIPELINE_INPUT_CHANNEL;
+
+/**
+ * Streams URIs from a {@link PipelineChannel}, as they are produced by the
+ * previous stage of a {@link Pipeline}. The total count is not known until the
+ * previous stage has completed.
+ *
+ * @since 2.4.6
+ */
+public class ChannelUrisLoader extends AbstractUrisLoader {
+
+    private PipelineChannel channel;
+    private String nextUri;
+    private boolean endOfStream;
+    private long count;
+
+    @Override
+    public void open() throws CorbException {
+        String channelName = getProperty(PIPELINE_INPUT_CHANNEL);
+        channel = PipelineChannel.get(channelName);
+        if (channel == null) {
+            throw new CorbException("No pipeline channel named " + channelName + " is open. Check " + PIPELINE_INPUT_CHANNEL);
+        }
+    }
+
+    @Override
+    public long getTotalCount() {
+        return endOfStream ? count : UNKNOWN_TOTAL_COUNT;
+    }
+
+    @Override
+    public boolean hasNext() throws CorbException {
+        if (nextUri == null && !endOfStream) {
+            try {
+                nextUri = channel.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new CorbException("Interrupted while waiting for URIs from pipeline channel " + channel.getName(), ex);
+            }
+            endOfStream = nextUri == null;
+        }
+        return nextUri != null;
+    }
+
+    @Override
+    public String next() throws CorbException {
+        String uri = null;
+        if (hasNext()) {
+            uri = nextUri;
+            nextUri = null;
+            count++;
+        }
+        return uri;
+    }
+
+    @Override
+    protected void cleanup() {
+        super.cleanup();
+        channel = null;
+        nextUri = null;
+    }
+}
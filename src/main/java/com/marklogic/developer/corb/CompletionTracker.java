@@ -0,0 +1,193 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Submits process tasks to an executor and counts them as they complete,
+ * instead of queueing every completed {@link Future} for the {@link Monitor}
+ * to take, as an {@link java.util.concurrent.ExecutorCompletionService} does.
+ * Each task records its own result when it completes, in counters that the
+ * worker threads do not contend on, and the first failure is kept so that the
+ * job can fail fast.
+ * <p>
+ * The waiting thread is only woken when a task fails, when all of the
+ * submitted tasks have completed, or when {@link #signal()} is called, so the
+ * cost of waiting does not grow with the number of tasks.
+ *
+ * @since 2.4.6
+ */
+public class CompletionTracker {
+
+    private final Executor executor;
+    private final LongAdder submittedTasks = new LongAdder();
+    private final LongAdder completedTasks = new LongAdder();
+    private final LongAdder completedUris = new LongAdder();
+    private final AtomicReference<ExecutionException> failure = new AtomicReference<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private boolean signalled;
+
+    /**
+     * @param executor that executes the tasks
+     */
+    public CompletionTracker(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Execute the task, and count the URIs that it returns when it completes.
+     *
+     * @param task
+     * @return the Future of the task, which callers are not required to keep
+     * @throws RejectedExecutionException if the task can not be accepted for execution
+     */
+    public Future<String[]> submit(Callable<String[]> task) {
+        TrackedTask trackedTask = new TrackedTask(task);
+        submittedTasks.increment();
+        try {
+            executor.execute(trackedTask);
+        } catch (RejectedExecutionException ex) {
+            submittedTasks.decrement();
+            throw ex;
+        }
+        return trackedTask;
+    }
+
+    /**
+     * Wait until a task fails, all of the submitted tasks have completed, or
+     * {@link #signal()} is called, whichever comes first.
+     *
+     * @param timeout
+     * @param unit
+     * @return false if the waiting time elapsed
+     * @throws InterruptedException
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!signalled) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = changed.awaitNanos(nanos);
+            }
+            signalled = false;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wake the thread that is waiting, for instance when the number of
+     * tasks that are expected has changed.
+     */
+    public void signal() {
+        lock.lock();
+        try {
+            signalled = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if all of the tasks that have been submitted have completed
+     */
+    public boolean isIdle() {
+        //read completed first, so that a task submitted in between can not make it look idle
+        long completed = completedTasks.sum();
+        return completed >= submittedTasks.sum();
+    }
+
+    /**
+     * @return true if a task has failed
+     */
+    public boolean hasFailed() {
+        return failure.get() != null;
+    }
+
+    /**
+     * @return the first failure, or null
+     */
+    public ExecutionException getFailure() {
+        return failure.get();
+    }
+
+    public long getSubmittedTaskCount() {
+        return submittedTasks.sum();
+    }
+
+    public long getCompletedTaskCount() {
+        return completedTasks.sum();
+    }
+
+    /**
+     * @return the number of URIs returned by the tasks that have completed
+     */
+    public long getCompletedUriCount() {
+        return completedUris.sum();
+    }
+
+    protected void onCompletion(Future<String[]> future) {
+        try {
+            if (!future.isCancelled()) {
+                String[] uris = future.get();
+                if (uris != null) {
+                    completedUris.add(uris.length);
+                }
+            }
+        } catch (ExecutionException ex) {
+            failure.compareAndSet(null, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            completedTasks.increment();
+        }
+        if (hasFailed() || isIdle()) {
+            signal();
+        }
+    }
+
+    private class TrackedTask extends FutureTask<String[]> {
+
+        TrackedTask(Callable<String[]> callable) {
+            super(callable);
+        }
+
+        @Override
+        protected void done() {
+            onCompletion(this);
+        }
+    }
+}
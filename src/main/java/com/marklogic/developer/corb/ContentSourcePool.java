@@ -49,6 +49,17 @@ public interface ContentSourcePool extends Closeable{
      */
     ContentSource get() throws CorbException;
 
+    /**
+     * Returns a ContentSource for the given host if one is available, otherwise the next ContentSource.
+     * @param host host name
+     * @return ContentSource
+     * @throws CorbException when content source is not available
+     * @since 2.4.6
+     */
+    default ContentSource get(String host) throws CorbException {
+        return get();
+    }
+
     /**
      * Removes contentSource from the list of available ContentSource instances.
      * @param contentSource
@@ -19,29 +19,41 @@
 package com.marklogic.developer.corb;
 
 import static com.marklogic.developer.corb.Options.CONNECTION_POLICY;
+import static com.marklogic.developer.corb.Options.XCC_CONNECTION_HEALTH_CHECK_INTERVAL;
+import static java.util.logging.Level.FINE;
 import static java.util.logging.Level.INFO;
 import static java.util.logging.Level.WARNING;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.net.URI;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import com.marklogic.xcc.AdhocQuery;
 import com.marklogic.xcc.Content;
 import com.marklogic.xcc.ContentSource;
+import com.marklogic.xcc.ContentbaseMetaData;
 import com.marklogic.xcc.ModuleInvoke;
+import com.marklogic.xcc.ModuleSpawn;
 import com.marklogic.xcc.Request;
+import com.marklogic.xcc.RequestOptions;
+import com.marklogic.xcc.ResultSequence;
 import com.marklogic.xcc.Session;
+import com.marklogic.xcc.UserCredentials;
+import com.marklogic.xcc.spi.ConnectionProvider;
 import com.marklogic.xcc.exceptions.RequestException;
 import com.marklogic.xcc.exceptions.ServerConnectionException;
 import com.marklogic.xcc.types.XdmVariable;
 import java.util.List;
+import javax.transaction.xa.XAResource;
 /**
  * @since 2.4.0
  */
@@ -54,9 +66,10 @@ public class DefaultContentSourcePool extends AbstractContentSourcePool {
 
     protected List<ContentSource> contentSourceList = new ArrayList<>();
 
-    protected Map<ContentSource,Integer> errorCountsMap = new HashMap<>();
-    protected Map<ContentSource,Integer> connectionCountsMap = new HashMap<>();
-    protected Map<ContentSource,Long> errorTimeMap = new HashMap<>();
+    //read without holding the lock by get(), so these must be safe for concurrent access
+    protected Map<ContentSource,Integer> errorCountsMap = new ConcurrentHashMap<>();
+    protected Map<ContentSource,Integer> connectionCountsMap = new ConcurrentHashMap<>();
+    protected Map<ContentSource,Long> errorTimeMap = new ConcurrentHashMap<>();
 
     protected int retryInterval = 0;
     protected int hostRetryLimit = 0;
@@ -64,11 +77,29 @@ public class DefaultContentSourcePool extends AbstractContentSourcePool {
 
     protected int roundRobinIndex =  -1;
 
+    protected int healthCheckInterval = 0;
+    protected Set<ContentSource> halfOpenSet = new HashSet<>();
+    //hosts removed after XCC-CONNECTION-HOST-RETRY-LIMIT errors, still probed by the health check
+    protected Set<ContentSource> removedSet = new HashSet<>();
+    private ScheduledExecutorService scheduledExecutor;
+
     protected boolean isLoadPolicy = false;
     protected boolean isRandomPolicy = false;
 
     private static final Logger LOG = Logger.getLogger(DefaultContentSourcePool.class.getName());
 
+    /**
+     * Circuit breaker state of a ContentSource in the pool.
+     * <ul>
+     * <li>CLOSED: healthy, in rotation</li>
+     * <li>OPEN: failed, taken out of rotation</li>
+     * <li>HALF_OPEN: on trial, either being probed by the health check or
+     * eligible for a request again after XCC-CONNECTION-RETRY-INTERVAL</li>
+     * </ul>
+     * @since 2.4.6
+     */
+    public enum CircuitState { CLOSED, OPEN, HALF_OPEN }
+
     public DefaultContentSourcePool(){
         super();
     }
@@ -97,14 +128,117 @@ public class DefaultContentSourcePool extends AbstractContentSourcePool {
         //for better performance avoid to many string equals later for every get and submit
         isRandomPolicy = CONNECTION_POLICY_RANDOM.equals(connectionPolicy);
         isLoadPolicy = CONNECTION_POLICY_LOAD.equals(connectionPolicy);
+
+        healthCheckInterval = getIntProperty(XCC_CONNECTION_HEALTH_CHECK_INTERVAL);
+        if (healthCheckInterval > 0) {
+            startHealthChecker();
+        }
+    }
+
+    //runs the health checks and host discovery in the background
+    protected synchronized ScheduledExecutorService getScheduledExecutor() {
+        if (scheduledExecutor == null) {
+            scheduledExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "content-source-pool");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return scheduledExecutor;
+    }
+
+    protected void startHealthChecker() {
+        getScheduledExecutor().scheduleWithFixedDelay(this::checkHealth, healthCheckInterval, healthCheckInterval, TimeUnit.SECONDS);
+        LOG.log(INFO, "Checking health of failed ContentSources every {0} seconds", healthCheckInterval);
+    }
+
+    protected boolean isHealthCheckEnabled() {
+        return healthCheckInterval > 0;
+    }
+
+    /**
+     * Discovers the hosts of the cluster now, and then every {@code interval} seconds.
+     * @param hostDiscovery
+     * @param interval seconds between refreshes, 0 to only discover hosts once
+     * @since 2.4.6
+     */
+    public void startHostDiscovery(HostDiscovery hostDiscovery, int interval) {
+        hostDiscovery.run();
+        if (interval > 0) {
+            getScheduledExecutor().scheduleWithFixedDelay(hostDiscovery, interval, interval, TimeUnit.SECONDS);
+            LOG.log(INFO, "Refreshing the hosts of the cluster every {0} seconds", interval);
+        }
+    }
+
+    /**
+     * Probes every ContentSource with errors using a cheap request. The ones that
+     * respond rejoin the rotation immediately, without waiting for
+     * XCC-CONNECTION-RETRY-INTERVAL or for a task to pay the cost of a failure.
+     * ContentSources that were removed after too many errors are probed as well,
+     * and are added back to the pool when they respond.
+     */
+    protected void checkHealth() {
+        List<ContentSource> failedList;
+        synchronized (this) {
+            failedList = new ArrayList<>(errorCountsMap.keySet());
+            halfOpenSet.addAll(failedList);
+            failedList.addAll(removedSet);
+        }
+        for (ContentSource cs : failedList) {
+            boolean healthy = probe(cs);
+            synchronized (this) {
+                halfOpenSet.remove(cs);
+                if (healthy && errorCountsMap.containsKey(cs)) {
+                    LOG.log(INFO, "ContentSource {0} passed the health check and is back in rotation", new Object[]{asString(cs)});
+                    success(cs);
+                } else if (healthy && removedSet.remove(cs)) {
+                    LOG.log(INFO, "ContentSource {0} passed the health check and is added back to the pool", new Object[]{asString(cs)});
+                    contentSourceList.add(cs);
+                }
+            }
+        }
     }
 
-    protected void initContentSource(String connectionString){
+    protected boolean probe(ContentSource cs) {
+        try (Session session = cs.newSession()) {
+            AdhocQuery query = session.newAdhocQuery(PooledSession.EMPTY_SEQ);
+            RequestOptions requestOptions = new RequestOptions();
+            requestOptions.setMaxAutoRetry(0);
+            query.setOptions(requestOptions);
+            session.submitRequest(query).close();
+            return true;
+        } catch (RequestException | RuntimeException ex) {
+            LOG.log(FINE, "Health check failed for ContentSource " + asString(cs), ex);
+            return false;
+        }
+    }
+
+    public synchronized CircuitState getCircuitState(ContentSource contentSource) {
+        ContentSource cs = getContentSourceFromProxy(contentSource);
+        if (halfOpenSet.contains(cs)) {
+            return CircuitState.HALF_OPEN;
+        } else if (errorTimeMap.containsKey(cs)) {
+            return CircuitState.OPEN;
+        }
+        return errorCount(cs) > 0 ? CircuitState.HALF_OPEN : CircuitState.CLOSED;
+    }
+
+    protected synchronized ContentSource initContentSource(String connectionString){
         ContentSource contentSource = super.createContentSource(connectionString);
         if (contentSource != null) {
-            contentSourceList.add(contentSource);
-            LOG.log(INFO, "Initialized ContentSource {0}", new Object[]{asString(contentSource)});
+            add(contentSource);
         }
+        return contentSource;
+    }
+
+    /**
+     * Add a ContentSource, such as one of a discovered host, to the rotation.
+     * @param contentSource
+     * @since 2.4.6
+     */
+    protected synchronized void add(ContentSource contentSource) {
+        contentSourceList.add(contentSource);
+        LOG.log(INFO, "Initialized ContentSource {0}", new Object[]{asString(contentSource)});
     }
 
     /**
@@ -112,7 +246,13 @@ public class DefaultContentSourcePool extends AbstractContentSourcePool {
      */
     @Override
     public ContentSource get() throws CorbException{
-        ContentSource contentSource = nextContentSource();
+        ContentSource contentSource;
+        try (JobEvent event = JobEvents.begin(JobEvents.Category.CONTENT_SOURCE, "select-host")) {
+            contentSource = nextContentSource();
+            if (event != JobEvent.NONE) {
+                event.detail(asString(contentSource));
+            }
+        }
         if (contentSource == null) {
             throw new CorbException("ContentSource not available.");
         }
@@ -124,7 +264,8 @@ public class DefaultContentSourcePool extends AbstractContentSourcePool {
         if (failedCount != null && failedCount > 0 && errorTimeMap.containsKey(contentSource)) {
             LOG.log(WARNING, "Connection failed for ContentSource {0}. Waiting for {1} seconds before retry attempt {2}",
                     new Object[]{asString(contentSource), retryInterval, failedCount + 1});
-            try {
+            try (JobEvent event = JobEvents.begin(JobEvents.Category.CONTENT_SOURCE, "wait-on-error")) {
+                event.detail(asString(contentSource)).count(failedCount);
                 Thread.sleep(retryInterval * 1000L);
             } catch (InterruptedException ex) {
                 LOG.log(WARNING, "Interrupted!", ex);
@@ -135,6 +276,26 @@ public class DefaultContentSourcePool extends AbstractContentSourcePool {
         return createContentSourceProxy(contentSource);
     }
 
+    /**
+     * Returns a ContentSource for the host, as long as it has not errored. Otherwise,
+     * the next ContentSource of the connection policy.
+     */
+    @Override
+    public ContentSource get(String host) throws CorbException {
+        ContentSource contentSource = host == null ? null : hostContentSource(host);
+        return contentSource == null ? get() : createContentSourceProxy(contentSource);
+    }
+
+    protected synchronized ContentSource hostContentSource(String host) {
+        for (ContentSource cs : contentSourceList) {
+            if (!errorTimeMap.containsKey(cs) && cs.getConnectionProvider() != null
+                    && host.equalsIgnoreCase(cs.getConnectionProvider().getHostName())) {
+                return cs;
+            }
+        }
+        return null;
+    }
+
     protected synchronized ContentSource nextContentSource() {
         List<ContentSource> availableList = getAvailableContentSources();
         if (availableList.isEmpty()){
@@ -169,7 +330,8 @@ public class DefaultContentSourcePool extends AbstractContentSourcePool {
 
     protected synchronized List<ContentSource> getAvailableContentSources() {
         //check if any errored connections are eligible for retries with out further wait
-        if (!errorTimeMap.isEmpty()) {
+        //when health checks are enabled, errored connections only rejoin after a successful probe, unless all have errored
+        if (!errorTimeMap.isEmpty() && (!isHealthCheckEnabled() || errorTimeMap.size() >= contentSourceList.size())) {
             long current = System.currentTimeMillis();
             errorTimeMap.entrySet().removeIf(next -> (current - next.getValue()) >= (retryInterval * 1000L));
         }
@@ -188,8 +350,11 @@ public class DefaultContentSourcePool extends AbstractContentSourcePool {
     }
 
     @Override
-    public void remove(ContentSource contentSource){
-    		removeInternal(getContentSourceFromProxy(contentSource));
+    public synchronized void remove(ContentSource contentSource){
+        ContentSource cs = getContentSourceFromProxy(contentSource);
+        //explicitly removed, so it should not come back after a health check
+        removedSet.remove(cs);
+        removeInternal(cs);
     }
 
     @Override
@@ -198,15 +363,20 @@ public class DefaultContentSourcePool extends AbstractContentSourcePool {
     }
 
     @Override
-    public ContentSource[] getAllContentSources() {
+    public synchronized ContentSource[] getAllContentSources() {
         return contentSourceList.toArray(new ContentSource[contentSourceList.size()]);
     }
 
     @Override
-    public void close() {
+    public synchronized void close() {
+        if (scheduledExecutor != null) {
+            scheduledExecutor.shutdownNow();
+        }
         connectionCountsMap.clear();
         errorCountsMap.clear();
         errorTimeMap.clear();
+        halfOpenSet.clear();
+        removedSet.clear();
 		contentSourceList.clear();
     }
 
@@ -254,6 +424,9 @@ public class DefaultContentSourcePool extends AbstractContentSourcePool {
 		        LOG.log(WARNING, "Connection error count for ContentSource {0} is {1}. Max limit is {2}.", new Object[]{asString(cs),count,hostRetryLimit});
 		        if (count > hostRetryLimit) {
                     removeInternal(cs);
+                    if (isHealthCheckEnabled()) {
+                        removedSet.add(cs);
+                    }
 		        }
             } else {
                 LOG.log(WARNING, "Connection error for ContentSource {0} is not counted towards the limit as it was allocated before last error.", new Object[]{asString(cs)});
@@ -282,222 +455,491 @@ public class DefaultContentSourcePool extends AbstractContentSourcePool {
     		return cs == null ? "null" : cs.toString();
     }
 
-    //methods to create dynamic proxy instances.
+    //wraps the ContentSource so that sessions created from it report success and errors back to this pool.
     protected ContentSource createContentSourceProxy(ContentSource cs) {
-        return (ContentSource) Proxy.newProxyInstance(
-                DefaultContentSourcePool.class.getClassLoader(), new Class[] { ContentSource.class },
-                  new ContentSourceInvocationHandler(this, cs));
+        return new PooledContentSource(this, cs);
     }
 
     public static ContentSource getContentSourceFromProxy(ContentSource proxy) {
-		ContentSource target = proxy;
-		if (proxy != null && Proxy.isProxyClass(proxy.getClass())) {
-			InvocationHandler handler = Proxy.getInvocationHandler(proxy);
-			if (handler instanceof ContentSourceInvocationHandler) {
-				target = ((ContentSourceInvocationHandler)handler).target;
-			}
-		}
-		return target;
-	}
+        return proxy instanceof PooledContentSource ? ((PooledContentSource) proxy).target : proxy;
+    }
 
     public static Session getSessionFromProxy(Session proxy) {
-		Session target = proxy;
-		if (proxy != null && Proxy.isProxyClass(proxy.getClass())) {
-			InvocationHandler handler = Proxy.getInvocationHandler(proxy);
-			if (handler instanceof SessionInvocationHandler) {
-				target = ((SessionInvocationHandler)handler).target;
-			}
-		}
-		return target;
-	}
+        return proxy instanceof PooledSession ? ((PooledSession) proxy).target : proxy;
+    }
 
-    //invocation handlers
-    protected static class ContentSourceInvocationHandler implements InvocationHandler{
-        static final String NEW_SESSION = "newSession";
-        DefaultContentSourcePool csp;
-        ContentSource target;
-        long allocTime;
+    /**
+     * Delegating ContentSource handed out by the pool. Unlike a dynamic proxy,
+     * calls are plain virtual calls that the JIT can inline.
+     * @since 2.4.6
+     */
+    protected static class PooledContentSource implements ContentSource {
+        final DefaultContentSourcePool csp;
+        final ContentSource target;
+        final long allocTime;
 
-        protected ContentSourceInvocationHandler(DefaultContentSourcePool csp, ContentSource target) {
+        protected PooledContentSource(DefaultContentSourcePool csp, ContentSource target) {
             this.csp = csp;
             this.target = target;
             this.allocTime = System.currentTimeMillis();
         }
 
+        protected Session createSessionProxy(Session session) {
+            return session == null ? null : new PooledSession(csp, target, session, allocTime);
+        }
+
         @Override
-		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable  {
-			Object obj = method.invoke(target, args);
+        public Session newSession() {
+            return createSessionProxy(target.newSession());
+        }
 
-			if (obj != null && isNewSession(method) && obj instanceof Session) {
-				obj = createSessionProxy((Session)obj);
-			}
+        @Override
+        public Session newSession(String contentbaseId) {
+            return createSessionProxy(target.newSession(contentbaseId));
+        }
 
-			return obj;
-		}
+        @Override
+        @Deprecated
+        @SuppressWarnings("deprecation")
+        public Session newSession(String userName, String password) {
+            return createSessionProxy(target.newSession(userName, password));
+        }
 
-        protected Session createSessionProxy(Session session) {
-    			return (Session)Proxy.newProxyInstance(
-    				DefaultContentSourcePool.class.getClassLoader(), new Class[] { Session.class },
-    				  new SessionInvocationHandler(csp, target, session, allocTime));
+        @Override
+        public Session newSession(String userName, char[] password) {
+            return createSessionProxy(target.newSession(userName, password));
+        }
+
+        @Override
+        public Session newSession(String userName, char[] password, String contentbaseId) {
+            return createSessionProxy(target.newSession(userName, password, contentbaseId));
+        }
+
+        @Override
+        @Deprecated
+        @SuppressWarnings("deprecation")
+        public Session newSession(String userName, String password, String contentbaseId) {
+            return createSessionProxy(target.newSession(userName, password, contentbaseId));
+        }
+
+        @Override
+        public Logger getDefaultLogger() {
+            return target.getDefaultLogger();
+        }
+
+        @Override
+        public void setDefaultLogger(Logger logger) {
+            target.setDefaultLogger(logger);
+        }
+
+        @Override
+        public boolean isAuthenticationPreemptive() {
+            return target.isAuthenticationPreemptive();
+        }
+
+        @Override
+        public void setAuthenticationPreemptive(boolean value) {
+            target.setAuthenticationPreemptive(value);
+        }
+
+        @Override
+        public ConnectionProvider getConnectionProvider() {
+            return target.getConnectionProvider();
         }
 
-        private boolean isNewSession(Method method) {
-        		return NEW_SESSION.equals(method.getName());
+        @Override
+        public boolean equals(Object obj) {
+            return target.equals(obj instanceof PooledContentSource ? ((PooledContentSource) obj).target : obj);
+        }
+
+        @Override
+        public int hashCode() {
+            return target.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return target.toString();
         }
     }
 
+    /**
+     * Delegating Session that tracks connection load, reports success and errors
+     * to the pool and fails over to another ContentSource on ServerConnectionException.
+     * @since 2.4.6
+     */
     //TODO: This code does not handle explicit commits and rollbacks.
-    protected static class SessionInvocationHandler implements InvocationHandler {
-        static final String SUBMIT_REQUEST = "submitRequest";
-        static final String INSERT_CONTENT = "insertContent";
-        static final String COMMIT = "commit";
-        static final String ROLLBACK = "rollback";
-        static final String CLOSE = "close";
+    protected static class PooledSession implements Session {
         static final String EMPTY_SEQ = "()";
 
-        private DefaultContentSourcePool csp;
-        private ContentSource cs;
-        private Session target;
-        private long allocTime;
+        private final DefaultContentSourcePool csp;
+        private final ContentSource cs;
+        final Session target;
+        private final long allocTime;
 
         private int attempts = 0;
 
         private Session retryProxy;
 
-		protected SessionInvocationHandler(DefaultContentSourcePool csp, ContentSource cs, Session target, long allocTime) {
-			this.csp = csp;
-			this.cs = cs;
-			this.target = target;
-			this.allocTime = allocTime;
-		}
+        protected PooledSession(DefaultContentSourcePool csp, ContentSource cs, Session target, long allocTime) {
+            this.csp = csp;
+            this.cs = cs;
+            this.target = target;
+            this.allocTime = allocTime;
+        }
 
         @Override
-		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        		checkUnsupported(method);
+        public ResultSequence submitRequest(Request request) throws RequestException {
+            validRequest(request);
+            beforeSubmit();
+            ResultSequence result;
+            try {
+                //TODO: connection is held longer for streaming result sequence even after request is submitted.
+                //We are ok now as we only use streaming results for query uris loader.
+                result = target.submitRequest(request);
+            } catch (ServerConnectionException exc) {
+                onConnectionError();
+                if (attempts <= csp.retryLimit) {
+                    LOG.log(WARNING, "Submit request failed {0} times with {1}. Max Limit is {2}. Retrying..", new Object[]{attempts, exc.getClass().getSimpleName(), csp.retryLimit});
+                    return submitAsNewRequest(request);
+                }
+                throw exc;
+            } catch (RequestException | RuntimeException exc) {
+                onError();
+                throw exc;
+            }
+            onSuccess();
+            return result;
+        }
 
-			//NOTE: We only need to track connection counts for LOAD policy
-			if (isSubmitRequest(method) || isInsertContent(method)) {
-				if (isSubmitRequest(method)) {
-                    validRequest(args);
+        @Override
+        public void insertContent(Content content) throws RequestException {
+            beforeSubmit();
+            try {
+                target.insertContent(content);
+            } catch (ServerConnectionException exc) {
+                onConnectionError();
+                if (attempts <= csp.retryLimit) {
+                    LOG.log(WARNING, "Insert content failed {0} times {1}. Max Limit is {2}. Retrying..", new Object[]{attempts, exc.getClass().getSimpleName(), csp.retryLimit});
+                    insertAsNewRequest(content);
+                    return;
                 }
+                throw exc;
+            } catch (RequestException | RuntimeException exc) {
+                onError();
+                throw exc;
+            }
+            onSuccess();
+        }
 
-				if (csp.isLoadPolicy()) {
-                    csp.hold(cs);
+        @Override
+        public void insertContent(Content[] content) throws RequestException {
+            beforeSubmit();
+            try {
+                target.insertContent(content);
+            } catch (ServerConnectionException exc) {
+                onConnectionError();
+                if (attempts <= csp.retryLimit) {
+                    LOG.log(WARNING, "Insert content failed {0} times {1}. Max Limit is {2}. Retrying..", new Object[]{attempts, exc.getClass().getSimpleName(), csp.retryLimit});
+                    insertAsNewRequest(content);
+                    return;
                 }
-				attempts++;
-			}
-			try {
-				if (retryProxy != null && isClose(method)) {
-					retryProxy.close(); //Use proxy only as there can be multiple retry attempts in a chain.
-				}
-				Object obj = method.invoke(target, args);
-				//TODO: connection is held longer for streaming result sequence even after request is submitted.
-				//We are ok now as we only use streaming results for query uris loader.
-				if (isSubmitRequest(method) || isInsertContent(method)) {
-					csp.success(cs);
-					if (csp.isLoadPolicy()) {
-                        csp.release(cs);
-                    }
-				}
-				return obj;
-			} catch (Exception exc) {
-				if (csp.isLoadPolicy() && (isSubmitRequest(method) || isInsertContent(method))) {
-                    csp.release(cs); //we should do this before the recursion.. not finally.
+                throw exc;
+            } catch (RequestException | RuntimeException exc) {
+                onError();
+                throw exc;
+            }
+            onSuccess();
+        }
+
+        //NOTE: We only need to track connection counts for LOAD policy
+        private void beforeSubmit() {
+            if (csp.isLoadPolicy()) {
+                csp.hold(cs);
+            }
+            attempts++;
+        }
+
+        private void onSuccess() {
+            csp.success(cs);
+            if (csp.isLoadPolicy()) {
+                csp.release(cs);
+            }
+        }
+
+        //we should do this before the retry.. not finally.
+        private void onError() {
+            if (csp.isLoadPolicy()) {
+                csp.release(cs);
+            }
+        }
+
+        private void onConnectionError() {
+            onError();
+            csp.error(cs, allocTime);
+        }
+
+        //connection failures outside of submit/insert are not retried, but still count against the host
+        private ServerConnectionException reportConnectionError(ServerConnectionException exc) {
+            csp.error(cs, allocTime);
+            return exc;
+        }
+
+        protected void validRequest(Request request) {
+            if (!(request instanceof AdhocQuery || request instanceof ModuleInvoke)) {
+                throw new IllegalArgumentException("Only moduleInvoke or adhocQuery requests are supported by corb");
+            }
+        }
+
+        protected ResultSequence submitAsNewRequest(Request request) throws RequestException {
+            try {
+                retryProxy = csp.get().newSession();
+                setAttemptsToNewSession(retryProxy);
+                Request newRequest;
+                if (request instanceof AdhocQuery) {
+                    newRequest = retryProxy.newAdhocQuery(((AdhocQuery)request).getQuery());
+                } else {
+                    newRequest = retryProxy.newModuleInvoke(((ModuleInvoke)request).getModuleUri());
                 }
-                if (exc instanceof InvocationTargetException) {
-                    if (exc.getCause() instanceof ServerConnectionException) {
-	                    csp.error(cs,allocTime); //we should do this before the recursion.. not finally.
-
-	                    String name = exc.getCause().getClass().getSimpleName();
-	                    if (isSubmitRequest(method) && attempts <= csp.retryLimit) {
-	                        LOG.log(WARNING, "Submit request failed {0} times with {1}. Max Limit is {2}. Retrying..", new Object[]{attempts, name, csp.retryLimit});
-	                        return submitAsNewRequest(args);
-	                    } else if (isInsertContent(method) && attempts <= csp.retryLimit) {
-	                        LOG.log(WARNING, "Insert content failed {0} times {1}. Max Limit is {2}. Retrying..", new Object[]{attempts, name, csp.retryLimit});
-	                        return insertAsNewRequest(args);
-	                    } else {
-	                        throw exc.getCause();
-	                    }
-	                } else {
-					    throw exc.getCause();
-					}
-				} else {
-					throw exc;
-				}
-			}
-		}
-
-		protected void validRequest(Object... args) {
-			Request request = (Request)args[0];
-			if (!(request instanceof AdhocQuery || request instanceof ModuleInvoke)) {
-				throw new IllegalArgumentException("Only moduleInvoke or adhocQuery requests are supported by corb");
-			}
-		}
-
-		protected Object submitAsNewRequest(Object... args) throws RequestException{
-			Request request = (Request)args[0];
-			try {
-				retryProxy = csp.get().newSession();
-				setAttemptsToNewSession(retryProxy);
-				Request newRequest;
-				if (request instanceof AdhocQuery) {
-					newRequest = retryProxy.newAdhocQuery(((AdhocQuery)request).getQuery());
-				} else {
-					newRequest = retryProxy.newModuleInvoke(((ModuleInvoke)request).getModuleUri());
-				}
-				newRequest.setOptions(request.getOptions());
-
-				XdmVariable[] vars = request.getVariables();
-				for (int i = 0; vars != null && i < vars.length; i++) {
-					newRequest.setVariable(vars[i]);
-				}
-
-				return retryProxy.submitRequest(newRequest);
-			} catch (CorbException exc) {
-				throw new RequestException(exc.getMessage(),request,exc);
-			}
-		}
-
-		protected Object insertAsNewRequest(Object... args) throws RequestException{
-			try {
-				retryProxy = csp.get().newSession();
-				setAttemptsToNewSession(retryProxy);
-				if (args[0] instanceof Content) {
-					retryProxy.insertContent((Content)args[0]);
-				} else if (args[0] instanceof Content[]) {
-					retryProxy.insertContent((Content[])args[0]);
-				}
-				return null;
-			} catch (CorbException exc) {
-				throw new RequestException(exc.getMessage(),target.newAdhocQuery(EMPTY_SEQ),exc);
-			}
-		}
-
-		private boolean isSubmitRequest(Method method) {
-			return SUBMIT_REQUEST.equals(method.getName());
-		}
-
-		private boolean isInsertContent(Method method) {
-			return INSERT_CONTENT.equals(method.getName());
-		}
-
-		private boolean isClose(Method method) {
-			return CLOSE.equals(method.getName());
-		}
-
-		private void checkUnsupported(Method method) {
-			if (COMMIT.equals(method.getName()) || ROLLBACK.equals(method.getName())) {
-				throw new UnsupportedOperationException(method.getName()+" is not supported by "+getClass().getName());
-			}
-		}
-
-		protected void setAttemptsToNewSession(Session newProxy) {
-			if (Proxy.isProxyClass(newProxy.getClass())) {
-				InvocationHandler handler = Proxy.getInvocationHandler(newProxy);
-				if (handler instanceof SessionInvocationHandler) {
-					((SessionInvocationHandler)handler).attempts = this.attempts;
-				}
-			}
-		}
-	}
+                newRequest.setOptions(request.getOptions());
+
+                XdmVariable[] vars = request.getVariables();
+                for (int i = 0; vars != null && i < vars.length; i++) {
+                    newRequest.setVariable(vars[i]);
+                }
+
+                return retryProxy.submitRequest(newRequest);
+            } catch (CorbException exc) {
+                throw new RequestException(exc.getMessage(), request, exc);
+            }
+        }
+
+        protected void insertAsNewRequest(Object content) throws RequestException {
+            try {
+                retryProxy = csp.get().newSession();
+                setAttemptsToNewSession(retryProxy);
+                if (content instanceof Content) {
+                    retryProxy.insertContent((Content)content);
+                } else if (content instanceof Content[]) {
+                    retryProxy.insertContent((Content[])content);
+                }
+            } catch (CorbException exc) {
+                throw new RequestException(exc.getMessage(), target.newAdhocQuery(EMPTY_SEQ), exc);
+            }
+        }
+
+        protected void setAttemptsToNewSession(Session newProxy) {
+            if (newProxy instanceof PooledSession) {
+                ((PooledSession)newProxy).attempts = this.attempts;
+            }
+        }
+
+        @Override
+        public boolean commit() throws RequestException {
+            throw new UnsupportedOperationException("commit is not supported by " + getClass().getName());
+        }
+
+        @Override
+        public void rollback() throws RequestException {
+            throw new UnsupportedOperationException("rollback is not supported by " + getClass().getName());
+        }
+
+        @Override
+        public void close() {
+            if (retryProxy != null) {
+                retryProxy.close(); //Use proxy only as there can be multiple retry attempts in a chain.
+            }
+            target.close();
+        }
+
+        @Override
+        public boolean isClosed() {
+            return target.isClosed();
+        }
+
+        @Override
+        public ContentSource getContentSource() {
+            return target.getContentSource();
+        }
+
+        @Override
+        public UserCredentials getUserCredentials() {
+            return target.getUserCredentials();
+        }
+
+        @Override
+        public String getContentBaseName() {
+            return target.getContentBaseName();
+        }
+
+        @Override
+        public XAResource getXAResource() {
+            return target.getXAResource();
+        }
+
+        @Override
+        @Deprecated
+        @SuppressWarnings("deprecation")
+        public void setTransactionMode(TransactionMode mode) {
+            target.setTransactionMode(mode);
+        }
+
+        @Override
+        @Deprecated
+        @SuppressWarnings("deprecation")
+        public TransactionMode getTransactionMode() {
+            return target.getTransactionMode();
+        }
+
+        @Override
+        public boolean isAutoCommit() {
+            return target.isAutoCommit();
+        }
+
+        @Override
+        public void setAutoCommit(boolean autoCommit) {
+            target.setAutoCommit(autoCommit);
+        }
+
+        @Override
+        public Update getUpdate() {
+            return target.getUpdate();
+        }
+
+        @Override
+        public void setUpdate(Update update) {
+            target.setUpdate(update);
+        }
+
+        @Override
+        public void setTransactionTimeout(int seconds) throws RequestException {
+            try {
+                target.setTransactionTimeout(seconds);
+            } catch (ServerConnectionException exc) {
+                throw reportConnectionError(exc);
+            }
+        }
+
+        @Override
+        public int getTransactionTimeout() throws RequestException {
+            try {
+                return target.getTransactionTimeout();
+            } catch (ServerConnectionException exc) {
+                throw reportConnectionError(exc);
+            }
+        }
+
+        @Override
+        public int getCachedTxnTimeout() {
+            return target.getCachedTxnTimeout();
+        }
+
+        @Override
+        public AdhocQuery newAdhocQuery(String queryText, RequestOptions options) {
+            return target.newAdhocQuery(queryText, options);
+        }
+
+        @Override
+        public AdhocQuery newAdhocQuery(String queryText) {
+            return target.newAdhocQuery(queryText);
+        }
+
+        @Override
+        public ModuleInvoke newModuleInvoke(String moduleUri, RequestOptions options) {
+            return target.newModuleInvoke(moduleUri, options);
+        }
+
+        @Override
+        public ModuleInvoke newModuleInvoke(String moduleUri) {
+            return target.newModuleInvoke(moduleUri);
+        }
+
+        @Override
+        public ModuleSpawn newModuleSpawn(String moduleUri, RequestOptions options) {
+            return target.newModuleSpawn(moduleUri, options);
+        }
+
+        @Override
+        public ModuleSpawn newModuleSpawn(String moduleUri) {
+            return target.newModuleSpawn(moduleUri);
+        }
+
+        @Override
+        public List<RequestException> insertContentCollectErrors(Content[] content) throws RequestException {
+            try {
+                return target.insertContentCollectErrors(content);
+            } catch (ServerConnectionException exc) {
+                throw reportConnectionError(exc);
+            }
+        }
+
+        @Override
+        public ContentbaseMetaData getContentbaseMetaData() {
+            return target.getContentbaseMetaData();
+        }
+
+        @Override
+        public void setDefaultRequestOptions(RequestOptions options) {
+            target.setDefaultRequestOptions(options);
+        }
+
+        @Override
+        public RequestOptions getDefaultRequestOptions() {
+            return target.getDefaultRequestOptions();
+        }
+
+        @Override
+        public RequestOptions getEffectiveRequestOptions() {
+            return target.getEffectiveRequestOptions();
+        }
+
+        @Override
+        public BigInteger getCurrentServerPointInTime() throws RequestException {
+            try {
+                return target.getCurrentServerPointInTime();
+            } catch (ServerConnectionException exc) {
+                throw reportConnectionError(exc);
+            }
+        }
+
+        @Override
+        public Logger getLogger() {
+            return target.getLogger();
+        }
+
+        @Override
+        public void setLogger(Logger logger) {
+            target.setLogger(logger);
+        }
+
+        @Override
+        public void setUserObject(Object userObject) {
+            target.setUserObject(userObject);
+        }
+
+        @Override
+        public Object getUserObject() {
+            return target.getUserObject();
+        }
+
+        @Override
+        public URI getConnectionUri() {
+            return target.getConnectionUri();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return target.equals(obj instanceof PooledSession ? ((PooledSession) obj).target : obj);
+        }
+
+        @Override
+        public int hashCode() {
+            return target.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return target.toString();
+        }
+    }
 }
@@ -167,6 +167,23 @@ public class DiskQueue<E extends Serializable> extends AbstractQueue<String> {
         }
     }
 
+    /**
+     * Write the elements offered from now on to the backing store on disk,
+     * rather than keep them in memory.
+     *
+     * @return whether the backing store is open
+     * @since 2.4.6
+     */
+    public boolean spill() {
+        try {
+            openFile();
+            return true;
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, MessageFormat.format("Error creating {0} backing store", DiskQueue.class.getSimpleName()), e);
+            return false;
+        }
+    }
+
     @Override
     public Iterator<String> iterator() {
         throw new UnsupportedOperationException(MessageFormat.format("Iterator is not supported for {0}", DiskQueue.class.getSimpleName()));
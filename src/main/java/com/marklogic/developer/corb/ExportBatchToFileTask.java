@@ -20,10 +20,16 @@ package com.marklogic.developer.corb;
 
 import static com.marklogic.developer.corb.Options.EXPORT_FILE_NAME;
 import static com.marklogic.developer.corb.Options.EXPORT_FILE_PART_EXT;
+import static com.marklogic.developer.corb.Options.EXPORT_FILE_SHARDS;
+import static com.marklogic.developer.corb.Options.EXPORT_FILE_SHARD_INDEX;
+import static com.marklogic.developer.corb.Options.EXPORT_FILE_SHARD_MAX_RECORDS;
+import static com.marklogic.developer.corb.Options.EXPORT_FILE_SHARD_MAX_SIZE;
 import static com.marklogic.developer.corb.Options.URIS_BATCH_REF;
 import static com.marklogic.developer.corb.util.StringUtils.isEmpty;
 import static com.marklogic.developer.corb.util.StringUtils.isNotEmpty;
+import static com.marklogic.developer.corb.util.StringUtils.stringToBoolean;
 import static com.marklogic.developer.corb.util.StringUtils.trim;
+import com.marklogic.developer.corb.util.NumberUtils;
 import com.marklogic.xcc.ResultSequence;
 import java.io.BufferedOutputStream;
 import java.io.File;
@@ -78,13 +84,117 @@ public class ExportBatchToFileTask extends ExportToFileTask {
         return getExportFile(getPartFileName());
     }
 
+	/**
+	 * @return whether {@value com.marklogic.developer.corb.Options#EXPORT_FILE_SHARDS} is enabled
+	 * @since 2.4.6
+	 */
+	protected boolean isSharded() {
+		return stringToBoolean(getProperty(EXPORT_FILE_SHARDS));
+	}
+
 	@Override
 	protected void writeToFile(ResultSequence seq, File exportFile) throws IOException {
+		if (isSharded() && Options.PROCESS_MODULE.equals(moduleType)) {
+			writeToShard(seq);
+			return;
+		}
+		if (isCompressed()) {
+			//serialized by this thread, and compressed by the compressor of the file, without taking the lock
+			byte[] block = toBytes(seq);
+			try (JobEvent event = beginExportEvent("write", exportFile)) {
+				event.count(block.length);
+				ExportFileCompressor.append(exportFile, this, block);
+			}
+			return;
+		}
+		JobEvent lockWait = beginExportEvent("lock-wait", exportFile);
 		synchronized (SYNC_OBJ) {
-			try (OutputStream writer = new BufferedOutputStream(new FileOutputStream(exportFile, true))){
-				write(seq, writer);
+			lockWait.close();
+			try (JobEvent event = beginExportEvent("write", exportFile)) {
+				long offset = event == JobEvent.NONE ? 0 : exportFile.length();
+				try (OutputStream writer = new BufferedOutputStream(new FileOutputStream(exportFile, true))){
+					write(seq, writer);
+				}
+				if (event != JobEvent.NONE) {
+					event.count(exportFile.length() - offset);
+				}
 			}
 		}
 	}
 
+	/**
+	 * Finish the gzip stream of a compressed export file, once the batches that
+	 * are queued have been compressed, so that the file can be read and appended to.
+	 * @param exportFile
+	 * @throws IOException
+	 * @since 2.4.6
+	 */
+	public static void closeCompressedStream(File exportFile) throws IOException {
+		ExportFileCompressor.close(exportFile);
+	}
+
+	/**
+	 * Finish the gzip streams of the export file of this task, and of its shards.
+	 * The streams of other jobs' export files are left open.
+	 * @throws IOException
+	 * @since 2.4.6
+	 */
+	public void closeCompressedStreams() throws IOException {
+		try {
+			closeCompressedStream(getExportFile());
+		} finally {
+			ExportFileShards.close(getExportFile(getFileName()));
+		}
+	}
+
+	/**
+	 * Append the results to the shard of the current thread, without waiting on other threads.
+	 * When compressed, the batches of a shard are written to a single gzip stream, unless
+	 * {@value com.marklogic.developer.corb.Options#EXPORT_FILE_SHARD_INDEX} is enabled. Then
+	 * each batch is a gzip member of its own, so that the batches can be reordered.
+	 * @param seq
+	 * @throws IOException
+	 * @since 2.4.6
+	 */
+	protected void writeToShard(ResultSequence seq) throws IOException {
+		long maxRecords = NumberUtils.toLong(getProperty(EXPORT_FILE_SHARD_MAX_RECORDS), 0);
+		long maxBytes = NumberUtils.toLong(getProperty(EXPORT_FILE_SHARD_MAX_SIZE), 0);
+		boolean indexed = stringToBoolean(getProperty(EXPORT_FILE_SHARD_INDEX));
+		ExportFileShards.Shard shard = ExportFileShards.forFile(getExportFile(getFileName())).getShard(maxRecords, maxBytes);
+		File shardFile = shard.getFile();
+		long offset;
+		long count;
+		try (JobEvent event = beginExportEvent("write", shardFile)) {
+			if (isCompressed() && !indexed) {
+				synchronized (shard) {
+					offset = shardFile.length();
+					OutputStream writer = shard.getOutputStream();
+					if (writer == null) {
+						writer = compress(new FileOutputStream(shardFile, true));
+						shard.setOutputStream(writer);
+					}
+					count = writeRecords(seq, writer);
+				}
+			} else {
+				offset = shardFile.length();
+				try (OutputStream writer = new BufferedOutputStream(compress(new FileOutputStream(shardFile, true)))) {
+					count = writeRecords(seq, writer);
+				}
+			}
+			event.count(shardFile.length() - offset);
+		}
+		String uri = inputUris != null && inputUris.length > 0 ? inputUris[0] : "";
+		shard.append(uri, offset, shardFile.length() - offset, count, indexed);
+	}
+
+	private long writeRecords(ResultSequence seq, OutputStream writer) throws IOException {
+		long count = 0;
+		while (seq.hasNext()) {
+			writer.write(getValueAsBytes(seq.next().getItem()));
+			writer.write(NEWLINE);
+			count++;
+		}
+		return count;
+	}
+
 }
@@ -0,0 +1,191 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compresses the batches that are appended to an export file on a thread of
+ * its own, so that the export file is a single gzip stream and the worker
+ * threads only serialize their results. The batches are handed over through a
+ * bounded queue, so a worker only waits when the compressor has fallen behind,
+ * and workers exporting to other files never wait on it.
+ *
+ * @since 2.4.6
+ */
+public class ExportFileCompressor implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(ExportFileCompressor.class.getName());
+    public static final int DEFAULT_QUEUE_SIZE = 16;
+    private static final byte[] END = new byte[0];
+    //the compressor of each export file, by absolute path
+    private static final Map<String, ExportFileCompressor> COMPRESSORS = new HashMap<>();
+
+    private final File file;
+    private final OutputStream out;
+    private final BlockingQueue<byte[]> queue;
+    private final Thread thread;
+    private volatile IOException failure;
+    private boolean closed;
+
+    protected ExportFileCompressor(File file, OutputStream out, int queueSize) {
+        this.file = file;
+        this.out = out;
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        thread = new Thread(this::compress, "export-compressor-" + file.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @param file the export file
+     * @param task compresses the file, at its compression level
+     * @return the compressor of the file, which is started if there is none
+     * @throws IOException if the file can not be opened
+     */
+    public static ExportFileCompressor forFile(File file, ExportToFileTask task) throws IOException {
+        synchronized (COMPRESSORS) {
+            ExportFileCompressor compressor = COMPRESSORS.get(file.getAbsolutePath());
+            if (compressor == null) {
+                compressor = new ExportFileCompressor(file, task.compress(new FileOutputStream(file, true)), DEFAULT_QUEUE_SIZE);
+                COMPRESSORS.put(file.getAbsolutePath(), compressor);
+            }
+            return compressor;
+        }
+    }
+
+    /**
+     * Append a batch to the export file, starting its compressor if needed.
+     *
+     * @param file the export file
+     * @param task compresses the file, at its compression level
+     * @param block the serialized batch
+     * @throws IOException if the file can not be written
+     */
+    public static void append(File file, ExportToFileTask task, byte[] block) throws IOException {
+        //a compressor that was closed in the meantime is replaced, and the batch starts a new gzip member
+        while (!forFile(file, task).submit(block)) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Finish the gzip stream of the export file, once the batches in the queue
+     * have been written, so that the file can be read or appended to.
+     *
+     * @param file the export file
+     * @throws IOException if the file could not be written
+     */
+    public static void close(File file) throws IOException {
+        //held while closing, so that a new compressor does not start appending to the file before this one is done
+        synchronized (COMPRESSORS) {
+            ExportFileCompressor compressor = COMPRESSORS.remove(file.getAbsolutePath());
+            if (compressor != null) {
+                compressor.close();
+            }
+        }
+    }
+
+    /**
+     * Queue a batch to be compressed, waiting if the queue is full.
+     *
+     * @param block the serialized batch
+     * @return false if the compressor has been closed, and the batch was not queued
+     * @throws IOException if an earlier batch could not be written
+     */
+    public synchronized boolean submit(byte[] block) throws IOException {
+        if (closed) {
+            return false;
+        }
+        checkFailure();
+        try {
+            queue.put(block);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to compress to " + file, ex);
+        }
+        return true;
+    }
+
+    /**
+     * Write the batches that are queued, then finish the gzip stream.
+     *
+     * @throws IOException if the file could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            queue.put(END);
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while finishing " + file, ex);
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Unable to compress to " + file, failure);
+        }
+    }
+
+    private void compress() {
+        try {
+            byte[] block;
+            while ((block = queue.take()) != END) {
+                //after a failure, keep draining the queue so that the workers are not blocked
+                if (failure == null) {
+                    try {
+                        out.write(block);
+                    } catch (IOException ex) {
+                        LOG.log(Level.SEVERE, "Unable to compress to " + file, ex);
+                        failure = ex;
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                out.close();
+            } catch (IOException ex) {
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+    }
+}
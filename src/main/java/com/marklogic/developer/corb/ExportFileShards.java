@@ -0,0 +1,384 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import com.marklogic.developer.corb.util.FileUtils;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The shard files that the threads of a job write an export file to, so that
+ * they do not have to wait on each other. Each thread appends to its own shard,
+ * and starts a new one when the shard reaches the maximum number of records or
+ * bytes. The shards of {@code report.csv} are named {@code report.shard-<shard>-<roll>.csv}.
+ *
+ * @since 2.4.6
+ */
+public class ExportFileShards {
+
+    public static final String SHARD_INFIX = ".shard-";
+    public static final String INDEX_EXT = ".idx";
+    public static final String MANIFEST_EXT = ".manifest";
+
+    private static final Map<String, ExportFileShards> EXPORTS = new ConcurrentHashMap<>();
+    private static final char TAB = '\t';
+
+    private final File file;
+    private final AtomicInteger shardCount = new AtomicInteger();
+    private final ThreadLocal<Shard> currentShard = new ThreadLocal<>();
+    private final List<Shard> shards = new CopyOnWriteArrayList<>();
+
+    protected ExportFileShards(File file) {
+        this.file = file.getAbsoluteFile();
+    }
+
+    /**
+     * @param file the export file
+     * @return the shards of the export file
+     */
+    public static ExportFileShards forFile(File file) {
+        return EXPORTS.computeIfAbsent(file.getAbsolutePath(), key -> new ExportFileShards(file));
+    }
+
+    /**
+     * Forget the shards of the export file, so that a subsequent job starts from the first shard.
+     *
+     * @param file the export file
+     */
+    public static void release(File file) {
+        EXPORTS.remove(file.getAbsolutePath());
+    }
+
+    /**
+     * Finish the compressed streams still open on the shards of the export file.
+     *
+     * @param file the export file
+     * @throws IOException
+     */
+    public static void close(File file) throws IOException {
+        ExportFileShards exportFileShards = EXPORTS.get(file.getAbsolutePath());
+        if (exportFileShards != null) {
+            exportFileShards.close();
+        }
+    }
+
+    /**
+     * Finish the compressed streams still open on the shards.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Shard shard : shards) {
+            try {
+                shard.close();
+            } catch (IOException ex) {
+                failure = ex;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Delete the shards, and their index files, left from a previous run.
+     *
+     * @param file the export file
+     * @throws IOException
+     */
+    public static void deleteShards(File file) throws IOException {
+        release(file);
+        for (File shard : listShards(file)) {
+            FileUtils.deleteFile(shard);
+            FileUtils.deleteFile(getIndexFile(shard));
+        }
+    }
+
+    /**
+     * @param maxRecords the number of records after which a new shard is started, 0 for unlimited
+     * @param maxBytes the size after which a new shard is started, 0 for unlimited
+     * @return the shard that the current thread should write to
+     * @throws IOException if the compressed stream of a full shard could not be finished
+     */
+    public Shard getShard(long maxRecords, long maxBytes) throws IOException {
+        Shard shard = currentShard.get();
+        if (shard == null) {
+            shard = new Shard(shardCount.getAndIncrement());
+            currentShard.set(shard);
+            shards.add(shard);
+        } else if ((maxRecords > 0 && shard.records >= maxRecords) || (maxBytes > 0 && shard.bytes >= maxBytes)) {
+            shard.roll();
+        }
+        return shard;
+    }
+
+    protected static File getShardFile(File file, int shard, int roll) {
+        String name = file.getName();
+        int extIndex = name.lastIndexOf('.');
+        String base = extIndex > 0 ? name.substring(0, extIndex) : name;
+        String ext = extIndex > 0 ? name.substring(extIndex) : "";
+        return new File(file.getAbsoluteFile().getParentFile(), base + SHARD_INFIX + shard + '-' + roll + ext);
+    }
+
+    protected static File getIndexFile(File shard) {
+        return new File(shard.getPath() + INDEX_EXT);
+    }
+
+    /**
+     * @param file the export file
+     * @return the shards of the export file, ordered by shard and roll
+     */
+    public static List<File> listShards(File file) {
+        File absoluteFile = file.getAbsoluteFile();
+        String name = absoluteFile.getName();
+        int extIndex = name.lastIndexOf('.');
+        String base = extIndex > 0 ? name.substring(0, extIndex) : name;
+        String ext = extIndex > 0 ? name.substring(extIndex) : "";
+        Pattern pattern = Pattern.compile(Pattern.quote(base + SHARD_INFIX) + "(\\d+)-(\\d+)" + Pattern.quote(ext));
+
+        Map<File, int[]> shards = new HashMap<>();
+        File[] files = absoluteFile.getParentFile().listFiles();
+        if (files != null) {
+            for (File candidate : files) {
+                Matcher matcher = pattern.matcher(candidate.getName());
+                if (matcher.matches()) {
+                    shards.put(candidate, new int[]{Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))});
+                }
+            }
+        }
+        List<File> sorted = new ArrayList<>(shards.keySet());
+        sorted.sort(Comparator.comparingInt((File shard) -> shards.get(shard)[0]).thenComparingInt(shard -> shards.get(shard)[1]));
+        return sorted;
+    }
+
+    /**
+     * Append the shards to the target file. If every shard has an index, the
+     * batches are appended in the order of their first URI, otherwise each
+     * shard is appended whole, in order.
+     *
+     * @param shards
+     * @param target
+     * @throws IOException
+     */
+    public static void concatenate(List<File> shards, File target) throws IOException {
+        boolean indexed = !shards.isEmpty() && shards.stream().allMatch(shard -> getIndexFile(shard).exists());
+        try (FileChannel out = FileChannel.open(target.toPath(), CREATE, WRITE, APPEND)) {
+            if (indexed) {
+                concatenateIndexed(shards, out);
+            } else {
+                for (File shard : shards) {
+                    try (FileChannel in = FileChannel.open(shard.toPath(), READ)) {
+                        transfer(in, 0, in.size(), out);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void concatenateIndexed(List<File> shards, FileChannel out) throws IOException {
+        List<IndexEntry> entries = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            for (String line : Files.readAllLines(getIndexFile(shards.get(i)).toPath(), UTF_8)) {
+                String[] fields = line.split("\t", 3);
+                if (fields.length == 3) {
+                    entries.add(new IndexEntry(i, Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2]));
+                }
+            }
+        }
+        entries.sort(Comparator.comparing((IndexEntry entry) -> entry.uri).thenComparingInt(entry -> entry.shard).thenComparingLong(entry -> entry.offset));
+        FileChannel[] channels = new FileChannel[shards.size()];
+        try {
+            for (int i = 0; i < channels.length; i++) {
+                channels[i] = FileChannel.open(shards.get(i).toPath(), READ);
+            }
+            for (IndexEntry entry : entries) {
+                transfer(channels[entry.shard], entry.offset, entry.length, out);
+            }
+        } finally {
+            for (FileChannel channel : channels) {
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+        }
+    }
+
+    protected static void transfer(FileChannel in, long position, long count, FileChannel out) throws IOException {
+        long offset = position;
+        long remaining = count;
+        while (remaining > 0) {
+            long transferred = in.transferTo(offset, remaining, out);
+            if (transferred <= 0) {
+                break;
+            }
+            offset += transferred;
+            remaining -= transferred;
+        }
+    }
+
+    /**
+     * List the names of the shards, one per line.
+     *
+     * @param shards
+     * @param manifest
+     * @throws IOException
+     */
+    public static void writeManifest(List<File> shards, File manifest) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(manifest.toPath(), UTF_8)) {
+            for (File shard : shards) {
+                writer.write(shard.getName());
+                writer.newLine();
+            }
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * The file that one thread is currently appending to. Only written by that
+     * thread, but its compressed stream may be finished by another thread once
+     * the tasks have completed.
+     */
+    public class Shard {
+
+        private final int index;
+        private int roll;
+        private long records;
+        private long bytes;
+        private OutputStream out;
+
+        protected Shard(int index) {
+            this.index = index;
+        }
+
+        protected void roll() throws IOException {
+            close();
+            roll++;
+            records = 0;
+            bytes = 0;
+        }
+
+        /**
+         * @return the compressed stream that is open on the shard file, or null
+         */
+        public synchronized OutputStream getOutputStream() {
+            return out;
+        }
+
+        /**
+         * Keep a compressed stream open on the shard file, so that the batches
+         * of the shard are compressed as a single gzip stream.
+         *
+         * @param out
+         */
+        public synchronized void setOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Finish the compressed stream that is open on the shard file, if any.
+         *
+         * @throws IOException
+         */
+        public synchronized void close() throws IOException {
+            if (out != null) {
+                try {
+                    out.close();
+                } finally {
+                    out = null;
+                }
+            }
+        }
+
+        public File getFile() {
+            return getShardFile(file, index, roll);
+        }
+
+        /**
+         * Record a batch that was appended to the shard.
+         *
+         * @param uri the first URI of the batch
+         * @param offset position of the batch in the shard
+         * @param length number of bytes written
+         * @param count number of records written
+         * @param index whether to record the batch in the index file
+         * @throws IOException
+         */
+        public void append(String uri, long offset, long length, long count, boolean index) throws IOException {
+            records += count;
+            bytes = offset + length;
+            if (index) {
+                try (Writer writer = Files.newBufferedWriter(getIndexFile(getFile()).toPath(), UTF_8, CREATE, WRITE, APPEND)) {
+                    writer.write(Long.toString(offset));
+                    writer.write(TAB);
+                    writer.write(Long.toString(length));
+                    writer.write(TAB);
+                    writer.write(uri);
+                    writer.write('\n');
+                }
+            }
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+
+    private static class IndexEntry {
+        private final int shard;
+        private final long offset;
+        private final long length;
+        private final String uri;
+
+        IndexEntry(int shard, long offset, long length, String uri) {
+            this.shard = shard;
+            this.offset = offset;
+            this.length = length;
+            this.uri = uri;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static com.marklogic.developer.corb.Options.PIPELINE_OUTPUT_CHANNEL;
+
+import com.marklogic.xcc.ResultSequence;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sends each item returned by the process module to the next stage of a
+ * {@link Pipeline}. If the module does not return anything, the URIs that
+ * were processed are sent instead. Items are only sent once the whole result
+ * has been read, so a task that fails part way through and is retried does
+ * not send the same items twice.
+ *
+ * @since 2.4.6
+ */
+public class ExportToChannelTask extends AbstractTask {
+
+    @Override
+    protected String processResult(ResultSequence seq) throws CorbException {
+        String channelName = getProperty(PIPELINE_OUTPUT_CHANNEL);
+        PipelineChannel channel = PipelineChannel.get(channelName);
+        if (channel == null) {
+            throw new CorbException("No pipeline channel named " + channelName + " is open. Check " + PIPELINE_OUTPUT_CHANNEL);
+        }
+        List<String> items;
+        if (seq != null && seq.hasNext()) {
+            items = new ArrayList<>();
+            while (seq.hasNext()) {
+                items.add(seq.next().asString());
+            }
+        } else {
+            items = Arrays.asList(inputUris);
+        }
+        try {
+            for (String item : items) {
+                channel.put(item);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CorbException("Interrupted while sending results to pipeline channel " + channelName, ex);
+        }
+        return TRUE;
+    }
+}
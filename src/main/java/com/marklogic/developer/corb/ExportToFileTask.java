@@ -18,21 +18,37 @@
  */
 package com.marklogic.developer.corb;
 
+import static com.marklogic.developer.corb.Options.EXPORT_FILE_COMPRESSION;
+import static com.marklogic.developer.corb.Options.EXPORT_FILE_COMPRESSION_LEVEL;
 import static com.marklogic.developer.corb.Options.EXPORT_FILE_URI_TO_PATH;
 import static com.marklogic.developer.corb.util.StringUtils.isNotEmpty;
+import static com.marklogic.developer.corb.util.StringUtils.trim;
 import static com.marklogic.developer.corb.util.StringUtils.trimToEmpty;
 
+import com.marklogic.developer.corb.util.NumberUtils;
 import com.marklogic.xcc.ResultSequence;
 
 import java.io.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * @author Bhagat Bandlamudi, MarkLogic Corporation
  */
 public class ExportToFileTask extends AbstractTask {
 
+    public static final String GZIP = "gzip";
+    public static final String GZIP_EXT = ".gz";
+    protected static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    private static final int COMPRESSION_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * @return the export file name, with a {@code .gz} extension if
+	 * {@value com.marklogic.developer.corb.Options#EXPORT_FILE_COMPRESSION} is enabled
+	 */
 	protected String getFileName() {
-		return getExportFileName();
+		String fileName = getExportFileName();
+		return isCompressed() && !fileName.endsWith(GZIP_EXT) ? fileName + GZIP_EXT : fileName;
 	}
 
     protected String getExportFileName() {
@@ -55,8 +71,13 @@ public class ExportToFileTask extends AbstractTask {
 	}
 
 	protected void writeToFile(ResultSequence seq, File exportFile) throws IOException {
-        try (OutputStream writer = new BufferedOutputStream(new FileOutputStream(exportFile))) {
-            write(seq, writer);
+        try (JobEvent event = beginExportEvent("write", exportFile)) {
+            try (OutputStream writer = new BufferedOutputStream(compress(new FileOutputStream(exportFile)))) {
+                write(seq, writer);
+            }
+            if (event != JobEvent.NONE) {
+                event.count(exportFile.length());
+            }
         }
     }
 
@@ -64,7 +85,7 @@ public class ExportToFileTask extends AbstractTask {
         String trimmedContent = trimToEmpty(content);
         if (isNotEmpty(trimmedContent)) {
             File exportFile = getExportFile();
-            try (BufferedOutputStream writer = new BufferedOutputStream(new FileOutputStream(exportFile, true))) {
+            try (BufferedOutputStream writer = new BufferedOutputStream(compress(new FileOutputStream(exportFile, true)))) {
                 writer.write(trimmedContent.getBytes());
                 writer.write(NEWLINE);
             }
@@ -79,6 +100,75 @@ public class ExportToFileTask extends AbstractTask {
         writer.flush();
     }
 
+    /**
+     * Begin a {@link JobEvents.Category#EXPORT} event for the file.
+     *
+     * @param action
+     * @param file
+     * @return the event, to be closed when the action is complete
+     * @since 2.4.6
+     */
+    protected JobEvent beginExportEvent(String action, File file) {
+        JobEvent event = JobEvents.begin(JobEvents.Category.EXPORT, action);
+        return event == JobEvent.NONE ? event : event.detail(file.getPath());
+    }
+
+    /**
+     * @return whether {@value com.marklogic.developer.corb.Options#EXPORT_FILE_COMPRESSION} is gzip
+     * @since 2.4.6
+     */
+    protected boolean isCompressed() {
+        return GZIP.equalsIgnoreCase(trim(getProperty(EXPORT_FILE_COMPRESSION)));
+    }
+
+    /**
+     * @return the {@value com.marklogic.developer.corb.Options#EXPORT_FILE_COMPRESSION_LEVEL}, or the default if it is not between 1 and 9
+     * @since 2.4.6
+     */
+    protected int getCompressionLevel() {
+        int level = NumberUtils.toInt(getProperty(EXPORT_FILE_COMPRESSION_LEVEL), DEFAULT_COMPRESSION_LEVEL);
+        return level < 1 || level > 9 ? DEFAULT_COMPRESSION_LEVEL : level;
+    }
+
+    /**
+     * Wrap the stream so that what is written to it is compressed, if
+     * {@value com.marklogic.developer.corb.Options#EXPORT_FILE_COMPRESSION} is enabled.
+     * Each stream that is wrapped and closed appends a complete gzip member, so
+     * writers keep one stream open for as long as they write to the same file.
+     * @param out
+     * @return the stream to write to
+     * @throws IOException
+     * @since 2.4.6
+     */
+    protected OutputStream compress(OutputStream out) throws IOException {
+        return isCompressed() ? new LevelGZIPOutputStream(out, getCompressionLevel()) : out;
+    }
+
+    /**
+     * Wrap the stream so that the content of a compressed export file can be read.
+     * @param in
+     * @return the stream to read from
+     * @throws IOException
+     * @since 2.4.6
+     */
+    protected InputStream decompress(InputStream in) throws IOException {
+        return isCompressed() ? new GZIPInputStream(in, COMPRESSION_BUFFER_SIZE) : in;
+    }
+
+    /**
+     * Serialize the results in memory, so that the caller only needs exclusive
+     * access to the export file in order to write them.
+     * @param seq
+     * @return the results, one per line
+     * @throws IOException
+     * @since 2.4.6
+     */
+    protected byte[] toBytes(ResultSequence seq) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(seq, bytes);
+        return bytes.toByteArray();
+    }
+
     /**
      * Return a File with file name from getFileName()
      * @return
@@ -108,4 +198,16 @@ public class ExportToFileTask extends AbstractTask {
 		}
 	}
 
+    /**
+     * A GZIPOutputStream with a configurable compression level.
+     * @since 2.4.6
+     */
+    protected static class LevelGZIPOutputStream extends GZIPOutputStream {
+
+        public LevelGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out, COMPRESSION_BUFFER_SIZE);
+            def.setLevel(level);
+        }
+    }
+
 }
@@ -0,0 +1,60 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import com.marklogic.xcc.ResultSequence;
+
+/**
+ * Hands each item returned by the process module to the {@link ResultSink}
+ * configured with {@value Options#RESULT_SINK}. The items are read from the
+ * result stream on the thread executing the task, and written by the sink on
+ * its own thread, so the task completes once its results have been read.
+ *
+ * @since 2.4.6
+ */
+public class ExportToSinkTask extends AbstractTask {
+
+    protected AsyncResultSink resultSink;
+
+    public void setResultSink(AsyncResultSink resultSink) {
+        this.resultSink = resultSink;
+    }
+
+    @Override
+    protected String processResult(ResultSequence seq) throws CorbException {
+        if (resultSink == null) {
+            throw new CorbException("No result sink is open. Check " + Options.RESULT_SINK);
+        }
+        try {
+            while (seq != null && seq.hasNext()) {
+                resultSink.submit(inputUris, getValueAsBytes(seq.next().getItem()));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CorbException("Interrupted while sending results to the result sink", ex);
+        }
+        return TRUE;
+    }
+
+    @Override
+    protected void cleanup() {
+        super.cleanup();
+        resultSink = null;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static com.marklogic.developer.corb.Options.EXPORT_FILE_NAME;
+import static com.marklogic.developer.corb.Options.EXPORT_FILE_PART_EXT;
+import static com.marklogic.developer.corb.util.StringUtils.isEmpty;
+import static com.marklogic.developer.corb.util.StringUtils.isNotEmpty;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Appends each result, followed by a newline, to the
+ * {@value Options#EXPORT_FILE_NAME} in the {@value Options#EXPORT_FILE_DIR}.
+ * As with {@link ExportBatchToFileTask}, the {@value Options#EXPORT_FILE_PART_EXT}
+ * is appended to the name while the job is running, so that the post batch
+ * task can add the bottom content and rename the file.
+ *
+ * @since 2.4.6
+ */
+public class FileResultSink extends AbstractResultSink {
+
+    protected OutputStream writer;
+    protected File file;
+
+    @Override
+    public void open() throws IOException {
+        file = getExportFile(getPartFileName());
+        writer = new BufferedOutputStream(new FileOutputStream(file, true));
+    }
+
+    protected String getFileName() {
+        String fileName = getProperty(EXPORT_FILE_NAME);
+        if (isEmpty(fileName)) {
+            throw new NullPointerException("Missing " + EXPORT_FILE_NAME + " property");
+        }
+        return fileName;
+    }
+
+    protected String getPartFileName() {
+        String fileName = getFileName();
+        String partExt = getProperty(EXPORT_FILE_PART_EXT);
+        if (isNotEmpty(partExt)) {
+            fileName += partExt.startsWith(".") ? partExt : '.' + partExt;
+        }
+        return fileName;
+    }
+
+    @Override
+    public void write(String[] uris, byte[] result) throws IOException {
+        writer.write(result);
+        writer.write(NEWLINE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+}
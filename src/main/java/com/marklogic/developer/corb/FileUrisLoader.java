@@ -18,18 +18,28 @@
  */
 package com.marklogic.developer.corb;
 
+import com.marklogic.developer.corb.util.FileUtils;
 import com.marklogic.developer.corb.util.IOUtils;
 import static com.marklogic.developer.corb.util.StringUtils.isBlank;
 import static com.marklogic.developer.corb.util.StringUtils.trim;
 import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.LineNumberReader;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.logging.Logger;
 
+/**
+ * Reads URIs from a UTF-8 encoded text file, one URI per line. The total count
+ * is obtained by scanning the memory-mapped file for line terminators, so that
+ * the content is only decoded once, while the URIs are being read.
+ */
 public class FileUrisLoader extends AbstractUrisLoader {
 
-    protected FileReader fileReader;
+    protected static final int READ_BUFFER_SIZE = 64 * 1024;
+    protected Reader fileReader;
     protected BufferedReader bufferedReader;
     protected String nextLine;
     protected static final Logger LOG = Logger.getLogger(FileUrisLoader.class.getName());
@@ -47,12 +57,12 @@ public class FileUrisLoader extends AbstractUrisLoader {
         if (shouldSetBatchRef()) {
             batchRef = fileName;
         }
-        try (LineNumberReader lnr = new LineNumberReader(new FileReader(fileName))) {
-            lnr.skip(Long.MAX_VALUE);
-            setTotalCount(lnr.getLineNumber() + 1L);
+        try {
+            File file = new File(fileName);
+            setTotalCount(FileUtils.countLineTerminators(file) + 1L);
             //these are closed in the close() method
-            fileReader = new FileReader(fileName);
-            bufferedReader = new BufferedReader(fileReader);
+            fileReader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+            bufferedReader = new BufferedReader(fileReader, READ_BUFFER_SIZE);
         } catch (Exception exc) {
             throw new CorbException("Problem loading data from uris file " + getOptions().getUrisFile(), exc);
         }
@@ -24,9 +24,11 @@ import static com.marklogic.developer.corb.Options.POST_BATCH_MODULE;
 import static com.marklogic.developer.corb.Options.PRE_BATCH_MODULE;
 import static com.marklogic.developer.corb.Options.PROCESS_MODULE;
 import static com.marklogic.developer.corb.Options.XML_FILE;
+import static com.marklogic.developer.corb.Options.XML_LAZY_LOAD;
 import static com.marklogic.developer.corb.Options.XML_METADATA;
 import static com.marklogic.developer.corb.Options.XML_NODE;
 import com.marklogic.developer.corb.util.FileUtils;
+import com.marklogic.developer.corb.util.IOUtils;
 import com.marklogic.developer.corb.util.StringUtils;
 import static com.marklogic.developer.corb.util.StringUtils.isBlank;
 import static com.marklogic.developer.corb.util.StringUtils.isNotEmpty;
@@ -34,17 +36,32 @@ import static com.marklogic.developer.corb.util.StringUtils.trim;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stax.StAXSource;
+import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathFactory;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -59,6 +76,7 @@ import com.marklogic.developer.corb.util.XmlUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
@@ -68,7 +86,10 @@ import org.xml.sax.SAXParseException;
  * string to the process module in the URIS parameter.
  *
  * For extremely large XML files, consider the
- * {@link com.marklogic.developer.corb.FileUrisStreamingXMLLoader}
+ * {@link com.marklogic.developer.corb.FileUrisStreamingXMLLoader}, or enable
+ * {@value Options#XML_LAZY_LOAD} to select nodes with a {@link StreamingXPath}
+ * as the file is read with StAX, so that only one selected node is held in
+ * memory at a time.
  *
  * @author Praveen Venkata
  * @author Bhagat Bandlamudi
@@ -85,13 +106,23 @@ public class FileUrisXMLLoader extends AbstractFileUrisLoader {
     protected File xmlFile;
     protected Node customMetadata;
     private Map<Integer, Node> nodeMap;
+    protected StreamingXPath streamingXPath;
+    protected XMLStreamReader xmlStreamReader;
+    private InputStream xmlInputStream;
+    private Deque<String> xmlContext;
+    private Transformer identityTransformer;
+    private DocumentBuilder documentBuilder;
 
     @Override
     public void open() throws CorbException {
         String fileName = getLoaderPath(XML_FILE);
         xmlFile = FileUtils.getFile(fileName);
         schemaValidate(xmlFile);
-        nodeIterator = readNodes(xmlFile.toPath());
+        if (shouldLoadLazily()) {
+            openLazily(xmlFile.toPath());
+        } else {
+            nodeIterator = readNodes(xmlFile.toPath());
+        }
 
         if (shouldSetBatchRef()) {
             try {
@@ -156,9 +187,152 @@ public class FileUrisXMLLoader extends AbstractFileUrisLoader {
         return nodeMap.values().iterator();
     }
 
+    protected boolean shouldLoadLazily() {
+        return StringUtils.stringToBoolean(getProperty(XML_LAZY_LOAD), false);
+    }
+
+    /**
+     * Count the nodes selected by {@value Options#XML_NODE} and collect the
+     * {@value Options#XML_METADATA} node in a single StAX pass, without
+     * building any of the selected nodes, and then open a second StAX reader
+     * from which nodes are selected as they are requested.
+     *
+     * @param input
+     * @throws CorbException
+     */
+    protected void openLazily(Path input) throws CorbException {
+        String xpathRootNode = getProperty(XML_NODE);
+        String xpathMetadataNode = getProperty(XML_METADATA);
+        streamingXPath = new StreamingXPath(isBlank(xpathRootNode) ? "/*/*" : xpathRootNode);
+        StreamingXPath streamingMetadataXPath = isNotEmpty(xpathMetadataNode) ? new StreamingXPath(xpathMetadataNode) : null;
+        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+        long count = 0;
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(input))) {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(inputStream);
+            Deque<String> context = new ArrayDeque<>();
+            while (reader.hasNext()) {
+                if (reader.isStartElement()) {
+                    context.addLast(reader.getLocalName());
+                    String currentPath = toPath(context);
+                    if (streamingXPath.matches(currentPath)) {
+                        count++;
+                        skipElement(reader);
+                        context.removeLast();
+                    } else if (customMetadata == null && streamingMetadataXPath != null && streamingMetadataXPath.matches(currentPath)) {
+                        customMetadata = transformElement(reader);
+                        context.removeLast();
+                        continue; //the transform has already advanced past the end of the metadata element
+                    }
+                } else if (reader.isEndElement()) {
+                    context.removeLast();
+                }
+                reader.next();
+            }
+            reader.close();
+
+            xmlInputStream = new BufferedInputStream(Files.newInputStream(input));
+            xmlStreamReader = xmlInputFactory.createXMLStreamReader(xmlInputStream);
+            xmlContext = new ArrayDeque<>();
+        } catch (XMLStreamException | TransformerException | IOException ex) {
+            throw new CorbException(EXCEPTION_MSG_PROBLEM_READING_XML_FILE, ex);
+        }
+        setTotalCount(count);
+    }
+
+    /**
+     * Advance the StAX reader to the next element selected by the
+     * {@link StreamingXPath} and build it as a DOM.
+     *
+     * @return the selected element, or null when the end of the file is reached
+     * @throws CorbException
+     */
+    protected Node readNextElement() throws CorbException {
+        try {
+            while (xmlStreamReader.hasNext()) {
+                if (xmlStreamReader.isStartElement()) {
+                    xmlContext.addLast(xmlStreamReader.getLocalName());
+                    if (streamingXPath.matches(toPath(xmlContext))) {
+                        xmlContext.removeLast();
+                        return transformElement(xmlStreamReader);
+                    }
+                } else if (xmlStreamReader.isEndElement()) {
+                    xmlContext.removeLast();
+                }
+                xmlStreamReader.next();
+            }
+        } catch (XMLStreamException | TransformerException ex) {
+            throw new CorbException(EXCEPTION_MSG_PROBLEM_READING_XML_FILE, ex);
+        }
+        return null;
+    }
+
+    /**
+     * Build the element at the current position of the reader, leaving the
+     * reader positioned after the end of the element.
+     *
+     * @param reader
+     * @return the element
+     * @throws TransformerException
+     * @throws CorbException
+     */
+    protected Node transformElement(XMLStreamReader reader) throws TransformerException, CorbException {
+        try {
+            if (identityTransformer == null) {
+                identityTransformer = TransformerFactory.newInstance().newTransformer();
+                identityTransformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+                DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+                dbFactory.setNamespaceAware(true);
+                documentBuilder = dbFactory.newDocumentBuilder();
+            }
+            //the StAX to DOM bridge cannot start from an element within a document, so serialize the element and parse it
+            StringWriter writer = new StringWriter();
+            identityTransformer.transform(new StAXSource(reader), new StreamResult(writer));
+            return documentBuilder.parse(new InputSource(new StringReader(writer.toString()))).getDocumentElement();
+        } catch (ParserConfigurationException | SAXException | IOException ex) {
+            throw new CorbException(EXCEPTION_MSG_PROBLEM_READING_XML_FILE, ex);
+        }
+    }
+
+    /**
+     * Advance the reader from a start element to its matching end element.
+     *
+     * @param reader
+     * @throws XMLStreamException
+     */
+    protected static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamReader.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamReader.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * @param context
+     * @return a namespace-insensitive path for the context element
+     */
+    protected static String toPath(Deque<String> context) {
+        StringBuilder path = new StringBuilder();
+        for (String localName : context) {
+            path.append('/').append(localName);
+        }
+        return path.toString();
+    }
+
+    protected Node nextNode() throws CorbException {
+        if (xmlStreamReader != null) {
+            return readNextElement();
+        }
+        return nodeIterator.hasNext() ? nodeIterator.next() : null;
+    }
+
     private String readNextNode() throws CorbException {
-        if (nodeIterator.hasNext()) {
-            Node nextNode = nodeIterator.next();
+        Node nextNode = nextNode();
+        if (nextNode != null) {
             String line = nodeToString(nextNode);
 
             if (shouldUseEnvelope()) { //TODO: determine if default should be true(breaking change)
@@ -234,6 +408,15 @@ public class FileUrisXMLLoader extends AbstractFileUrisLoader {
     @Override
     public void close() {
         super.close();
+        if (xmlStreamReader != null) {
+            try {
+                xmlStreamReader.close();
+            } catch (XMLStreamException exc) {
+                LOG.log(Level.SEVERE, "while closing XML stream reader", exc);
+            }
+            xmlStreamReader = null;
+            IOUtils.closeQuietly(xmlInputStream);
+        }
         if (doc != null) {
             LOG.info("closing XML file reader");
             try {
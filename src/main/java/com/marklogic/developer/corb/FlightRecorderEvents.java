@@ -0,0 +1,206 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.Threshold;
+
+import static java.util.logging.Level.INFO;
+
+/**
+ * The JDK Flight Recorder events of {@link JobEvents}. This class is only loaded
+ * if the JVM supports JFR.
+ *
+ * @since 2.4.6
+ */
+class FlightRecorderEvents implements JobEvents.Recorder, FlightRecorderListener {
+
+    private static final Logger LOG = Logger.getLogger(FlightRecorderEvents.class.getName());
+    private static final String CATEGORY = "CoRB";
+
+    private final Set<Long> runningRecordings = ConcurrentHashMap.newKeySet();
+    private volatile boolean recording;
+    private Recording jobRecording;
+
+    FlightRecorderEvents() {
+        FlightRecorder.addListener(this);
+        if (FlightRecorder.isInitialized()) {
+            for (Recording existing : FlightRecorder.getFlightRecorder().getRecordings()) {
+                recordingStateChanged(existing);
+            }
+        }
+    }
+
+    @Override
+    public void recordingStateChanged(Recording changed) {
+        if (changed.getState() == RecordingState.RUNNING) {
+            runningRecordings.add(changed.getId());
+        } else {
+            runningRecordings.remove(changed.getId());
+        }
+        recording = !runningRecordings.isEmpty();
+    }
+
+    @Override
+    public boolean isRecording() {
+        return recording;
+    }
+
+    @Override
+    public JobEvent begin(JobEvents.Category category, String action) {
+        CorbEvent event;
+        switch (category) {
+            case CONTENT_SOURCE:
+                event = new ContentSourceEvent();
+                break;
+            case URIS_LOADER:
+                event = new UrisLoaderEvent();
+                break;
+            case EXPORT:
+                event = new ExportEvent();
+                break;
+            default:
+                event = new TaskEvent();
+        }
+        event.action = action;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public synchronized boolean start(File destination) {
+        if (jobRecording != null) {
+            return true;
+        }
+        Recording newRecording;
+        try {
+            newRecording = new Recording(Configuration.getConfiguration("default"));
+        } catch (IOException | ParseException ex) {
+            LOG.log(Level.WARNING, "Unable to load the default JFR configuration, only CoRB events will be recorded", ex);
+            newRecording = new Recording();
+        }
+        for (Class<? extends Event> eventClass : Arrays.<Class<? extends Event>>asList(TaskEvent.class, ContentSourceEvent.class, UrisLoaderEvent.class, ExportEvent.class)) {
+            newRecording.enable(eventClass);
+        }
+        newRecording.setName(CATEGORY);
+        newRecording.setToDisk(true);
+        try {
+            newRecording.setDestination(destination.getAbsoluteFile().toPath());
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, MessageFormat.format("Unable to record to {0}", destination), ex);
+            newRecording.close();
+            return false;
+        }
+        newRecording.start();
+        jobRecording = newRecording;
+        LOG.log(INFO, () -> MessageFormat.format("Started flight recording to {0}", destination.getAbsolutePath()));
+        return true;
+    }
+
+    @Override
+    public synchronized File stop() {
+        if (jobRecording == null) {
+            return null;
+        }
+        File destination = jobRecording.getDestination().toFile();
+        jobRecording.stop();
+        jobRecording.close();
+        jobRecording = null;
+        LOG.log(INFO, () -> MessageFormat.format("Flight recording written to {0}", destination.getAbsolutePath()));
+        return destination;
+    }
+
+    @Category(CATEGORY)
+    abstract static class CorbEvent extends Event implements JobEvent {
+
+        @Label("Action")
+        String action;
+
+        @Label("Detail")
+        @Description("What the event applies to, such as the URIs, host or file")
+        String detail;
+
+        @Label("Count")
+        @Description("The number of URIs, bytes or attempts, depending upon the action")
+        long count;
+
+        @Override
+        public JobEvent detail(String detail) {
+            this.detail = detail;
+            return this;
+        }
+
+        @Override
+        public JobEvent count(long count) {
+            this.count = count;
+            return this;
+        }
+
+        @Override
+        public void close() {
+            end();
+            if (shouldCommit()) {
+                commit();
+            }
+        }
+    }
+
+    @Name(JobEvents.EVENT_NAME_PREFIX + "Task")
+    @Label("Task")
+    @Description("A phase of a task: build-request, submit, first-result, process-result or retry")
+    static class TaskEvent extends CorbEvent {
+    }
+
+    @Name(JobEvents.EVENT_NAME_PREFIX + "ContentSource")
+    @Label("Content Source")
+    @Description("The selection of a host, and waiting on a host that has errored")
+    static class ContentSourceEvent extends CorbEvent {
+    }
+
+    @Name(JobEvents.EVENT_NAME_PREFIX + "UrisLoader")
+    @Label("URIs Loader")
+    @Description("Loading the URIs, and waiting for more URIs or for room in the task queue")
+    @Threshold("1 ms")
+    static class UrisLoaderEvent extends CorbEvent {
+    }
+
+    @Name(JobEvents.EVENT_NAME_PREFIX + "Export")
+    @Label("Export")
+    @Description("Waiting for the lock on an export file, and writing to it")
+    static class ExportEvent extends CorbEvent {
+    }
+}
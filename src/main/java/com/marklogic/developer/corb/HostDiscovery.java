@@ -0,0 +1,177 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
+
+import com.marklogic.xcc.AdhocQuery;
+import com.marklogic.xcc.ContentSource;
+import com.marklogic.xcc.ResultSequence;
+import com.marklogic.xcc.Session;
+import com.marklogic.xcc.exceptions.RequestException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Discovers the hosts in the group of the host that CoRB is connected to, and
+ * adds a ContentSource to the pool for each of them, using the same port,
+ * credentials and database as the configured connection. A discovered host is
+ * only added once it responds to a probe, and the configured ContentSources,
+ * such as a load balancer, are only replaced once at least one discovered host
+ * has responded, so that they remain as a fallback when the discovered host
+ * names cannot be reached from the client. Each run adds hosts that have
+ * joined the group and removes those that have left it.
+ *
+ * @since 2.4.6
+ */
+public class HostDiscovery implements Runnable {
+
+    protected static final String HOSTS_QUERY = "xquery version \"1.0-ml\";\n"
+            + "for $host in xdmp:group-hosts(xdmp:group()) return xdmp:host-name($host)";
+
+    private final DefaultContentSourcePool pool;
+    private final String connectionUri;
+    private List<ContentSource> configuredContentSources;
+    private final Map<String, ContentSource> discoveredContentSources = new HashMap<>();
+
+    private static final Logger LOG = Logger.getLogger(HostDiscovery.class.getName());
+
+    /**
+     * @param pool
+     * @param connectionUri connection string used as a template for the discovered hosts
+     */
+    public HostDiscovery(DefaultContentSourcePool pool, String connectionUri) {
+        this.pool = pool;
+        this.connectionUri = connectionUri;
+        this.configuredContentSources = new ArrayList<>(Arrays.asList(pool.getAllContentSources()));
+    }
+
+    @Override
+    public void run() {
+        try {
+            refresh(queryHostNames());
+        } catch (CorbException | RequestException | RuntimeException ex) {
+            LOG.log(WARNING, "Unable to discover the hosts of the cluster", ex);
+        }
+    }
+
+    protected List<String> queryHostNames() throws CorbException, RequestException {
+        List<String> hostNames = new ArrayList<>();
+        try (Session session = pool.get().newSession()) {
+            AdhocQuery query = session.newAdhocQuery(HOSTS_QUERY);
+            ResultSequence resultSequence = session.submitRequest(query);
+            while (resultSequence.hasNext()) {
+                hostNames.add(resultSequence.next().asString());
+            }
+            resultSequence.close();
+        }
+        return hostNames;
+    }
+
+    protected synchronized void refresh(List<String> hostNames) {
+        if (hostNames == null || hostNames.isEmpty()) {
+            LOG.log(WARNING, "No hosts discovered, keeping the current ContentSources");
+            return;
+        }
+        Set<String> hosts = new LinkedHashSet<>(hostNames);
+        List<ContentSource> current = Arrays.asList(pool.getAllContentSources());
+        for (String host : hosts) {
+            ContentSource contentSource = discoveredContentSources.get(host);
+            //also re-add hosts that the pool removed after too many errors, giving them another chance
+            if (contentSource == null || !current.contains(contentSource)) {
+                ContentSource discovered = pool.createContentSource(toConnectionUri(host));
+                if (discovered == null) {
+                    continue;
+                }
+                if (!probe(discovered)) {
+                    LOG.log(WARNING, "Discovered host {0} did not respond, not adding it", host);
+                    continue;
+                }
+                if (contentSource != null) {
+                    //replaced, so the health check must not add the old one back
+                    pool.remove(contentSource);
+                }
+                pool.add(discovered);
+                LOG.log(INFO, "Discovered host {0}", host);
+                discoveredContentSources.put(host, discovered);
+            }
+        }
+        if (discoveredContentSources.isEmpty()) {
+            if (!configuredContentSources.isEmpty()) {
+                LOG.log(WARNING, "None of the discovered hosts responded, keeping the configured ContentSources");
+            }
+            return;
+        }
+        discoveredContentSources.entrySet().removeIf(entry -> {
+            if (!hosts.contains(entry.getKey())) {
+                LOG.log(INFO, "Host {0} is no longer in the cluster", entry.getKey());
+                pool.remove(entry.getValue());
+                return true;
+            }
+            return false;
+        });
+        //the discovered hosts replace the configured ones
+        configuredContentSources.forEach(pool::remove);
+        configuredContentSources.clear();
+    }
+
+    /**
+     * @param contentSource a ContentSource for a discovered host
+     * @return whether the host responded
+     */
+    protected boolean probe(ContentSource contentSource) {
+        return pool.probe(contentSource);
+    }
+
+    /**
+     * @param host
+     * @return the configured connection string, with the host replaced
+     */
+    protected String toConnectionUri(String host) {
+        try {
+            URI uri = new URI(connectionUri);
+            StringBuilder sb = new StringBuilder(uri.getScheme()).append("://");
+            if (uri.getRawUserInfo() != null) {
+                sb.append(uri.getRawUserInfo()).append('@');
+            }
+            sb.append(host);
+            if (uri.getPort() > -1) {
+                sb.append(':').append(uri.getPort());
+            }
+            if (uri.getRawPath() != null) {
+                sb.append(uri.getRawPath());
+            }
+            if (uri.getRawQuery() != null) {
+                sb.append('?').append(uri.getRawQuery());
+            }
+            return sb.toString();
+        } catch (URISyntaxException ex) {
+            throw new IllegalArgumentException("Unable to parse the connection string", ex);
+        }
+    }
+}
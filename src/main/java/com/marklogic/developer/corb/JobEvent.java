@@ -0,0 +1,66 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+/**
+ * An event that is being timed, created by {@link JobEvents#begin(JobEvents.Category, String)}.
+ * It is recorded when it is closed, so it is typically used in a try-with-resources block.
+ *
+ * @since 2.4.6
+ */
+public interface JobEvent extends AutoCloseable {
+
+    /**
+     * The event that is returned when nothing is being recorded. It ignores everything.
+     */
+    JobEvent NONE = new JobEvent() {
+        @Override
+        public JobEvent detail(String detail) {
+            return this;
+        }
+
+        @Override
+        public JobEvent count(long count) {
+            return this;
+        }
+
+        @Override
+        public void close() {
+            // nothing is being recorded
+        }
+    };
+
+    /**
+     * @param detail what the event applies to, such as the URIs, host or file
+     * @return this event
+     */
+    JobEvent detail(String detail);
+
+    /**
+     * @param count the number of URIs, bytes or attempts, depending upon the event
+     * @return this event
+     */
+    JobEvent count(long count);
+
+    /**
+     * End the event, and record it if it is enabled and meets its threshold.
+     */
+    @Override
+    void close();
+}
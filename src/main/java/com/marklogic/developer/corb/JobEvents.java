@@ -0,0 +1,160 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Emits JDK Flight Recorder events for the work of a job: the phases of each
+ * task, the selection of content sources, the loading of URIs and the writing
+ * of export files. The events can be recorded with any JFR recording (i.e.
+ * {@code -XX:StartFlightRecording}), or with a recording started by
+ * {@link #startRecording(File)}, which can be done through the JobServer while
+ * the job is running.
+ * <p>
+ * When no recording is running, or the JVM does not support JFR (JDK 8 builds
+ * prior to 8u262), {@link #begin(Category, String)} returns {@link JobEvent#NONE}
+ * and nothing is allocated.
+ * </p>
+ *
+ * @since 2.4.6
+ */
+public final class JobEvents {
+
+    private static final Logger LOG = Logger.getLogger(JobEvents.class.getName());
+    private static final String FLIGHT_RECORDER_CLASS = "jdk.jfr.FlightRecorder";
+    private static final String FLIGHT_RECORDER_EVENTS_CLASS = "com.marklogic.developer.corb.FlightRecorderEvents";
+    public static final String EVENT_NAME_PREFIX = "com.marklogic.corb.";
+
+    /**
+     * The kinds of events, each recorded as its own JFR event type.
+     */
+    public enum Category { TASK, CONTENT_SOURCE, URIS_LOADER, EXPORT }
+
+    /**
+     * Records events, if possible.
+     */
+    interface Recorder {
+        boolean isRecording();
+
+        JobEvent begin(Category category, String action);
+
+        boolean start(File destination);
+
+        File stop();
+    }
+
+    private static final Recorder NOOP = new Recorder() {
+        @Override
+        public boolean isRecording() {
+            return false;
+        }
+
+        @Override
+        public JobEvent begin(Category category, String action) {
+            return JobEvent.NONE;
+        }
+
+        @Override
+        public boolean start(File destination) {
+            LOG.warning("JDK Flight Recorder is not available in this JVM");
+            return false;
+        }
+
+        @Override
+        public File stop() {
+            return null;
+        }
+    };
+
+    private static final Recorder RECORDER = newRecorder();
+
+    private JobEvents() {
+    }
+
+    static Recorder newRecorder() {
+        try {
+            Class.forName(FLIGHT_RECORDER_CLASS);
+            return (Recorder) Class.forName(FLIGHT_RECORDER_EVENTS_CLASS).newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException ex) {
+            LOG.log(Level.FINE, "JDK Flight Recorder is not available, events will not be recorded", ex);
+            return NOOP;
+        }
+    }
+
+    /**
+     * @return whether the JVM supports JDK Flight Recorder
+     */
+    public static boolean isAvailable() {
+        return RECORDER != NOOP;
+    }
+
+    /**
+     * @return whether a recording is running, and events should be created
+     */
+    public static boolean isRecording() {
+        return RECORDER.isRecording();
+    }
+
+    /**
+     * Begin timing an event, which is recorded when it is closed.
+     *
+     * @param category
+     * @param action what is being done, such as {@code submit} or {@code lock-wait}
+     * @return the event, or {@link JobEvent#NONE} if nothing is being recorded
+     */
+    public static JobEvent begin(Category category, String action) {
+        return RECORDER.isRecording() ? RECORDER.begin(category, action) : JobEvent.NONE;
+    }
+
+    /**
+     * Start recording the events of CoRB jobs, and the default set of JVM events.
+     * Nothing is done if the recording has already been started.
+     *
+     * @param destination the file that the recording is written to when it is stopped
+     * @return whether the recording is running
+     */
+    public static boolean startRecording(File destination) {
+        return RECORDER.start(destination);
+    }
+
+    /**
+     * Stop the recording that was started by {@link #startRecording(File)}.
+     *
+     * @return the file that the recording was written to, or null if no recording was running
+     */
+    public static File stopRecording() {
+        return RECORDER.stop();
+    }
+
+    /**
+     * @param fileName the name of the recording file, or null for the default
+     * @return the file, or {@code corb-<timestamp>.jfr} in the working directory
+     */
+    public static File getRecordingFile(String fileName) {
+        if (fileName == null || fileName.trim().isEmpty()) {
+            return new File("corb-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".jfr");
+        }
+        return new File(fileName.trim());
+    }
+}
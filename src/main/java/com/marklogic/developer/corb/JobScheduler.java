@@ -0,0 +1,290 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static java.util.logging.Level.INFO;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Divides a fixed number of concurrently executing tasks between all of the
+ * jobs hosted in the same JVM, and shares a ContentSourcePool between jobs
+ * that connect to the same servers.
+ * <p>
+ * Each job keeps its own thread pool, sized by its {@value Options#THREAD_COUNT},
+ * which acts as the cap for that job. Before a task executes it must acquire a
+ * slot from the scheduler. When there are more tasks waiting than free slots,
+ * the slot is granted to the job with the fewest running tasks relative to its
+ * {@value Options#JOB_PRIORITY}, so that a job with priority 2 receives twice
+ * the share of a job with priority 1. Slots not needed by one job are used by
+ * the others.
+ *
+ * @since 2.4.6
+ */
+public class JobScheduler {
+
+    private static final Logger LOG = Logger.getLogger(JobScheduler.class.getName());
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotReleased = lock.newCondition();
+    private final Set<Job> jobs = new LinkedHashSet<>();
+    private final Map<String, ContentSourcePool> contentSourcePools = new HashMap<>();
+    private final Map<ContentSourcePool, Integer> contentSourcePoolReferences = new HashMap<>();
+    private int threadCount;
+    private int running;
+
+    /**
+     * @param threadCount maximum number of tasks executing at the same time, across all jobs
+     */
+    public JobScheduler(int threadCount) {
+        setThreadCount(threadCount);
+    }
+
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException(Options.THREAD_COUNT + " must be a positive integer value");
+        }
+        lock.lock();
+        try {
+            this.threadCount = threadCount;
+            slotReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        LOG.log(INFO, () -> MessageFormat.format("Job scheduler {0} set to {1}", Options.THREAD_COUNT, threadCount));
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @return number of tasks currently executing, across all jobs
+     */
+    public int getRunning() {
+        return running;
+    }
+
+    /**
+     * Register a job with the scheduler.
+     *
+     * @param name used to identify the job in log messages
+     * @param priority relative share of the slots, values less than 1 are treated as 1
+     * @return the Job that tasks must acquire slots with
+     */
+    public Job register(String name, int priority) {
+        Job job = new Job(name, priority);
+        lock.lock();
+        try {
+            jobs.add(job);
+        } finally {
+            lock.unlock();
+        }
+        return job;
+    }
+
+    /**
+     * Remove the job, releasing any slots it still holds.
+     *
+     * @param job
+     */
+    public void unregister(Job job) {
+        lock.lock();
+        try {
+            if (jobs.remove(job)) {
+                running -= job.running;
+                job.running = 0;
+                slotReleased.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return the ContentSourcePool already shared for the same connection, and
+     * close the one provided, or share the one provided if there is none.
+     *
+     * @param connection identifies the servers, credentials and configuration of the pool
+     * @param contentSourcePool
+     * @return the shared ContentSourcePool
+     */
+    public synchronized ContentSourcePool shareContentSourcePool(String connection, ContentSourcePool contentSourcePool) {
+        ContentSourcePool shared = contentSourcePools.get(connection);
+        if (shared == null) {
+            shared = contentSourcePool;
+            contentSourcePools.put(connection, shared);
+        } else if (shared != contentSourcePool) {
+            try {
+                contentSourcePool.close();
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "Unable to close the ContentSourcePool", ex);
+            }
+        }
+        contentSourcePoolReferences.merge(shared, 1, Integer::sum);
+        return shared;
+    }
+
+    /**
+     * Release a ContentSourcePool obtained from {@link #shareContentSourcePool},
+     * closing it once no job is using it.
+     *
+     * @param contentSourcePool
+     * @return whether the ContentSourcePool was shared by this scheduler
+     * @throws IOException
+     */
+    public synchronized boolean releaseContentSourcePool(ContentSourcePool contentSourcePool) throws IOException {
+        Integer references = contentSourcePoolReferences.get(contentSourcePool);
+        if (references == null) {
+            return false;
+        }
+        if (references > 1) {
+            contentSourcePoolReferences.put(contentSourcePool, references - 1);
+        } else {
+            contentSourcePoolReferences.remove(contentSourcePool);
+            contentSourcePools.values().remove(contentSourcePool);
+            contentSourcePool.close();
+        }
+        return true;
+    }
+
+    protected void acquire(Job job) throws InterruptedException {
+        lock.lock();
+        try {
+            job.waiting++;
+            try {
+                while (!isNext(job)) {
+                    slotReleased.await();
+                }
+            } finally {
+                job.waiting--;
+            }
+            if (jobs.contains(job)) {
+                job.running++;
+                running++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected void release(Job job) {
+        lock.lock();
+        try {
+            if (job.running > 0) {
+                job.running--;
+                running--;
+            }
+            slotReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Must be called while holding the lock.
+     *
+     * @param job
+     * @return whether a slot is free and the job has the smallest share of running tasks of the jobs waiting
+     */
+    private boolean isNext(Job job) {
+        if (!jobs.contains(job)) {
+            return true;
+        }
+        if (running >= threadCount) {
+            return false;
+        }
+        for (Job other : jobs) {
+            if (other != job && other.waiting > 0 && other.share() < job.share()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A job registered with the scheduler.
+     */
+    public class Job {
+
+        private final String name;
+        private volatile int priority;
+        private int running;
+        private int waiting;
+
+        protected Job(String name, int priority) {
+            this.name = name;
+            setPriority(priority);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public void setPriority(int priority) {
+            lock.lock();
+            try {
+                this.priority = Math.max(1, priority);
+                slotReleased.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return number of tasks of this job currently executing
+         */
+        public int getRunning() {
+            return running;
+        }
+
+        /**
+         * Wait for a slot to execute a task.
+         *
+         * @throws InterruptedException
+         */
+        public void acquire() throws InterruptedException {
+            JobScheduler.this.acquire(this);
+        }
+
+        /**
+         * Release the slot of a task that has finished executing.
+         */
+        public void release() {
+            JobScheduler.this.release(this);
+        }
+
+        private double share() {
+            return (double) running / priority;
+        }
+    }
+}
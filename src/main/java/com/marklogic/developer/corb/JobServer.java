@@ -18,6 +18,7 @@
  */
 package com.marklogic.developer.corb;
 
+import com.marklogic.developer.corb.util.StringUtils;
 import com.marklogic.developer.corb.util.XmlUtils;
 import com.sun.net.httpserver.*;
 import org.w3c.dom.Document;
@@ -51,6 +52,7 @@ public class JobServer {
 
     public static final String HTTP_RESOURCE_PATH = "/";
     public static final String METRICS_PATH = "/metrics";
+    public static final String EVENTS_PATH = "/events";
     public static final String MIME_XML = "application/xml";
     public static final String MIME_JSON = "application/json";
     protected static final String HEADER_CONTENT_TYPE = "Content-Type";
@@ -61,6 +63,7 @@ public class JobServer {
     private final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
     private TransformerFactory transformerFactory  = TransformerFactory.newInstance();
     private Templates jobStatsToJsonTemplates;
+    private JobScheduler jobScheduler;
 
     public static JobServer create(Integer port) throws IOException {
         return JobServer.create(Collections.singleton(port), null);
@@ -88,6 +91,11 @@ public class JobServer {
         String path = httpExchange.getRequestURI().getPath();
         String querystring = httpExchange.getRequestURI().getQuery();
         Map<String,String> params = JobServicesHandler.querystringToMap(querystring);
+        //the total for all jobs is only changed from the metrics URL, not from requests for a job that fall through to this handler
+        if (METRICS_PATH.equals(path)) {
+            updateSchedulerThreads(params);
+        }
+        updateFlightRecording(params, null);
 
         if (METRICS_PATH.equals(path) || hasParameter(params, JobServicesHandler.PARAM_FORMAT)) {
             alowXSS(httpExchange);
@@ -202,8 +210,59 @@ public class JobServer {
         return contentType;
     }
 
+    /**
+     * Share a fixed number of threads, and the ContentSourcePools, between the
+     * jobs subsequently added to this server.
+     *
+     * @param jobScheduler
+     * @since 2.4.6
+     */
+    public void setJobScheduler(JobScheduler jobScheduler) {
+        this.jobScheduler = jobScheduler;
+    }
+
+    public JobScheduler getJobScheduler() {
+        return jobScheduler;
+    }
+
+    /**
+     * Start or stop recording the events of the jobs, if the
+     * {@value com.marklogic.developer.corb.Options#FLIGHT_RECORDING} parameter is specified.
+     *
+     * @param params
+     * @param fileName the file to write the recording to, or null for the default
+     * @since 2.4.6
+     */
+    protected static void updateFlightRecording(Map<String, String> params, String fileName) {
+        String value = getParameter(params, Options.FLIGHT_RECORDING);
+        if (value != null) {
+            if (StringUtils.stringToBoolean(value)) {
+                JobEvents.startRecording(JobEvents.getRecordingFile(fileName));
+            } else {
+                JobEvents.stopRecording();
+            }
+        }
+    }
+
+    protected void updateSchedulerThreads(Map<String, String> params) {
+        String value = getParameter(params, Options.THREAD_COUNT);
+        if (jobScheduler != null && value != null) {
+            try {
+                int threadCount = Integer.parseInt(value);
+                if (threadCount > 0) {
+                    jobScheduler.setThreadCount(threadCount);
+                }
+            } catch (NumberFormatException e) {
+                LOG.log(Level.WARNING, MessageFormat.format("{0} value not numeric", Options.THREAD_COUNT), e);
+            }
+        }
+    }
+
     public void addManager(Manager manager) {
         if (manager != null) {
+            if (jobScheduler != null && manager.getJobScheduler() == null) {
+                manager.setJobScheduler(jobScheduler);
+            }
             if (manager.getJobId() != null) {
                 addManagerContext(manager);
                 LOG.log(INFO, () -> MessageFormat.format("Monitor and manage the job at http://localhost:{0,number,#}/{1}", server.getAddress().getPort(), manager.jobId));
@@ -52,8 +52,14 @@ public class JobServicesHandler implements HttpHandler {
         if ("GET".equals(method) || "POST".equals(method) || "OPTIONS".equals(method)) {
             pauseResumeJob(params);
             updateThreads(params);
+            updatePriority(params);
+            updateRateLimit(params);
+            JobServer.updateFlightRecording(params, manager.getOption(Options.FLIGHT_RECORDING_FILE));
             String path = httpExchange.getRequestURI().getPath();
-            if (path.contains(JobServer.METRICS_PATH) || JobServer.hasParameter(params, JobServicesHandler.PARAM_FORMAT)) {
+            if (path.endsWith(JobServer.EVENTS_PATH)) {
+                JobServer.alowXSS(httpExchange);
+                subscribeToEvents(httpExchange, manager);
+            } else if (path.contains(JobServer.METRICS_PATH) || JobServer.hasParameter(params, JobServicesHandler.PARAM_FORMAT)) {
                 JobServer.alowXSS(httpExchange);
                 writeMetricsOut(httpExchange, params, manager);
             } else {
@@ -92,6 +98,25 @@ public class JobServicesHandler implements HttpHandler {
         }
     }
 
+    /**
+     * Stream the per-second throughput of the job as server-sent events.
+     *
+     * @param httpExchange
+     * @param manager
+     * @throws IOException
+     * @since 2.4.6
+     */
+    protected static void subscribeToEvents(HttpExchange httpExchange, Manager manager) throws IOException {
+        ThroughputTimeSeries throughput = manager.getThroughputTimeSeries();
+        if (throughput == null) {
+            //the job has not started. No content tells the browser not to reconnect
+            httpExchange.sendResponseHeaders(HttpURLConnection.HTTP_NO_CONTENT, -1);
+            httpExchange.close();
+        } else {
+            throughput.subscribe(httpExchange);
+        }
+    }
+
     public static Map<String, String> querystringToMap(String query){
         Map<String, String> result = new HashMap<>();
         if (query != null) {
@@ -130,4 +155,29 @@ public class JobServicesHandler implements HttpHandler {
         }
     }
 
+    protected void updatePriority(Map<String, String> params) {
+        String value = JobServer.getParameter(params, Options.JOB_PRIORITY);
+        if (value != null) {
+            try {
+                int jobPriority = Integer.parseInt(value);
+                if (jobPriority > 0) {
+                    manager.setJobPriority(jobPriority);
+                }
+            } catch (NumberFormatException e) {
+                LOG.log(Level.WARNING, MessageFormat.format("{0} value not numeric", Options.JOB_PRIORITY), e);
+            }
+        }
+    }
+
+    protected void updateRateLimit(Map<String, String> params) {
+        String value = JobServer.getParameter(params, Options.RATE_LIMIT);
+        if (value != null) {
+            try {
+                manager.setRateLimit(Double.parseDouble(value));
+            } catch (NumberFormatException e) {
+                LOG.log(Level.WARNING, MessageFormat.format("{0} value not numeric", Options.RATE_LIMIT), e);
+            }
+        }
+    }
+
 }
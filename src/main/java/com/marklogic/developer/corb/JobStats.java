@@ -78,13 +78,28 @@ public class JobStats extends BaseMonitor {
     private static final String FAILED_URIS = "failedTransactions";
     private static final String URIS_LOAD_TIME = "urisLoadTimeInMillis";
     private static final String INIT_TASK_TIME = "initTaskTimeInMillis";
+    private static final String MODULES_INSTALL_TIME = "modulesInstallTimeInMillis";
+    private static final String NUMBER_OF_MODULES_INSTALLED = "numberOfModulesInstalled";
+    private static final String NUMBER_OF_MODULES_UNCHANGED = "numberOfModulesUnchanged";
     private static final String PRE_BATCH_RUN_TIME = "preBatchRunTimeInMillis";
     private static final String POST_BATCH_RUN_TIME = "postBatchRunTimeInMillis";
     private static final String TOTAL_JOB_RUN_TIME = "totalRunTimeInMillis";
     private static final String AVERAGE_TRANSACTION_TIME = "averageTransactionTimeInMillis";
     private static final String TOTAL_NUMBER_OF_TASKS = "totalNumberOfTasks";
+    private static final String NUMBER_OF_DUPLICATE_URIS = "numberOfDuplicateUris";
     private static final String NUMBER_OF_FAILED_TASKS = "numberOfFailedTasks";
     private static final String NUMBER_OF_SUCCEEDED_TASKS = "numberOfSucceededTasks";
+    private static final String NUMBER_OF_RETRIES = "numberOfRetries";
+    private static final String NUMBER_OF_RETRIES_OVER_BUDGET = "numberOfRetriesOverBudget";
+    private static final String TOTAL_RETRY_DELAY = "totalRetryDelayInMillis";
+    private static final String PIPELINE_ITEMS_RECEIVED = "pipelineItemsReceived";
+    private static final String PIPELINE_ITEMS_SENT = "pipelineItemsSent";
+    private static final String PIPELINE_RUN_TIME = "pipelineRunTimeInMillis";
+    private static final String CONTENT_SOURCES = "contentSources";
+    private static final String CONTENT_SOURCE = "contentSource";
+    private static final String CONTENT_SOURCE_PORT = "port";
+    private static final String CIRCUIT_STATE = "state";
+    private static final String ERROR_COUNT = "errorCount";
     private static final String METRICS_DOC_URI = "metricsDocUri";
     private static final String PAUSED = "paused";
     private static final String AVERAGE_TPS = "averageTransactionsPerSecond";
@@ -97,7 +112,15 @@ public class JobStats extends BaseMonitor {
     private static final String USER_PROVIDED_OPTIONS = "userProvidedOptions";
     private static final String JOB_LOCATION = "runLocation";
     private static final String CURRENT_THREAD_COUNT = "currentThreadCount";
+    private static final String RATE_LIMIT = "rateLimit";
     private static final String JOB_SERVER_PORT = "port";
+    private static final String METRICS_POINT = "point";
+    private static final String INTERVAL = "intervalInMillis";
+    private static final String SUCCEEDED_IN_INTERVAL = "numberOfSucceededTasksInInterval";
+    private static final String FAILED_IN_INTERVAL = "numberOfFailedTasksInInterval";
+    private static final String INTERVAL_TPS = "intervalTransactionsPerSecond";
+    private static final String TRANSACTION_TIME_PERCENTILES = "transactionTimePercentilesInMillis";
+    private static final double[] PERCENTILES = {50, 90, 99};
 
     private Map<String, String> userProvidedOptions = new HashMap<>();
     private String startTime = null;
@@ -106,11 +129,21 @@ public class JobStats extends BaseMonitor {
 
     private Long numberOfFailedTasks = 0L;
     private Long numberOfSucceededTasks = 0L;
+    private Long numberOfDuplicateUris = -1L;
+    private Long numberOfRetries = null;
+    private Long numberOfRetriesOverBudget = null;
+    private Long totalRetryDelay = null;
+    private Long pipelineItemsReceived = null;
+    private Long pipelineItemsSent = null;
+    private Long pipelineRunTime = null;
     private Double averageTransactionTime = 0.0d;
     private Long urisLoadTime = -1L;
     private Long preBatchRunTime = -1L;
     private Long postBatchRunTime = -1L;
     private Long initTaskRunTime = -1L;
+    private Long modulesInstallTime = -1L;
+    private Long numberOfModulesInstalled = null;
+    private Long numberOfModulesUnchanged = null;
     private Long totalRunTimeInMillis = -1L;
     private String jobRunLocation = null;
     private String jobId = null;
@@ -120,7 +153,12 @@ public class JobStats extends BaseMonitor {
     private String uri = null;
     private boolean paused;
     private Long currentThreadCount = 0L;
+    private Double rateLimit = null;
     private Long jobServerPort = -1L;
+    private long previousPointMillis = 0L;
+    private long previousPointSucceeded = 0L;
+    private long previousPointFailed = 0L;
+    private long[] previousPointLatencies = null;
 
     private ContentSourcePool csp;
     private TransformOptions options;
@@ -162,18 +200,35 @@ public class JobStats extends BaseMonitor {
                 jobId = manager.getJobId();
                 paused = manager.isPaused();
                 startTime = epochMillisAsFormattedDateString(manager.getStartMillis());
+                refreshModulesStats(manager);
+                numberOfDuplicateUris = manager.getDuplicateUrisCount();
                 refreshOptions(options);
                 Monitor monitor = manager.getMonitor();
                 refreshMonitorStats(monitor);
+                refreshRetryStats(manager.getRetryScheduler());
+                refreshPipelineStats(PipelineChannel.get(manager.getOption(Options.PIPELINE_INPUT_CHANNEL)),
+                        PipelineChannel.get(manager.getOption(Options.PIPELINE_OUTPUT_CHANNEL)));
             }
         }
     }
 
+    protected void refreshModulesStats(Manager manager) {
+        modulesInstallTime = manager.getModulesInstallTime();
+        if (modulesInstallTime >= 0) {
+            numberOfModulesInstalled = (long) manager.getModulesInstalled();
+            numberOfModulesUnchanged = (long) manager.getModulesUnchanged();
+        }
+    }
+
     protected void refreshOptions(TransformOptions options){
         if (options != null) {
             jobName = options.getJobName();
             jobServerPort = options.getJobServerPort().longValue();
             currentThreadCount = (long) options.getThreadCount();
+            //the rate that is in effect, which may be scheduled or changed while the job runs
+            RateLimiter rateLimiter = manager != null ? manager.getRateLimiter() : null;
+            double rate = rateLimiter != null ? rateLimiter.getRate() : options.getRateLimit();
+            rateLimit = rate > 0 ? rate : null;
         }
     }
 
@@ -225,6 +280,25 @@ public class JobStats extends BaseMonitor {
         }
     }
 
+    protected void refreshRetryStats(RetryScheduler retryScheduler) {
+        if (retryScheduler != null) {
+            numberOfRetries = retryScheduler.getRetryCount();
+            numberOfRetriesOverBudget = retryScheduler.getRejectedRetryCount();
+            totalRetryDelay = retryScheduler.getTotalDelayMillis();
+        }
+    }
+
+    protected void refreshPipelineStats(PipelineChannel input, PipelineChannel output) {
+        if (input != null) {
+            pipelineItemsReceived = input.getReceivedCount();
+            pipelineRunTime = System.currentTimeMillis() - input.getCreatedMillis();
+        }
+        if (output != null) {
+            pipelineItemsSent = output.getSentCount();
+            pipelineRunTime = System.currentTimeMillis() - output.getCreatedMillis();
+        }
+    }
+
     protected static String epochMillisAsFormattedDateString(long epochMillis) {
         LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
         return date.format(DATE_FORMATTER);
@@ -249,6 +323,125 @@ public class JobStats extends BaseMonitor {
         logToServer(message, metricsLogMessage);
     }
 
+    /**
+     * Write a small time series point, with the counters, TPS, and latency
+     * percentiles since the previous point, instead of the whole metrics document.
+     * Until the metrics document has been saved, and its URI is known, the whole
+     * document is written instead.
+     *
+     * @param message
+     * @since 2.4.6
+     */
+    public void logMetricsPoint(String message) {
+        if (uri == null && options.getMetricsDatabase() != null) {
+            logMetrics(message, true, false);
+            return;
+        }
+        Document doc = toPointXML();
+        String metricsLogMessage = toJSON(doc);
+        String metricsDocument;
+        if (isJavaScriptModule(options.getMetricsModule())) {
+            metricsDocument = metricsLogMessage;
+        } else {
+            metricsDocument = XmlUtils.documentToString(doc);
+        }
+        executeModule(metricsDocument);
+        logToServer(message, metricsLogMessage);
+    }
+
+    /**
+     * @return a document with the job identifiers and a {@code point} with the
+     * counters, TPS, and latency percentiles since the previous point
+     * @since 2.4.6
+     */
+    public Document toPointXML() {
+        Document doc = null;
+        try {
+            DocumentBuilder docBuilder = documentBuilderFactory.newDocumentBuilder();
+            doc = docBuilder.newDocument();
+            Element element = doc.createElementNS(CORB_NAMESPACE, JOB_ELEMENT);
+            synchronized (lock) {
+                refreshPoint();
+                createAndAppendElement(element, METRICS_TIMESTAMP, LocalDateTime.now().format(DATE_FORMATTER));
+                createAndAppendElement(element, METRICS_DOC_URI, uri);
+                createAndAppendElement(element, JOB_LOCATION, jobRunLocation);
+                createAndAppendElement(element, JOB_NAME, jobName);
+                createAndAppendElement(element, JOB_ID, jobId);
+                element.appendChild(createPointElement(element));
+            }
+            doc.appendChild(element);
+        } catch (ParserConfigurationException ex) {
+            LOG.log(SEVERE, "Unable to create a new XML Document", ex);
+        }
+        return doc;
+    }
+
+    /**
+     * Refresh only the counters that go into a point; the slow and failed URIs are not copied.
+     */
+    private void refreshPoint() {
+        if (manager != null) {
+            jobId = manager.getJobId();
+            paused = manager.isPaused();
+            refreshOptions(options);
+            refreshRetryStats(manager.getRetryScheduler());
+            Monitor monitor = manager.getMonitor();
+            if (monitor != null) {
+                taskCount = monitor.getTaskCount();
+                PausableThreadPoolExecutor threadPool = monitor.getThreadPoolExecutor();
+                if (threadPool != null) {
+                    numberOfFailedTasks = threadPool.getNumFailedUris();
+                    numberOfSucceededTasks = threadPool.getNumSucceededUris();
+                }
+            }
+        }
+    }
+
+    private Element createPointElement(Node parent) {
+        long now = System.currentTimeMillis();
+        long since = previousPointMillis > 0 ? previousPointMillis : (manager != null ? manager.getStartMillis() : now);
+        long interval = now - since;
+        long succeeded = numberOfSucceededTasks - previousPointSucceeded;
+        long failed = numberOfFailedTasks - previousPointFailed;
+        long[] latencies = null;
+        ThroughputTimeSeries throughput = manager != null ? manager.getThroughputTimeSeries() : null;
+        if (throughput != null) {
+            latencies = throughput.getLatencyHistogram().snapshot();
+        }
+
+        Element point = parent.getOwnerDocument().createElementNS(CORB_NAMESPACE, METRICS_POINT);
+        createAndAppendElement(point, METRICS_TIMESTAMP, epochMillisAsFormattedDateString(now));
+        createAndAppendElement(point, INTERVAL, interval);
+        createAndAppendElement(point, PAUSED, Boolean.toString(paused));
+        createAndAppendElement(point, CURRENT_THREAD_COUNT, currentThreadCount);
+        createAndAppendElement(point, TOTAL_NUMBER_OF_TASKS, taskCount == UrisLoader.UNKNOWN_TOTAL_COUNT ? null : taskCount);
+        createAndAppendElement(point, NUMBER_OF_SUCCEEDED_TASKS, numberOfSucceededTasks);
+        createAndAppendElement(point, NUMBER_OF_FAILED_TASKS, numberOfFailedTasks);
+        createAndAppendElement(point, NUMBER_OF_RETRIES, numberOfRetries);
+        createAndAppendElement(point, SUCCEEDED_IN_INTERVAL, succeeded);
+        createAndAppendElement(point, FAILED_IN_INTERVAL, failed);
+        createAndAppendElement(point, INTERVAL_TPS, interval > 0 ? formatTransactionsPerSecond(calculateTransactionsPerSecond(succeeded + failed, now, since), false) : "");
+        if (manager != null && now > manager.getStartMillis()) {
+            createAndAppendElement(point, AVERAGE_TPS, formatTransactionsPerSecond(calculateTransactionsPerSecond(numberOfSucceededTasks + numberOfFailedTasks, now, manager.getStartMillis()), false));
+        }
+        if (latencies != null) {
+            long[] intervalLatencies = LatencyHistogram.difference(latencies, previousPointLatencies);
+            Element percentiles = parent.getOwnerDocument().createElementNS(CORB_NAMESPACE, TRANSACTION_TIME_PERCENTILES);
+            for (double percentile : PERCENTILES) {
+                createAndAppendElement(percentiles, "p" + (int) percentile, LatencyHistogram.percentileMillis(intervalLatencies, percentile));
+            }
+            if (percentiles.hasChildNodes()) {
+                point.appendChild(percentiles);
+            }
+        }
+
+        previousPointMillis = now;
+        previousPointSucceeded = numberOfSucceededTasks;
+        previousPointFailed = numberOfFailedTasks;
+        previousPointLatencies = latencies;
+        return point;
+    }
+
     protected void logToServer(String message, String metrics) {
         if (csp != null) {
             try {
@@ -397,6 +590,9 @@ public class JobStats extends BaseMonitor {
         createAndAppendElement(element, JOB_SERVER_PORT, jobServerPort);
 
         createAndAppendElement(element, START_TIME, startTime);
+        createAndAppendElement(element, MODULES_INSTALL_TIME, modulesInstallTime);
+        createAndAppendElement(element, NUMBER_OF_MODULES_INSTALLED, numberOfModulesInstalled);
+        createAndAppendElement(element, NUMBER_OF_MODULES_UNCHANGED, numberOfModulesUnchanged);
         createAndAppendElement(element, INIT_TASK_TIME, initTaskRunTime);
         createAndAppendElement(element, PRE_BATCH_RUN_TIME, preBatchRunTime);
         createAndAppendElement(element, URIS_LOAD_TIME, urisLoadTime);
@@ -405,8 +601,10 @@ public class JobStats extends BaseMonitor {
         createAndAppendElement(element, TOTAL_JOB_RUN_TIME, totalRunTimeInMillis);
 
         createAndAppendElement(element, PAUSED, Boolean.toString(paused));
-        createAndAppendElement(element, TOTAL_NUMBER_OF_TASKS, taskCount);
+        createAndAppendElement(element, TOTAL_NUMBER_OF_TASKS, taskCount == UrisLoader.UNKNOWN_TOTAL_COUNT ? null : taskCount);
+        createAndAppendElement(element, NUMBER_OF_DUPLICATE_URIS, numberOfDuplicateUris);
         createAndAppendElement(element, CURRENT_THREAD_COUNT, currentThreadCount);
+        createAndAppendElement(element, RATE_LIMIT, rateLimit);
         createAndAppendElement(element, CURRENT_TPS, currentTps > 0 ? formatTransactionsPerSecond(currentTps, false) : "");
         createAndAppendElement(element, AVERAGE_TPS, avgTps > 0 ? formatTransactionsPerSecond(avgTps, false) : "");
         createAndAppendElement(element, AVERAGE_TRANSACTION_TIME, averageTransactionTime);
@@ -414,6 +612,13 @@ public class JobStats extends BaseMonitor {
 
         createAndAppendElement(element, NUMBER_OF_SUCCEEDED_TASKS, numberOfSucceededTasks);
         createAndAppendElement(element, NUMBER_OF_FAILED_TASKS, numberOfFailedTasks);
+        createAndAppendElement(element, NUMBER_OF_RETRIES, numberOfRetries);
+        createAndAppendElement(element, NUMBER_OF_RETRIES_OVER_BUDGET, numberOfRetriesOverBudget);
+        createAndAppendElement(element, TOTAL_RETRY_DELAY, totalRetryDelay);
+        createAndAppendElement(element, PIPELINE_ITEMS_RECEIVED, pipelineItemsReceived);
+        createAndAppendElement(element, PIPELINE_ITEMS_SENT, pipelineItemsSent);
+        createAndAppendElement(element, PIPELINE_RUN_TIME, pipelineRunTime);
+        addContentSources(element);
         if (!concise && !options.shouldRedactUris()) {
             addLongRunningUris(element);
             addFailedUris(element);
@@ -541,6 +746,28 @@ public class JobStats extends BaseMonitor {
         }
     }
 
+    protected void addContentSources(Node parent) {
+        if (csp instanceof DefaultContentSourcePool) {
+            DefaultContentSourcePool pool = (DefaultContentSourcePool) csp;
+            ContentSource[] contentSources = pool.getAllContentSources();
+            if (contentSources.length > 0) {
+                Document doc = parent.getOwnerDocument();
+                Element contentSourcesElement = doc.createElementNS(CORB_NAMESPACE, CONTENT_SOURCES);
+                for (ContentSource cs : contentSources) {
+                    Element contentSourceElement = doc.createElementNS(CORB_NAMESPACE, CONTENT_SOURCE);
+                    if (cs.getConnectionProvider() != null) {
+                        createAndAppendElement(contentSourceElement, HOST, cs.getConnectionProvider().getHostName());
+                        createAndAppendElement(contentSourceElement, CONTENT_SOURCE_PORT, (long) cs.getConnectionProvider().getPort());
+                    }
+                    createAndAppendElement(contentSourceElement, CIRCUIT_STATE, pool.getCircuitState(cs).name());
+                    createAndAppendElement(contentSourceElement, ERROR_COUNT, (long) pool.errorCount(cs));
+                    contentSourcesElement.appendChild(contentSourceElement);
+                }
+                parent.appendChild(contentSourcesElement);
+            }
+        }
+    }
+
     protected void addFailedUris(Node parent) {
         if (failedUris != null && !failedUris.isEmpty()) {
             Document doc = parent.getOwnerDocument();
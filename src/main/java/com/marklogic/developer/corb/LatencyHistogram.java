@@ -0,0 +1,120 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of task latencies, in microseconds, with eight log-linear
+ * buckets for each power of two, so that a percentile read from it is
+ * within about 12% of the actual value. The counts are cumulative; the
+ * percentiles for an interval are read from the difference of two
+ * {@link #snapshot()}s.
+ *
+ * @since 2.4.6
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    protected static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * @param nanos how long a task took
+     */
+    public void record(long nanos) {
+        counts.incrementAndGet(bucketIndex(TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos))));
+    }
+
+    /**
+     * @return a copy of the count in each bucket
+     */
+    public long[] snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    protected static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param index
+     * @return the middle of the range of microseconds that are counted in the bucket
+     */
+    protected static double bucketValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowerBound + ((1L << shift) - 1) / 2d;
+    }
+
+    /**
+     * @param current a snapshot
+     * @param previous an earlier snapshot, or null to count everything in {@code current}
+     * @return the count in each bucket between the two snapshots
+     */
+    public static long[] difference(long[] current, long[] previous) {
+        long[] difference = current.clone();
+        if (previous != null) {
+            for (int i = 0; i < difference.length && i < previous.length; i++) {
+                difference[i] -= previous[i];
+            }
+        }
+        return difference;
+    }
+
+    /**
+     * @param counts the count in each bucket
+     * @param percentile between 0 and 100
+     * @return the latency, in milliseconds, that the given percentage of the tasks did not exceed,
+     * or -1 if nothing was counted
+     */
+    public static double percentileMillis(long[] counts, double percentile) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100d));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return bucketValue(i) / 1000d;
+            }
+        }
+        return bucketValue(counts.length - 1) / 1000d;
+    }
+}
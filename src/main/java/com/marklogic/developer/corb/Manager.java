@@ -19,8 +19,11 @@
 package com.marklogic.developer.corb;
 
 import static com.marklogic.developer.corb.Options.BATCH_SIZE;
+import static com.marklogic.developer.corb.Options.BATCH_URI_DELIM;
 import static com.marklogic.developer.corb.Options.COLLECTION_NAME;
 import static com.marklogic.developer.corb.Options.COMMAND_FILE;
+import static com.marklogic.developer.corb.Options.CONNECTION_POLICY;
+import static com.marklogic.developer.corb.Options.CONTENT_SOURCE_POOL;
 import static com.marklogic.developer.corb.Options.DISK_QUEUE;
 import static com.marklogic.developer.corb.Options.DISK_QUEUE_TEMP_DIR;
 import static com.marklogic.developer.corb.Options.DISK_QUEUE_MAX_IN_MEMORY_SIZE;
@@ -28,10 +31,16 @@ import static com.marklogic.developer.corb.Options.ERROR_FILE_NAME;
 import static com.marklogic.developer.corb.Options.EXPORT_FILE_DIR;
 import static com.marklogic.developer.corb.Options.EXPORT_FILE_NAME;
 import static com.marklogic.developer.corb.Options.EXPORT_FILE_PART_EXT;
+import static com.marklogic.developer.corb.Options.EXPORT_FILE_SHARDS;
+import static com.marklogic.developer.corb.Options.EXPORT_FILE_SHARD_MERGE;
+import static com.marklogic.developer.corb.Options.EXPORT_FILE_SORT;
+import static com.marklogic.developer.corb.Options.EXPORT_FILE_SORT_COMPARATOR;
 import static com.marklogic.developer.corb.Options.FAIL_ON_ERROR;
 import static com.marklogic.developer.corb.Options.INIT_MODULE;
 import static com.marklogic.developer.corb.Options.INIT_TASK;
 import static com.marklogic.developer.corb.Options.INSTALL;
+import static com.marklogic.developer.corb.Options.INSTALL_ADHOC_MODULES;
+import static com.marklogic.developer.corb.Options.JOB_PRIORITY;
 import static com.marklogic.developer.corb.Options.MODULES_DATABASE;
 import static com.marklogic.developer.corb.Options.MODULE_ROOT;
 import static com.marklogic.developer.corb.Options.NUM_TPS_FOR_ETC;
@@ -47,33 +56,67 @@ import static com.marklogic.developer.corb.Options.PRE_BATCH_XQUERY_MODULE;
 import static com.marklogic.developer.corb.Options.PRE_POST_BATCH_ALWAYS_EXECUTE;
 import static com.marklogic.developer.corb.Options.PROCESS_MODULE;
 import static com.marklogic.developer.corb.Options.PROCESS_TASK;
+import static com.marklogic.developer.corb.Options.QUERY_RETRY_BUDGET;
+import static com.marklogic.developer.corb.Options.QUERY_RETRY_INTERVAL_MAX;
+import static com.marklogic.developer.corb.Options.SERVER_LOAD_CHECK_INTERVAL;
+import static com.marklogic.developer.corb.Options.SERVER_LOAD_MAX_ACTIVE_REQUESTS;
+import static com.marklogic.developer.corb.Options.SERVER_LOAD_MAX_QUEUE_SIZE;
+import static com.marklogic.developer.corb.Options.SERVER_LOAD_MAX_WRITE_LOCK_RATE;
+import static com.marklogic.developer.corb.Options.SSL_CIPHER_SUITES;
+import static com.marklogic.developer.corb.Options.SSL_CONFIG_CLASS;
+import static com.marklogic.developer.corb.Options.SSL_ENABLED_PROTOCOLS;
+import static com.marklogic.developer.corb.Options.SSL_KEYSTORE;
+import static com.marklogic.developer.corb.Options.SSL_KEYSTORE_PASSWORD;
+import static com.marklogic.developer.corb.Options.SSL_KEYSTORE_TYPE;
+import static com.marklogic.developer.corb.Options.SSL_KEY_PASSWORD;
+import static com.marklogic.developer.corb.Options.SSL_PROPERTIES_FILE;
 import static com.marklogic.developer.corb.Options.TEMP_DIR;
 import static com.marklogic.developer.corb.Options.THREAD_COUNT;
 import static com.marklogic.developer.corb.Options.URIS_FILE;
 import static com.marklogic.developer.corb.Options.URIS_LOADER;
 import static com.marklogic.developer.corb.Options.URIS_MODULE;
+import static com.marklogic.developer.corb.Options.XCC_CONNECTION_HEALTH_CHECK_INTERVAL;
+import static com.marklogic.developer.corb.Options.XCC_CONNECTION_HOST_RETRY_LIMIT;
+import static com.marklogic.developer.corb.Options.XCC_CONNECTION_RETRY_INTERVAL;
+import static com.marklogic.developer.corb.Options.XCC_CONNECTION_RETRY_LIMIT;
 import static com.marklogic.developer.corb.Options.XCC_CONNECTION_URI;
+import static com.marklogic.developer.corb.Options.XCC_HOST_DISCOVERY;
+import static com.marklogic.developer.corb.Options.XCC_HOST_DISCOVERY_INTERVAL;
 import static com.marklogic.developer.corb.Options.XQUERY_MODULE;
 import com.marklogic.developer.corb.util.FileUtils;
 import com.marklogic.developer.corb.util.IOUtils;
 import com.marklogic.developer.corb.util.NumberUtils;
 import com.marklogic.developer.corb.util.StringUtils;
+import static com.marklogic.developer.corb.util.StringUtils.buildModulePath;
+import static com.marklogic.developer.corb.util.StringUtils.getInlineModuleCode;
 import static com.marklogic.developer.corb.util.StringUtils.isBlank;
+import static com.marklogic.developer.corb.util.StringUtils.isEmpty;
+import static com.marklogic.developer.corb.util.StringUtils.isInlineModule;
 import static com.marklogic.developer.corb.util.StringUtils.isInlineOrAdhoc;
+import static com.marklogic.developer.corb.util.StringUtils.isJavaScriptModule;
 import static com.marklogic.developer.corb.util.StringUtils.isNotBlank;
 import static com.marklogic.developer.corb.util.StringUtils.isNotEmpty;
 import static com.marklogic.developer.corb.util.StringUtils.stringToBoolean;
+import com.marklogic.xcc.AdhocQuery;
 import com.marklogic.xcc.Content;
 import com.marklogic.xcc.ContentCreateOptions;
 import com.marklogic.xcc.ContentFactory;
 import com.marklogic.xcc.ContentSource;
+import com.marklogic.xcc.ResultSequence;
 import com.marklogic.xcc.Session;
 import com.marklogic.xcc.exceptions.RequestException;
 
 import java.io.*;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import static java.util.logging.Level.FINE;
 import static java.util.logging.Level.INFO;
 import static java.util.logging.Level.SEVERE;
 import static java.util.logging.Level.WARNING;
@@ -102,16 +145,36 @@ public class Manager extends AbstractManager implements Closeable {
     protected boolean execError;
 
     protected boolean stopCommand;
+    private boolean flightRecordingStarted;
 
     protected transient Thread monitorThread;
-    protected transient CompletionService<String[]> completionService;
+    protected transient CompletionTracker completionTracker;
+    protected transient RetryScheduler retryScheduler;
+    protected transient ThroughputTimeSeries throughput;
+    private long modulesInstallTime = -1L;
+    private int modulesInstalled = 0;
+    private int modulesUnchanged = 0;
+    protected volatile UrisDeduplicator urisDeduplicator;
 
     protected transient ScheduledExecutorService scheduledExecutor;
+    protected transient AdmissionController admissionController;
+    protected transient MemoryGovernor memoryGovernor;
+    protected transient AsyncResultSink resultSink;
+    protected transient RateLimiter rateLimiter;
+    protected transient JobScheduler jobScheduler;
+    protected transient JobScheduler.Job scheduledJob;
 
     protected static int EXIT_CODE_NO_URIS = EXIT_CODE_SUCCESS;
     protected static final int EXIT_CODE_STOP_COMMAND = 3;
 
     private static final Logger LOG = Logger.getLogger(Manager.class.getName());
+    //options that configure the ContentSourcePool, so jobs only share a pool if they agree on them
+    protected static final String[] CONTENT_SOURCE_POOL_OPTIONS = {CONNECTION_POLICY, CONTENT_SOURCE_POOL,
+        SSL_CIPHER_SUITES, SSL_CONFIG_CLASS, SSL_ENABLED_PROTOCOLS, SSL_KEYSTORE, SSL_KEYSTORE_PASSWORD,
+        SSL_KEYSTORE_TYPE, SSL_KEY_PASSWORD, SSL_PROPERTIES_FILE, XCC_CONNECTION_HEALTH_CHECK_INTERVAL,
+        XCC_CONNECTION_HOST_RETRY_LIMIT, XCC_CONNECTION_RETRY_INTERVAL, XCC_CONNECTION_RETRY_LIMIT,
+        XCC_HOST_DISCOVERY, XCC_HOST_DISCOVERY_INTERVAL};
+
     private static final String TAB = "\t";
 
     private static final String RUNNING_JOB_MESSAGE = "RUNNING CORB JOB:";
@@ -119,6 +182,20 @@ public class Manager extends AbstractManager implements Closeable {
     private static final String PAUSING_JOB_MESSAGE = "PAUSING CORB JOB:";
     private static final String RESUMING_JOB_MESSAGE = "RESUMING CORB JOB:";
     private static final String END_RUNNING_JOB_MESSAGE = "END " + RUNNING_JOB_MESSAGE;
+    protected static final String METRICS_SYNC_MODE_FULL = "full";
+    protected static final String METRICS_SYNC_MODE_DELTA = "delta";
+    protected static final String RATE_LIMIT_UNIT_TASKS = "tasks";
+    protected static final String RATE_LIMIT_UNIT_URIS = "uris";
+    protected static final String ADHOC_MODULE_PREFIX = "corb-adhoc-";
+    protected static final String MODULE_HASH_METADATA_KEY = "corb-sha256";
+    protected static final String POSSIBLE_DUPLICATE = "possible duplicate";
+    private static final int SKIPPED_URIS_BATCH_SIZE = 1000;
+    private static final String INSTALLED_MODULE_HASHES_QUERY = "xquery version \"1.0-ml\";\n"
+        + "declare variable $URIS as xs:string external;\n"
+        + "for $uri in fn:tokenize($URIS, '\\n')\n"
+        + "let $hash := xdmp:document-get-metadata-value($uri, '" + MODULE_HASH_METADATA_KEY + "')\n"
+        + "where fn:exists($hash)\n"
+        + "return fn:concat($uri, ' ', $hash)";
 
     /**
      * @param args
@@ -163,7 +240,8 @@ public class Manager extends AbstractManager implements Closeable {
             //This will shutdown the scheduled executors for the command file watcher and logging JobStats
             scheduledExecutor.shutdown();
         }
-        IOUtils.closeQuietly(csp);
+        closeAdmissionController();
+        closeContentSourcePool();
         stopJobServer();
     }
 
@@ -266,6 +344,10 @@ public class Manager extends AbstractManager implements Closeable {
         if (install != null && ("true".equalsIgnoreCase(install) || "1".equals(install))) {
             options.setDoInstall(true);
         }
+        String installAdhocModules = getOption(INSTALL_ADHOC_MODULES);
+        if (installAdhocModules != null && ("true".equalsIgnoreCase(installAdhocModules) || "1".equals(installAdhocModules))) {
+            options.setInstallAdhocModules(true);
+        }
         if (urisFile != null) {
             File f = new File(urisFile);
             if (!f.exists()) {
@@ -287,6 +369,7 @@ public class Manager extends AbstractManager implements Closeable {
         }
 
         options.setShouldRedactUris(stringToBoolean(getOption(Options.URIS_REDACTED)));
+        options.setBatchHostAffinity(stringToBoolean(getOption(Options.BATCH_HOST_AFFINITY)));
         options.setPrePostBatchAlwaysExecute(stringToBoolean(getOption(PRE_POST_BATCH_ALWAYS_EXECUTE)));
 
         String postBatchMinimumCount = getOption(POST_BATCH_MINIMUM_COUNT);
@@ -299,6 +382,71 @@ public class Manager extends AbstractManager implements Closeable {
             options.setPreBatchMinimumCount(Integer.parseInt(preBatchMinimumCount));
         }
 
+        String queryRetryIntervalMax = getOption(QUERY_RETRY_INTERVAL_MAX);
+        if (isNotEmpty(queryRetryIntervalMax)) {
+            options.setQueryRetryIntervalMax(Integer.parseInt(queryRetryIntervalMax));
+        }
+
+        String queryRetryBudget = getOption(QUERY_RETRY_BUDGET);
+        if (isNotEmpty(queryRetryBudget)) {
+            options.setQueryRetryBudget(Integer.parseInt(queryRetryBudget));
+        }
+
+        String jobPriority = getOption(JOB_PRIORITY);
+        if (isNotEmpty(jobPriority)) {
+            options.setJobPriority(Integer.parseInt(jobPriority));
+        }
+
+        String serverLoadCheckInterval = getOption(SERVER_LOAD_CHECK_INTERVAL);
+        if (isNotEmpty(serverLoadCheckInterval)) {
+            options.setServerLoadCheckInterval(Integer.parseInt(serverLoadCheckInterval));
+        }
+        String serverLoadMaxActiveRequests = getOption(SERVER_LOAD_MAX_ACTIVE_REQUESTS);
+        if (isNotEmpty(serverLoadMaxActiveRequests)) {
+            options.setServerLoadMaxActiveRequests(Long.parseLong(serverLoadMaxActiveRequests));
+        }
+        String serverLoadMaxQueueSize = getOption(SERVER_LOAD_MAX_QUEUE_SIZE);
+        if (isNotEmpty(serverLoadMaxQueueSize)) {
+            options.setServerLoadMaxQueueSize(Long.parseLong(serverLoadMaxQueueSize));
+        }
+        String serverLoadMaxWriteLockRate = getOption(SERVER_LOAD_MAX_WRITE_LOCK_RATE);
+        if (isNotEmpty(serverLoadMaxWriteLockRate)) {
+            options.setServerLoadMaxWriteLockRate(Double.parseDouble(serverLoadMaxWriteLockRate));
+        }
+        String memoryHighWatermark = getOption(Options.MEMORY_HIGH_WATERMARK);
+        if (isNotEmpty(memoryHighWatermark)) {
+            options.setMemoryHighWatermark(Integer.parseInt(memoryHighWatermark));
+        }
+        String memoryCriticalWatermark = getOption(Options.MEMORY_CRITICAL_WATERMARK);
+        if (isNotEmpty(memoryCriticalWatermark)) {
+            options.setMemoryCriticalWatermark(Integer.parseInt(memoryCriticalWatermark));
+        }
+        if (options.getMemoryHighWatermark() < 0 || options.getMemoryHighWatermark() > 100
+                || options.getMemoryCriticalWatermark() < options.getMemoryHighWatermark() || options.getMemoryCriticalWatermark() > 100) {
+            throw new IllegalArgumentException(Options.MEMORY_HIGH_WATERMARK + " and " + Options.MEMORY_CRITICAL_WATERMARK
+                + " must be percentages from 0 to 100, and the critical watermark must not be below the high watermark");
+        }
+        String urisDeduplication = getOption(Options.URIS_DEDUPLICATION);
+        if (isNotEmpty(urisDeduplication)) {
+            //fail fast on an invalid mode
+            UrisDeduplicator.newInstance(urisDeduplication, 1, UrisDeduplicator.DEFAULT_FALSE_POSITIVE_RATE);
+            options.setUrisDeduplication(urisDeduplication);
+        }
+        String urisDeduplicationExpectedCount = getOption(Options.URIS_DEDUPLICATION_EXPECTED_COUNT);
+        if (isNotEmpty(urisDeduplicationExpectedCount)) {
+            options.setUrisDeduplicationExpectedCount(Long.parseLong(urisDeduplicationExpectedCount));
+        }
+        String urisDeduplicationFalsePositiveRate = getOption(Options.URIS_DEDUPLICATION_FALSE_POSITIVE_RATE);
+        if (isNotEmpty(urisDeduplicationFalsePositiveRate)) {
+            options.setUrisDeduplicationFalsePositiveRate(Double.parseDouble(urisDeduplicationFalsePositiveRate));
+        }
+        String urisDeduplicationFalsePositivePolicy = getOption(Options.URIS_DEDUPLICATION_FALSE_POSITIVE_POLICY);
+        if (isNotEmpty(urisDeduplicationFalsePositivePolicy)) {
+            //fail fast on an invalid policy
+            UrisDeduplicator.isProcessPolicy(urisDeduplicationFalsePositivePolicy);
+            options.setUrisDeduplicationFalsePositivePolicy(urisDeduplicationFalsePositivePolicy);
+        }
+
         if (!properties.containsKey(EXPORT_FILE_DIR) && exportFileDir != null) {
             properties.put(EXPORT_FILE_DIR, exportFileDir);
         }
@@ -339,9 +487,45 @@ public class Manager extends AbstractManager implements Closeable {
             throw new CorbException("Unable to instantiate class", ex);
         }
 
+        String rateLimit = getOption(Options.RATE_LIMIT);
+        if (isNotEmpty(rateLimit)) {
+            options.setRateLimit(Double.parseDouble(rateLimit));
+        }
+        String rateLimitUnit = getOption(Options.RATE_LIMIT_UNIT);
+        if (isNotEmpty(rateLimitUnit)) {
+            if (RATE_LIMIT_UNIT_URIS.equalsIgnoreCase(rateLimitUnit)) {
+                options.setRateLimitUris(true);
+            } else if (!RATE_LIMIT_UNIT_TASKS.equalsIgnoreCase(rateLimitUnit)) {
+                throw new IllegalArgumentException(Options.RATE_LIMIT_UNIT + " = " + rateLimitUnit + " is invalid. Value must be one of: "
+                    + RATE_LIMIT_UNIT_TASKS + ", " + RATE_LIMIT_UNIT_URIS);
+            }
+        }
+        options.setRateLimitPerHost(stringToBoolean(getOption(Options.RATE_LIMIT_PER_HOST)));
+        String rateLimitSchedule = getOption(Options.RATE_LIMIT_SCHEDULE);
+        if (isNotEmpty(rateLimitSchedule)) {
+            //fail fast on a schedule that can not be read
+            RateLimitSchedule.load(FileUtils.getFile(rateLimitSchedule), null, options);
+            options.setRateLimitSchedule(rateLimitSchedule);
+        }
+
+        String resultSinkName = getOption(Options.RESULT_SINK);
+        if (isNotEmpty(resultSinkName)) {
+            //fail fast on a sink that can not be instantiated
+            AbstractResultSink.newInstance(resultSinkName);
+            options.setResultSink(resultSinkName);
+            if (options.getProcessTaskClass() == null) {
+                options.setProcessTaskClass(ExportToSinkTask.class);
+            }
+        }
+        String resultSinkBufferSize = getOption(Options.RESULT_SINK_BUFFER_SIZE);
+        if (isNotEmpty(resultSinkBufferSize)) {
+            options.setResultSinkBufferSize(Integer.parseInt(resultSinkBufferSize));
+        }
+
         if (null == options.getProcessTaskClass() && null == options.getProcessModule()) {
             throw new NullPointerException(PROCESS_TASK + " or " + PROCESS_MODULE + " must be specified");
         }
+        validateExportFileShards();
 
         if (options.getPostBatchTaskClass() == null) {
             if (properties.containsKey(EXPORT_FILE_PART_EXT)) {
@@ -429,6 +613,15 @@ public class Manager extends AbstractManager implements Closeable {
                 throw new IllegalArgumentException(Options.METRICS_SYNC_FREQUENCY + " = " + metricsSyncFrequencyInSeconds + " is invalid. Value must be a valid integer.");
             }
         }
+        String metricsSyncMode = getOption(Options.METRICS_SYNC_MODE);
+        if (metricsSyncMode != null) {
+            if (METRICS_SYNC_MODE_DELTA.equalsIgnoreCase(metricsSyncMode)) {
+                options.setMetricsSyncDelta(true);
+            } else if (!METRICS_SYNC_MODE_FULL.equalsIgnoreCase(metricsSyncMode)) {
+                throw new IllegalArgumentException(Options.METRICS_SYNC_MODE + " = " + metricsSyncMode + " is invalid. Value must be one of: "
+                    + METRICS_SYNC_MODE_FULL + ", " + METRICS_SYNC_MODE_DELTA);
+            }
+        }
 
         String jobServerPort = getOption(Options.JOB_SERVER_PORT);
         //no defaults for this function
@@ -493,6 +686,49 @@ public class Manager extends AbstractManager implements Closeable {
         return normalizedProperties;
     }
 
+    /**
+     * Fail fast on shards that would never be combined into the export file,
+     * or that would be combined in a way that discards the other options.
+     * @since 2.4.6
+     */
+    /**
+     * Finish the gzip streams of the export file of this job and of its shards,
+     * if the process task is an ExportBatchToFileTask. Other jobs in the JVM
+     * may still be writing to their own export files.
+     *
+     * @throws IOException
+     * @since 2.4.6
+     */
+    protected void closeCompressedExportFiles() throws IOException {
+        Class<? extends Task> processTaskClass = options.getProcessTaskClass();
+        if (processTaskClass == null || !ExportBatchToFileTask.class.isAssignableFrom(processTaskClass)
+                || isBlank(getOption(EXPORT_FILE_NAME)) && isBlank(getOption(URIS_BATCH_REF))) {
+            return;
+        }
+        ExportBatchToFileTask task = new ExportBatchToFileTask();
+        task.setProperties(properties);
+        task.setExportDir(options.getExportFileDir());
+        task.closeCompressedStreams();
+    }
+
+    protected void validateExportFileShards() {
+        Class<? extends Task> processTaskClass = options.getProcessTaskClass();
+        if (!stringToBoolean(getOption(EXPORT_FILE_SHARDS))
+                || processTaskClass == null || !ExportBatchToFileTask.class.isAssignableFrom(processTaskClass)) {
+            return;
+        }
+        Class<? extends Task> postBatchTaskClass = options.getPostBatchTaskClass();
+        if (postBatchTaskClass == null || !PostBatchUpdateFileTask.class.isAssignableFrom(postBatchTaskClass)) {
+            throw new IllegalArgumentException(EXPORT_FILE_SHARDS + " requires " + POST_BATCH_TASK + " to be "
+                + PostBatchUpdateFileTask.class.getName() + ", otherwise the shards are never combined into " + EXPORT_FILE_NAME);
+        }
+        if ("manifest".equalsIgnoreCase(getOption(EXPORT_FILE_SHARD_MERGE))
+                && (isNotEmpty(getOption(EXPORT_FILE_SORT)) || isNotEmpty(getOption(EXPORT_FILE_SORT_COMPARATOR)))) {
+            throw new IllegalArgumentException(EXPORT_FILE_SHARD_MERGE + " = manifest leaves the results in the shards, so it cannot be combined with "
+                + EXPORT_FILE_SORT + " or " + EXPORT_FILE_SORT_COMPARATOR);
+        }
+    }
+
     protected Class<? extends Task> getTaskCls(String type, String className) throws ClassNotFoundException, InstantiationException, IllegalAccessException {
         Class<?> cls = Class.forName(className);
         if (Task.class.isAssignableFrom(cls)) {
@@ -562,6 +798,7 @@ public class Manager extends AbstractManager implements Closeable {
         startJobServer();
         jobStats = new JobStats(this);
         scheduleJobMetrics();
+        startFlightRecording();
 
         startMillis = System.currentTimeMillis();
 
@@ -587,6 +824,13 @@ public class Manager extends AbstractManager implements Closeable {
                 }
             }
 
+            unregisterScheduledJob();
+            closeAdmissionController();
+            closeMemoryGovernor();
+            closeResultSink();
+            closeThroughputTimeSeries();
+            closeCompressedExportFiles();
+
             if (shouldRunPostBatch(count)) {
                 TaskFactory tf = new TaskFactory(this);
                 runPostBatchTask(tf);
@@ -603,6 +847,24 @@ public class Manager extends AbstractManager implements Closeable {
             LOG.log(SEVERE, e.getMessage());
             stop();
             throw e;
+        } finally {
+            stopFlightRecording();
+        }
+    }
+
+    /**
+     * Record the events of the job, if {@value Options#FLIGHT_RECORDING} is enabled.
+     */
+    protected void startFlightRecording() {
+        if (stringToBoolean(getOption(Options.FLIGHT_RECORDING))) {
+            flightRecordingStarted = JobEvents.startRecording(JobEvents.getRecordingFile(getOption(Options.FLIGHT_RECORDING_FILE)));
+        }
+    }
+
+    protected void stopFlightRecording() {
+        if (flightRecordingStarted) {
+            JobEvents.stopRecording();
+            flightRecordingStarted = false;
         }
     }
 
@@ -637,7 +899,11 @@ public class Manager extends AbstractManager implements Closeable {
         if (interval != null && interval > 0) {
             Runnable jobMetricsLogger = () -> {
                 if (!isPaused()){
-                    jobStats.logMetrics(RUNNING_JOB_MESSAGE, true, false);
+                    if (options.isMetricsSyncDelta()) {
+                        jobStats.logMetricsPoint(RUNNING_JOB_MESSAGE);
+                    } else {
+                        jobStats.logMetrics(RUNNING_JOB_MESSAGE, true, false);
+                    }
                 }
             };
             scheduledExecutor.scheduleWithFixedDelay(jobMetricsLogger, interval, interval, TimeUnit.MILLISECONDS);
@@ -655,18 +921,166 @@ public class Manager extends AbstractManager implements Closeable {
     /**
      * @return
      */
-    private Thread preparePool() {
+    private Thread preparePool() throws CorbException {
         RejectedExecutionHandler policy = new CallerBlocksPolicy();
         int threads = options.getThreadCount();
         // an array queue should be somewhat lighter-weight
         BlockingQueue<Runnable> workQueue = new ArrayBlockingQueue<>(options.getQueueSize());
         pool = new PausableThreadPoolExecutor(threads, threads, 16, TimeUnit.SECONDS, workQueue, policy, options);
         pool.prestartAllCoreThreads();
-        completionService = new ExecutorCompletionService<>(pool);
-        monitor = new Monitor(pool, completionService, this);
+        completionTracker = new CompletionTracker(pool);
+        CompletionTracker tracker = completionTracker;
+        retryScheduler = new RetryScheduler(completionTracker, tracker::getSubmittedTaskCount,
+                options.getQueryRetryIntervalMax() * 1000L, options.getQueryRetryBudget(), threads);
+        monitor = new Monitor(pool, completionTracker, this);
+        scheduleThroughputTimeSeries();
+        scheduleAdmissionController();
+        scheduleMemoryGovernor();
+        scheduleRateLimiter();
+        if (jobScheduler != null) {
+            scheduledJob = jobScheduler.register(options.getJobName() != null ? options.getJobName() : jobId, options.getJobPriority());
+            pool.setScheduledJob(scheduledJob);
+        }
         return new Thread(monitor, "monitor");
     }
 
+    /**
+     * Sample the throughput of the pool once per second, for the server-sent events of the JobServer.
+     */
+    protected void scheduleThroughputTimeSeries() {
+        if (scheduledExecutor != null) {
+            throughput = new ThroughputTimeSeries();
+            pool.setThroughputTimeSeries(throughput);
+            scheduledExecutor.scheduleAtFixedRate(throughput, 1, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    public ThroughputTimeSeries getThroughputTimeSeries() {
+        return throughput;
+    }
+
+    /**
+     * Take the final sample and end the event streams of the JobServer subscribers.
+     */
+    protected void closeThroughputTimeSeries() {
+        if (throughput != null) {
+            throughput.close();
+        }
+    }
+
+    protected void scheduleAdmissionController() {
+        int interval = options.getServerLoadCheckInterval();
+        if (interval > 0 && csp != null && scheduledExecutor != null) {
+            admissionController = new AdmissionController(csp, pool, options);
+            admissionController.start(interval);
+        }
+    }
+
+    protected void closeAdmissionController() {
+        if (admissionController != null) {
+            admissionController.close();
+        }
+    }
+
+    public AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    /**
+     * Hold back tasks while the old generation of the heap is above {@value Options#MEMORY_HIGH_WATERMARK}.
+     */
+    protected void scheduleMemoryGovernor() {
+        if (options.getMemoryHighWatermark() > 0) {
+            memoryGovernor = new MemoryGovernor(pool, options);
+            memoryGovernor.start();
+            if (scheduledExecutor != null) {
+                //there is no notification once usage drops, so check for it
+                scheduledExecutor.scheduleWithFixedDelay(memoryGovernor, 1, 1, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    public MemoryGovernor getMemoryGovernor() {
+        return memoryGovernor;
+    }
+
+    /**
+     * Open the {@value Options#RESULT_SINK}, if specified, that {@link ExportToSinkTask} hands results to.
+     * @throws CorbException
+     */
+    protected void openResultSink() throws CorbException {
+        if (options.getResultSink() != null) {
+            ResultSink sink = AbstractResultSink.newInstance(options.getResultSink());
+            sink.setProperties(properties);
+            resultSink = new AsyncResultSink(sink, options.getResultSinkBufferSize());
+            resultSink.open();
+        }
+    }
+
+    /**
+     * Wait for the results to be written, and close the {@value Options#RESULT_SINK}.
+     * @throws CorbException if the results could not be written
+     */
+    protected void closeResultSink() throws CorbException {
+        AsyncResultSink sink = resultSink;
+        if (sink != null) {
+            resultSink = null;
+            sink.close();
+            LOG.log(INFO, () -> MessageFormat.format("wrote {0,number} results to {1}", sink.getWrittenCount(), options.getResultSink()));
+        }
+    }
+
+    public AsyncResultSink getResultSink() {
+        return resultSink;
+    }
+
+    /**
+     * Limit the rate at which tasks are submitted. The limiter is created even
+     * if the rate is not limited, so that a limit can be set while the job runs.
+     *
+     * @throws CorbException if the {@value Options#RATE_LIMIT_SCHEDULE} can not
+     * be read or parsed, rather than running the job without it
+     */
+    protected void scheduleRateLimiter() throws CorbException {
+        rateLimiter = new RateLimiter(options.getRateLimit(), options.isRateLimitPerHost());
+        String schedule = options.getRateLimitSchedule();
+        if (schedule != null && scheduledExecutor != null) {
+            RateLimitSchedule rateLimitSchedule = RateLimitSchedule.load(FileUtils.getFile(schedule), rateLimiter, options);
+            scheduledExecutor.scheduleWithFixedDelay(rateLimitSchedule, 0, 10, TimeUnit.SECONDS);
+        }
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Change the maximum number of tasks, or URIs, submitted per second. Once
+     * the job is running, only the rate of the running job is changed: the
+     * configured {@value Options#RATE_LIMIT} is kept, as the rate outside of
+     * the ranges of a {@value Options#RATE_LIMIT_SCHEDULE}.
+     * @param rate 0 to not limit the rate
+     * @since 2.4.6
+     */
+    public void setRateLimit(double rate) {
+        if (rate >= 0) {
+            if (rateLimiter != null) {
+                rateLimiter.setRate(rate);
+            } else {
+                options.setRateLimit(rate);
+            }
+            LOG.log(INFO, () -> Options.RATE_LIMIT + " = " + (rate > 0 ? rate + " per second" : "unlimited"));
+        } else {
+            LOG.log(WARNING, () -> Options.RATE_LIMIT + " must not be negative");
+        }
+    }
+
+    private void closeMemoryGovernor() {
+        if (memoryGovernor != null) {
+            memoryGovernor.close();
+        }
+    }
+
     /**
      * @throws CorbException
      *
@@ -677,50 +1091,232 @@ public class Manager extends AbstractManager implements Closeable {
         String modulesDatabase = options.getModulesDatabase();
         LOG.log(INFO, () -> MessageFormat.format("checking modules, database: {0}", modulesDatabase));
 
+        long startTime = System.nanoTime();
         ContentSource contentSource = csp.get();
         try (Session session = contentSource.newSession(modulesDatabase)) {
-            for (String resourceModule : resourceModules) {
-                insertModule(session, resourceModule);
+            insertModules(session, resourceModules);
+            if (options.isInstallAdhocModules()) {
+                //the URIS-MODULE is invoked only once, so it is left as an adhoc query
+                List<String> adhocModules = new ArrayList<>(Arrays.asList(options.getInitModule(), options.getProcessModule(),
+                    options.getPreBatchModule(), options.getPostBatchModule()));
+                if (options.getMetricsDatabase() != null) {
+                    adhocModules.add(options.getMetricsModule());
+                }
+                installAdhocModules(session, adhocModules.toArray(new String[0]));
             }
         }
+        modulesInstallTime = TimeUnit.MILLISECONDS.convert(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
     }
 
-    protected void insertModule(Session session, String resourceModule) throws CorbException {
-        if (resourceModule == null || isInlineOrAdhoc(resourceModule)) {
+    /**
+     * Install ADHOC and INLINE modules in the modules database, under a URI made
+     * from a hash of their code, so that they are invoked rather than sent as adhoc
+     * queries with every request. If they can not be installed, they are sent as adhoc queries.
+     *
+     * @param session a session for the modules database
+     * @param resourceModules
+     * @since 2.4.6
+     */
+    protected void installAdhocModules(Session session, String... resourceModules) {
+        Map<String, byte[]> modules = new LinkedHashMap<>();
+        Map<String, String> moduleUris = new HashMap<>();
+        for (String resourceModule : resourceModules) {
+            if (resourceModule == null || !isInlineOrAdhoc(resourceModule) || installedAdhocModules.containsKey(resourceModule)) {
+                continue;
+            }
+            if (options.getModulesDatabase().isEmpty()) {
+                LOG.log(WARNING, () -> MessageFormat.format("XCC configured for the filesystem: {0} will be sent as an adhoc query", describeModule(resourceModule)));
+                continue;
+            }
+            String code = isInlineModule(resourceModule) ? getInlineModuleCode(resourceModule)
+                : getAdhocQuery(resourceModule.substring(0, resourceModule.indexOf('|')));
+            if (isBlank(code)) {
+                continue;
+            }
+            String moduleUri = buildModulePath(options.getModuleRoot(), getAdhocModuleName(code, isJavaScriptModule(resourceModule)));
+            modules.put(moduleUri, code.getBytes(StandardCharsets.UTF_8));
+            moduleUris.put(resourceModule, moduleUri);
+        }
+        if (moduleUris.isEmpty()) {
             return;
         }
         try {
-            // Start by checking install flag.
-            if (!options.isDoInstall()) {
-                LOG.log(INFO, () -> MessageFormat.format("Skipping module installation: {0}", resourceModule));
-            } // Next check: if XCC is configured for the filesystem, warn user
-            else if (options.getModulesDatabase().isEmpty()) {
-                LOG.warning("XCC configured for the filesystem: please install modules manually");
-            } // Finally, if it's configured for a database, install.
-            else {
-                ContentCreateOptions contentCreateOptions = ContentCreateOptions.newTextInstance();
-                File file = new File(resourceModule);
-                Content content;
-                // If not installed, are the specified files on the filesystem?
-                if (file.exists()) {
-                    String moduleUri = options.getModuleRoot() + file.getName();
-                    content = ContentFactory.newContent(moduleUri, file, contentCreateOptions);
-                } // finally, check package
+            insertChangedModules(session, modules);
+            installedAdhocModules.putAll(moduleUris);
+            moduleUris.forEach((resourceModule, moduleUri) ->
+                LOG.log(INFO, () -> MessageFormat.format("Installed {0} as {1}", describeModule(resourceModule), moduleUri)));
+        } catch (RequestException ex) {
+            LOG.log(WARNING, MessageFormat.format("Unable to install {0} in the modules database, they will be sent as adhoc queries",
+                moduleUris.keySet().stream().map(Manager::describeModule).collect(Collectors.joining(", "))), ex);
+        }
+    }
+
+    private static String describeModule(String resourceModule) {
+        return isInlineModule(resourceModule) ? "inline module" : resourceModule;
+    }
+
+    /**
+     * @param code
+     * @param javaScript
+     * @return a module name that is made from the SHA-256 hash of the code
+     * @since 2.4.6
+     */
+    protected static String getAdhocModuleName(String code, boolean javaScript) {
+        return ADHOC_MODULE_PREFIX + sha256(code.getBytes(StandardCharsets.UTF_8)) + (javaScript ? ".sjs" : ".xqy");
+    }
+
+    /**
+     * @param bytes
+     * @return the SHA-256 hash of the bytes, as hex
+     * @since 2.4.6
+     */
+    protected static String sha256(byte[] bytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return String.format("%064x", new BigInteger(1, digest.digest(bytes)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Unable to hash module", ex);
+        }
+    }
+
+    protected void insertModule(Session session, String resourceModule) throws CorbException {
+        insertModules(session, resourceModule);
+    }
+
+    /**
+     * Install the modules in the modules database with a single multi-document
+     * insert. A module whose SHA-256 hash matches the one recorded in the metadata
+     * of the document that is already installed is skipped, so that the server's
+     * module cache is not invalidated when nothing has changed.
+     *
+     * @param session a session for the modules database
+     * @param resourceModules
+     * @throws CorbException
+     * @since 2.4.6
+     */
+    protected void insertModules(Session session, String... resourceModules) throws CorbException {
+        Map<String, byte[]> modules = new LinkedHashMap<>();
+        for (String resourceModule : resourceModules) {
+            if (resourceModule == null || isInlineOrAdhoc(resourceModule)) {
+                continue;
+            }
+            try {
+                // Start by checking install flag.
+                if (!options.isDoInstall()) {
+                    LOG.log(INFO, () -> MessageFormat.format("Skipping module installation: {0}", resourceModule));
+                } // Next check: if XCC is configured for the filesystem, warn user
+                else if (options.getModulesDatabase().isEmpty()) {
+                    LOG.warning("XCC configured for the filesystem: please install modules manually");
+                } // Finally, if it's configured for a database, install.
                 else {
-                    LOG.log(WARNING, () -> MessageFormat.format("looking for {0} as resource", resourceModule));
-                    String moduleUri = options.getModuleRoot() + resourceModule;
-                    try (InputStream is = this.getClass().getResourceAsStream('/' + resourceModule)) {
-                        if (null == is) {
-                            throw new NullPointerException(resourceModule + " could not be found on the filesystem," + " or in package resources");
+                    File file = new File(resourceModule);
+                    // If not installed, are the specified files on the filesystem?
+                    if (file.exists()) {
+                        String moduleUri = options.getModuleRoot() + file.getName();
+                        modules.put(moduleUri, Files.readAllBytes(file.toPath()));
+                    } // finally, check package
+                    else {
+                        LOG.log(WARNING, () -> MessageFormat.format("looking for {0} as resource", resourceModule));
+                        String moduleUri = options.getModuleRoot() + resourceModule;
+                        try (InputStream is = this.getClass().getResourceAsStream('/' + resourceModule)) {
+                            if (null == is) {
+                                throw new NullPointerException(resourceModule + " could not be found on the filesystem," + " or in package resources");
+                            }
+                            modules.put(moduleUri, IOUtils.toByteArray(is));
                         }
-                        content = ContentFactory.newContent(moduleUri, is, contentCreateOptions);
                     }
                 }
-                session.insertContent(content);
+            } catch (IOException e) {
+                throw new CorbException(MessageFormat.format("error while reading module {0}", resourceModule), e);
+            }
+        }
+        try {
+            insertChangedModules(session, modules);
+        } catch (RequestException e) {
+            throw new CorbException(MessageFormat.format("error while installing modules {0}", modules.keySet()), e);
+        }
+    }
+
+    /**
+     * @param session a session for the modules database
+     * @param modules the code of each module, by URI
+     * @return the number of modules that were inserted
+     * @throws RequestException
+     * @since 2.4.6
+     */
+    protected int insertChangedModules(Session session, Map<String, byte[]> modules) throws RequestException {
+        if (modules.isEmpty()) {
+            return 0;
+        }
+        Map<String, String> installedHashes = getInstalledModuleHashes(session, modules.keySet());
+        List<Content> changed = new ArrayList<>(modules.size());
+        for (Map.Entry<String, byte[]> module : modules.entrySet()) {
+            String hash = sha256(module.getValue());
+            if (hash.equals(installedHashes.get(module.getKey()))) {
+                LOG.log(INFO, () -> MessageFormat.format("Module {0} is unchanged, skipping installation", module.getKey()));
+                modulesUnchanged++;
+            } else {
+                ContentCreateOptions contentCreateOptions = ContentCreateOptions.newTextInstance();
+                Map<String, String> metadata = new HashMap<>();
+                metadata.put(MODULE_HASH_METADATA_KEY, hash);
+                contentCreateOptions.setMetadata(metadata);
+                changed.add(ContentFactory.newContent(module.getKey(), module.getValue(), contentCreateOptions));
+            }
+        }
+        if (!changed.isEmpty()) {
+            session.insertContent(changed.toArray(new Content[0]));
+            modulesInstalled += changed.size();
+        }
+        return changed.size();
+    }
+
+    /**
+     * @param session a session for the modules database
+     * @param moduleUris
+     * @return the SHA-256 hash, recorded in the document metadata when it was installed, of each module that is already installed
+     * @since 2.4.6
+     */
+    protected Map<String, String> getInstalledModuleHashes(Session session, Collection<String> moduleUris) {
+        Map<String, String> hashes = new HashMap<>();
+        AdhocQuery query = session.newAdhocQuery(INSTALLED_MODULE_HASHES_QUERY);
+        query.setNewStringVariable("URIS", StringUtils.join(moduleUris, "\n"));
+        try (ResultSequence resultSequence = session.submitRequest(query)) {
+            while (resultSequence.hasNext()) {
+                String value = resultSequence.next().asString();
+                int index = value.lastIndexOf(' ');
+                if (index > 0) {
+                    hashes.put(value.substring(0, index), value.substring(index + 1));
+                }
             }
-        } catch (IOException | RequestException e) {
-            throw new CorbException(MessageFormat.format("error while reading module {0}", resourceModule), e);
+        } catch (RequestException ex) {
+            //metadata requires MarkLogic 9, so install everything
+            LOG.log(WARNING, "Unable to read the hashes of the installed modules", ex);
         }
+        return hashes;
+    }
+
+    /**
+     * @return how long it took to check and install the modules, in milliseconds, or -1 if they have not been prepared
+     * @since 2.4.6
+     */
+    public long getModulesInstallTime() {
+        return modulesInstallTime;
+    }
+
+    /**
+     * @return the number of modules that were inserted into the modules database
+     * @since 2.4.6
+     */
+    public int getModulesInstalled() {
+        return modulesInstalled;
+    }
+
+    /**
+     * @return the number of modules that were already installed, and skipped
+     * @since 2.4.6
+     */
+    public int getModulesUnchanged() {
+        return modulesUnchanged;
     }
 
     @Override
@@ -801,6 +1397,9 @@ public class Manager extends AbstractManager implements Closeable {
         loader.setContentSourcePool(csp);
         loader.setCollection(collection);
         loader.setProperties(properties);
+        if (loader instanceof AbstractUrisLoader) {
+            ((AbstractUrisLoader) loader).setMemoryGovernor(memoryGovernor);
+        }
         return loader;
     }
 
@@ -827,10 +1426,17 @@ public class Manager extends AbstractManager implements Closeable {
             // run init task
             runInitTask(taskFactory);
             // Invoke URIs Module, read text file, etc.
-            runUrisLoader(urisLoader);
+            try (JobEvent event = JobEvents.begin(JobEvents.Category.URIS_LOADER, "load")) {
+                runUrisLoader(urisLoader);
+                event.count(urisLoader.getTotalCount());
+            }
 
             expectedTotalCount = urisLoader.getTotalCount();
-            LOG.log(INFO, MessageFormat.format("expecting total {0,number}", expectedTotalCount));
+            if (expectedTotalCount == UrisLoader.UNKNOWN_TOTAL_COUNT) {
+                LOG.info("expecting URIs to be streamed, the total is not yet known");
+            } else {
+                LOG.log(INFO, MessageFormat.format("expecting total {0,number}", expectedTotalCount));
+            }
 
             if (shouldRunPreBatch(expectedTotalCount)) {
                 // run pre-batch task, if present.
@@ -843,6 +1449,9 @@ public class Manager extends AbstractManager implements Closeable {
                 return 0;
             }
 
+            //after the pre-batch task, which may replace the export file
+            openResultSink();
+
             // now start process tasks
             monitor.setTaskCount(expectedTotalCount);
             monitorThread.start();
@@ -851,17 +1460,22 @@ public class Manager extends AbstractManager implements Closeable {
             urisCount = submitUriTasks(urisLoader, taskFactory, expectedTotalCount);
 
 
-            if (urisCount == expectedTotalCount) {
+            if (expectedTotalCount == UrisLoader.UNKNOWN_TOTAL_COUNT) {
+                //now that all of the streamed URIs have been received, the monitor knows when the job is complete
+                monitor.setTaskCount(urisCount);
                 LOG.log(INFO, MessageFormat.format("queue is populated with {0,number} tasks", urisCount));
+            } else if (urisCount == expectedTotalCount) {
+                LOG.log(INFO, MessageFormat.format("queue is populated with {0,number} tasks", urisCount));
+            } else if (urisCount + Math.max(0, getDuplicateUrisCount()) == expectedTotalCount) {
+                LOG.log(INFO, MessageFormat.format("queue is populated with {0,number} tasks, after skipping duplicate URIs", urisCount));
+                monitor.setTaskCount(urisCount);
             } else {
                 LOG.log(WARNING, MessageFormat.format("queue is expected to be populated with {0,number} tasks, but got {1,number} tasks.", expectedTotalCount, urisCount));
                 monitor.setTaskCount(urisCount);
             }
 
-            if (pool != null) {
-                LOG.info("Invoking graceful shutdown of the thread pool and wait for remaining tasks in the queue to complete.");
-                pool.shutdown();
-            } else {
+            //the monitor shuts down the thread pool once all of the tasks, including any retries, have completed
+            if (pool == null) {
                 LOG.warning("Thread pool is set null - closed already?");
             }
         } catch (Exception exc) {
@@ -872,6 +1486,23 @@ public class Manager extends AbstractManager implements Closeable {
         return urisCount;
     }
 
+    /**
+     * @param urisLoader
+     * @return whether the loader has another URI, recording the time spent waiting for it
+     * @throws CorbException
+     */
+    private boolean hasNextUri(UrisLoader urisLoader) throws CorbException {
+        if (!JobEvents.isRecording()) {
+            return urisLoader.hasNext();
+        }
+        JobEvent event = JobEvents.begin(JobEvents.Category.URIS_LOADER, "wait-for-uris");
+        try {
+            return urisLoader.hasNext();
+        } finally {
+            event.close();
+        }
+    }
+
     /**
      * Submit batches of the URIs to be processed. Filter out blank entries and
      * return the total number of URIs.
@@ -885,26 +1516,64 @@ public class Manager extends AbstractManager implements Closeable {
     protected long submitUriTasks(UrisLoader urisLoader, TaskFactory taskFactory, long expectedTotalCount) throws CorbException {
         long urisCount = 0;
         String uri;
-        List<String> uriBatch = new ArrayList<>(options.getBatchSize());
+        String host = null;
+        //batches of URIs by host, untagged URIs are batched with the null key
+        Map<String, List<String>> uriBatches = new HashMap<>();
+        //URIs added to batches that have not been submitted yet, across all hosts
+        long pendingCount = 0;
         boolean redactUris = options.shouldRedactUris();
-
-        while (urisLoader.hasNext()) {
+        boolean hostAffinity = options.isBatchHostAffinity();
+        if (options.getUrisDeduplication() != null) {
+            //a streaming loader does not know the total, so size for the configured count
+            boolean knownTotal = expectedTotalCount > 0 && expectedTotalCount != UrisLoader.UNKNOWN_TOTAL_COUNT;
+            long expectedCount = knownTotal ? expectedTotalCount : options.getUrisDeduplicationExpectedCount();
+            urisDeduplicator = UrisDeduplicator.newInstance(options.getUrisDeduplication(), expectedCount,
+                options.getUrisDeduplicationFalsePositiveRate(), options.getUrisDeduplicationFalsePositivePolicy());
+        }
+        //URIs skipped as possible duplicates, which may be false positives, to be recorded for reconciliation
+        List<String> skippedUris = urisDeduplicator != null && urisDeduplicator.hasFalsePositives() ? new ArrayList<>() : null;
+
+        while (hasNextUri(urisLoader)) {
             // check pool occasionally, for fast-fail
             if (null == pool) {
                 LOG.warning("Thread pool is set to null. Exiting out of the task submission loop prematurely.");
                 break;
             }
+            if (completionTracker != null && completionTracker.hasFailed()) {
+                LOG.warning("A task has failed. Exiting out of the task submission loop prematurely.");
+                break;
+            }
 
             uri = urisLoader.next();
             if (isBlank(uri)) {
                 continue;
             }
+            if (hostAffinity) {
+                int index = uri.indexOf(TAB);
+                host = index > 0 ? uri.substring(0, index) : null;
+                uri = index > 0 ? uri.substring(index + 1) : uri;
+            }
+            if (urisDeduplicator != null && !urisDeduplicator.add(uri)) {
+                if (skippedUris != null) {
+                    skippedUris.add(uri);
+                    if (skippedUris.size() >= SKIPPED_URIS_BATCH_SIZE) {
+                        writeSkippedUris(skippedUris);
+                    }
+                }
+                continue;
+            }
+            List<String> uriBatch = uriBatches.computeIfAbsent(host, key -> new ArrayList<>(options.getBatchSize()));
             uriBatch.add(uri);
+            pendingCount++;
 
-            if (uriBatch.size() >= options.getBatchSize() || urisCount >= expectedTotalCount || !urisLoader.hasNext()) {
-                String[] uris = uriBatch.toArray(new String[uriBatch.size()]);
-                uriBatch.clear();
-                completionService.submit(taskFactory.newProcessTask(uris, options.isFailOnError()));
+            if (uriBatch.size() >= options.getBatchSize()) {
+                pendingCount -= uriBatch.size();
+                submitUriBatch(taskFactory, uriBatch, host);
+            }
+            //flush the remaining batches at the end; checked only when URIs are pending, to avoid extra calls to hasNext()
+            if (pendingCount > 0 && (urisCount >= expectedTotalCount || !urisLoader.hasNext())) {
+                submitUriBatches(taskFactory, uriBatches);
+                pendingCount = 0;
             }
 
             urisCount++;
@@ -918,9 +1587,79 @@ public class Manager extends AbstractManager implements Closeable {
                 logIfLowMemory(totalMemory);
             }
         }
+        //flush batches left pending when the last URIs were skipped, unless the job is failing
+        if (pool != null && pendingCount > 0 && (completionTracker == null || !completionTracker.hasFailed())) {
+            submitUriBatches(taskFactory, uriBatches);
+        }
+        if (skippedUris != null && !skippedUris.isEmpty()) {
+            writeSkippedUris(skippedUris);
+        }
+        if (urisDeduplicator != null && urisDeduplicator.getDuplicateCount() > 0) {
+            LOG.log(INFO, MessageFormat.format("skipped {0,number} duplicate URIs", urisDeduplicator.getDuplicateCount()));
+        }
+        if (urisDeduplicator != null && urisDeduplicator.getProcessedPositiveCount() > 0) {
+            LOG.log(INFO, MessageFormat.format("processed {0,number} possible duplicate URIs", urisDeduplicator.getProcessedPositiveCount()));
+        }
         return urisCount;
     }
 
+    /**
+     * Record URIs that were skipped as possible duplicates in the
+     * {@value Options#ERROR_FILE_NAME}, so that a run can be reconciled. A
+     * Bloom filter can not tell a duplicate from a false positive.
+     *
+     * @param skippedUris cleared once they are recorded
+     */
+    protected void writeSkippedUris(List<String> skippedUris) {
+        String errorFileName = getOption(ERROR_FILE_NAME);
+        if (isNotEmpty(errorFileName)) {
+            String delim = getOption(BATCH_URI_DELIM);
+            AbstractTask.writeToErrorFile(new File(options.getExportFileDir(), errorFileName),
+                skippedUris.toArray(new String[skippedUris.size()]), isEmpty(delim) ? DEFAULT_BATCH_URI_DELIM : delim, POSSIBLE_DUPLICATE);
+        } else if (!options.shouldRedactUris()) {
+            skippedUris.forEach(uri -> LOG.log(FINE, "skipped possible duplicate URI {0}", uri));
+        }
+        skippedUris.clear();
+    }
+
+    /**
+     * @return the number of URIs that were skipped as duplicates, or -1 if URIs are not de-duplicated
+     * @since 2.4.6
+     */
+    public long getDuplicateUrisCount() {
+        UrisDeduplicator deduplicator = urisDeduplicator;
+        return deduplicator == null ? -1L : deduplicator.getDuplicateCount();
+    }
+
+    protected void submitUriBatches(TaskFactory taskFactory, Map<String, List<String>> uriBatches) {
+        for (Map.Entry<String, List<String>> entry : uriBatches.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                submitUriBatch(taskFactory, entry.getValue(), entry.getKey());
+            }
+        }
+    }
+
+    protected void submitUriBatch(TaskFactory taskFactory, List<String> uriBatch, String host) {
+        String[] uris = uriBatch.toArray(new String[uriBatch.size()]);
+        uriBatch.clear();
+        try {
+            if (memoryGovernor != null && pool != null) {
+                //hold back while memory is short, rather than read more URIs
+                memoryGovernor.awaitCapacity(pool.getQueue());
+            }
+            if (rateLimiter != null) {
+                rateLimiter.acquire(host, options.isRateLimitUris() ? uris.length : 1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        //blocks while the queue is full
+        try (JobEvent event = JobEvents.begin(JobEvents.Category.URIS_LOADER, "wait-for-queue")) {
+            event.count(uris.length);
+            completionTracker.submit(taskFactory.newProcessTask(uris, options.isFailOnError(), host));
+        }
+    }
+
     protected void logIfLowMemory(long totalMemory) {
         long freeMemory = Runtime.getRuntime().freeMemory();
         if (freeMemory < totalMemory * 0.2d) { //less than 20% of total memory
@@ -941,6 +1680,91 @@ public class Manager extends AbstractManager implements Closeable {
         }
     }
 
+    /**
+     * Run the job's tasks with a JobScheduler shared with other jobs in the JVM,
+     * and share its ContentSourcePool with jobs connecting to the same servers.
+     * Should be set before the job is run.
+     *
+     * @param jobScheduler
+     * @since 2.4.6
+     */
+    public void setJobScheduler(JobScheduler jobScheduler) {
+        this.jobScheduler = jobScheduler;
+        shareContentSourcePool();
+    }
+
+    public JobScheduler getJobScheduler() {
+        return jobScheduler;
+    }
+
+    @Override
+    protected void initContentSourcePool(String uriArg) throws CorbException {
+        super.initContentSourcePool(uriArg);
+        shareContentSourcePool();
+    }
+
+    protected void shareContentSourcePool() {
+        if (jobScheduler != null && csp != null && connectionStrings != null) {
+            csp = jobScheduler.shareContentSourcePool(getContentSourcePoolKey(), csp);
+        }
+    }
+
+    /**
+     * Jobs share a ContentSourcePool only if they connect to the same servers,
+     * and configure the pool, SSL, retries, health checks and host discovery
+     * the same way.
+     *
+     * @return the connection strings, followed by the options that configure the ContentSourcePool
+     * @since 2.4.6
+     */
+    protected String getContentSourcePoolKey() {
+        StringBuilder key = new StringBuilder(String.join(",", connectionStrings));
+        for (String option : CONTENT_SOURCE_POOL_OPTIONS) {
+            String value = getOption(option);
+            if (value != null) {
+                key.append('\n').append(option).append('=').append(value);
+            }
+        }
+        return key.toString();
+    }
+
+    protected void closeContentSourcePool() {
+        try {
+            if (jobScheduler == null || !jobScheduler.releaseContentSourcePool(csp)) {
+                IOUtils.closeQuietly(csp);
+            }
+        } catch (IOException ex) {
+            LOG.log(WARNING, "Unable to close the ContentSourcePool", ex);
+        }
+    }
+
+    private void unregisterScheduledJob() {
+        if (scheduledJob != null) {
+            jobScheduler.unregister(scheduledJob);
+            scheduledJob = null;
+        }
+    }
+
+    /**
+     * Change the share of the JobScheduler threads that the job receives,
+     * relative to the other jobs.
+     *
+     * @param jobPriority
+     * @since 2.4.6
+     */
+    public void setJobPriority(int jobPriority) {
+        if (jobPriority > 0) {
+            options.setJobPriority(jobPriority);
+            JobScheduler.Job job = scheduledJob;
+            if (job != null) {
+                job.setPriority(jobPriority);
+            }
+            LOG.log(INFO, () -> MessageFormat.format("Changed {0} to {1}", JOB_PRIORITY, jobPriority));
+        } else {
+            LOG.log(WARNING, () -> JOB_PRIORITY + " must be a positive integer value");
+        }
+    }
+
     protected void setPoolSize(ThreadPoolExecutor threadPool, int threadCount) {
         if (threadPool != null) {
             int currentMaxPoolSize = threadPool.getMaximumPoolSize();
@@ -1003,13 +1827,31 @@ public class Manager extends AbstractManager implements Closeable {
             }
             pool = null;
         }
+        if (null != retryScheduler) {
+            retryScheduler.shutdownNow();
+        }
         if (null != monitor) {
             monitor.shutdownNow();
         }
         if (null != monitorThread) {
             monitorThread.interrupt();
         }
-
+        unregisterScheduledJob();
+        closeAdmissionController();
+        closeMemoryGovernor();
+        closeThroughputTimeSeries();
+        if (resultSink != null) {
+            try {
+                closeResultSink();
+            } catch (CorbException ex) {
+                LOG.log(WARNING, "Unable to close the result sink", ex);
+            }
+        }
+        try {
+            closeCompressedExportFiles();
+        } catch (IOException ex) {
+            LOG.log(WARNING, "Unable to finish the compressed export files", ex);
+        }
     }
 
     /**
@@ -1054,6 +1896,10 @@ public class Manager extends AbstractManager implements Closeable {
         return monitor;
     }
 
+    public RetryScheduler getRetryScheduler() {
+        return retryScheduler;
+    }
+
     public JobStats getJobStats() {
         return jobStats;
     }
@@ -1104,6 +1950,19 @@ public class Manager extends AbstractManager implements Closeable {
                         manager.setThreadCount(threadCount);
                     }
                 }
+                if (commandFile.containsKey(Options.RATE_LIMIT)) {
+                    try {
+                        manager.setRateLimit(Double.parseDouble(commandFile.getProperty(Options.RATE_LIMIT)));
+                    } catch (NumberFormatException e) {
+                        LOG.log(WARNING, MessageFormat.format("{0} value not numeric", Options.RATE_LIMIT), e);
+                    }
+                }
+                if (commandFile.containsKey(JOB_PRIORITY)) {
+                    int jobPriority = NumberUtils.toInt(commandFile.getProperty(JOB_PRIORITY));
+                    if (jobPriority > 0) {
+                        manager.setJobPriority(jobPriority);
+                    }
+                }
 
             } catch (IOException e) {
                 LOG.log(WARNING, "Unable to load " + COMMAND_FILE, e);
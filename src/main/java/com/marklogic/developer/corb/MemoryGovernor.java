@@ -0,0 +1,287 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Logger;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+/**
+ * Holds back work when the old generation of the heap crosses the configured
+ * watermarks, rather than let the job fail with an {@link OutOfMemoryError}.
+ * A usage threshold is set on each heap memory pool that supports one, so that
+ * the JVM notifies the governor as soon as a watermark is crossed; since there
+ * is no notification once usage drops again, the governor is also run
+ * periodically to check whether the pressure has eased. The usage thresholds
+ * are global to the JVM, so when several jobs run in the same JVM, each pool's
+ * threshold is set at the lowest high watermark of the governors that have
+ * been started, and only cleared when the last of them is closed.
+ * <p>
+ * Above the high watermark, the number of process tasks executing at the same
+ * time and the number of tasks waiting in the queue are halved, and loaders
+ * spill the URIs they queue to disk. Above the critical watermark, one task
+ * executes at a time and no more URIs are read until the queue has drained.
+ * Normal processing resumes once usage is back below 90% of the watermark.
+ *
+ * @since 2.4.6
+ */
+public class MemoryGovernor implements NotificationListener, Runnable, Closeable {
+
+    public enum Level {
+        NORMAL, HIGH, CRITICAL
+    }
+
+    public static final int DEFAULT_CRITICAL_WATERMARK = 95;
+    protected static final double RESUME_RATIO = 0.9;
+    protected static final long WAIT_MILLIS = 100;
+
+    private final PausableThreadPoolExecutor pool;
+    private final TransformOptions options;
+    private final List<MemoryPoolMXBean> memoryPools;
+    private final double highWatermark;
+    private final double criticalWatermark;
+    private final Object lock = new Object();
+    private volatile Level level = Level.NORMAL;
+    private boolean listening;
+
+    private static final Logger LOG = Logger.getLogger(MemoryGovernor.class.getName());
+    //the governors that have been started and not yet closed, which share the usage thresholds
+    private static final List<MemoryGovernor> STARTED = new ArrayList<>();
+
+    public MemoryGovernor(PausableThreadPoolExecutor pool, TransformOptions options) {
+        this(pool, options, heapMemoryPools());
+    }
+
+    protected MemoryGovernor(PausableThreadPoolExecutor pool, TransformOptions options, List<MemoryPoolMXBean> memoryPools) {
+        this.pool = pool;
+        this.options = options;
+        this.memoryPools = memoryPools;
+        highWatermark = options.getMemoryHighWatermark() / 100d;
+        criticalWatermark = Math.max(highWatermark, options.getMemoryCriticalWatermark() / 100d);
+    }
+
+    /**
+     * @return the heap memory pools that support usage thresholds, which
+     * excludes the young generation
+     */
+    protected static List<MemoryPoolMXBean> heapMemoryPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP && memoryPool.isUsageThresholdSupported()) {
+                pools.add(memoryPool);
+            }
+        }
+        return pools;
+    }
+
+    /**
+     * Set the usage thresholds of the memory pools at the high watermark, unless
+     * another governor has a lower one, and listen for the notifications.
+     */
+    public void start() {
+        synchronized (STARTED) {
+            if (STARTED.contains(this)) {
+                return;
+            }
+            STARTED.add(this);
+            setUsageThresholds(memoryPools);
+        }
+        if (ManagementFactory.getMemoryMXBean() instanceof NotificationEmitter) {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(this, null, null);
+            listening = true;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (listening) {
+            try {
+                ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(this);
+            } catch (ListenerNotFoundException ex) {
+                LOG.log(WARNING, "Unable to remove the memory notification listener", ex);
+            }
+            listening = false;
+        }
+        synchronized (STARTED) {
+            if (STARTED.remove(this)) {
+                setUsageThresholds(memoryPools);
+            }
+        }
+        update(0);
+    }
+
+    /**
+     * Set the usage threshold of each memory pool at the lowest high watermark
+     * of the started governors that watch it, or clear it if there are none.
+     *
+     * @param memoryPools
+     */
+    private static void setUsageThresholds(List<MemoryPoolMXBean> memoryPools) {
+        for (MemoryPoolMXBean memoryPool : memoryPools) {
+            double watermark = Double.MAX_VALUE;
+            for (MemoryGovernor governor : STARTED) {
+                if (governor.isWatching(memoryPool)) {
+                    watermark = Math.min(watermark, governor.highWatermark);
+                }
+            }
+            long max = memoryPool.getUsage().getMax();
+            if (watermark == Double.MAX_VALUE) {
+                memoryPool.setUsageThreshold(0);
+            } else if (max > 0) {
+                memoryPool.setUsageThreshold((long) (max * watermark));
+            }
+        }
+    }
+
+    private boolean isWatching(MemoryPoolMXBean memoryPool) {
+        //the platform may return a new MXBean for the same pool, so compare their names
+        for (MemoryPoolMXBean watched : memoryPools) {
+            if (watched == memoryPool || watched.getName() != null && watched.getName().equals(memoryPool.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+            run();
+        }
+    }
+
+    @Override
+    public void run() {
+        if (!pool.isShutdown()) {
+            update(getUsage());
+        }
+    }
+
+    /**
+     * @return the highest ratio of used to maximum size of the memory pools
+     */
+    protected double getUsage() {
+        double usage = 0;
+        for (MemoryPoolMXBean memoryPool : memoryPools) {
+            long max = memoryPool.getUsage().getMax();
+            if (max > 0) {
+                usage = Math.max(usage, (double) memoryPool.getUsage().getUsed() / max);
+            }
+        }
+        return usage;
+    }
+
+    /**
+     * Change the level of memory pressure, and restrict the pool accordingly.
+     * A level is kept until usage drops below 90% of its watermark.
+     *
+     * @param usage ratio of used to maximum size of the old generation
+     * @return the new level
+     */
+    protected synchronized Level update(double usage) {
+        Level current = level;
+        double high = current == Level.NORMAL ? highWatermark : highWatermark * RESUME_RATIO;
+        double critical = current == Level.CRITICAL ? criticalWatermark * RESUME_RATIO : criticalWatermark;
+        Level next = Level.NORMAL;
+        if (usage >= critical) {
+            next = Level.CRITICAL;
+        } else if (usage >= high) {
+            next = Level.HIGH;
+        }
+        if (next != current) {
+            int limit = Integer.MAX_VALUE;
+            if (next == Level.CRITICAL) {
+                limit = 1;
+            } else if (next == Level.HIGH) {
+                limit = Math.max(1, options.getThreadCount() / 2);
+            }
+            if (next == Level.NORMAL) {
+                LOG.log(INFO, "Memory usage is {0} of the old generation, no longer restricting tasks", percent(usage));
+            } else {
+                LOG.log(WARNING, "Memory usage is {0} of the old generation, restricting to {1} tasks",
+                        new Object[]{percent(usage), limit});
+            }
+            pool.setMemoryLimit(limit);
+            synchronized (lock) {
+                level = next;
+                lock.notifyAll();
+            }
+        }
+        return next;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * @return whether memory usage is above the high watermark
+     */
+    public boolean isUnderPressure() {
+        return level != Level.NORMAL;
+    }
+
+    /**
+     * Block while the queue of tasks is too full for the level of memory
+     * pressure: half of its capacity above the high watermark, and until it is
+     * empty above the critical watermark.
+     *
+     * @param queue the work queue of the pool
+     * @throws InterruptedException
+     */
+    public void awaitCapacity(BlockingQueue<Runnable> queue) throws InterruptedException {
+        synchronized (lock) {
+            while (queue.size() >= getQueueWindow(queue)) {
+                //tasks leaving the queue are not signalled, so check again shortly
+                lock.wait(WAIT_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * @param queue
+     * @return the number of tasks that may be waiting in the queue
+     */
+    protected int getQueueWindow(BlockingQueue<Runnable> queue) {
+        Level current = level;
+        if (current == Level.CRITICAL) {
+            return 1;
+        } else if (current == Level.HIGH) {
+            return Math.max(1, (queue.size() + queue.remainingCapacity()) / 2);
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    private static String percent(double usage) {
+        return Math.round(usage * 100) + "%";
+    }
+}
@@ -20,9 +20,7 @@ package com.marklogic.developer.corb;
 
 import static com.marklogic.developer.corb.Options.COMMAND_FILE;
 import java.text.MessageFormat;
-import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import static java.util.logging.Level.INFO;
@@ -38,20 +36,20 @@ import java.util.logging.Logger;
 public class Monitor extends BaseMonitor implements Runnable {
 
     protected static final Logger LOG = Logger.getLogger(Monitor.class.getName());
-    protected boolean shutdownNow;
-    protected long completed = 0L;
+    protected volatile boolean shutdownNow;
+    protected volatile long completed = 0L;
 
     protected PausableThreadPoolExecutor threadPoolExecutor;
-    protected final CompletionService<String[]> cs;
+    protected final CompletionTracker completionTracker;
     /**
      * @param threadPoolExecutor
-     * @param cs
+     * @param completionTracker
      * @param manager
      */
-    public Monitor(PausableThreadPoolExecutor threadPoolExecutor, CompletionService<String[]> cs, Manager manager) {
+    public Monitor(PausableThreadPoolExecutor threadPoolExecutor, CompletionTracker completionTracker, Manager manager) {
         super(manager);
         this.threadPoolExecutor = threadPoolExecutor;
-        this.cs = cs;
+        this.completionTracker = completionTracker;
     }
 
     /*
@@ -79,43 +77,38 @@ public class Monitor extends BaseMonitor implements Runnable {
     private void monitorResults() throws InterruptedException, ExecutionException {
         // fast-fail as soon as we see any exceptions
         LOG.log(INFO, () -> MessageFormat.format("monitoring {0} tasks", taskCount));
-        Future<String[]> future;
+        boolean signalled = true;
         while (!shutdownNow) {
-            // try to avoid thread starvation
-            Thread.yield();
-
-            future = cs.poll(TransformOptions.PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
-            if (null != future) {
-                // record result, or throw exception
-                String[] lastUris = future.get();
-                completed += lastUris.length;
+            ExecutionException failure = completionTracker.getFailure();
+            if (failure != null) {
+                throw failure;
             }
+            completed = completionTracker.getCompletedUriCount();
 
             showProgress();
 
-            if (completed >= taskCount) {
-                try {
-                    Thread.sleep(100); //sleep a little for the pool to align
-                } catch(InterruptedException ex) {
-                    LOG.log(WARNING, "Interrupted!", ex);
-                    Thread.currentThread().interrupt();
-                }
-                if (threadPoolExecutor.getActiveCount() > 0 || (threadPoolExecutor.getTaskCount() - threadPoolExecutor.getCompletedTaskCount()) > 0) {
-                    LOG.log(WARNING, "Thread pool is still active with all the tasks completed and received. We shouldn't see this message.");
-                    //wait for the ThreadPool numbers to align
-                } else {
-                    //everyone agrees; all tasks are completed and the threadPool reports all tasks are complete.
+            if (completionTracker.isIdle() && !hasPendingRetries()) {
+                if (completed >= taskCount) {
+                    //all tasks, including retries, have been submitted and have completed
                     break;
+                } else if (!signalled && taskCount != UrisLoader.UNKNOWN_TOTAL_COUNT) {
+                    LOG.log(WARNING, () -> MessageFormat.format("No active tasks found with {0,number} tasks remains to be completed", taskCount - completed));
                 }
-            } else if (future == null && threadPoolExecutor.getActiveCount() == 0) {
-                LOG.log(WARNING, () -> MessageFormat.format("No active tasks found with {0,number} tasks remains to be completed", taskCount - completed));
             }
+            //woken early when a task fails, or when there are no tasks left
+            signalled = completionTracker.await(TransformOptions.PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
         }
         LOG.info("waiting for pool to terminate");
+        threadPoolExecutor.shutdown();
         threadPoolExecutor.awaitTermination(1, TimeUnit.SECONDS);
         LOG.log(INFO, () -> MessageFormat.format("completed all tasks {0,number}/{1,number}", completed, taskCount));
     }
 
+    protected boolean hasPendingRetries() {
+        RetryScheduler retryScheduler = manager != null ? manager.getRetryScheduler() : null;
+        return retryScheduler != null && retryScheduler.getPendingCount() > 0;
+    }
+
     private long showProgress() {
         long current = System.currentTimeMillis();
         if (current - lastProgress > TransformOptions.PROGRESS_INTERVAL_MS) {
@@ -144,6 +137,10 @@ public class Monitor extends BaseMonitor implements Runnable {
      */
     public void setTaskCount(long count) {
         taskCount = count;
+        if (completionTracker != null) {
+            //check whether the tasks that have already completed are all of them
+            completionTracker.signal();
+        }
     }
 
     public long getTaskCount() {
@@ -151,7 +148,11 @@ public class Monitor extends BaseMonitor implements Runnable {
     }
 
     public long getCompletedCount() {
-        return this.completed;
+        return completionTracker != null ? completionTracker.getCompletedUriCount() : completed;
+    }
+
+    public CompletionTracker getCompletionTracker() {
+        return completionTracker;
     }
 
     public PausableThreadPoolExecutor getThreadPoolExecutor() {
@@ -163,6 +164,9 @@ public class Monitor extends BaseMonitor implements Runnable {
      */
     public void shutdownNow() {
         shutdownNow = true;
+        if (completionTracker != null) {
+            completionTracker.signal();
+        }
     }
 
 }
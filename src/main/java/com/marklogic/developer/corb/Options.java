@@ -63,6 +63,21 @@ public final class Options {
             + "multiple URIS when BATCH-SIZE is greater than 1.")
     public static final String BATCH_URI_DELIM = "BATCH-URI-DELIM";
 
+    /**
+     * Boolean value indicating whether the URIs selected by the
+     * {@value #URIS_MODULE} are tagged with the host where their documents
+     * live, as the host name followed by a tab character and the URI. Tagged
+     * URIs are batched by host, and each batch is sent to that host if the
+     * content source pool has an available connection to it, reducing the
+     * traffic between the nodes of the cluster. Default is false.
+     * @since 2.4.6
+     */
+    @Usage(description = "Boolean value indicating whether the URIs selected by the URIS-MODULE are tagged with "
+            + "the host where their documents live, as the host name followed by a tab character and the URI. "
+            + "Tagged URIs are batched by host and each batch is sent to that host when a connection to it is available. "
+            + "Default is false.")
+    public static final String BATCH_HOST_AFFINITY = "BATCH-HOST-AFFINITY";
+
     /**
      * Value of this parameter will be passed into the {@value #URIS_MODULE} via
      * external or global variable with the name URIS.
@@ -242,6 +257,37 @@ public final class Options {
             + "to append content to EXPORT-FILE-NAME after batch process is complete.")
     public static final String EXPORT_FILE_BOTTOM_CONTENT = "EXPORT-FILE-BOTTOM-CONTENT";
 
+    /**
+     * If {@code gzip}, export files are compressed as they are written, instead of
+     * being written uncompressed and compressed afterwards. The batches written to an
+     * export file, or to a shard, are compressed as a single gzip stream; the batches of an
+     * export file are compressed by a thread of its own, so the worker threads do not
+     * wait on each other. Top and bottom
+     * content, and indexed batches of a shard, are appended as separate gzip members,
+     * which standard gzip tools read as a single stream. {@value #EXPORT_FILE_SORT}
+     * reads and writes the compressed file, and keeps its temporary runs compressed.
+     * {@link com.marklogic.developer.corb.ExportToFileTask} adds a {@code .gz} extension
+     * to the file of each URI, but {@value #EXPORT_FILE_NAME} is used as is.
+     *
+     * @see #EXPORT_FILE_COMPRESSION_LEVEL
+     * @since 2.4.6
+     */
+    @Usage(description = "If gzip, export files are compressed as they are written, instead of "
+            + "being written uncompressed and compressed afterwards. The batches written to an export file, "
+            + "or to a shard, are compressed as a single gzip stream. ExportToFileTask adds a .gz extension "
+            + "to the file of each URI, but EXPORT-FILE-NAME is used as is.")
+    public static final String EXPORT_FILE_COMPRESSION = "EXPORT-FILE-COMPRESSION";
+
+    /**
+     * The compression level, from 1 (fastest) to 9 (smallest), used when
+     * {@value #EXPORT_FILE_COMPRESSION} is specified. Default is 6.
+     *
+     * @since 2.4.6
+     */
+    @Usage(description = "The compression level, from 1 (fastest) to 9 (smallest), "
+            + "used when EXPORT-FILE-COMPRESSION is specified. Default is 6.")
+    public static final String EXPORT_FILE_COMPRESSION_LEVEL = "EXPORT-FILE-COMPRESSION-LEVEL";
+
     /**
      * Export directory parameter is used by
      * {@link com.marklogic.developer.corb.ExportBatchToFileTask} or similar
@@ -304,6 +350,67 @@ public final class Options {
             + "must be specified as POST-BATCH-TASK.")
     public static final String EXPORT_FILE_PART_EXT = "EXPORT-FILE-PART-EXT";
 
+    /**
+     * Boolean value indicating whether {@link com.marklogic.developer.corb.ExportBatchToFileTask}
+     * records, for each batch written to a shard, its first URI and position in a {@code .idx} file
+     * next to the shard. {@link com.marklogic.developer.corb.PostBatchUpdateFileTask} then
+     * concatenates the batches in URI order, so that the content of {@value #EXPORT_FILE_NAME}
+     * does not depend upon the order in which the threads completed.
+     * Default is false.
+     *
+     * @since 2.4.6
+     */
+    @Usage(description = "Boolean value indicating whether ExportBatchToFileTask records, for each batch "
+            + "written to a shard, its first URI and position in a .idx file next to the shard. "
+            + "PostBatchUpdateFileTask then concatenates the batches in URI order. Default is false.")
+    public static final String EXPORT_FILE_SHARD_INDEX = "EXPORT-FILE-SHARD-INDEX";
+
+    /**
+     * The number of records after which a thread starts a new shard. Default is 0, unlimited.
+     *
+     * @since 2.4.6
+     */
+    @Usage(description = "The number of records after which a thread starts a new shard. Default is 0, unlimited.")
+    public static final String EXPORT_FILE_SHARD_MAX_RECORDS = "EXPORT-FILE-SHARD-MAX-RECORDS";
+
+    /**
+     * The size, in bytes, after which a thread starts a new shard. Default is 0, unlimited.
+     *
+     * @since 2.4.6
+     */
+    @Usage(description = "The size, in bytes, after which a thread starts a new shard. Default is 0, unlimited.")
+    public static final String EXPORT_FILE_SHARD_MAX_SIZE = "EXPORT-FILE-SHARD-MAX-SIZE";
+
+    /**
+     * How {@link com.marklogic.developer.corb.PostBatchUpdateFileTask} combines the shards.
+     * {@code concat} (default) appends them to {@value #EXPORT_FILE_NAME} and deletes them.
+     * {@code manifest} leaves them in place, and lists them in a {@code .manifest} file
+     * next to {@value #EXPORT_FILE_NAME}. {@code manifest} cannot be combined with
+     * {@value #EXPORT_FILE_SORT}.
+     *
+     * @since 2.4.6
+     */
+    @Usage(description = "How PostBatchUpdateFileTask combines the shards. concat (default) appends "
+            + "them to EXPORT-FILE-NAME and deletes them. manifest leaves them in place, "
+            + "and lists them in a .manifest file next to EXPORT-FILE-NAME. manifest cannot be combined "
+            + "with EXPORT-FILE-SORT.")
+    public static final String EXPORT_FILE_SHARD_MERGE = "EXPORT-FILE-SHARD-MERGE";
+
+    /**
+     * Boolean value indicating whether {@link com.marklogic.developer.corb.ExportBatchToFileTask}
+     * writes the results of each thread to its own shard file, instead of to {@value #EXPORT_FILE_NAME}.
+     * This avoids the threads waiting on each other to write. The shards are combined by
+     * {@link com.marklogic.developer.corb.PostBatchUpdateFileTask}, which must be the
+     * {@value #POST_BATCH_TASK}. Default is false.
+     *
+     * @since 2.4.6
+     */
+    @Usage(description = "Boolean value indicating whether ExportBatchToFileTask writes the results of "
+            + "each thread to its own shard file, instead of to EXPORT-FILE-NAME. This avoids the threads "
+            + "waiting on each other to write. The shards are combined by PostBatchUpdateFileTask, which must be "
+            + "the POST-BATCH-TASK. Default is false.")
+    public static final String EXPORT_FILE_SHARDS = "EXPORT-FILE-SHARDS";
+
     /**
      * If "{@code ascending}" or "{@code descending}", lines will be sorted. If
      * "{@code |distinct}" is specified after the sort direction, duplicate
@@ -367,6 +474,37 @@ public final class Options {
             + "This option will not handle repeated connection failures.")
     public static final String FAIL_ON_ERROR = "FAIL-ON-ERROR";
 
+    /**
+     * Boolean value indicating whether to record JDK Flight Recorder events for
+     * the tasks, content sources, URIs loader and export files of the job, along
+     * with the default set of JVM events, for the duration of the job. The
+     * recording is written to {@value #FLIGHT_RECORDING_FILE}.
+     * <p>
+     * It can also be passed as a parameter to the JobServer, {@code true} to
+     * start a recording and {@code false} to stop it, in order to profile a
+     * running job. Requires a JVM that supports JFR (JDK 8u262 or later).
+     * Default is false.
+     * </p>
+     *
+     * @since 2.4.6
+     */
+    @Usage(description = "Boolean value indicating whether to record JDK Flight Recorder events "
+            + "for the tasks, content sources, URIs loader and export files of the job, along with "
+            + "the default set of JVM events, for the duration of the job. The recording is written "
+            + "to FLIGHT-RECORDING-FILE. It can also be passed as a parameter to the JobServer, true to "
+            + "start a recording and false to stop it. Requires a JVM that supports JFR. Default is false.")
+    public static final String FLIGHT_RECORDING = "FLIGHT-RECORDING";
+
+    /**
+     * The file that the recording started by {@value #FLIGHT_RECORDING} is
+     * written to. Default is {@code corb-<timestamp>.jfr} in the working directory.
+     *
+     * @since 2.4.6
+     */
+    @Usage(description = "The file that the recording started by FLIGHT-RECORDING is written to. "
+            + "Default is corb-<timestamp>.jfr in the working directory.")
+    public static final String FLIGHT_RECORDING_FILE = "FLIGHT-RECORDING-FILE";
+
     /**
      * An XQuery or JavaScript module which, if specified, will be invoked prior
      * to {@value #URIS_MODULE}.
@@ -394,12 +532,29 @@ public final class Options {
     /**
      * Whether to install the Modules in the Modules database. Specify 'true' or
      * '1' for installation. Default is false.
+     * Modules whose SHA-256 hash matches the one recorded in the metadata of the
+     * installed document are skipped (since 2.4.6).
      */
     @Usage(description = "Whether to install the Modules in the Modules database. "
             + "Specify 'true' or '1' for installation. "
             + "Default is false.")
     public static final String INSTALL = "INSTALL";
 
+    /**
+     * Whether to install ADHOC and INLINE modules in the modules database, under
+     * a URI that is made from a hash of their code, so that tasks invoke the
+     * installed module rather than sending the code with every request.
+     * If the modules database is not writable, or XCC is configured for the
+     * filesystem, the modules are sent as adhoc queries. Default is false.
+     *
+     * @since 2.4.6
+     */
+    @Usage(description = "Whether to install ADHOC and INLINE modules in the modules database, under "
+            + "a URI that is made from a hash of their code, so that tasks invoke the installed module "
+            + "rather than sending the code with every request. If the modules database is not writable, "
+            + "the modules are sent as adhoc queries. Default is false.")
+    public static final String INSTALL_ADHOC_MODULES = "INSTALL-ADHOC-MODULES";
+
     /**
      * Name of the current Job.
      * If {@value #JOB_NAME} is specified then the metrics document is added to a collection with the Job Name, if not it defaults to the Job Run Location.
@@ -409,6 +564,21 @@ public final class Options {
     @Usage(description = "Name of the current Job. If it is specified then the metrics document is added to a collection with the Job Name, if not it defaults to the Job Run Location.")
     public static final String JOB_NAME = "JOB-NAME";
 
+    /**
+     * The share of the threads that the job receives, relative to the other jobs,
+     * when several jobs are run in the same JVM by a JobServer with a JobScheduler.
+     * A job with priority 2 executes twice as many tasks at the same time as a job with priority 1.
+     * Can be changed while the job is running with the command file or the job server.
+     * Default is 1.
+     *
+     * @since 2.4.6
+     */
+    @Usage(description = "The share of the threads that the job receives, relative to the other jobs, "
+            + "when several jobs are run in the same JVM by a JobServer with a JobScheduler. "
+            + "A job with priority 2 executes twice as many tasks at the same time as a job with priority 1. "
+            + "Default is 1.")
+    public static final String JOB_PRIORITY = "JOB-PRIORITY";
+
     /**
      * Optional Port number to start a light weight HTTP Server which can be used to monitor, change the number of threads, pause/resume the current CORB job.
      * Port number must be a valid port(s) or a valid range of ports. Ex: 9080 Ex: 9080,9083,9087 Ex: 9080-9090 Ex: 9080-9083,9085-9090
@@ -522,6 +692,33 @@ public final class Options {
     @Usage(description = "If this option is set to 'true', XML-METADATA is set as an external variable with " 
             + "name METADATA to PROCESS-MODULE as well. The default value for this option is 'false'")
     public static final String METADATA_TO_PROCESS_MODULE = "METADATA-TO-PROCESS-MODULE";
+
+    /**
+     * Percentage of the maximum size of the old generation of the heap that
+     * may be used before tasks are held back. Above the watermark the number of
+     * process tasks executing at the same time is halved, the queue of tasks
+     * waiting to execute is halved, and URIs queued by the {@value #URIS_MODULE}
+     * are spilled to disk. Above {@value #MEMORY_CRITICAL_WATERMARK} one task
+     * executes at a time and no more URIs are read until the queue has drained.
+     * Normal processing resumes once usage is back below 90% of the watermark.
+     * Default is 0, which disables the checks.
+     * @since 2.4.6
+     */
+    @Usage(description = "Percentage of the maximum size of the old generation of the heap that may be used before tasks are held back. "
+            + "Above the watermark fewer tasks execute and are queued, and URIs from the URIS-MODULE are spilled to disk. "
+            + "Default is 0, which disables the checks.")
+    public static final String MEMORY_HIGH_WATERMARK = "MEMORY-HIGH-WATERMARK";
+
+    /**
+     * Percentage of the maximum size of the old generation of the heap above
+     * which one process task executes at a time and no more URIs are read
+     * until the queue of tasks has drained. Default is 95.
+     * @see #MEMORY_HIGH_WATERMARK
+     * @since 2.4.6
+     */
+    @Usage(description = "Percentage of the maximum size of the old generation of the heap above which one task executes at a time "
+            + "and no more URIs are read until the queue has drained. Default is 95.")
+    public static final String MEMORY_CRITICAL_WATERMARK = "MEMORY-CRITICAL-WATERMARK";
     
     /**
      * Adds the metrics document to the specified collection.
@@ -608,6 +805,22 @@ public final class Options {
     @Usage(description = "Frequency ( in seconds) at which the Metrics document needs to be updated in the Database. This value is ignored if METRICS-DB-NAME is not specified")
     public static final String METRICS_SYNC_FREQUENCY = "METRICS-SYNC-FREQUENCY";
 
+    /**
+     * What is written to the database every {@value #METRICS_SYNC_FREQUENCY} seconds.
+     * {@code full} (default) writes a new copy of the whole metrics document.
+     * {@code delta} writes the whole metrics document only at the start and end of the job,
+     * and in between appends a small point (counters, TPS, and latency percentiles for the interval)
+     * to one time series document, at the metrics document URI with a {@code /timeseries} suffix.
+     *
+     * @since 2.4.6
+     */
+    @Usage(description = "What is written to the database every METRICS-SYNC-FREQUENCY seconds. "
+            + "full (default) writes a new copy of the whole metrics document. "
+            + "delta writes the whole metrics document only at the start and end of the job, "
+            + "and in between appends a small point (counters, TPS, and latency percentiles for the interval) "
+            + "to one time series document, at the metrics document URI with a /timeseries suffix.")
+    public static final String METRICS_SYNC_MODE = "METRICS-SYNC-MODE";
+
     /**
      * @since 2.4.0
      */
@@ -641,6 +854,50 @@ public final class Options {
             + "Relative and full file system paths are supported.")
     public static final String OPTIONS_FILE = "OPTIONS-FILE";
 
+    /**
+     * The maximum number of items buffered between two stages of a {@link Pipeline}.
+     * When the buffer is full, the tasks of the upstream stage wait for the downstream stage to catch up.
+     * Default is 10000.
+     *
+     * @since 2.4.6
+     */
+    @Usage(description = "The maximum number of items buffered between two stages of a Pipeline. "
+            + "When the buffer is full, the tasks of the upstream stage wait for the downstream stage to catch up. "
+            + "Default is 10000.")
+    public static final String PIPELINE_CHANNEL_SIZE = "PIPELINE-CHANNEL-SIZE";
+
+    /**
+     * Name of the in-process channel that {@link ChannelUrisLoader} reads URIs from.
+     * Set by the {@link Pipeline} for each stage after the first.
+     *
+     * @since 2.4.6
+     */
+    @Usage(description = "Name of the in-process channel that ChannelUrisLoader reads URIs from. "
+            + "Set by the Pipeline for each stage after the first.")
+    public static final String PIPELINE_INPUT_CHANNEL = "PIPELINE-INPUT-CHANNEL";
+
+    /**
+     * Name of the in-process channel that {@link ExportToChannelTask} writes results to.
+     * Set by the {@link Pipeline} for each stage before the last.
+     *
+     * @since 2.4.6
+     */
+    @Usage(description = "Name of the in-process channel that ExportToChannelTask writes results to. "
+            + "Set by the Pipeline for each stage before the last.")
+    public static final String PIPELINE_OUTPUT_CHANNEL = "PIPELINE-OUTPUT-CHANNEL";
+
+    /**
+     * Comma separated list of the names of the stages of a {@link Pipeline}, in order.
+     * The options of a stage are prefixed by its name and a period, such as {@code export.PROCESS-MODULE},
+     * and options without a stage prefix apply to all of the stages.
+     *
+     * @since 2.4.6
+     */
+    @Usage(description = "Comma separated list of the names of the stages of a Pipeline, in order. "
+            + "The options of a stage are prefixed by its name and a period, such as export.PROCESS-MODULE, "
+            + "and options without a stage prefix apply to all of the stages.")
+    public static final String PIPELINE_STAGES = "PIPELINE-STAGES";
+
     /**
      * The minimum number of results that must be returned for the POST-BATCH-MODULE
      *  or POST-BATCH-TASK to be executed.
@@ -872,6 +1129,21 @@ public final class Options {
             + "document will be the based on the URI.")
     public static final String PROCESS_TASK = "PROCESS-TASK";
 
+    /**
+     * The maximum number of re-query attempts for the whole job, as a
+     * percentage of the number of process tasks submitted. Regardless of the
+     * percentage, each of the {@value #THREAD_COUNT} threads may retry once.
+     * When the budget is exhausted, failed tasks are not retried and are handled
+     * according to {@value #FAIL_ON_ERROR}. Default is 10.
+     *
+     * @see #QUERY_RETRY_LIMIT
+     * @since 2.4.6
+     */
+    @Usage(description = "The maximum number of re-query attempts for the whole job, as a percentage of the number "
+            + "of process tasks submitted. Regardless of the percentage, each of the THREAD-COUNT threads may retry once. "
+            + "When the budget is exhausted, failed tasks are not retried. Default is 10.")
+    public static final String QUERY_RETRY_BUDGET = "QUERY-RETRY-BUDGET";
+
     /**
      * A comma separated list of MarkLogic error codes for which a
      * QueryException should be retried.
@@ -891,12 +1163,28 @@ public final class Options {
     public static final String QUERY_RETRY_ERROR_MESSAGE = "QUERY-RETRY-ERROR-MESSAGE";
 
     /**
-     * Time interval, in seconds, between re-query attempts. Default is 20.
+     * Time interval, in seconds, before the first re-query attempt. The interval
+     * doubles for each following attempt of a process task, up to
+     * {@value #QUERY_RETRY_INTERVAL_MAX}, and a random jitter of up to half of
+     * the interval is added. Default is 20.
      */
-    @Usage(description = "Time interval, in seconds, between re-query attempts. "
+    @Usage(description = "Time interval, in seconds, before the first re-query attempt. "
+            + "The interval doubles for each following attempt of a process task, up to QUERY-RETRY-INTERVAL-MAX, "
+            + "and a random jitter of up to half of the interval is added. "
             + "Default is 20.")
     public static final String QUERY_RETRY_INTERVAL = "QUERY-RETRY-INTERVAL";
 
+    /**
+     * The longest time interval, in seconds, to wait before a re-query attempt
+     * of a process task, not including the random jitter. Default is 300.
+     *
+     * @see #QUERY_RETRY_INTERVAL
+     * @since 2.4.6
+     */
+    @Usage(description = "The longest time interval, in seconds, to wait before a re-query attempt of a process task, "
+            + "not including the random jitter. Default is 300.")
+    public static final String QUERY_RETRY_INTERVAL_MAX = "QUERY-RETRY-INTERVAL-MAX";
+
     /**
      * Number of re-query attempts before giving up. Default is 2.
      */
@@ -904,6 +1192,130 @@ public final class Options {
             + "Default is 2.")
     public static final String QUERY_RETRY_LIMIT = "QUERY-RETRY-LIMIT";
 
+    /**
+     * The maximum number of process tasks, or URIs if {@value #RATE_LIMIT_UNIT}
+     * is {@code uris}, submitted per second. Can be changed while the job runs,
+     * with the command file or the JobServer. Default is 0, which does not
+     * limit the rate.
+     * @see #RATE_LIMIT_SCHEDULE
+     * @since 2.4.6
+     */
+    @Usage(description = "The maximum number of process tasks, or URIs if RATE-LIMIT-UNIT is uris, submitted per second. "
+            + "Can be changed while the job runs, with the command file or the JobServer. "
+            + "Default is 0, which does not limit the rate.")
+    public static final String RATE_LIMIT = "RATE-LIMIT";
+
+    /**
+     * Whether the {@value #RATE_LIMIT} applies to the tasks sent to each host,
+     * rather than to all of the tasks, when {@value #BATCH_HOST_AFFINITY} is
+     * enabled. Default is false.
+     * @since 2.4.6
+     */
+    @Usage(description = "Whether the RATE-LIMIT applies to the tasks sent to each host, rather than to all of the tasks, "
+            + "when BATCH-HOST-AFFINITY is enabled. Default is false.")
+    public static final String RATE_LIMIT_PER_HOST = "RATE-LIMIT-PER-HOST";
+
+    /**
+     * A file that sets the {@value #RATE_LIMIT} by time of day. Each line has an
+     * optional range of days, a range of times and a rate, such as
+     * {@code MON-FRI 08:00-18:00 50}; a rate of 0 does not limit the rate. The
+     * first line that matches applies, and the {@value #RATE_LIMIT} applies
+     * outside of all of the ranges.
+     * @see RateLimitSchedule
+     * @since 2.4.6
+     */
+    @Usage(description = "A file that sets the RATE-LIMIT by time of day. Each line has an optional range of days, "
+            + "a range of times and a rate, such as MON-FRI 08:00-18:00 50. The first line that matches applies, "
+            + "and the RATE-LIMIT applies outside of all of the ranges.")
+    public static final String RATE_LIMIT_SCHEDULE = "RATE-LIMIT-SCHEDULE";
+
+    /**
+     * What the {@value #RATE_LIMIT} counts: {@code tasks} (default) or {@code uris}.
+     * @since 2.4.6
+     */
+    @Usage(description = "What the RATE-LIMIT counts: tasks (default) or uris.")
+    public static final String RATE_LIMIT_UNIT = "RATE-LIMIT-UNIT";
+
+    /**
+     * Where the results of the {@value #PROCESS_MODULE} are written, by a
+     * thread of its own, so that the threads executing tasks are released as
+     * soon as they have read their results. One of:
+     * <ul>
+     * <li>{@code file} appends each result to the {@value #EXPORT_FILE_NAME}</li>
+     * <li>{@code rolling-file} writes to a series of files, numbered after the
+     * {@value #EXPORT_FILE_NAME}, of at most {@value #RESULT_SINK_ROLL_SIZE} bytes</li>
+     * <li>{@code stdout} writes each result to standard out</li>
+     * <li>{@code aggregate} counts each distinct result in memory, and writes the
+     * counts to the {@value #EXPORT_FILE_NAME} at the end of the job</li>
+     * </ul>
+     * Or the name of a class that implements {@link ResultSink}. If
+     * {@value #PROCESS_TASK} is not specified, {@link ExportToSinkTask} is used.
+     * @since 2.4.6
+     */
+    @Usage(description = "Where the results of the PROCESS-MODULE are written, by a thread of its own: "
+            + "file, rolling-file, stdout, aggregate, or the name of a class that implements com.marklogic.developer.corb.ResultSink. "
+            + "If PROCESS-TASK is not specified, com.marklogic.developer.corb.ExportToSinkTask is used.")
+    public static final String RESULT_SINK = "RESULT-SINK";
+
+    /**
+     * The maximum number of results waiting to be written by the
+     * {@value #RESULT_SINK}. When the buffer is full, tasks wait for space.
+     * Default is 1000.
+     * @since 2.4.6
+     */
+    @Usage(description = "The maximum number of results waiting to be written by the RESULT-SINK. "
+            + "When the buffer is full, tasks wait for space. Default is 1000.")
+    public static final String RESULT_SINK_BUFFER_SIZE = "RESULT-SINK-BUFFER-SIZE";
+
+    /**
+     * The maximum size, in bytes, of each file written by the
+     * {@code rolling-file} {@value #RESULT_SINK}. Default is 104857600 (100 MiB).
+     * @since 2.4.6
+     */
+    @Usage(description = "The maximum size, in bytes, of each file written by the rolling-file RESULT-SINK. "
+            + "Default is 104857600 (100 MiB).")
+    public static final String RESULT_SINK_ROLL_SIZE = "RESULT-SINK-ROLL-SIZE";
+
+    /**
+     * Time interval, in seconds, between checks of the load on the app server
+     * and hosts of the cluster. When the load exceeds one of the
+     * {@value #SERVER_LOAD_MAX_QUEUE_SIZE}, {@value #SERVER_LOAD_MAX_ACTIVE_REQUESTS}
+     * or {@value #SERVER_LOAD_MAX_WRITE_LOCK_RATE} watermarks, the number of
+     * process tasks executing at the same time is halved, and dispatch is paused
+     * at twice the watermark. Once the load is back below 80% of the watermarks,
+     * tasks are admitted again, one more per check, up to {@value #THREAD_COUNT}.
+     * Default is 0, which disables the checks.
+     * @since 2.4.6
+     */
+    @Usage(description = "Time interval, in seconds, between checks of the load on the app server and hosts of the cluster. "
+            + "Above one of the SERVER-LOAD-MAX-* watermarks, the number of process tasks executing at the same time is halved, "
+            + "and dispatch is paused at twice the watermark. Default is 0, which disables the checks.")
+    public static final String SERVER_LOAD_CHECK_INTERVAL = "SERVER-LOAD-CHECK-INTERVAL";
+
+    /**
+     * Watermark for the number of requests executing on the app server, across the hosts of the group.
+     * @see #SERVER_LOAD_CHECK_INTERVAL
+     * @since 2.4.6
+     */
+    @Usage(description = "Watermark for the number of requests executing on the app server, across the hosts of the group.")
+    public static final String SERVER_LOAD_MAX_ACTIVE_REQUESTS = "SERVER-LOAD-MAX-ACTIVE-REQUESTS";
+
+    /**
+     * Watermark for the number of requests waiting in the queue of the app server, across the hosts of the group.
+     * @see #SERVER_LOAD_CHECK_INTERVAL
+     * @since 2.4.6
+     */
+    @Usage(description = "Watermark for the number of requests waiting in the queue of the app server, across the hosts of the group.")
+    public static final String SERVER_LOAD_MAX_QUEUE_SIZE = "SERVER-LOAD-MAX-QUEUE-SIZE";
+
+    /**
+     * Watermark for the write lock rate, per second, across the hosts of the group.
+     * @see #SERVER_LOAD_CHECK_INTERVAL
+     * @since 2.4.6
+     */
+    @Usage(description = "Watermark for the write lock rate, per second, across the hosts of the group.")
+    public static final String SERVER_LOAD_MAX_WRITE_LOCK_RATE = "SERVER-LOAD-MAX-WRITE-LOCK-RATE";
+
     /**
      * A comma separated list of acceptable cipher suites used.
      */
@@ -985,10 +1397,63 @@ public final class Options {
    @Usage
    public static final String URIS_TOTAL_COUNT = "URIS_TOTAL_COUNT";
 
+    /**
+     * Skip URIs that have already been received from the URIs loader, so that each URI is processed once.
+     * {@code exact} keeps every URI that has been seen.
+     * {@code hash} keeps a 128-bit hash of each URI, in a table that uses 32 to 64 bytes per URI.
+     * {@code bloom} uses a fixed size Bloom filter, sized by {@value #URIS_DEDUPLICATION_EXPECTED_COUNT}
+     * and {@value #URIS_DEDUPLICATION_FALSE_POSITIVE_RATE}, for very large sets of URIs, up to 1 GiB;
+     * what happens to a URI that may be a false positive is set by {@value #URIS_DEDUPLICATION_FALSE_POSITIVE_POLICY}.
+     * By default, URIs are not de-duplicated.
+     *
+     * @since 2.4.6
+     */
+    @Usage(description = "Skip URIs that have already been received from the URIs loader, so that each URI is processed once. "
+            + "exact keeps every URI that has been seen. hash keeps a 128-bit hash of each URI, in a table that uses 32 to 64 bytes per URI. "
+            + "bloom uses a fixed size Bloom filter, sized by URIS-DEDUPLICATION-EXPECTED-COUNT and "
+            + "URIS-DEDUPLICATION-FALSE-POSITIVE-RATE, for very large sets of URIs, up to 1 GiB; "
+            + "what happens to a URI that may be a false positive is set by URIS-DEDUPLICATION-FALSE-POSITIVE-POLICY. "
+            + "By default, URIs are not de-duplicated.")
+    public static final String URIS_DEDUPLICATION = "URIS-DEDUPLICATION";
+
+    /**
+     * The number of URIs that the Bloom filter for {@value #URIS_DEDUPLICATION}=bloom is sized for,
+     * when the URIs loader does not report the total. Default is 10000000.
+     *
+     * @since 2.4.6
+     */
+    @Usage(description = "The number of URIs that the Bloom filter for URIS-DEDUPLICATION=bloom is sized for, "
+            + "when the URIs loader does not report the total. Default is 10000000.")
+    public static final String URIS_DEDUPLICATION_EXPECTED_COUNT = "URIS-DEDUPLICATION-EXPECTED-COUNT";
+
+    /**
+     * What happens to a URI that the Bloom filter for {@value #URIS_DEDUPLICATION}=bloom
+     * reports as seen, which may be a false positive. {@code skip} skips it, and when
+     * {@value #ERROR_FILE_NAME} is set writes it to the error file, so that the run can
+     * be reconciled. {@code process} processes it anyway, tolerating duplicates.
+     * Default is skip.
+     *
+     * @since 2.4.6
+     */
+    @Usage(description = "What happens to a URI that the Bloom filter for URIS-DEDUPLICATION=bloom reports as seen, "
+            + "which may be a false positive. skip skips it, and when ERROR-FILE-NAME is set writes it to the error file, "
+            + "so that the run can be reconciled. process processes it anyway, tolerating duplicates. Default is skip.")
+    public static final String URIS_DEDUPLICATION_FALSE_POSITIVE_POLICY = "URIS-DEDUPLICATION-FALSE-POSITIVE-POLICY";
+
+    /**
+     * The accepted rate of false positives, unique URIs that are skipped as duplicates,
+     * for {@value #URIS_DEDUPLICATION}=bloom. A lower rate uses more memory. Default is 0.000001.
+     *
+     * @since 2.4.6
+     */
+    @Usage(description = "The accepted rate of false positives, unique URIs that are skipped as duplicates, "
+            + "for URIS-DEDUPLICATION=bloom. A lower rate uses more memory. Default is 0.000001.")
+    public static final String URIS_DEDUPLICATION_FALSE_POSITIVE_RATE = "URIS-DEDUPLICATION-FALSE-POSITIVE-RATE";
+
     /**
      * If defined instead of {@value #URIS_MODULE}, URIs will be loaded from the
-     * file located on the client. There should only be one URI per line. This
-     * path may be relative or absolute.
+     * file located on the client. There should only be one URI per line. The
+     * file is read as UTF-8. This path may be relative or absolute.
      * <p>
      * For example, a file containing a list of document identifiers can be used
      * as a {@value #URIS_FILE} and the {@value #PROCESS_MODULE} can query for
@@ -996,7 +1461,7 @@ public final class Options {
      */
     @Usage(description = "If defined instead of URIS-MODULE, URIs will be loaded "
             + "from the file located on the client. There should only be one URI per line. "
-            + "This path may be relative or absolute. For example, a file containing "
+            + "The file is read as UTF-8. This path may be relative or absolute. For example, a file containing "
             + "a list of document identifiers can be used as a URIS-FILE and the PROCESS-MODULE "
             + "can query for the document based on this document identifier.")
     public static final String URIS_FILE = "URIS-FILE";
@@ -1105,6 +1570,22 @@ public final class Options {
             + "Default is XCC-CONNECTION-RETRY-LIMIT")
     public static final String XCC_CONNECTION_HOST_RETRY_LIMIT = "XCC-CONNECTION-HOST-RETRY-LIMIT";
 
+    /**
+     * Time interval, in seconds, between health checks of hosts that have failed.
+     * A host that fails is taken out of rotation until it responds to a health check,
+     * instead of being retried with a task after XCC-CONNECTION-RETRY-INTERVAL.
+     * If all hosts have failed, XCC-CONNECTION-RETRY-INTERVAL still applies.
+     * Hosts removed after XCC-CONNECTION-HOST-RETRY-LIMIT errors are also checked,
+     * and are added back to the pool when they respond.
+     * Default is 0, which disables health checks.
+     * @since 2.4.6
+     */
+    @Usage(description = "Time interval, in seconds, between health checks of hosts that have failed. "
+            + "A failed host rejoins rotation as soon as it responds to a health check, and is not used by tasks "
+            + "until then unless all hosts have failed. Hosts removed after XCC-CONNECTION-HOST-RETRY-LIMIT errors "
+            + "are also checked, and are added back when they respond. Default is 0, which disables health checks.")
+    public static final String XCC_CONNECTION_HEALTH_CHECK_INTERVAL = "XCC-CONNECTION-HEALTH-CHECK-INTERVAL";
+
     /**
      * Connection string to MarkLogic XDBC Server.
      */
@@ -1123,6 +1604,30 @@ public final class Options {
     @Usage(description = "Required if XCC-CONNECTION-URI is not specified. Supports multiple hostnames separated by comma")
     public static final String XCC_HOSTNAME = "XCC-HOSTNAME";
 
+    /**
+     * Boolean value indicating whether to discover the hosts in the group of the
+     * host that CoRB connects to, and spread the load across all of them. The
+     * discovered hosts use the same port, credentials and database as the first
+     * connection. Only the hosts that respond are added, and they replace the
+     * configured hosts, such as a load balancer, once at least one of them has
+     * responded. Default is false.
+     * @since 2.4.6
+     */
+    @Usage(description = "Boolean value indicating whether to discover the hosts in the group of the host that CoRB connects to, "
+            + "and spread the load across all of them. Discovered hosts use the same port, credentials and database "
+            + "as the first connection. Hosts that respond replace the configured hosts. Default is false.")
+    public static final String XCC_HOST_DISCOVERY = "XCC-HOST-DISCOVERY";
+
+    /**
+     * Time interval, in seconds, between refreshes of the discovered hosts, so that
+     * hosts added to or removed from the group while the job runs are picked up.
+     * Use 0 to only discover the hosts at startup. Default is 300.
+     * @since 2.4.6
+     */
+    @Usage(description = "Time interval, in seconds, between refreshes of the hosts discovered with XCC-HOST-DISCOVERY. "
+            + "Use 0 to only discover the hosts at startup. Default is 300.")
+    public static final String XCC_HOST_DISCOVERY_INTERVAL = "XCC-HOST-DISCOVERY-INTERVAL";
+
     /**
      * Optional boolean flag to indicate whether to enable HTTP 1.1 compliance
      * in XCC. If this option is set, the "xcc.httpcompliant" System property
@@ -1199,6 +1704,28 @@ public final class Options {
             + "The XML-NODE option can be specified with an XPath to address a different set of nodes.")
     public static final String XML_FILE = "XML-FILE";
 
+    /**
+     * Boolean value indicating whether the {@link com.marklogic.developer.corb.FileUrisXMLLoader}
+     * should select the {@value #XML_NODE} nodes as the {@value #XML_FILE} is read with StAX, rather than
+     * parsing the whole file into a DOM. Only one selected node is held in memory at a time, which allows
+     * for files larger than the available heap. The total count is computed with a pre-scan of the file.
+     * <p>
+     * The {@value #XML_NODE} and {@value #XML_METADATA} XPaths are limited to the same subset of XPath
+     * supported by the {@link com.marklogic.developer.corb.FileUrisStreamingXMLLoader}: a simple path of
+     * element steps, with optional wildcards and descendant steps. Comments within the selected nodes are
+     * not preserved.
+     * <p>
+     * Default is {@code false}
+     *
+     * @see #XML_FILE
+     * @see #XML_NODE
+     * @since 2.4.6
+     */
+    @Usage(description = "Boolean value indicating whether the FileUrisXMLLoader should select the XML-NODE nodes "
+            + "as the XML-FILE is read with StAX, rather than parsing the whole file into a DOM. "
+            + "XML-NODE and XML-METADATA are limited to simple paths of element steps. Default is false")
+    public static final String XML_LAZY_LOAD = "XML-LAZY-LOAD";
+
     /**
      * An XPath to address the node that contains metadata portion of the XML. This must be different from 
      * the {@value #XML_NODE}. If the implementation supports, multiple comma separated paths can be specified.
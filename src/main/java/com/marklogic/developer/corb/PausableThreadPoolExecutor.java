@@ -18,6 +18,7 @@
  */
 package com.marklogic.developer.corb;
 
+import static com.marklogic.developer.corb.TransformOptions.DEFERRED_URI_TOKEN;
 import static com.marklogic.developer.corb.TransformOptions.FAILED_URI_TOKEN;
 
 import java.util.ArrayList;
@@ -45,6 +46,9 @@ public class PausableThreadPoolExecutor extends ThreadPoolExecutor {
     private final Object lock = new Object();
     private static final Logger LOG = Logger.getLogger(PausableThreadPoolExecutor.class.getName());
     private boolean isPaused;
+    private int admissionLimit = Integer.MAX_VALUE;
+    private int memoryLimit = Integer.MAX_VALUE;
+    private int admitted = 0;
     private final ReentrantLock pauseLock = new ReentrantLock();
     private final Condition unpaused = pauseLock.newCondition();
     protected TopUriList topUriList;
@@ -52,6 +56,9 @@ public class PausableThreadPoolExecutor extends ThreadPoolExecutor {
 
     private final ThreadLocal<Long> startTime = new ThreadLocal<>();
     private final ThreadLocal<String> threadName = new ThreadLocal<>();
+    private final ThreadLocal<JobScheduler.Job> acquiredJob = new ThreadLocal<>();
+    private volatile JobScheduler.Job scheduledJob;
+    private volatile ThroughputTimeSeries throughput;
     private int numFailedUrisToCapture = 0;
     private long numFailedUris = 0;
     private long numSucceededUris = 0;
@@ -90,24 +97,46 @@ public class PausableThreadPoolExecutor extends ThreadPoolExecutor {
         threadName.set(Thread.currentThread().getName());
         pauseLock.lock();
         try {
-            while (isPaused) {
+            while (isPaused || admitted >= admissionLimit || admitted >= memoryLimit) {
                 unpaused.await();
             }
         } catch (InterruptedException ie) {
             t.interrupt();
         } finally {
+            admitted++;
             pauseLock.unlock();
-            startTime.set(System.nanoTime());
         }
+        JobScheduler.Job job = scheduledJob;
+        if (job != null) {
+            try {
+                job.acquire();
+                acquiredJob.set(job);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        startTime.set(System.nanoTime());
     }
 
     @Override
     protected void afterExecute(Runnable r, Throwable t) {
         super.afterExecute(r, t);
+        JobScheduler.Job job = acquiredJob.get();
+        if (job != null) {
+            acquiredJob.remove();
+            job.release();
+        }
+        pauseLock.lock();
+        try {
+            admitted--;
+            unpaused.signalAll();
+        } finally {
+            pauseLock.unlock();
+        }
         try {
             String result = Thread.currentThread().getName();
             Thread.currentThread().setName(threadName.get());
-            if (result != null) {
+            if (result != null && !result.startsWith(DEFERRED_URI_TOKEN)) {
                 boolean failed = result.toUpperCase().startsWith(FAILED_URI_TOKEN);
                 if (failed) {
                     String[] tokens = result.split(FAILED_URI_TOKEN);
@@ -117,12 +146,18 @@ public class PausableThreadPoolExecutor extends ThreadPoolExecutor {
                         }
                         numFailedUris++;
                     }
+                    if (throughput != null) {
+                        throughput.recordFailed();
+                    }
                 } else {
                     synchronized (lock) {
                         numSucceededUris++;
                     }
                     long endTime = System.nanoTime();
                     long taskTime = endTime - startTime.get();
+                    if (throughput != null) {
+                        throughput.recordCompleted(taskTime);
+                    }
                     long durationInMs = TimeUnit.MILLISECONDS.convert(taskTime, TimeUnit.NANOSECONDS);
                     topUriList.add(result, durationInMs);
                 }
@@ -165,6 +200,72 @@ public class PausableThreadPoolExecutor extends ThreadPoolExecutor {
         }
     }
 
+    /**
+     * Limit the number of tasks that may execute at the same time, below the
+     * number of threads, without changing the size of the pool.
+     * @param limit maximum number of executing tasks, 0 to hold all tasks
+     * @since 2.4.6
+     */
+    public void setAdmissionLimit(int limit) {
+        pauseLock.lock();
+        try {
+            admissionLimit = Math.max(0, limit);
+            unpaused.signalAll();
+        } finally {
+            pauseLock.unlock();
+        }
+    }
+
+    /**
+     * @return the maximum number of tasks that may execute at the same time
+     * @since 2.4.6
+     */
+    public int getAdmissionLimit() {
+        return admissionLimit;
+    }
+
+    /**
+     * Limit the number of tasks that may execute at the same time while memory
+     * is short, independently of the admission limit for the server load.
+     * @param limit maximum number of executing tasks
+     * @since 2.4.6
+     */
+    public void setMemoryLimit(int limit) {
+        pauseLock.lock();
+        try {
+            memoryLimit = Math.max(1, limit);
+            unpaused.signalAll();
+        } finally {
+            pauseLock.unlock();
+        }
+    }
+
+    /**
+     * @return the maximum number of tasks that may execute at the same time while memory is short
+     * @since 2.4.6
+     */
+    public int getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * Share the execution of tasks with other jobs, by acquiring a slot from
+     * the JobScheduler before each task executes.
+     * @param job registered with the JobScheduler, or null to stop sharing
+     * @since 2.4.6
+     */
+    public void setScheduledJob(JobScheduler.Job job) {
+        scheduledJob = job;
+    }
+
+    /**
+     * @return the Job that tasks acquire slots with, or null
+     * @since 2.4.6
+     */
+    public JobScheduler.Job getScheduledJob() {
+        return scheduledJob;
+    }
+
     /**
      * @return the failedUris
      */
@@ -172,6 +273,22 @@ public class PausableThreadPoolExecutor extends ThreadPoolExecutor {
         return failedUris;
     }
 
+    /**
+     * @param throughput the time series that completed and failed tasks are counted in
+     * @since 2.4.6
+     */
+    public void setThroughputTimeSeries(ThroughputTimeSeries throughput) {
+        this.throughput = throughput;
+    }
+
+    /**
+     * @return the time series that completed and failed tasks are counted in, or null
+     * @since 2.4.6
+     */
+    public ThroughputTimeSeries getThroughputTimeSeries() {
+        return throughput;
+    }
+
     /**
      * @return the numFailedUris
      */
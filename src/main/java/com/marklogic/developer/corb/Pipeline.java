@@ -0,0 +1,230 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static com.marklogic.developer.corb.Options.JOB_NAME;
+import static com.marklogic.developer.corb.Options.OPTIONS_FILE;
+import static com.marklogic.developer.corb.Options.PIPELINE_CHANNEL_SIZE;
+import static com.marklogic.developer.corb.Options.PIPELINE_INPUT_CHANNEL;
+import static com.marklogic.developer.corb.Options.PIPELINE_OUTPUT_CHANNEL;
+import static com.marklogic.developer.corb.Options.PIPELINE_STAGES;
+import static com.marklogic.developer.corb.Options.PROCESS_TASK;
+import static com.marklogic.developer.corb.Options.URIS_FILE;
+import static com.marklogic.developer.corb.Options.URIS_LOADER;
+import static com.marklogic.developer.corb.Options.URIS_MODULE;
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.SEVERE;
+
+import com.marklogic.developer.corb.util.NumberUtils;
+import com.marklogic.developer.corb.util.StringUtils;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Runs the stages listed in {@value Options#PIPELINE_STAGES} at the same time,
+ * each as its own CoRB job. The results of each stage's process tasks are
+ * streamed through a bounded {@link PipelineChannel} to the next stage, which
+ * loads them as its URIs with {@link ChannelUrisLoader}.
+ * <p>
+ * The options of a stage are those prefixed by its name and a period, which
+ * override the options that are not prefixed by the name of any stage.
+ *
+ * @since 2.4.6
+ */
+public class Pipeline {
+
+    public static final int DEFAULT_CHANNEL_SIZE = 10000;
+
+    private static final Logger LOG = Logger.getLogger(Pipeline.class.getName());
+
+    private final Properties properties;
+    private final List<String> stages;
+    private final String pipelineId = UUID.randomUUID().toString();
+    private final List<Manager> managers = new ArrayList<>();
+    private final List<PipelineChannel> channels = new ArrayList<>();
+    private final List<Exception> errors = Collections.synchronizedList(new ArrayList<>());
+
+    public Pipeline(Properties properties) throws CorbException {
+        this.properties = properties;
+        stages = StringUtils.commaSeparatedValuesToList(properties.getProperty(PIPELINE_STAGES));
+        if (stages.size() < 2) {
+            throw new CorbException(PIPELINE_STAGES + " must list at least two stages");
+        }
+    }
+
+    public static void main(String... args) {
+        String optionsFile = args.length > 0 ? args[0] : System.getProperty(OPTIONS_FILE);
+        Pipeline pipeline = null;
+        try {
+            pipeline = new Pipeline(AbstractManager.loadPropertiesFile(optionsFile));
+        } catch (CorbException | IOException exc) {
+            LOG.log(SEVERE, "Error initializing pipeline " + exc.getMessage(), exc);
+            System.exit(Manager.EXIT_CODE_INIT_ERROR);
+        }
+        try {
+            pipeline.run();
+            LOG.log(INFO, () -> "success - exiting with code " + Manager.EXIT_CODE_SUCCESS);
+            System.exit(Manager.EXIT_CODE_SUCCESS);
+        } catch (CorbException exc) {
+            LOG.log(SEVERE, "Error while running pipeline", exc);
+            LOG.log(INFO, () -> "processing error - exiting with code " + Manager.EXIT_CODE_PROCESSING_ERROR);
+            System.exit(Manager.EXIT_CODE_PROCESSING_ERROR);
+        }
+    }
+
+    public List<String> getStages() {
+        return stages;
+    }
+
+    /**
+     * @return the Manager of each stage, once the pipeline is running
+     */
+    public List<Manager> getManagers() {
+        return managers;
+    }
+
+    /**
+     * Run all of the stages, and wait for them to complete.
+     *
+     * @throws CorbException if any of the stages failed
+     */
+    public void run() throws CorbException {
+        int channelSize = NumberUtils.toInt(properties.getProperty(PIPELINE_CHANNEL_SIZE), DEFAULT_CHANNEL_SIZE);
+        List<Thread> threads = new ArrayList<>(stages.size());
+        try {
+            for (int i = 0; i < stages.size() - 1; i++) {
+                channels.add(PipelineChannel.open(getChannelName(i), channelSize));
+            }
+            for (int i = 0; i < stages.size(); i++) {
+                int stage = i;
+                Manager manager = createManager();
+                managers.add(manager);
+                threads.add(new Thread(() -> runStage(stage, manager), "pipeline-" + stages.get(stage)));
+            }
+            LOG.log(INFO, () -> MessageFormat.format("starting pipeline {0} with stages {1}", pipelineId, stages));
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new CorbException("Interrupted while waiting for the pipeline to complete", ex);
+        } finally {
+            channels.forEach(PipelineChannel::close);
+        }
+        if (!errors.isEmpty()) {
+            throw new CorbException("Pipeline " + pipelineId + " failed", errors.get(0));
+        }
+        LOG.log(INFO, () -> MessageFormat.format("pipeline {0} completed", pipelineId));
+    }
+
+    protected Manager createManager() {
+        return new Manager();
+    }
+
+    protected void runStage(int stage, Manager manager) {
+        try {
+            manager.init(null, getStageProperties(stage));
+            manager.run();
+            if (manager.execError) {
+                throw new CorbException("Stage " + stages.get(stage) + " completed with errors");
+            }
+            if (stage < channels.size()) {
+                channels.get(stage).complete();
+            }
+        } catch (Exception ex) {
+            if (ex instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            LOG.log(SEVERE, MessageFormat.format("Stage {0} failed, stopping the pipeline", stages.get(stage)), ex);
+            errors.add(ex);
+            cancel();
+        } finally {
+            manager.close();
+        }
+    }
+
+    /**
+     * Stop all of the stages, releasing any that are waiting on a channel.
+     */
+    protected void cancel() {
+        channels.forEach(PipelineChannel::cancel);
+        for (Manager manager : managers) {
+            manager.stop();
+        }
+    }
+
+    protected String getChannelName(int stage) {
+        return pipelineId + '/' + stages.get(stage);
+    }
+
+    /**
+     * @param stage index of the stage
+     * @return the options shared by all stages, overridden by those prefixed with the name of the stage, and
+     * the options that connect the stage to its neighbors
+     */
+    protected Properties getStageProperties(int stage) {
+        Properties stageProperties = new Properties();
+        for (String key : properties.stringPropertyNames()) {
+            if (!isStageOption(key)) {
+                stageProperties.setProperty(key, properties.getProperty(key));
+            }
+        }
+        String prefix = stages.get(stage) + '.';
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                stageProperties.setProperty(key.substring(prefix.length()), properties.getProperty(key));
+            }
+        }
+        stageProperties.remove(PIPELINE_STAGES);
+        if (!stageProperties.containsKey(JOB_NAME)) {
+            stageProperties.setProperty(JOB_NAME, stages.get(stage));
+        }
+        if (stage > 0) {
+            //the URIs always come from the previous stage
+            stageProperties.remove(URIS_MODULE);
+            stageProperties.remove(URIS_FILE);
+            stageProperties.setProperty(URIS_LOADER, ChannelUrisLoader.class.getName());
+            stageProperties.setProperty(PIPELINE_INPUT_CHANNEL, getChannelName(stage - 1));
+        }
+        if (stage < stages.size() - 1) {
+            if (!stageProperties.containsKey(PROCESS_TASK)) {
+                stageProperties.setProperty(PROCESS_TASK, ExportToChannelTask.class.getName());
+            }
+            stageProperties.setProperty(PIPELINE_OUTPUT_CHANNEL, getChannelName(stage));
+        }
+        return stageProperties;
+    }
+
+    private boolean isStageOption(String key) {
+        for (String stage : stages) {
+            if (key.startsWith(stage + '.')) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
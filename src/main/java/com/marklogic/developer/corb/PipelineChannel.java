@@ -0,0 +1,179 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, in-process channel that hands items from the tasks of one stage
+ * of a {@link Pipeline} to the {@link ChannelUrisLoader} of the next stage.
+ * Channels are registered by name, so that tasks and loaders created from
+ * options can find them.
+ *
+ * @since 2.4.6
+ */
+public class PipelineChannel {
+
+    private static final Map<String, PipelineChannel> CHANNELS = new ConcurrentHashMap<>();
+    //compared by identity, so that it can not be confused with an item
+    private static final String END_OF_STREAM = new String("");
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private final String name;
+    private final BlockingQueue<String> queue;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final long createdMillis = System.currentTimeMillis();
+    private volatile boolean complete;
+    private volatile boolean cancelled;
+
+    protected PipelineChannel(String name, int capacity) {
+        this.name = name;
+        queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Create and register a channel.
+     *
+     * @param name
+     * @param capacity maximum number of items buffered
+     * @return the channel
+     * @throws IllegalStateException if a channel with the name is already registered
+     */
+    public static PipelineChannel open(String name, int capacity) {
+        PipelineChannel channel = new PipelineChannel(name, capacity);
+        if (CHANNELS.putIfAbsent(name, channel) != null) {
+            throw new IllegalStateException("Pipeline channel " + name + " is already open");
+        }
+        return channel;
+    }
+
+    /**
+     * @param name
+     * @return the registered channel, or null
+     */
+    public static PipelineChannel get(String name) {
+        return name == null ? null : CHANNELS.get(name);
+    }
+
+    /**
+     * Unregister the channel.
+     */
+    public void close() {
+        CHANNELS.remove(name, this);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Add an item, waiting while the channel is full.
+     *
+     * @param item
+     * @throws InterruptedException
+     * @throws IllegalStateException if the channel has been completed or cancelled
+     */
+    public void put(String item) throws InterruptedException {
+        if (complete) {
+            throw new IllegalStateException("Pipeline channel " + name + " is already complete");
+        }
+        offer(item);
+        sent.incrementAndGet();
+    }
+
+    /**
+     * Signal that no more items will be added. Items already in the channel
+     * are still delivered.
+     *
+     * @throws InterruptedException
+     */
+    public void complete() throws InterruptedException {
+        if (!complete) {
+            complete = true;
+            offer(END_OF_STREAM);
+        }
+    }
+
+    /**
+     * Discard the items in the channel, release any waiting producers, and end the stream.
+     */
+    public void cancel() {
+        cancelled = true;
+        complete = true;
+        do {
+            queue.clear();
+        } while (!queue.offer(END_OF_STREAM));
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void offer(String item) throws InterruptedException {
+        while (!queue.offer(item, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (cancelled) {
+                throw new IllegalStateException("Pipeline channel " + name + " has been cancelled");
+            }
+        }
+    }
+
+    /**
+     * Remove the next item, waiting until one is available.
+     *
+     * @return the next item, or null at the end of the stream
+     * @throws InterruptedException
+     */
+    public String take() throws InterruptedException {
+        String item = queue.take();
+        if (item == END_OF_STREAM) {
+            //leave the marker for any other consumer
+            queue.offer(END_OF_STREAM);
+            return null;
+        }
+        received.incrementAndGet();
+        return item;
+    }
+
+    /**
+     * @return number of items added to the channel
+     */
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    /**
+     * @return number of items removed from the channel
+     */
+    public long getReceivedCount() {
+        return received.get();
+    }
+
+    /**
+     * @return when the channel was opened, in epoch milliseconds
+     */
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+}
@@ -23,6 +23,7 @@ import static com.marklogic.developer.corb.Options.EXPORT_FILE_AS_ZIP;
 import static com.marklogic.developer.corb.Options.EXPORT_FILE_BOTTOM_CONTENT;
 import static com.marklogic.developer.corb.Options.EXPORT_FILE_HEADER_LINE_COUNT;
 import static com.marklogic.developer.corb.Options.EXPORT_FILE_PART_EXT;
+import static com.marklogic.developer.corb.Options.EXPORT_FILE_SHARD_MERGE;
 import static com.marklogic.developer.corb.Options.EXPORT_FILE_SORT;
 import static com.marklogic.developer.corb.Options.EXPORT_FILE_SORT_COMPARATOR;
 import com.marklogic.developer.corb.util.FileUtils;
@@ -36,6 +37,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.text.MessageFormat;
@@ -59,6 +62,35 @@ public class PostBatchUpdateFileTask extends ExportBatchToFileTask {
     protected static final Pattern DISTINCT_PATTERN = Pattern.compile("(?i).*(distinct|uniq).*");
     private static final Logger LOG = Logger.getLogger(PostBatchUpdateFileTask.class.getName());
 
+    /**
+     * Combine the shards written by the threads of the job, as configured by
+     * {@value com.marklogic.developer.corb.Options#EXPORT_FILE_SHARD_MERGE}.
+     * @throws IOException
+     * @since 2.4.6
+     */
+    protected void mergeShards() throws IOException {
+        if (!isSharded()) {
+            return;
+        }
+        File exportFile = getExportFile(getFileName());
+        try {
+            ExportFileShards.close(exportFile);
+            List<File> shards = ExportFileShards.listShards(exportFile);
+            if ("manifest".equalsIgnoreCase(getProperty(EXPORT_FILE_SHARD_MERGE))) {
+                ExportFileShards.writeManifest(shards, getExportFile(getFileName() + ExportFileShards.MANIFEST_EXT));
+            } else if (!shards.isEmpty()) {
+                ExportFileShards.concatenate(shards, getExportFile());
+                for (File shard : shards) {
+                    deleteFile(shard);
+                    deleteFile(ExportFileShards.getIndexFile(shard));
+                }
+                LOG.log(INFO, () -> MessageFormat.format("Merged {0} shards into {1}", shards.size(), getPartFileName()));
+            }
+        } finally {
+            ExportFileShards.release(exportFile);
+        }
+    }
+
     protected void sortAndRemoveDuplicates() {
         File origFile = getExportFile();
         sortAndRemoveDuplicates(origFile);
@@ -95,15 +127,19 @@ public class PostBatchUpdateFileTask extends ExportBatchToFileTask {
 
             boolean distinct = !isBlank(sort) && DISTINCT_PATTERN.matcher(sort).matches();
 
-            Charset charset = Charset.defaultCharset();
-            boolean useGzip = false;
+            if (isCompressed()) {
+                sortCompressedFile(origFile, sortedFile, comparator, distinct, headerLineCount);
+            } else {
+                Charset charset = Charset.defaultCharset();
+                boolean useGzip = false;
 
-            List<File> fragments = ExternalSort.sortInBatch(origFile, comparator, ExternalSort.DEFAULTMAXTEMPFILES, charset, tempFileStore, distinct, headerLineCount, useGzip);
-            LOG.log(INFO, () -> MessageFormat.format("Created {0} temp files for sort and dedup", fragments.size()));
+                List<File> fragments = ExternalSort.sortInBatch(origFile, comparator, ExternalSort.DEFAULTMAXTEMPFILES, charset, tempFileStore, distinct, headerLineCount, useGzip);
+                LOG.log(INFO, () -> MessageFormat.format("Created {0} temp files for sort and dedup", fragments.size()));
 
-            copyHeaderIntoFile(origFile, headerLineCount, sortedFile);
-            boolean append = true;
-            ExternalSort.mergeSortedFiles(fragments, sortedFile, comparator, charset, distinct, append, useGzip);
+                copyHeaderIntoFile(origFile, headerLineCount, sortedFile);
+                boolean append = true;
+                ExternalSort.mergeSortedFiles(fragments, sortedFile, comparator, charset, distinct, append, useGzip);
+            }
 
             FileUtils.moveFile(sortedFile, origFile);
         } catch (Exception exc) {
@@ -111,6 +147,36 @@ public class PostBatchUpdateFileTask extends ExportBatchToFileTask {
         }
     }
 
+    /**
+     * Sort a compressed export file without writing an uncompressed copy of it.
+     * The header lines are copied first, and the temporary runs of the sort are
+     * also compressed.
+     * @param origFile
+     * @param sortedFile
+     * @param comparator
+     * @param distinct
+     * @param headerLineCount
+     * @throws IOException
+     * @since 2.4.6
+     */
+    protected void sortCompressedFile(File origFile, File sortedFile, Comparator<String> comparator, boolean distinct, int headerLineCount) throws IOException {
+        Charset charset = Charset.defaultCharset();
+        boolean useGzip = true;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(decompress(new FileInputStream(origFile)), charset));
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(compress(new FileOutputStream(sortedFile)), charset))) {
+            String line;
+            for (int i = 0; i < headerLineCount && (line = reader.readLine()) != null; i++) {
+                writer.write(line);
+                writer.newLine();
+            }
+            List<File> fragments = ExternalSort.sortInBatch(reader, origFile.length(), comparator, ExternalSort.DEFAULTMAXTEMPFILES,
+                    ExternalSort.estimateAvailableMemory(), charset, origFile.getParentFile(), distinct, 0, useGzip, false);
+            LOG.log(INFO, () -> MessageFormat.format("Created {0} compressed temp files for sort and dedup", fragments.size()));
+
+            ExternalSort.mergeSortedFiles(fragments, writer, comparator, charset, distinct, useGzip);
+        }
+    }
+
     @SuppressWarnings("unchecked")
 	protected Class<? extends Comparator<String>> getComparatorCls(String className) throws ClassNotFoundException, InstantiationException, IllegalAccessException {
         Class<?> cls = Class.forName(className);
@@ -206,6 +272,8 @@ public class PostBatchUpdateFileTask extends ExportBatchToFileTask {
     @Override
     public String[] call() throws Exception {
         try {
+            closeCompressedStream(getExportFile());
+            mergeShards();
           	sortAndRemoveDuplicates();
             invokeModule();
             writeBottomContent();
@@ -41,6 +41,9 @@ public class PreBatchUpdateFileTask extends ExportBatchToFileTask {
 	private void deleteFileIfExists() throws IOException {
 		File batchFile = getExportFile();
         FileUtils.deleteFile(batchFile);
+		if (isSharded()) {
+			ExportFileShards.deleteShards(getExportFile(getFileName()));
+		}
 	}
 
 	protected void writeTopContent() throws IOException {
@@ -49,12 +52,30 @@ public class PreBatchUpdateFileTask extends ExportBatchToFileTask {
 	}
 
 	private void addLineCountToProps() throws IOException{
-		int ct = FileUtils.getLineCount(getExportFile());
+		int ct = isCompressed() ? getCompressedLineCount(getExportFile()) : FileUtils.getLineCount(getExportFile());
 		if (this.properties != null && ct > 0) {
 			this.properties.setProperty(EXPORT_FILE_HEADER_LINE_COUNT, String.valueOf(ct));
 		}
 	}
 
+	/**
+	 * @param file a compressed export file
+	 * @return the number of lines in the uncompressed content
+	 * @throws IOException
+	 * @since 2.4.6
+	 */
+	protected int getCompressedLineCount(File file) throws IOException {
+		if (!file.exists()) {
+			return 0;
+		}
+		try (LineNumberReader reader = new LineNumberReader(new InputStreamReader(decompress(new FileInputStream(file))))) {
+			while (reader.skip(Long.MAX_VALUE) > 0) {
+				// LineNumberReader counts the line terminators that are skipped
+			}
+			return reader.getLineNumber();
+		}
+	}
+
 	@Override
 	public String[] call() throws Exception {
 		try {
@@ -222,6 +222,9 @@ public class QueryUrisLoader extends AbstractUrisLoader {
                 uri = uri.replaceAll(replacements[j], replacements[j + 1]);
             }
 
+            if (memoryGovernor != null && memoryGovernor.isUnderPressure()) {
+                queue = spillQueue(queue);
+            }
             if (!queue.offer(uri)) { //put the uri into the queue
                 LOG.log(SEVERE, MessageFormat.format("Unable to add URI {0} to queue. Received uris {1} which is more than expected {2}", uriToLog, uriIndex + 1, totalCount));
             } else if (uriIndex >= totalCount) {
@@ -243,6 +246,27 @@ public class QueryUrisLoader extends AbstractUrisLoader {
         return queue;
     }
 
+    /**
+     * Keep the URIs received from now on on disk, because memory is short. An
+     * in-memory queue is replaced with a {@link DiskQueue}, holding its URIs.
+     *
+     * @param queue
+     * @return the queue to add URIs to
+     */
+    protected Queue<String> spillQueue(Queue<String> queue) {
+        if (queue instanceof DiskQueue) {
+            ((DiskQueue<?>) queue).spill();
+            return queue;
+        }
+        LOG.log(WARNING, () -> MessageFormat.format("Memory is short, moving {0,number} queued URIs to disk", queue.size()));
+        DiskQueue<String> diskQueue = new DiskQueue<>(options.getDiskQueueMaxInMemorySize(), options.getDiskQueueTempDir());
+        String uri;
+        while ((uri = queue.poll()) != null) {
+            diskQueue.offer(uri);
+        }
+        return diskQueue;
+    }
+
     /**
      * Factory method that will produce a new Queue.
      *
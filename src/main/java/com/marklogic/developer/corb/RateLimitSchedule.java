@@ -0,0 +1,199 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static java.util.logging.Level.INFO;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Sets the rate of a {@link RateLimiter} according to the time of day. Each
+ * line of a schedule has an optional range of days, a range of times and a
+ * rate, for example:
+ * <pre>
+ * # capped during business hours, full throttle overnight and at weekends
+ * MON-FRI 08:00-18:00 50
+ * 18:00-08:00 0
+ * </pre>
+ * The first line that matches the current time applies; outside of all of
+ * the ranges, the default rate applies. A time range that ends before it
+ * starts spans midnight. A rate that is set while the job runs, through the
+ * command file or the JobServer, is kept until the scheduled rate next changes;
+ * it does not change the default rate.
+ *
+ * @since 2.4.6
+ */
+public class RateLimitSchedule implements Runnable {
+
+    private final List<Entry> entries;
+    private final RateLimiter rateLimiter;
+    private final TransformOptions options;
+    private Double appliedRate;
+
+    private static final Logger LOG = Logger.getLogger(RateLimitSchedule.class.getName());
+
+    protected RateLimitSchedule(List<Entry> entries, RateLimiter rateLimiter, TransformOptions options) {
+        this.entries = entries;
+        this.rateLimiter = rateLimiter;
+        this.options = options;
+    }
+
+    /**
+     * @param file the schedule
+     * @param rateLimiter
+     * @param options the {@value Options#RATE_LIMIT} applies outside of the scheduled ranges
+     * @return the schedule
+     * @throws CorbException if the file can not be read or parsed
+     */
+    public static RateLimitSchedule load(File file, RateLimiter rateLimiter, TransformOptions options) throws CorbException {
+        try {
+            return new RateLimitSchedule(parse(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)), rateLimiter, options);
+        } catch (IOException ex) {
+            throw new CorbException("Unable to read " + Options.RATE_LIMIT_SCHEDULE + " " + file, ex);
+        }
+    }
+
+    /**
+     * @param lines of a schedule; blank lines and lines starting with # are ignored
+     * @return the entries of the schedule
+     * @throws CorbException if a line is not valid
+     */
+    protected static List<Entry> parse(List<String> lines) throws CorbException {
+        List<Entry> entries = new ArrayList<>();
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] tokens = trimmed.split("\\s+");
+            try {
+                if (tokens.length == 2) {
+                    entries.add(new Entry(EnumSet.allOf(DayOfWeek.class), tokens[0], tokens[1]));
+                } else if (tokens.length == 3) {
+                    entries.add(new Entry(parseDays(tokens[0]), tokens[1], tokens[2]));
+                } else {
+                    throw new IllegalArgumentException("expected [days] start-end rate");
+                }
+            } catch (IllegalArgumentException | DateTimeParseException ex) {
+                throw new CorbException("Invalid " + Options.RATE_LIMIT_SCHEDULE + " line: " + line, ex);
+            }
+        }
+        return entries;
+    }
+
+    private static Set<DayOfWeek> parseDays(String value) {
+        String[] range = value.split("-");
+        DayOfWeek first = parseDay(range[0]);
+        DayOfWeek last = range.length > 1 ? parseDay(range[1]) : first;
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        for (DayOfWeek day = first; ; day = day.plus(1)) {
+            days.add(day);
+            if (day == last) {
+                return days;
+            }
+        }
+    }
+
+    private static DayOfWeek parseDay(String value) {
+        String day = value.toUpperCase(Locale.ENGLISH);
+        for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+            if (dayOfWeek.name().startsWith(day) && day.length() >= 3) {
+                return dayOfWeek;
+            }
+        }
+        throw new IllegalArgumentException("unknown day " + value);
+    }
+
+    @Override
+    public void run() {
+        double rate = getRate(LocalDateTime.now(), options.getRateLimit());
+        //a rate set while the job runs is kept until the scheduled rate changes
+        if (appliedRate == null || appliedRate != rate) {
+            appliedRate = rate;
+            if (rate != rateLimiter.getRate()) {
+                LOG.log(INFO, "Scheduled rate limit is {0}", rate > 0 ? rate + " per second" : "unlimited");
+                rateLimiter.setRate(rate);
+            }
+        }
+    }
+
+    /**
+     * @param time
+     * @param defaultRate the rate outside of the scheduled ranges
+     * @return the rate of the first entry that matches the time
+     */
+    protected double getRate(LocalDateTime time, double defaultRate) {
+        for (Entry entry : entries) {
+            if (entry.matches(time)) {
+                return entry.rate;
+            }
+        }
+        return defaultRate;
+    }
+
+    protected static class Entry {
+
+        private final Set<DayOfWeek> days;
+        private final LocalTime start;
+        private final LocalTime end;
+        private final double rate;
+
+        Entry(Set<DayOfWeek> days, String times, String rate) {
+            String[] range = times.split("-");
+            if (range.length != 2) {
+                throw new IllegalArgumentException("expected a time range, such as 08:00-18:00");
+            }
+            this.days = days;
+            start = LocalTime.parse(range[0]);
+            end = LocalTime.parse(range[1]);
+            this.rate = Double.parseDouble(rate);
+            if (this.rate < 0) {
+                throw new IllegalArgumentException("rate must not be negative");
+            }
+        }
+
+        /**
+         * @param dateTime
+         * @return whether the time is in the range; for a range that spans
+         * midnight, the day is the day that the range starts on
+         */
+        boolean matches(LocalDateTime dateTime) {
+            LocalTime time = dateTime.toLocalTime();
+            if (start.isBefore(end)) {
+                return days.contains(dateTime.getDayOfWeek()) && !time.isBefore(start) && time.isBefore(end);
+            } else if (!time.isBefore(start)) {
+                return days.contains(dateTime.getDayOfWeek());
+            }
+            return time.isBefore(end) && days.contains(dateTime.getDayOfWeek().minus(1));
+        }
+    }
+}
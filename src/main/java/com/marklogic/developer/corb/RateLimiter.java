@@ -0,0 +1,124 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate at which tasks are submitted with token buckets, that hold
+ * up to one second of permits and are refilled continuously at the rate.
+ * Optionally, each host has a bucket of its own, so that the rate applies to
+ * the tasks sent to each host; tasks that are not sent to a particular host
+ * share one bucket. The rate can be changed at any time, and a rate of 0
+ * removes the limit.
+ *
+ * @since 2.4.6
+ */
+public class RateLimiter {
+
+    private final boolean perHost;
+    private final TokenBucket bucket = new TokenBucket();
+    private final Map<String, TokenBucket> hostBuckets = new ConcurrentHashMap<>();
+    private volatile double rate;
+
+    /**
+     * @param rate permits per second, 0 for no limit
+     * @param perHost whether each host has a bucket of its own
+     */
+    public RateLimiter(double rate, boolean perHost) {
+        this.rate = Math.max(0, rate);
+        this.perHost = perHost;
+    }
+
+    /**
+     * Wait until the permits are available.
+     *
+     * @param host the host that the task is sent to, or null
+     * @param permits the number of tasks or URIs
+     * @throws InterruptedException
+     */
+    public void acquire(String host, int permits) throws InterruptedException {
+        if (rate <= 0) {
+            return;
+        }
+        TokenBucket hostBucket = bucket;
+        if (perHost && host != null) {
+            hostBucket = hostBuckets.computeIfAbsent(host, key -> new TokenBucket());
+        }
+        hostBucket.acquire(permits);
+    }
+
+    /**
+     * @param rate permits per second, 0 for no limit
+     */
+    public void setRate(double rate) {
+        this.rate = Math.max(0, rate);
+        bucket.wake();
+        for (TokenBucket hostBucket : hostBuckets.values()) {
+            hostBucket.wake();
+        }
+    }
+
+    /**
+     * @return permits per second, 0 if there is no limit
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    public boolean isPerHost() {
+        return perHost;
+    }
+
+    private class TokenBucket {
+
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+
+        synchronized void acquire(int permits) throws InterruptedException {
+            while (true) {
+                double currentRate = rate;
+                long now = System.nanoTime();
+                if (currentRate <= 0) {
+                    tokens = 0;
+                    lastRefillNanos = now;
+                    return;
+                }
+                //hold at most one second of permits, so that idle time is not saved up
+                double capacity = Math.max(1, currentRate);
+                tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * currentRate / TimeUnit.SECONDS.toNanos(1));
+                lastRefillNanos = now;
+                //requests larger than the bucket are let through once it is full, and paid for after
+                double needed = Math.min(permits, capacity);
+                if (tokens >= needed) {
+                    tokens -= permits;
+                    return;
+                }
+                long waitMillis = (long) Math.ceil((needed - tokens) * 1000 / currentRate);
+                wait(Math.max(1, waitMillis));
+            }
+        }
+
+        synchronized void wake() {
+            notifyAll();
+        }
+    }
+}
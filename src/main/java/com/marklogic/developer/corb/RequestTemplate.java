@@ -0,0 +1,245 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static com.marklogic.developer.corb.AbstractTask.DEFAULT_QUERY_RETRY_INTERVAL;
+import static com.marklogic.developer.corb.AbstractTask.DEFAULT_QUERY_RETRY_LIMIT;
+import static com.marklogic.developer.corb.AbstractTask.REQUEST_VARIABLE_DOC;
+import static com.marklogic.developer.corb.Manager.DEFAULT_BATCH_URI_DELIM;
+import static com.marklogic.developer.corb.Manager.URIS_BATCH_REF;
+import static com.marklogic.developer.corb.Options.BATCH_SIZE;
+import static com.marklogic.developer.corb.Options.BATCH_URI_DELIM;
+import static com.marklogic.developer.corb.Options.LOADER_VARIABLE;
+import static com.marklogic.developer.corb.Options.QUERY_RETRY_ERROR_CODES;
+import static com.marklogic.developer.corb.Options.QUERY_RETRY_ERROR_MESSAGE;
+import static com.marklogic.developer.corb.Options.QUERY_RETRY_INTERVAL;
+import static com.marklogic.developer.corb.Options.QUERY_RETRY_LIMIT;
+import static com.marklogic.developer.corb.Options.URIS_REDACTED;
+import static com.marklogic.developer.corb.util.StringUtils.commaSeparatedValuesToList;
+import static com.marklogic.developer.corb.util.StringUtils.isEmpty;
+import static com.marklogic.developer.corb.util.StringUtils.isNotEmpty;
+import static com.marklogic.developer.corb.util.StringUtils.stringToBoolean;
+import static com.marklogic.developer.corb.util.StringUtils.trim;
+import com.marklogic.xcc.Request;
+import com.marklogic.xcc.RequestOptions;
+import com.marklogic.xcc.Session;
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TimeZone;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The parts of a module request that are the same for every task of a job:
+ * the module to invoke or adhoc query to evaluate, the query language and
+ * time zone, the external variables that are set from the job properties, and
+ * the settings for how the URIs are bound and how failed requests are retried.
+ * <p>
+ * These are resolved once from the job and {@link System} properties, so that
+ * each task only needs to bind its URIs when generating a request.
+ *
+ * @since 2.4.6
+ */
+public class RequestTemplate {
+
+    private static final Logger LOG = Logger.getLogger(RequestTemplate.class.getName());
+
+    private final String moduleType;
+    private final String moduleUri;
+    private final String adhocQuery;
+    private final String language;
+    private final TimeZone timeZone;
+    private final Map<String, String> variables;
+    private final boolean docRequestVariable;
+    private final int batchSize;
+    private final String batchUriDelimiter;
+    private final int queryRetryLimit;
+    private final int queryRetryInterval;
+    private final List<String> queryRetryErrorCodes;
+    private final List<String> queryRetryErrorMessages;
+    private final boolean urisRedacted;
+
+    /**
+     * @param moduleType the type of module, which is the prefix of the custom input properties
+     * @param moduleUri the path of an installed module, or null to evaluate the {@code adhocQuery}
+     * @param adhocQuery
+     * @param language
+     * @param timeZone
+     * @param properties the job properties
+     */
+    public RequestTemplate(String moduleType, String moduleUri, String adhocQuery, String language, TimeZone timeZone, Properties properties) {
+        this.moduleType = moduleType;
+        this.moduleUri = moduleUri;
+        this.adhocQuery = adhocQuery;
+        this.language = language;
+        this.timeZone = timeZone;
+
+        Properties props = properties != null ? properties : new Properties();
+        Map<String, String> requestVariables = new LinkedHashMap<>();
+        if (props.containsKey(URIS_BATCH_REF)) {
+            requestVariables.put(URIS_BATCH_REF, props.getProperty(URIS_BATCH_REF));
+        }
+        if (moduleType != null) {
+            String prefix = moduleType + '.';
+            addCustomInputs(requestVariables, prefix, props, props);
+            addCustomInputs(requestVariables, prefix, System.getProperties(), props);
+        }
+        variables = Collections.unmodifiableMap(requestVariables);
+
+        docRequestVariable = REQUEST_VARIABLE_DOC.equalsIgnoreCase(props.getProperty(LOADER_VARIABLE));
+        batchSize = getIntProperty(BATCH_SIZE, props);
+        String delim = getProperty(BATCH_URI_DELIM, props);
+        batchUriDelimiter = isEmpty(delim) ? DEFAULT_BATCH_URI_DELIM : delim;
+
+        int retryLimit = getIntProperty(QUERY_RETRY_LIMIT, props);
+        queryRetryLimit = retryLimit < 0 ? DEFAULT_QUERY_RETRY_LIMIT : retryLimit;
+        int retryInterval = getIntProperty(QUERY_RETRY_INTERVAL, props);
+        queryRetryInterval = retryInterval < 0 ? DEFAULT_QUERY_RETRY_INTERVAL : retryInterval;
+        queryRetryErrorCodes = Collections.unmodifiableList(commaSeparatedValuesToList(getProperty(QUERY_RETRY_ERROR_CODES, props)));
+        queryRetryErrorMessages = Collections.unmodifiableList(commaSeparatedValuesToList(getProperty(QUERY_RETRY_ERROR_MESSAGE, props)));
+        urisRedacted = stringToBoolean(getProperty(URIS_REDACTED, props));
+    }
+
+    private static void addCustomInputs(Map<String, String> requestVariables, String prefix, Properties source, Properties properties) {
+        for (String propName : source.stringPropertyNames()) {
+            if (propName.startsWith(prefix)) {
+                String value = getProperty(propName, properties);
+                if (value != null) {
+                    requestVariables.put(propName.substring(prefix.length()), value);
+                }
+            }
+        }
+    }
+
+    private static String getProperty(String key, Properties properties) {
+        String val = System.getProperty(key);
+        if (val == null) {
+            val = properties.getProperty(key);
+        }
+        return trim(val);
+    }
+
+    private static int getIntProperty(String key, Properties properties) {
+        int intVal = -1;
+        String value = getProperty(key, properties);
+        if (isNotEmpty(value)) {
+            try {
+                intVal = Integer.parseInt(value);
+            } catch (Exception exc) {
+                LOG.log(Level.WARNING, MessageFormat.format("Unable to parse `{0}` value `{1}` as an int", key, value), exc);
+            }
+        }
+        return intVal;
+    }
+
+    /**
+     * Create a new request for the module, with the options and the external
+     * variables of this template. The URIs are left for the caller to bind.
+     *
+     * @param session
+     * @return a new request
+     */
+    public Request newRequest(Session session) {
+        Request request;
+        //determine whether this is an eval or execution of installed module
+        if (moduleUri == null) {
+            request = session.newAdhocQuery(adhocQuery);
+        } else {
+            request = session.newModuleInvoke(moduleUri);
+        }
+
+        RequestOptions requestOptions = request.getOptions();
+        if (language != null) {
+            requestOptions.setQueryLanguage(language);
+        }
+        if (timeZone != null) {
+            requestOptions.setTimeZone(timeZone);
+        }
+        for (Map.Entry<String, String> variable : variables.entrySet()) {
+            request.setNewStringVariable(variable.getKey(), variable.getValue());
+        }
+        return request;
+    }
+
+    public String getModuleType() {
+        return moduleType;
+    }
+
+    public String getModuleUri() {
+        return moduleUri;
+    }
+
+    public String getAdhocQuery() {
+        return adhocQuery;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    /**
+     * @return the names and values of the external variables set on every request, other than the URIs
+     */
+    public Map<String, String> getVariables() {
+        return variables;
+    }
+
+    public boolean isDocRequestVariable() {
+        return docRequestVariable;
+    }
+
+    /**
+     * @return the {@value Options#BATCH_SIZE}, or {@code -1} if not set
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public String getBatchUriDelimiter() {
+        return batchUriDelimiter;
+    }
+
+    public int getQueryRetryLimit() {
+        return queryRetryLimit;
+    }
+
+    public int getQueryRetryInterval() {
+        return queryRetryInterval;
+    }
+
+    public List<String> getQueryRetryErrorCodes() {
+        return queryRetryErrorCodes;
+    }
+
+    public List<String> getQueryRetryErrorMessages() {
+        return queryRetryErrorMessages;
+    }
+
+    public boolean isUrisRedacted() {
+        return urisRedacted;
+    }
+}
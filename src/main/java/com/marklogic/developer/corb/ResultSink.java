@@ -0,0 +1,51 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Receives the results of the {@value Options#PROCESS_MODULE} from
+ * {@link ExportToSinkTask}. Results are handed to the sink by an
+ * {@link AsyncResultSink} on a single thread of its own, so implementations
+ * need not be thread safe, and may do slow I/O without holding back the
+ * threads that execute tasks.
+ *
+ * @since 2.4.6
+ */
+public interface ResultSink extends Closeable {
+
+    void setProperties(Properties properties);
+
+    /**
+     * Prepare the sink, before any results are written.
+     *
+     * @throws IOException
+     */
+    void open() throws IOException;
+
+    /**
+     * @param uris the URIs of the task that returned the result
+     * @param result a value returned by the process module
+     * @throws IOException
+     */
+    void write(String[] uris, byte[] result) throws IOException;
+}
@@ -0,0 +1,176 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Schedules the retry of a failed process task after a delay, and then
+ * submits it back to the {@link CompletionTracker} of the job, so that the
+ * worker thread is free to process other tasks while waiting.
+ * <p>
+ * The delay doubles with every attempt, starting from the
+ * {@value Options#QUERY_RETRY_INTERVAL} of the task and limited to
+ * {@value Options#QUERY_RETRY_INTERVAL_MAX}, plus a random jitter of up to half
+ * of that delay, so that tasks that failed together are not retried together.
+ * The number of retries for the whole job is limited by a budget of
+ * {@value Options#QUERY_RETRY_BUDGET} percent of the tasks that have been
+ * submitted, so that a failover does not turn into a storm of retries.
+ *
+ * @since 2.4.6
+ */
+public class RetryScheduler {
+
+    private static final Logger LOG = Logger.getLogger(RetryScheduler.class.getName());
+
+    private final CompletionTracker completionTracker;
+    private final LongSupplier requestCount;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final long maxIntervalMillis;
+    private final int budgetPercent;
+    private final int minimumBudget;
+
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong rejectedRetries = new AtomicLong();
+    private final AtomicLong totalDelayMillis = new AtomicLong();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * @param completionTracker the tracker to submit the retried tasks to
+     * @param requestCount the number of tasks submitted so far, used to calculate the retry budget
+     * @param maxIntervalMillis the longest delay before a retry, not including the jitter
+     * @param budgetPercent the percentage of the tasks submitted that may be retried
+     * @param minimumBudget the number of retries allowed regardless of how many tasks have been submitted
+     */
+    public RetryScheduler(CompletionTracker completionTracker, LongSupplier requestCount, long maxIntervalMillis, int budgetPercent, int minimumBudget) {
+        this.completionTracker = completionTracker;
+        this.requestCount = requestCount;
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.budgetPercent = budgetPercent;
+        this.minimumBudget = minimumBudget;
+        scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "retry-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Schedule the task to be submitted again after the backoff delay for the
+     * attempt, if the retry budget for the job has not been exhausted.
+     *
+     * @param task
+     * @param attempt the number of the retry attempt, starting at 1
+     * @param intervalMillis the delay before the first retry attempt
+     * @return the delay in milliseconds before the task will be submitted, or
+     * {@code -1} if the retry was not scheduled
+     */
+    public long schedule(Callable<String[]> task, int attempt, long intervalMillis) {
+        if (scheduler.isShutdown() || !acquireBudget()) {
+            rejectedRetries.incrementAndGet();
+            return -1;
+        }
+        long delay = nextDelay(attempt, intervalMillis);
+        totalDelayMillis.addAndGet(delay);
+        pending.incrementAndGet();
+        scheduler.schedule(() -> {
+            try {
+                completionTracker.submit(task);
+            } catch (RuntimeException ex) {
+                LOG.log(Level.SEVERE, "Unable to submit the retry of a task", ex);
+            } finally {
+                //the retry may have completed already, while it was still counted as pending
+                if (pending.decrementAndGet() == 0 && completionTracker != null) {
+                    completionTracker.signal();
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+        return delay;
+    }
+
+    private synchronized boolean acquireBudget() {
+        long requests = Math.max(0, requestCount.getAsLong() - retries.get());
+        long budget = Math.max(minimumBudget, requests * budgetPercent / 100);
+        if (retries.get() < budget) {
+            retries.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param attempt the number of the retry attempt, starting at 1
+     * @param intervalMillis the delay before the first retry attempt
+     * @return the exponential backoff for the attempt, plus a random jitter of up to half of the backoff
+     */
+    protected long nextDelay(int attempt, long intervalMillis) {
+        long backoff = Math.max(0, intervalMillis);
+        for (int i = 1; i < attempt && backoff < maxIntervalMillis; i++) {
+            backoff *= 2;
+        }
+        backoff = Math.min(backoff, Math.max(intervalMillis, maxIntervalMillis));
+        long jitter = backoff > 1 ? ThreadLocalRandom.current().nextLong(backoff / 2 + 1) : 0;
+        return backoff + jitter;
+    }
+
+    /**
+     * @return the number of retries that have been scheduled
+     */
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    /**
+     * @return the number of retries that were not scheduled because the retry budget was exhausted
+     */
+    public long getRejectedRetryCount() {
+        return rejectedRetries.get();
+    }
+
+    /**
+     * @return the sum of the delays of all of the retries that have been scheduled
+     */
+    public long getTotalDelayMillis() {
+        return totalDelayMillis.get();
+    }
+
+    /**
+     * @return the number of retries that are waiting to be submitted
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Stop scheduling retries, and discard any retries that are waiting to be
+     * submitted.
+     */
+    public void shutdownNow() {
+        pending.addAndGet(-scheduler.shutdownNow().size());
+    }
+}
@@ -0,0 +1,94 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static com.marklogic.developer.corb.Options.RESULT_SINK_ROLL_SIZE;
+
+import com.marklogic.developer.corb.util.NumberUtils;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes results to a series of files, starting a new one once the current
+ * file has reached {@value Options#RESULT_SINK_ROLL_SIZE} bytes. The files are
+ * named after the {@value Options#EXPORT_FILE_NAME}, with a sequence number
+ * inserted before the extension, e.g. {@code report-1.csv}, {@code report-2.csv}.
+ *
+ * @since 2.4.6
+ */
+public class RollingFileResultSink extends FileResultSink {
+
+    public static final long DEFAULT_ROLL_SIZE = 100L * 1024 * 1024;
+
+    private long rollSize;
+    private long size;
+    private int sequence;
+    private final List<File> files = new ArrayList<>();
+
+    @Override
+    public void open() throws IOException {
+        rollSize = NumberUtils.toLong(getProperty(RESULT_SINK_ROLL_SIZE), DEFAULT_ROLL_SIZE);
+        if (rollSize <= 0) {
+            rollSize = DEFAULT_ROLL_SIZE;
+        }
+        roll();
+    }
+
+    protected void roll() throws IOException {
+        close();
+        sequence++;
+        file = getExportFile(getSequenceFileName(getFileName(), sequence));
+        files.add(file);
+        writer = new BufferedOutputStream(new FileOutputStream(file));
+        size = 0;
+    }
+
+    /**
+     * @param fileName
+     * @param sequence
+     * @return the file name, with the sequence number before the extension
+     */
+    protected static String getSequenceFileName(String fileName, int sequence) {
+        int index = fileName.lastIndexOf('.');
+        if (index > 0) {
+            return fileName.substring(0, index) + '-' + sequence + fileName.substring(index);
+        }
+        return fileName + '-' + sequence;
+    }
+
+    @Override
+    public void write(String[] uris, byte[] result) throws IOException {
+        if (size > 0 && size + result.length + NEWLINE.length > rollSize) {
+            roll();
+        }
+        super.write(uris, result);
+        size += result.length + NEWLINE.length;
+    }
+
+    /**
+     * @return the files that have been written, in order
+     */
+    public List<File> getFiles() {
+        return files;
+    }
+}
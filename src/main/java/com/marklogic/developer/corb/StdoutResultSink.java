@@ -0,0 +1,53 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes each result, followed by a newline, to standard out.
+ *
+ * @since 2.4.6
+ */
+public class StdoutResultSink extends AbstractResultSink {
+
+    private OutputStream writer;
+
+    @Override
+    public void open() throws IOException {
+        writer = new BufferedOutputStream(System.out);
+    }
+
+    @Override
+    public void write(String[] uris, byte[] result) throws IOException {
+        writer.write(result);
+        writer.write(NEWLINE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        //flush, but leave standard out open
+        if (writer != null) {
+            writer.flush();
+            writer = null;
+        }
+    }
+}
@@ -44,8 +44,7 @@ import java.util.TimeZone;
 public class TaskFactory {
 
     protected Manager manager;
-    private final Map<String, String> moduleToAdhocQueryMap = new HashMap<>();
-    private final Map<String, String> moduleToPathMap = new HashMap<>();
+    private final Map<String, RequestTemplate> moduleToRequestTemplateMap = new HashMap<>();
     private static final String EXCEPTION_MSG_UNABLE_READ_ADHOC = "Unable to read adhoc query ";
     private static final String EXCEPTION_MSG_NULL_CONTENT = "null content source";
     /**
@@ -60,6 +59,17 @@ public class TaskFactory {
     }
 
     public Task newProcessTask(String[] uris, boolean failOnError) {
+        return newProcessTask(uris, failOnError, null);
+    }
+
+    /**
+     * @param uris
+     * @param failOnError
+     * @param host the host where the documents of the URIs live, or null
+     * @return a process task that sends its request to the host, if it is available
+     * @since 2.4.6
+     */
+    public Task newProcessTask(String[] uris, boolean failOnError, String host) {
         TransformOptions options = manager.getOptions();
         if (null == options.getProcessTaskClass() && null == options.getProcessModule()) {
             throw new NullPointerException("null process task and xquery module");
@@ -71,6 +81,13 @@ public class TaskFactory {
         try {
             Task task = options.getProcessTaskClass() == null ? new Transform() : options.getProcessTaskClass().newInstance();
             setupTask(task, PROCESS_MODULE, options.getProcessModule(), uris, failOnError);
+            if (task instanceof AbstractTask) {
+                ((AbstractTask) task).setRetryScheduler(manager.getRetryScheduler());
+                ((AbstractTask) task).setHost(host);
+            }
+            if (task instanceof ExportToSinkTask) {
+                ((ExportToSinkTask) task).setResultSink(manager.getResultSink());
+            }
             return task;
         } catch (Exception exc) {
             throw new IllegalArgumentException(exc.getMessage(), exc);
@@ -133,43 +150,21 @@ public class TaskFactory {
     }
 
     private void setupTask(Task task, String moduleType, String module, String[] uris, boolean failOnError) {
+        Properties managerProperties = manager.getProperties();
+        RequestTemplate requestTemplate = null;
         if (module != null) {
-            if (isInlineOrAdhoc(module)) {
-                String adhocQuery;
-                if (isInlineModule(module)) {
-                    adhocQuery = getInlineModuleCode(module);
-                    if (isEmpty(adhocQuery)) {
-                        throw new IllegalStateException(EXCEPTION_MSG_UNABLE_READ_ADHOC + module);
-                    }
-                } else {
-                    adhocQuery = moduleToAdhocQueryMap.get(module);
-                    if (adhocQuery == null) {
-                        String modulePath = module.substring(0, module.indexOf('|'));
-                        adhocQuery = getAdhocQuery(modulePath);
-                        if (isEmpty(adhocQuery)) {
-                            throw new IllegalStateException(EXCEPTION_MSG_UNABLE_READ_ADHOC + module + " from classpath or filesystem");
-                        }
-                        moduleToAdhocQueryMap.put(module, adhocQuery);
-                    }
-                }
-                task.setAdhocQuery(adhocQuery);
+            requestTemplate = getRequestTemplate(moduleType, module, managerProperties);
+            if (requestTemplate.getModuleUri() == null) {
+                task.setAdhocQuery(requestTemplate.getAdhocQuery());
             } else {
-                String modulePath = moduleToPathMap.get(module);
-                if (modulePath == null) {
-                    String root = manager.getOptions().getModuleRoot();
-                    modulePath = buildModulePath(root, module);
-                    moduleToPathMap.put(module, modulePath);
-                }
-                task.setModuleURI(modulePath);
+                task.setModuleURI(requestTemplate.getModuleUri());
             }
-            if (isJavaScriptModule(module)) {
-                task.setQueryLanguage("javascript");
+            if (requestTemplate.getLanguage() != null) {
+                task.setQueryLanguage(requestTemplate.getLanguage());
             }
         }
         task.setModuleType(moduleType);
         task.setContentSourcePool(manager.getContentSourcePool());
-
-        Properties managerProperties = manager.getProperties();
         task.setProperties(managerProperties);
 
         String timeZoneId = managerProperties.getProperty(XCC_TIME_ZONE);
@@ -180,6 +175,9 @@ public class TaskFactory {
         task.setInputURI(uris);
         task.setFailOnError(failOnError);
         task.setExportDir(manager.getOptions().getExportFileDir());
+        if (requestTemplate != null && task instanceof AbstractTask) {
+            ((AbstractTask) task).setRequestTemplate(requestTemplate);
+        }
 
         if (task instanceof ExportBatchToFileTask) {
             String fileName = ((ExportToFileTask) task).getFileName();
@@ -188,4 +186,48 @@ public class TaskFactory {
             }
         }
     }
+
+    /**
+     * Obtain the request template for a module, which is resolved from the
+     * properties the first time that a task is created for the module type.
+     *
+     * @param moduleType
+     * @param module
+     * @param properties
+     * @return the request template
+     */
+    protected RequestTemplate getRequestTemplate(String moduleType, String module, Properties properties) {
+        String key = moduleType + '|' + module;
+        RequestTemplate requestTemplate = moduleToRequestTemplateMap.get(key);
+        if (requestTemplate == null) {
+            String moduleUri = null;
+            String adhocQuery = null;
+            String installedModuleUri = manager.getInstalledModuleUri(module);
+            if (installedModuleUri != null) {
+                moduleUri = installedModuleUri;
+            } else if (isInlineOrAdhoc(module)) {
+                if (isInlineModule(module)) {
+                    adhocQuery = getInlineModuleCode(module);
+                    if (isEmpty(adhocQuery)) {
+                        throw new IllegalStateException(EXCEPTION_MSG_UNABLE_READ_ADHOC + module);
+                    }
+                } else {
+                    String modulePath = module.substring(0, module.indexOf('|'));
+                    adhocQuery = getAdhocQuery(modulePath);
+                    if (isEmpty(adhocQuery)) {
+                        throw new IllegalStateException(EXCEPTION_MSG_UNABLE_READ_ADHOC + module + " from classpath or filesystem");
+                    }
+                }
+            } else {
+                String root = manager.getOptions().getModuleRoot();
+                moduleUri = buildModulePath(root, module);
+            }
+            String language = isJavaScriptModule(module) ? "javascript" : null;
+            String timeZoneId = properties.getProperty(XCC_TIME_ZONE);
+            TimeZone timeZone = timeZoneId != null ? TimeZone.getTimeZone(timeZoneId) : null;
+            requestTemplate = new RequestTemplate(moduleType, moduleUri, adhocQuery, language, timeZone, properties);
+            moduleToRequestTemplateMap.put(key, requestTemplate);
+        }
+        return requestTemplate;
+    }
 }
@@ -0,0 +1,397 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Per-second samples of the number of tasks that completed and failed, and of
+ * their average latency, kept in a fixed size ring buffer. The worker threads
+ * update the counters without contending with each other, and {@link #run()}
+ * takes a sample once per second and pushes it as a server-sent event to the
+ * clients that have subscribed, so that each new sample is serialized once no
+ * matter how many clients are watching.
+ * <p>
+ * Each subscriber has its own queue of events, which is written to the client
+ * by a writer thread. A slow client never holds up the thread that takes the
+ * samples, or the other clients, and a client that falls more than two buffers
+ * behind is disconnected (it can reconnect with the {@code Last-Event-ID}).
+ * </p>
+ *
+ * @since 2.4.6
+ */
+public class ThroughputTimeSeries implements Runnable, Closeable {
+
+    private static final Logger LOG = Logger.getLogger(ThroughputTimeSeries.class.getName());
+    public static final int DEFAULT_CAPACITY = 600;
+    public static final String MIME_EVENT_STREAM = "text/event-stream";
+    public static final String HEADER_LAST_EVENT_ID = "Last-Event-ID";
+    protected static final byte[] END_EVENT = "event: end\ndata: {}\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final Sample[] samples;
+    private volatile long sequence = 0;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final Executor writer;
+    private final ExecutorService ownWriter;
+    private boolean closed;
+
+    public ThroughputTimeSeries() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of per-second samples that are kept
+     */
+    public ThroughputTimeSeries(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * @param capacity the number of per-second samples that are kept
+     * @param writer writes the events to the subscribers, or null to use a pool of daemon threads that is shut down on close
+     */
+    public ThroughputTimeSeries(int capacity, Executor writer) {
+        samples = new Sample[Math.max(1, capacity)];
+        if (writer == null) {
+            ownWriter = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "throughput-subscriber");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.writer = ownWriter;
+        } else {
+            ownWriter = null;
+            this.writer = writer;
+        }
+    }
+
+    /**
+     * Count a task that completed.
+     *
+     * @param nanos how long the task took
+     */
+    public void recordCompleted(long nanos) {
+        completed.increment();
+        latencyNanos.add(nanos);
+        latencies.record(nanos);
+    }
+
+    /**
+     * Count a task that failed.
+     */
+    public void recordFailed() {
+        failed.increment();
+    }
+
+    /**
+     * Take a sample of the tasks that completed since the previous sample, and
+     * send it to the subscribers.
+     */
+    @Override
+    public void run() {
+        synchronized (this) {
+            takeSample();
+        }
+        writeToSubscribers();
+    }
+
+    //must hold the lock, so that a new subscriber gets each sample exactly once
+    private void takeSample() {
+        long count = completed.sumThenReset();
+        long latency = latencyNanos.sumThenReset();
+        double averageLatency = count > 0 ? latency / (double) count / TimeUnit.MILLISECONDS.toNanos(1) : 0;
+        Sample sample = new Sample(sequence, System.currentTimeMillis(), count, failed.sumThenReset(), averageLatency);
+        samples[(int) (sample.getSequence() % samples.length)] = sample;
+        sequence = sample.getSequence() + 1;
+        if (!subscribers.isEmpty()) {
+            byte[] event = sample.toEvent();
+            for (Subscriber subscriber : subscribers) {
+                subscriber.enqueue(event);
+            }
+        }
+    }
+
+    private void writeToSubscribers() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.write();
+        }
+    }
+
+    /**
+     * @return the latencies of all of the tasks that completed
+     */
+    public LatencyHistogram getLatencyHistogram() {
+        return latencies;
+    }
+
+    /**
+     * @return the number of samples that have been taken
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @param after the sequence number of the last sample that was received, or -1 for all of them
+     * @return the samples that are still in the buffer and came after the given sequence number
+     */
+    public List<Sample> getSamples(long after) {
+        long end = sequence;
+        long start = Math.max(Math.max(after + 1, 0), end - samples.length);
+        List<Sample> result = new ArrayList<>((int) Math.max(0, end - start));
+        for (long i = start; i < end; i++) {
+            Sample sample = samples[(int) (i % samples.length)];
+            //skip a slot that has been overwritten by a newer sample
+            if (sample != null && sample.getSequence() == i) {
+                result.add(sample);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Respond with a stream of server-sent events: first the samples that are
+     * in the buffer (after the {@code Last-Event-ID}, when reconnecting), then
+     * each new sample as it is taken. The exchange is held open until the
+     * client disconnects or the time series is closed.
+     *
+     * @param httpExchange
+     * @throws IOException
+     */
+    public void subscribe(HttpExchange httpExchange) throws IOException {
+        long lastEventId = -1;
+        String lastEventIdHeader = httpExchange.getRequestHeaders().getFirst(HEADER_LAST_EVENT_ID);
+        if (lastEventIdHeader != null) {
+            try {
+                lastEventId = Long.parseLong(lastEventIdHeader.trim());
+            } catch (NumberFormatException ex) {
+                LOG.log(Level.FINE, "Invalid {0} header", HEADER_LAST_EVENT_ID);
+            }
+        }
+        httpExchange.getResponseHeaders().add(JobServer.HEADER_CONTENT_TYPE, MIME_EVENT_STREAM);
+        httpExchange.getResponseHeaders().add("Cache-Control", "no-cache");
+        httpExchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+
+        Subscriber subscriber = new Subscriber(httpExchange);
+        List<Sample> backlog;
+        boolean ended;
+        //synchronized with run() so that no sample is missed, or sent twice
+        synchronized (this) {
+            backlog = getSamples(lastEventId);
+            ended = closed;
+            if (!ended) {
+                for (Sample sample : backlog) {
+                    subscriber.enqueue(sample.toEvent());
+                }
+                subscribers.add(subscriber);
+            }
+        }
+        if (ended) {
+            //the job is over, so there is nothing to wait for
+            try {
+                OutputStream out = httpExchange.getResponseBody();
+                for (Sample sample : backlog) {
+                    out.write(sample.toEvent());
+                }
+                out.write(END_EVENT);
+            } finally {
+                httpExchange.close();
+            }
+        } else {
+            subscriber.write();
+        }
+    }
+
+    /**
+     * @return the number of clients that are receiving the samples
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Take a final sample, then tell the subscribers that the job has ended and
+     * disconnect them, once the events that they have not yet received are written.
+     */
+    @Override
+    public void close() {
+        List<Subscriber> ending;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            takeSample();
+            closed = true;
+            ending = new ArrayList<>(subscribers);
+            subscribers.clear();
+        }
+        for (Subscriber subscriber : ending) {
+            subscriber.end();
+        }
+        if (ownWriter != null) {
+            //lets the pending writes finish
+            ownWriter.shutdown();
+        }
+    }
+
+    /**
+     * A client that is receiving the samples, and the events that have not yet
+     * been written to it. Only one writer thread at a time drains the queue, so
+     * the events are written in order.
+     */
+    private class Subscriber implements Runnable {
+        private final HttpExchange exchange;
+        private final Queue<byte[]> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private final AtomicBoolean writing = new AtomicBoolean();
+        private volatile boolean ended;
+
+        Subscriber(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        void enqueue(byte[] event) {
+            if (pendingCount.incrementAndGet() > samples.length * 2) {
+                //the client is not keeping up, let it reconnect and catch up from the buffer
+                LOG.log(Level.FINE, "Subscriber is too far behind, disconnecting");
+                subscribers.remove(this);
+                ended = true;
+            } else {
+                pending.add(event);
+            }
+        }
+
+        void end() {
+            pending.add(END_EVENT);
+            ended = true;
+            write();
+        }
+
+        void write() {
+            if (writing.compareAndSet(false, true)) {
+                try {
+                    writer.execute(this);
+                } catch (RejectedExecutionException ex) {
+                    LOG.log(Level.FINE, "Unable to write to subscriber", ex);
+                    subscribers.remove(this);
+                    exchange.close();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                OutputStream out = exchange.getResponseBody();
+                do {
+                    byte[] event;
+                    while ((event = pending.poll()) != null) {
+                        pendingCount.decrementAndGet();
+                        out.write(event);
+                    }
+                    out.flush();
+                    if (ended && pending.isEmpty()) {
+                        exchange.close();
+                        return;
+                    }
+                    writing.set(false);
+                    //an event may have been queued after the last poll, and before writing was reset
+                } while (!pending.isEmpty() && writing.compareAndSet(false, true));
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, "Subscriber disconnected", ex);
+                subscribers.remove(this);
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * The tasks that completed and failed in one second.
+     */
+    public static class Sample {
+        private final long sequence;
+        private final long timeMillis;
+        private final long completed;
+        private final long failed;
+        private final double averageLatencyMillis;
+
+        public Sample(long sequence, long timeMillis, long completed, long failed, double averageLatencyMillis) {
+            this.sequence = sequence;
+            this.timeMillis = timeMillis;
+            this.completed = completed;
+            this.failed = failed;
+            this.averageLatencyMillis = averageLatencyMillis;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public double getAverageLatencyMillis() {
+            return averageLatencyMillis;
+        }
+
+        public String toJson() {
+            return String.format(Locale.ENGLISH, "{\"time\":%d,\"completed\":%d,\"failed\":%d,\"averageLatencyMillis\":%.2f}",
+                timeMillis, completed, failed, averageLatencyMillis);
+        }
+
+        protected byte[] toEvent() {
+            return ("id: " + sequence + "\ndata: " + toJson() + "\n\n").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
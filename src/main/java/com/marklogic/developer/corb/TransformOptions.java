@@ -38,6 +38,7 @@ public class TransformOptions {
     public static final String DIRECTORY_TYPE = "DIRECTORY";
     public static final String QUERY_TYPE = "QUERY";
     public static final String FAILED_URI_TOKEN = "FAILED#";
+    public static final String DEFERRED_URI_TOKEN = "DEFERRED#";
     public static final int MAX_NUM_FAILED_TRANSACTIONS = 1000;
     public static final int MAX_NUM_SLOW_TRANSACTIONS = 100;
 
@@ -69,12 +70,32 @@ public class TransformOptions {
     private int diskQueueMaxInMemorySize = 1000;
     private File diskQueueTempDir;
     private boolean doInstall;
+    private boolean installAdhocModules;
     private int numTpsForETC = 10;
     private boolean prePostBatchAlwaysExecute;
     private int preBatchMinimumCount = 1;
     private int postBatchMinimumCount = 1;
     private boolean failOnError = true;
     private boolean redactUris = false;
+    private int queryRetryIntervalMax = 300;
+    private int queryRetryBudget = 10;
+    private boolean batchHostAffinity = false;
+    private int serverLoadCheckInterval = 0;
+    private long serverLoadMaxActiveRequests = 0;
+    private long serverLoadMaxQueueSize = 0;
+    private double serverLoadMaxWriteLockRate = 0;
+    private int memoryHighWatermark = 0;
+    private String resultSink = null;
+    private double rateLimit = 0;
+    private boolean rateLimitUris = false;
+    private boolean rateLimitPerHost = false;
+    private String rateLimitSchedule = null;
+    private int resultSinkBufferSize = AsyncResultSink.DEFAULT_BUFFER_SIZE;
+    private int memoryCriticalWatermark = MemoryGovernor.DEFAULT_CRITICAL_WATERMARK;
+    private String urisDeduplication = null;
+    private long urisDeduplicationExpectedCount = UrisDeduplicator.DEFAULT_EXPECTED_COUNT;
+    private double urisDeduplicationFalsePositiveRate = UrisDeduplicator.DEFAULT_FALSE_POSITIVE_RATE;
+    private String urisDeduplicationFalsePositivePolicy = UrisDeduplicator.SKIP;
 
     // We could get rid of this now that we check status...
     private String modulesDatabase = "Modules";
@@ -89,10 +110,12 @@ public class TransformOptions {
     private Integer numberOfLongRunningUris = 0;
     private Integer numberOfFailedUris = 0;
     private Integer metricsSyncFrequencyInMillis = -1;
+    private boolean metricsSyncDelta = false;
 
     private Integer jobServerPort = -1;
     private Set<Integer> jobServerPortsToChoose = new LinkedHashSet<>();
     private String jobName = null;
+    private int jobPriority = 1;
 
     // Set on status check
     private String xdbcRoot = SLASH;
@@ -121,6 +144,202 @@ public class TransformOptions {
         return preBatchMinimumCount;
     }
 
+    public void setQueryRetryIntervalMax(int seconds) {
+        if (seconds >= 0) {
+            queryRetryIntervalMax = seconds;
+        }
+    }
+
+    /**
+     * @return the longest time interval, in seconds, to wait before a re-query attempt of a process task
+     */
+    public int getQueryRetryIntervalMax() {
+        return queryRetryIntervalMax;
+    }
+
+    public void setQueryRetryBudget(int percent) {
+        if (percent >= 0) {
+            queryRetryBudget = percent;
+        }
+    }
+
+    /**
+     * @return the percentage of the process tasks that may be retried
+     */
+    public int getQueryRetryBudget() {
+        return queryRetryBudget;
+    }
+
+    public void setBatchHostAffinity(boolean batchHostAffinity) {
+        this.batchHostAffinity = batchHostAffinity;
+    }
+
+    /**
+     * @return whether URIs tagged with a host are batched by host and sent to that host
+     */
+    public boolean isBatchHostAffinity() {
+        return batchHostAffinity;
+    }
+
+    public void setServerLoadCheckInterval(int seconds) {
+        serverLoadCheckInterval = Math.max(0, seconds);
+    }
+
+    /**
+     * @return the time interval, in seconds, between checks of the server load, 0 if disabled
+     */
+    public int getServerLoadCheckInterval() {
+        return serverLoadCheckInterval;
+    }
+
+    public void setServerLoadMaxActiveRequests(long count) {
+        serverLoadMaxActiveRequests = count;
+    }
+
+    public long getServerLoadMaxActiveRequests() {
+        return serverLoadMaxActiveRequests;
+    }
+
+    public void setServerLoadMaxQueueSize(long count) {
+        serverLoadMaxQueueSize = count;
+    }
+
+    public long getServerLoadMaxQueueSize() {
+        return serverLoadMaxQueueSize;
+    }
+
+    public void setServerLoadMaxWriteLockRate(double rate) {
+        serverLoadMaxWriteLockRate = rate;
+    }
+
+    public double getServerLoadMaxWriteLockRate() {
+        return serverLoadMaxWriteLockRate;
+    }
+
+    public void setMemoryHighWatermark(int percent) {
+        memoryHighWatermark = percent;
+    }
+
+    /**
+     * @return the percentage of the old generation that may be used before tasks are held back, 0 if disabled
+     */
+    public int getMemoryHighWatermark() {
+        return memoryHighWatermark;
+    }
+
+    public void setMemoryCriticalWatermark(int percent) {
+        memoryCriticalWatermark = percent;
+    }
+
+    public int getMemoryCriticalWatermark() {
+        return memoryCriticalWatermark;
+    }
+
+    public void setResultSink(String resultSink) {
+        this.resultSink = resultSink;
+    }
+
+    /**
+     * @return the name of the built-in result sink or class, or null if results are not written to a sink
+     */
+    public String getResultSink() {
+        return resultSink;
+    }
+
+    public void setResultSinkBufferSize(int size) {
+        resultSinkBufferSize = size;
+    }
+
+    public int getResultSinkBufferSize() {
+        return resultSinkBufferSize;
+    }
+
+    public void setRateLimit(double rate) {
+        rateLimit = Math.max(0, rate);
+    }
+
+    /**
+     * @return the maximum number of tasks or URIs submitted per second, 0 if the rate is not limited
+     */
+    public double getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimitUris(boolean rateLimitUris) {
+        this.rateLimitUris = rateLimitUris;
+    }
+
+    /**
+     * @return whether the rate limit counts URIs, rather than tasks
+     */
+    public boolean isRateLimitUris() {
+        return rateLimitUris;
+    }
+
+    public void setRateLimitPerHost(boolean rateLimitPerHost) {
+        this.rateLimitPerHost = rateLimitPerHost;
+    }
+
+    public boolean isRateLimitPerHost() {
+        return rateLimitPerHost;
+    }
+
+    public void setRateLimitSchedule(String file) {
+        rateLimitSchedule = file;
+    }
+
+    public String getRateLimitSchedule() {
+        return rateLimitSchedule;
+    }
+
+    public void setUrisDeduplication(String mode) {
+        urisDeduplication = mode;
+    }
+
+    /**
+     * @return how URIs are de-duplicated, or null if they are not
+     * @since 2.4.6
+     */
+    public String getUrisDeduplication() {
+        return urisDeduplication;
+    }
+
+    public void setUrisDeduplicationExpectedCount(long count) {
+        urisDeduplicationExpectedCount = count;
+    }
+
+    /**
+     * @return the number of URIs that a Bloom filter is sized for, when the total is not known
+     * @since 2.4.6
+     */
+    public long getUrisDeduplicationExpectedCount() {
+        return urisDeduplicationExpectedCount;
+    }
+
+    public void setUrisDeduplicationFalsePositiveRate(double rate) {
+        urisDeduplicationFalsePositiveRate = rate;
+    }
+
+    /**
+     * @return the accepted rate of unique URIs that a Bloom filter skips as duplicates
+     * @since 2.4.6
+     */
+    public double getUrisDeduplicationFalsePositiveRate() {
+        return urisDeduplicationFalsePositiveRate;
+    }
+
+    public void setUrisDeduplicationFalsePositivePolicy(String policy) {
+        urisDeduplicationFalsePositivePolicy = policy;
+    }
+
+    /**
+     * @return whether a Bloom filter skips or processes the URIs it reports as seen
+     * @since 2.4.6
+     */
+    public String getUrisDeduplicationFalsePositivePolicy() {
+        return urisDeduplicationFalsePositivePolicy;
+    }
+
     /**
      * @return
      */
@@ -277,6 +496,22 @@ public class TransformOptions {
         this.doInstall = doInstall;
     }
 
+    /**
+     * @return whether ADHOC and INLINE modules are installed in the modules database
+     * @since 2.4.6
+     */
+    public boolean isInstallAdhocModules() {
+        return installAdhocModules;
+    }
+
+    /**
+     * @param installAdhocModules
+     * @since 2.4.6
+     */
+    public void setInstallAdhocModules(boolean installAdhocModules) {
+        this.installAdhocModules = installAdhocModules;
+    }
+
     public void setPreBatchModule(String preBatchModule) {
         this.preBatchModule = preBatchModule;
     }
@@ -512,6 +747,17 @@ public class TransformOptions {
         this.jobName = jobName;
 	}
 
+    public void setJobPriority(int jobPriority) {
+        this.jobPriority = Math.max(1, jobPriority);
+    }
+
+    /**
+     * @return the share of the JobScheduler threads the job receives, relative to other jobs
+     */
+    public int getJobPriority() {
+        return jobPriority;
+    }
+
 	/**
 	 * @return the numberOfLongRunningUris
 	 */
@@ -554,6 +800,22 @@ public class TransformOptions {
 		this.metricsSyncFrequencyInMillis = metricsSyncFrequencyInMillis;
 	}
 
+	/**
+	 * @return whether a small time series point, rather than the whole metrics document, is written on each sync
+	 * @since 2.4.6
+	 */
+	public boolean isMetricsSyncDelta() {
+		return metricsSyncDelta;
+	}
+
+	/**
+	 * @param metricsSyncDelta whether to write a time series point, rather than the whole metrics document, on each sync
+	 * @since 2.4.6
+	 */
+	public void setMetricsSyncDelta(boolean metricsSyncDelta) {
+		this.metricsSyncDelta = metricsSyncDelta;
+	}
+
 	/**
 	 * @return the metricsOnDemandPort
 	 */
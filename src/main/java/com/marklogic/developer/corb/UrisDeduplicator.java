@@ -0,0 +1,300 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Filters out URIs that have already been seen, between the
+ * {@link UrisLoader} and the tasks that are submitted for them.
+ * <ul>
+ * <li>{@code exact} keeps every URI that has been seen.</li>
+ * <li>{@code hash} keeps a 128-bit hash of every URI in an open addressing
+ * table that is kept at most half full, 32 to 64 bytes per URI; the chance of
+ * two different URIs having the same hash is negligible for any realistic
+ * number of URIs.</li>
+ * <li>{@code bloom} uses a fixed size Bloom filter, sized for the expected number
+ * of URIs and the accepted false positive rate, up to {@value #MAX_BLOOM_BYTES}
+ * bytes. A URI that is a false positive is skipped, as if it were a duplicate,
+ * unless the false positive policy is {@value #PROCESS}, in which case every
+ * URI that the filter reports as seen is processed anyway.</li>
+ * </ul>
+ *
+ * @since 2.4.6
+ */
+public abstract class UrisDeduplicator {
+
+    public static final String EXACT = "exact";
+    public static final String HASH = "hash";
+    public static final String BLOOM = "bloom";
+    public static final String SKIP = "skip";
+    public static final String PROCESS = "process";
+    public static final long DEFAULT_EXPECTED_COUNT = 10000000L;
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.000001d;
+    /**
+     * The largest Bloom filter that is allocated, 1 GiB. A larger expected count
+     * or lower false positive rate results in a higher false positive rate instead.
+     */
+    public static final long MAX_BLOOM_BYTES = 1L << 30;
+    private static final Logger LOG = Logger.getLogger(UrisDeduplicator.class.getName());
+
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder processedPositives = new LongAdder();
+    private boolean processPositives;
+
+    /**
+     * @param mode one of {@value #EXACT}, {@value #HASH}, or {@value #BLOOM}
+     * @param expectedCount the number of URIs that are expected, used to size a Bloom filter
+     * @param falsePositiveRate the accepted rate of false positives, for a Bloom filter
+     * @return a new deduplicator that skips every URI it reports as seen
+     */
+    public static UrisDeduplicator newInstance(String mode, long expectedCount, double falsePositiveRate) {
+        return newInstance(mode, expectedCount, falsePositiveRate, SKIP);
+    }
+
+    /**
+     * @param mode one of {@value #EXACT}, {@value #HASH}, or {@value #BLOOM}
+     * @param expectedCount the number of URIs that are expected, used to size a Bloom filter
+     * @param falsePositiveRate the accepted rate of false positives, for a Bloom filter
+     * @param falsePositivePolicy {@value #SKIP} or {@value #PROCESS}, for a Bloom filter
+     * @return a new deduplicator
+     */
+    public static UrisDeduplicator newInstance(String mode, long expectedCount, double falsePositiveRate, String falsePositivePolicy) {
+        boolean process = isProcessPolicy(falsePositivePolicy);
+        UrisDeduplicator deduplicator;
+        switch (mode == null ? "" : mode.trim().toLowerCase(Locale.ENGLISH)) {
+            case EXACT:
+                deduplicator = new Exact();
+                break;
+            case HASH:
+                deduplicator = new Hashed();
+                break;
+            case BLOOM:
+                deduplicator = new Bloom(expectedCount > 0 ? expectedCount : DEFAULT_EXPECTED_COUNT, falsePositiveRate);
+                break;
+            default:
+                throw new IllegalArgumentException(Options.URIS_DEDUPLICATION + " = " + mode + " is invalid. Value must be one of: "
+                    + EXACT + ", " + HASH + ", " + BLOOM);
+        }
+        deduplicator.processPositives = process && deduplicator.hasFalsePositives();
+        return deduplicator;
+    }
+
+    /**
+     * @param falsePositivePolicy {@value #SKIP} or {@value #PROCESS}, null is {@value #SKIP}
+     * @return whether URIs that may be false positives are processed
+     */
+    public static boolean isProcessPolicy(String falsePositivePolicy) {
+        switch (falsePositivePolicy == null ? SKIP : falsePositivePolicy.trim().toLowerCase(Locale.ENGLISH)) {
+            case SKIP:
+                return false;
+            case PROCESS:
+                return true;
+            default:
+                throw new IllegalArgumentException(Options.URIS_DEDUPLICATION_FALSE_POSITIVE_POLICY + " = " + falsePositivePolicy
+                    + " is invalid. Value must be one of: " + SKIP + ", " + PROCESS);
+        }
+    }
+
+    /**
+     * @param uri
+     * @return true if the URI should be processed, false if it is a duplicate and should be skipped
+     */
+    public boolean add(String uri) {
+        if (addIfAbsent(uri)) {
+            return true;
+        }
+        if (processPositives) {
+            processedPositives.increment();
+            return true;
+        }
+        duplicates.increment();
+        return false;
+    }
+
+    protected abstract boolean addIfAbsent(String uri);
+
+    /**
+     * @return whether a URI that has not been seen may be reported as seen
+     */
+    public boolean hasFalsePositives() {
+        return false;
+    }
+
+    /**
+     * @return the number of URIs that were skipped
+     */
+    public long getDuplicateCount() {
+        return duplicates.sum();
+    }
+
+    /**
+     * @return the number of URIs that were reported as seen, but processed
+     * because of the {@value #PROCESS} false positive policy
+     */
+    public long getProcessedPositiveCount() {
+        return processedPositives.sum();
+    }
+
+    /**
+     * @param value
+     * @param seed
+     * @return a 64-bit hash of the characters of the value
+     */
+    protected static long hash(String value, long seed) {
+        long h = seed ^ (value.length() * 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 32;
+        }
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    static class Exact extends UrisDeduplicator {
+        private final Set<String> uris = new HashSet<>();
+
+        @Override
+        protected boolean addIfAbsent(String uri) {
+            return uris.add(uri);
+        }
+    }
+
+    static class Hashed extends UrisDeduplicator {
+        private static final long SEED1 = 0x5bd1e995L;
+        private static final long SEED2 = 0x1b873593L;
+        private long[] high = new long[1024];
+        private long[] low = new long[1024];
+        private int size;
+
+        @Override
+        protected boolean addIfAbsent(String uri) {
+            long h1 = hash(uri, SEED1);
+            long h2 = hash(uri, SEED2);
+            if (h1 == 0 && h2 == 0) {
+                //reserved for empty slots
+                h2 = 1;
+            }
+            if (!insert(high, low, h1, h2)) {
+                return false;
+            }
+            if (++size > high.length / 2) {
+                resize();
+            }
+            return true;
+        }
+
+        private static boolean insert(long[] high, long[] low, long h1, long h2) {
+            int mask = high.length - 1;
+            int index = (int) (h1 ^ (h1 >>> 32)) & mask;
+            while (high[index] != 0 || low[index] != 0) {
+                if (high[index] == h1 && low[index] == h2) {
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+            high[index] = h1;
+            low[index] = h2;
+            return true;
+        }
+
+        private void resize() {
+            long[] newHigh = new long[high.length * 2];
+            long[] newLow = new long[low.length * 2];
+            for (int i = 0; i < high.length; i++) {
+                if (high[i] != 0 || low[i] != 0) {
+                    insert(newHigh, newLow, high[i], low[i]);
+                }
+            }
+            high = newHigh;
+            low = newLow;
+        }
+    }
+
+    static class Bloom extends UrisDeduplicator {
+        private static final long SEED1 = 0x27d4eb2fL;
+        private static final long SEED2 = 0x165667b1L;
+        private static final long MEGABYTE = 1024L * 1024L;
+        private final long[] bits;
+        private final long bitCount;
+        private final int hashCount;
+
+        Bloom(long expectedCount, double falsePositiveRate) {
+            this(expectedCount, falsePositiveRate, MAX_BLOOM_BYTES);
+        }
+
+        Bloom(long expectedCount, double falsePositiveRate, long maxBytes) {
+            double rate = falsePositiveRate > 0 && falsePositiveRate < 1 ? falsePositiveRate : DEFAULT_FALSE_POSITIVE_RATE;
+            long optimalBits = (long) Math.ceil(-expectedCount * Math.log(rate) / (Math.log(2) * Math.log(2)));
+            bitCount = Math.max(Long.SIZE, Math.min(optimalBits, maxBytes * Byte.SIZE));
+            if (optimalBits > bitCount) {
+                LOG.log(WARNING, "A Bloom filter for {0,number} URIs with a false positive rate of {1} would need {2,number,#.##} MiB, limiting it to {3,number,#.##} MiB",
+                    new Object[]{expectedCount, rate, toMegabytes(optimalBits), toMegabytes(maxBytes * Byte.SIZE)});
+            }
+            hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedCount * Math.log(2)));
+            LOG.log(INFO, "Allocating a Bloom filter of {0,number,#.##} MiB with {1,number} hash functions for {2,number} URIs",
+                new Object[]{toMegabytes(bitCount), hashCount, expectedCount});
+            bits = new long[(int) ((bitCount + Long.SIZE - 1) / Long.SIZE)];
+        }
+
+        @Override
+        protected boolean addIfAbsent(String uri) {
+            long h1 = hash(uri, SEED1);
+            long h2 = hash(uri, SEED2);
+            boolean absent = false;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                if ((bits[index] & mask) == 0) {
+                    bits[index] |= mask;
+                    absent = true;
+                }
+            }
+            return absent;
+        }
+
+        @Override
+        public boolean hasFalsePositives() {
+            return true;
+        }
+
+        private static double toMegabytes(long bits) {
+            return bits / (double) Byte.SIZE / MEGABYTE;
+        }
+
+        protected long getBitCount() {
+            return bitCount;
+        }
+
+        protected int getHashCount() {
+            return hashCount;
+        }
+    }
+}
@@ -24,6 +24,13 @@ import java.io.Closeable;
 
 public interface UrisLoader extends Closeable {
 
+	/**
+	 * Returned by {@link #getTotalCount()} while the URIs are still being received, such as from another stage of a
+	 * {@link Pipeline}. Once {@link #hasNext()} returns false the total count is known.
+	 * @since 2.4.6
+	 */
+	long UNKNOWN_TOTAL_COUNT = Long.MAX_VALUE;
+
 	void setOptions(TransformOptions options);
 
 	void setContentSourcePool(ContentSourcePool csm);
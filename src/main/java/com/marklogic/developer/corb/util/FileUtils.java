@@ -19,10 +19,12 @@
 package com.marklogic.developer.corb.util;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.LineNumberReader;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -30,9 +32,11 @@ import java.nio.file.attribute.BasicFileAttributes;
 import static java.nio.file.FileVisitResult.CONTINUE;
 import static java.nio.file.FileVisitResult.TERMINATE;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
 import java.text.MessageFormat;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.LongStream;
 
 /**
  * Common file manipulation utilities
@@ -41,6 +45,14 @@ import java.util.logging.Logger;
  */
 public final class FileUtils {
     private static final Logger LOG = Logger.getLogger(FileUtils.class.getName());
+    /**
+     * Size of each memory-mapped region scanned when counting lines. Files
+     * larger than this are scanned one region per task, in parallel.
+     */
+    protected static final long MAPPED_REGION_SIZE = 64L * 1024 * 1024;
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+
     private FileUtils() {
     }
 
@@ -140,14 +152,81 @@ public final class FileUtils {
      */
     public static int getLineCount(final File file) throws IOException {
         if (file != null && file.exists()) {
-            try (LineNumberReader lnr = new LineNumberReader(new FileReader(file))) {
-                lnr.skip(Long.MAX_VALUE);
-                return lnr.getLineNumber();
-            }
+            return (int) countLineTerminators(file);
         }
         return 0;
     }
 
+    /**
+     * Count the line terminators in a file without decoding its content. A
+     * line is considered to be terminated by any one of a line feed ('\n'), a
+     * carriage return ('\r'), or a carriage return followed immediately by a
+     * line feed, which is consistent with {@link java.io.LineNumberReader}.
+     * <p>
+     * The file is memory-mapped and scanned in regions of
+     * {@value #MAPPED_REGION_SIZE} bytes, and the regions of large files are
+     * scanned in parallel.
+     * </p>
+     *
+     * @param file
+     * @return the number of line terminators
+     * @throws IOException if the file does not exist or cannot be read
+     */
+    public static long countLineTerminators(final File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final long regions = (size + MAPPED_REGION_SIZE - 1) / MAPPED_REGION_SIZE;
+            if (regions <= 1) {
+                return countLineTerminators(channel, 0, size, size);
+            }
+            try {
+                return LongStream.range(0, regions).parallel().map(region -> {
+                    long position = region * MAPPED_REGION_SIZE;
+                    try {
+                        return countLineTerminators(channel, position, Math.min(MAPPED_REGION_SIZE, size - position), size);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }).sum();
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+
+    private static long countLineTerminators(final FileChannel channel, final long position, final long length, final long size) throws IOException {
+        long count = 0;
+        if (length <= 0) {
+            return count;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        int limit = buffer.limit();
+        for (int i = 0; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == LF) {
+                count++;
+            } else if (b == CR) {
+                // a CR that is followed by LF will be counted with the LF
+                if (i + 1 < limit) {
+                    if (buffer.get(i + 1) != LF) {
+                        count++;
+                    }
+                } else if (!isLineFeedAt(channel, position + i + 1, size)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static boolean isLineFeedAt(final FileChannel channel, final long position, final long size) throws IOException {
+        if (position >= size) {
+            return false;
+        }
+        ByteBuffer next = ByteBuffer.allocate(1);
+        return channel.read(next, position) == 1 && next.get(0) == LF;
+    }
+
     /**
      * Find the file with the given name. First checking for resources on the
      * classpath, then constructing a new File object.
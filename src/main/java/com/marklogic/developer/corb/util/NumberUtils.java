@@ -62,4 +62,27 @@ public final class NumberUtils {
             return defaultValue;
         }
     }
+
+    /**
+     * <p>Convert a {@code String} to a <code>long</code>, returning a default
+     * value if the conversion fails.</p>
+     *
+     * <p>If the string is {@code null}, the default value is returned.</p>
+     *
+     * @param val the string to convert, may be null
+     * @param defaultValue the default value
+     * @return the long represented by the string, or the default if conversion
+     * fails
+     * @since 2.4.6
+     */
+    public static long toLong(String val, long defaultValue) {
+        if (val == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(val.trim());
+        } catch (final NumberFormatException nfe) {
+            return defaultValue;
+        }
+    }
 }
@@ -67,6 +67,7 @@ app.controller("dashboardCtrl", ["$scope", "$http", "$interval", "MetricsUtility
                     }
                 }
                 $scope.availableServerData.push(job);
+                subscribe(job);
             }
         };
 
@@ -81,6 +82,48 @@ app.controller("dashboardCtrl", ["$scope", "$http", "$interval", "MetricsUtility
             return "http://" + job.host + ":" + job.port + "/" + job.id;
         };
 
+        //per-second samples pushed by the job as server-sent events, instead of polling
+        var eventSources = {};
+        var maxSamples = 120;
+        var subscribe = function(job) {
+            if (!window.EventSource || eventSources[job.id]) {
+                return;
+            }
+            var samples = $scope.throughput[job.id] = [];
+            var source = new EventSource(toUrl(job) + "/events");
+            eventSources[job.id] = source;
+            source.onmessage = function(event) {
+                samples.push(JSON.parse(event.data));
+                if (samples.length > maxSamples) {
+                    samples.shift();
+                }
+                $scope.$applyAsync();
+            };
+            source.addEventListener("end", function() {
+                source.close();
+            });
+        };
+
+        $scope.throughput = {};
+        $scope.sparkline = function(jobId, width, height) {
+            var samples = $scope.throughput[jobId] || [];
+            var max = 1;
+            for (var i = 0; i < samples.length; i++) {
+                max = Math.max(max, samples[i].completed + samples[i].failed);
+            }
+            var points = [];
+            for (var j = 0; j < samples.length; j++) {
+                var x = (width * (maxSamples - samples.length + j) / (maxSamples - 1)).toFixed(1);
+                var y = (height - height * samples[j].completed / max).toFixed(1);
+                points.push(x + "," + y);
+            }
+            return points.join(" ");
+        };
+        $scope.latestSample = function(jobId) {
+            var samples = $scope.throughput[jobId] || [];
+            return samples[samples.length - 1];
+        };
+
         $scope.availableServers = [];
         $scope.availableServerData = [];
         $scope.threadCounts = {};
@@ -177,6 +220,10 @@ app.controller("jobCtrl", ["$scope", "$http", "$interval", "MetricsUtilityServic
             if (job.userProvidedOptions) {
                 $scope.userProvidedOptions = job.userProvidedOptions;//save this as this is fetched only once
             }
+            if (job.contentSources) {
+                //a single contentSource is not serialized as an array
+                $scope.contentSources = angular.isArray(job.contentSources) ? job.contentSources : [job.contentSources.contentSource];
+            }
 
             if (typeof job.totalNumberOfTasks !== "undefined" && job.totalNumberOfTasks > 0) {
                 $scope.initTaskTimeInMillis = job.initTaskTimeInMillis;
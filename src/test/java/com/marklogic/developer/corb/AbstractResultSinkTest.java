@@ -0,0 +1,57 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.io.File;
+import java.util.Properties;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AbstractResultSinkTest {
+
+    @Test
+    public void testNewInstance() throws CorbException {
+        assertTrue(AbstractResultSink.newInstance(AbstractResultSink.FILE) instanceof FileResultSink);
+        assertTrue(AbstractResultSink.newInstance("Rolling-File") instanceof RollingFileResultSink);
+        assertTrue(AbstractResultSink.newInstance(AbstractResultSink.STDOUT) instanceof StdoutResultSink);
+        assertTrue(AbstractResultSink.newInstance(AbstractResultSink.AGGREGATE) instanceof AggregatingResultSink);
+        assertTrue(AbstractResultSink.newInstance(AggregatingResultSink.class.getName()) instanceof AggregatingResultSink);
+    }
+
+    @Test(expected = CorbException.class)
+    public void testNewInstanceUnknownClass() throws CorbException {
+        AbstractResultSink.newInstance("com.example.DoesNotExist");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNewInstanceNotAResultSink() throws CorbException {
+        AbstractResultSink.newInstance(Transform.class.getName());
+    }
+
+    @Test
+    public void testGetExportFile() {
+        Properties properties = new Properties();
+        AbstractResultSink instance = new StdoutResultSink();
+        instance.setProperties(properties);
+        assertEquals(new File("a.txt"), instance.getExportFile("a.txt"));
+        properties.setProperty(Options.EXPORT_FILE_DIR, "out");
+        assertEquals(new File("out", "a.txt"), instance.getExportFile("a.txt"));
+    }
+}
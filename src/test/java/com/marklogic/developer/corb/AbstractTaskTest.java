@@ -618,6 +618,19 @@ public class AbstractTaskTest {
         assertTrue(instance.shouldRetry(exception));
     }
 
+    @Test
+    public void testGetRequestTemplateResolvesCurrentSettings() {
+        AbstractTask instance = new AbstractTaskImpl();
+        instance.setModuleURI("/foo.xqy");
+        assertEquals("/foo.xqy", instance.getRequestTemplate().getModuleUri());
+        instance.setModuleURI("/bar.xqy");
+        assertEquals("/bar.xqy", instance.getRequestTemplate().getModuleUri());
+
+        RequestTemplate template = new RequestTemplate(null, "/baz.xqy", null, null, null, null);
+        instance.setRequestTemplate(template);
+        assertSame(template, instance.getRequestTemplate());
+    }
+
     @Test
     public void testShouldRetryNotRetryableQueryException() {
         Request req = mock(Request.class);
@@ -869,12 +882,14 @@ public class AbstractTaskTest {
         instance.properties = new Properties();
         instance.inputUris = new String[]{};
         instance.adhocQuery = "adhocQuery";
+        instance.setHost("host1");
         instance.cleanup();
         assertNull(instance.csp);
         assertNull(instance.moduleType);
         assertNull(instance.moduleUri);
         assertNull(instance.properties);
         assertNull(instance.inputUris);
+        assertNull(instance.host);
         assertNull(instance.adhocQuery);
     }
 
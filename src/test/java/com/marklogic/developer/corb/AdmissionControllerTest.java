@@ -0,0 +1,191 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import com.marklogic.xcc.AdhocQuery;
+import com.marklogic.xcc.ContentSource;
+import com.marklogic.xcc.ResultItem;
+import com.marklogic.xcc.ResultSequence;
+import com.marklogic.xcc.Session;
+import com.marklogic.xcc.exceptions.RequestException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class AdmissionControllerTest {
+
+    private PausableThreadPoolExecutor newPool() {
+        BlockingQueue<Runnable> queue = mock(BlockingQueue.class);
+        RejectedExecutionHandler handler = mock(RejectedExecutionHandler.class);
+        return new PausableThreadPoolExecutor(1, 1, 1000, TimeUnit.MILLISECONDS, queue, handler);
+    }
+
+    private TransformOptions newOptions() {
+        TransformOptions options = new TransformOptions();
+        options.setThreadCount(8);
+        options.setServerLoadMaxQueueSize(10);
+        options.setServerLoadMaxActiveRequests(20);
+        return options;
+    }
+
+    @Test
+    public void testAdjustHalvesAboveWatermark() {
+        PausableThreadPoolExecutor pool = newPool();
+        AdmissionController controller = new AdmissionController(mock(ContentSourcePool.class), pool, newOptions());
+        assertEquals(4, controller.adjust(15, 0, 0));
+        assertEquals(4, pool.getAdmissionLimit());
+        assertEquals(2, controller.adjust(0, 30, 0));
+        assertEquals(1, controller.adjust(12, 0, 0));
+        assertEquals(1, controller.adjust(12, 0, 0));
+    }
+
+    @Test
+    public void testAdjustPausesAboveTwiceWatermark() {
+        PausableThreadPoolExecutor pool = newPool();
+        AdmissionController controller = new AdmissionController(mock(ContentSourcePool.class), pool, newOptions());
+        assertEquals(0, controller.adjust(25, 0, 0));
+        assertEquals(0, pool.getAdmissionLimit());
+    }
+
+    @Test
+    public void testAdjustHoldsBetweenWatermarks() {
+        PausableThreadPoolExecutor pool = newPool();
+        pool.setAdmissionLimit(3);
+        AdmissionController controller = new AdmissionController(mock(ContentSourcePool.class), pool, newOptions());
+        assertEquals(3, controller.adjust(9, 0, 0));
+    }
+
+    @Test
+    public void testAdjustRecoversBelowLowWatermark() {
+        PausableThreadPoolExecutor pool = newPool();
+        pool.setAdmissionLimit(6);
+        AdmissionController controller = new AdmissionController(mock(ContentSourcePool.class), pool, newOptions());
+        assertEquals(7, controller.adjust(1, 1, 0));
+        assertEquals(Integer.MAX_VALUE, controller.adjust(1, 1, 0));
+        assertEquals(Integer.MAX_VALUE, controller.adjust(0, 0, 0));
+    }
+
+    @Test
+    public void testAdjustIgnoresDisabledWatermarks() {
+        PausableThreadPoolExecutor pool = newPool();
+        AdmissionController controller = new AdmissionController(mock(ContentSourcePool.class), pool, newOptions());
+        assertEquals(Integer.MAX_VALUE, controller.adjust(0, 0, 1000));
+    }
+
+    @Test
+    public void testRunResumesPausedPoolWhenCheckFails() throws CorbException {
+        PausableThreadPoolExecutor pool = newPool();
+        pool.setAdmissionLimit(0);
+        ContentSourcePool csp = mock(ContentSourcePool.class);
+        when(csp.get()).thenThrow(new CorbException("unavailable"));
+        AdmissionController controller = new AdmissionController(csp, pool, newOptions());
+        controller.run();
+        assertEquals(1, pool.getAdmissionLimit());
+        controller.run();
+        assertEquals(1, pool.getAdmissionLimit());
+        controller.run();
+        assertEquals(Integer.MAX_VALUE, pool.getAdmissionLimit());
+    }
+
+    @Test
+    public void testOnFailureKeepsRestrictionUntilLimit() {
+        PausableThreadPoolExecutor pool = newPool();
+        pool.setAdmissionLimit(4);
+        AdmissionController controller = new AdmissionController(mock(ContentSourcePool.class), pool, newOptions());
+        assertEquals(4, controller.onFailure());
+        assertEquals(4, controller.onFailure());
+        assertEquals(Integer.MAX_VALUE, controller.onFailure());
+    }
+
+    @Test
+    public void testRunWhenShutdown() {
+        PausableThreadPoolExecutor pool = newPool();
+        pool.shutdown();
+        ContentSourcePool csp = mock(ContentSourcePool.class);
+        AdmissionController controller = new AdmissionController(csp, pool, newOptions());
+        controller.run();
+        verifyZeroInteractions(csp);
+    }
+
+    @Test
+    public void testActiveRequestsExcludesOnlyTheStatusQuery() {
+        assertEquals(0, AdmissionController.activeRequests(0));
+        assertEquals(0, AdmissionController.activeRequests(1));
+        assertEquals(11, AdmissionController.activeRequests(12));
+    }
+
+    @Test
+    public void testRunCountsActiveRequestsOfAllHosts() throws CorbException, RequestException {
+        PausableThreadPoolExecutor pool = newPool();
+        pool.setAdmissionLimit(6);
+        TransformOptions options = newOptions();
+        options.setServerLoadMaxActiveRequests(12);
+        //a 12 host group, with the status query on one host and 12 other requests spread over the others
+        AdmissionController controller = new AdmissionController(mockContentSource("0", "13", "0"), pool, options);
+        controller.run();
+        assertEquals(6, pool.getAdmissionLimit());
+        //a 12 host group, with only the status query running
+        controller = new AdmissionController(mockContentSource("0", "1", "0"), pool, options);
+        controller.run();
+        assertEquals(7, pool.getAdmissionLimit());
+    }
+
+    @Test
+    public void testStartChecksUntilClosed() throws CorbException, RequestException {
+        PausableThreadPoolExecutor pool = newPool();
+        ContentSourcePool csp = mockContentSource("0", "1", "0");
+        AdmissionController controller = new AdmissionController(csp, pool, newOptions());
+        try {
+            controller.start(60);
+            verify(csp, timeout(5000)).get();
+        } finally {
+            controller.close();
+        }
+        controller.close();
+    }
+
+    private ContentSourcePool mockContentSource(String queueSize, String requestStatuses, String writeLockRate) throws CorbException, RequestException {
+        ContentSourcePool csp = mock(ContentSourcePool.class);
+        ContentSource contentSource = mock(ContentSource.class);
+        Session session = mock(Session.class);
+        ResultSequence resultSequence = mock(ResultSequence.class);
+        ResultItem first = mock(ResultItem.class);
+        ResultItem second = mock(ResultItem.class);
+        ResultItem third = mock(ResultItem.class);
+        when(csp.get()).thenReturn(contentSource);
+        when(contentSource.newSession()).thenReturn(session);
+        when(session.newAdhocQuery(anyString())).thenReturn(mock(AdhocQuery.class));
+        when(session.submitRequest(any(AdhocQuery.class))).thenReturn(resultSequence);
+        when(resultSequence.next()).thenReturn(first, second, third);
+        when(first.asString()).thenReturn(queueSize);
+        when(second.asString()).thenReturn(requestStatuses);
+        when(third.asString()).thenReturn(writeLockRate);
+        return csp;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class AggregatingResultSinkTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static void write(ResultSink sink, String... values) throws IOException {
+        for (String value : values) {
+            sink.write(new String[]{"/a.xml"}, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        AggregatingResultSink instance = new AggregatingResultSink();
+        instance.setProperties(new Properties());
+        instance.open();
+        write(instance, "book", "article", "book", "report", "book", "article");
+        List<Map.Entry<String, Long>> counts = instance.getSortedCounts();
+        assertEquals(3, counts.size());
+        assertEquals("book", counts.get(0).getKey());
+        assertEquals(3L, (long) counts.get(0).getValue());
+        assertEquals("article", counts.get(1).getKey());
+        assertEquals(2L, (long) counts.get(1).getValue());
+        assertEquals(6, instance.getTotal());
+        assertEquals(0, instance.getOtherValues());
+        instance.close();
+    }
+
+    @Test
+    public void testCloseWritesExportFile() throws IOException {
+        File exportDir = tempFolder.newFolder();
+        Properties properties = new Properties();
+        properties.setProperty(Options.EXPORT_FILE_DIR, exportDir.getAbsolutePath());
+        properties.setProperty(Options.EXPORT_FILE_NAME, "counts.txt");
+        AggregatingResultSink instance = new AggregatingResultSink();
+        instance.setProperties(properties);
+        instance.open();
+        write(instance, "a", "b", "b");
+        instance.close();
+        assertEquals(Arrays.asList("b\t2", "a\t1"), Files.readAllLines(new File(exportDir, "counts.txt").toPath(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AsyncResultSinkTest {
+
+    @Test
+    public void testSubmitAndClose() throws CorbException, InterruptedException {
+        CollectingResultSink sink = new CollectingResultSink();
+        AsyncResultSink instance = new AsyncResultSink(sink, 2);
+        instance.open();
+        assertTrue(sink.opened);
+        for (int i = 0; i < 10; i++) {
+            instance.submit(new String[]{"/" + i + ".xml"}, String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+        }
+        instance.close();
+        assertTrue(sink.closed);
+        assertEquals(10, instance.getSubmittedCount());
+        assertEquals(10, instance.getWrittenCount());
+        assertEquals(0, instance.getBufferedCount());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(String.valueOf(i), sink.results.get(i));
+            assertEquals("/" + i + ".xml", sink.uris.get(i));
+        }
+    }
+
+    @Test
+    public void testCloseWithoutOpen() throws CorbException {
+        CollectingResultSink sink = new CollectingResultSink();
+        new AsyncResultSink(sink, 0).close();
+        assertFalse(sink.closed);
+    }
+
+    @Test
+    public void testWriteFailure() throws CorbException, InterruptedException {
+        CollectingResultSink sink = new CollectingResultSink();
+        sink.failAfter = 1;
+        AsyncResultSink instance = new AsyncResultSink(sink, 1);
+        instance.open();
+        instance.submit(new String[]{"/a.xml"}, "a".getBytes(StandardCharsets.UTF_8));
+        instance.submit(new String[]{"/b.xml"}, "b".getBytes(StandardCharsets.UTF_8));
+        try {
+            instance.close();
+            fail();
+        } catch (CorbException ex) {
+            assertTrue(ex.getCause() instanceof IOException);
+        }
+        assertEquals(1, instance.getWrittenCount());
+        assertTrue(sink.closed);
+        try {
+            instance.submit(new String[]{"/d.xml"}, "d".getBytes(StandardCharsets.UTF_8));
+            fail();
+        } catch (CorbException ex) {
+            assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+
+    @Test(expected = CorbException.class)
+    public void testOpenFailure() throws CorbException {
+        CollectingResultSink sink = new CollectingResultSink() {
+            @Override
+            public void open() throws IOException {
+                throw new IOException("unable to open");
+            }
+        };
+        new AsyncResultSink(sink, 1).open();
+    }
+
+    static class CollectingResultSink implements ResultSink {
+
+        final List<String> results = new ArrayList<>();
+        final List<String> uris = new ArrayList<>();
+        int failAfter = Integer.MAX_VALUE;
+        boolean opened;
+        boolean closed;
+
+        @Override
+        public void setProperties(Properties properties) {
+        }
+
+        @Override
+        public void open() throws IOException {
+            opened = true;
+        }
+
+        @Override
+        public void write(String[] uris, byte[] result) throws IOException {
+            if (results.size() >= failAfter) {
+                throw new IOException("unable to write");
+            }
+            this.uris.add(uris[0]);
+            results.add(new String(result, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+        }
+    }
+}
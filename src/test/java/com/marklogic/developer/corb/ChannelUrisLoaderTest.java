@@ -0,0 +1,59 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.util.Properties;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ChannelUrisLoaderTest {
+
+    @Test
+    public void testStreamUris() throws Exception {
+        PipelineChannel channel = PipelineChannel.open("testStreamUris", 10);
+        Properties properties = new Properties();
+        properties.setProperty(Options.PIPELINE_INPUT_CHANNEL, "testStreamUris");
+        try (ChannelUrisLoader loader = new ChannelUrisLoader()) {
+            loader.setProperties(properties);
+            loader.open();
+            channel.put("/a.xml");
+            channel.put("/b.xml");
+            channel.complete();
+            assertEquals(UrisLoader.UNKNOWN_TOTAL_COUNT, loader.getTotalCount());
+            assertTrue(loader.hasNext());
+            assertEquals("/a.xml", loader.next());
+            assertEquals("/b.xml", loader.next());
+            assertFalse(loader.hasNext());
+            assertNull(loader.next());
+            assertEquals(2, loader.getTotalCount());
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Test(expected = CorbException.class)
+    public void testOpenWithoutChannel() throws CorbException {
+        Properties properties = new Properties();
+        properties.setProperty(Options.PIPELINE_INPUT_CHANNEL, "doesNotExist");
+        ChannelUrisLoader loader = new ChannelUrisLoader();
+        loader.setProperties(properties);
+        loader.open();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CompletionTrackerTest {
+
+    @Test
+    public void testSubmitCountsCompletedUris() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CompletionTracker tracker = new CompletionTracker(executor);
+            for (int i = 0; i < 1000; i++) {
+                tracker.submit(() -> new String[]{"a", "b", "c"});
+            }
+            while (!tracker.isIdle()) {
+                tracker.await(5, TimeUnit.SECONDS);
+            }
+            assertEquals(1000, tracker.getSubmittedTaskCount());
+            assertEquals(1000, tracker.getCompletedTaskCount());
+            assertEquals(3000, tracker.getCompletedUriCount());
+            assertFalse(tracker.hasFailed());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailureWakesWaitingThread() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch latch = new CountDownLatch(1);
+            CompletionTracker tracker = new CompletionTracker(executor);
+            tracker.submit(() -> {
+                latch.await();
+                throw new CorbException("failed");
+            });
+            tracker.submit(() -> new String[]{"a"});
+            latch.countDown();
+            assertTrue(tracker.await(5, TimeUnit.SECONDS));
+            assertTrue(tracker.hasFailed());
+            assertTrue(tracker.getFailure().getCause() instanceof CorbException);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFirstFailureIsKept() throws InterruptedException {
+        Executor executor = Runnable::run;
+        CompletionTracker tracker = new CompletionTracker(executor);
+        tracker.submit(() -> {
+            throw new CorbException("first");
+        });
+        tracker.submit(() -> {
+            throw new CorbException("second");
+        });
+        assertEquals("first", tracker.getFailure().getCause().getMessage());
+        assertEquals(2, tracker.getCompletedTaskCount());
+    }
+
+    @Test
+    public void testSubmitReturnsFuture() throws InterruptedException, ExecutionException {
+        CompletionTracker tracker = new CompletionTracker(Runnable::run);
+        Future<String[]> future = tracker.submit(() -> new String[]{"a"});
+        assertTrue(future.isDone());
+        assertArrayEquals(new String[]{"a"}, future.get());
+    }
+
+    @Test
+    public void testAwaitTimesOut() throws InterruptedException {
+        CompletionTracker tracker = new CompletionTracker(Runnable::run);
+        assertFalse(tracker.await(10, TimeUnit.MILLISECONDS));
+        tracker.signal();
+        assertTrue(tracker.await(10, TimeUnit.MILLISECONDS));
+        //the signal is consumed
+        assertFalse(tracker.await(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testCancelledTaskIsCompleted() {
+        CompletionTracker tracker = new CompletionTracker(runnable -> {
+            ((Future<?>) runnable).cancel(false);
+        });
+        tracker.submit(() -> new String[]{"a"});
+        assertTrue(tracker.isIdle());
+        assertEquals(0, tracker.getCompletedUriCount());
+        assertFalse(tracker.hasFailed());
+    }
+
+    @Test
+    public void testRejectedTaskIsNotCounted() {
+        CompletionTracker tracker = new CompletionTracker(runnable -> {
+            throw new RejectedExecutionException();
+        });
+        try {
+            tracker.submit(() -> new String[]{"a"});
+            fail();
+        } catch (RejectedExecutionException ex) {
+            assertEquals(0, tracker.getSubmittedTaskCount());
+            assertTrue(tracker.isIdle());
+        }
+    }
+}
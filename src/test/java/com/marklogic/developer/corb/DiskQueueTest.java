@@ -93,6 +93,20 @@ public class DiskQueueTest {
         fail();
     }
 
+    @Test
+    public void testDiskQueueSpill() {
+        DiskQueue<String> instance = new DiskQueue<>(10);
+        instance.add("first");
+        assertTrue(instance.spill());
+        instance.add("second");
+        instance.add("third");
+        assertEquals(3, instance.size());
+        assertEquals("first", instance.remove());
+        assertEquals("second", instance.remove());
+        assertEquals("third", instance.remove());
+        assertTrue(instance.isEmpty());
+    }
+
     @Test
     public void testDiskQueueFinalizeWhileOpen() {
         try {
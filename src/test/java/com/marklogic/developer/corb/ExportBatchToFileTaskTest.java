@@ -21,12 +21,18 @@ package com.marklogic.developer.corb;
 import com.marklogic.developer.corb.util.FileUtils;
 import com.marklogic.xcc.ResultItem;
 import com.marklogic.xcc.ResultSequence;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
 
 import static com.marklogic.developer.corb.Options.EXPORT_FILE_NAME;
 import static org.junit.Assert.*;
@@ -170,6 +176,47 @@ public class ExportBatchToFileTaskTest {
         }
     }
 
+    @Test
+    public void testWriteToFileCompressed() throws IOException {
+        File dir = TestUtils.createTempDirectory();
+        Properties props = new Properties();
+        props.setProperty(EXPORT_FILE_NAME, "batch.txt.gz");
+        props.setProperty(Options.EXPORT_FILE_COMPRESSION, ExportToFileTask.GZIP);
+        props.setProperty(Options.EXPORT_FILE_COMPRESSION_LEVEL, "1");
+        ExportBatchToFileTask instance = new ExportBatchToFileTask();
+        instance.setProperties(props);
+        instance.setExportDir(dir.toString());
+        for (String value : new String[]{"first", "second"}) {
+            ResultSequence seq = mock(ResultSequence.class);
+            ResultItem resultItem = mock(ResultItem.class);
+            XdmItem item = mock(XdmItem.class);
+            when(seq.hasNext()).thenReturn(true, true, false);
+            when(seq.next()).thenReturn(resultItem);
+            when(resultItem.getItem()).thenReturn(item);
+            when(item.asString()).thenReturn(value);
+            instance.writeToFile(seq);
+        }
+        assertEquals(1, instance.getCompressionLevel());
+        ExportBatchToFileTask.closeCompressedStream(instance.getExportFile());
+        //both batches are in a single gzip member
+        assertEquals(1, countGzipMembers(Files.readAllBytes(instance.getExportFile().toPath())));
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(instance.getExportFile())), StandardCharsets.UTF_8))) {
+            assertEquals("first", reader.readLine());
+            assertEquals("second", reader.readLine());
+            assertNull(reader.readLine());
+        }
+    }
+
+    protected static int countGzipMembers(byte[] bytes) {
+        int count = 0;
+        for (int i = 0; i + 2 < bytes.length; i++) {
+            if (bytes[i] == (byte) 0x1f && bytes[i + 1] == (byte) 0x8b && bytes[i + 2] == 8) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     public File testWriteToFile(ResultSequence resultSequence) {
         Properties props = new Properties();
         try {
@@ -0,0 +1,123 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import org.junit.Test;
+
+public class ExportFileCompressorTest {
+
+    private static ExportToFileTask gzipTask() {
+        ExportToFileTask task = new ExportToFileTask();
+        Properties props = new Properties();
+        props.setProperty(Options.EXPORT_FILE_COMPRESSION, ExportToFileTask.GZIP);
+        task.setProperties(props);
+        return task;
+    }
+
+    @Test
+    public void testAppendFromManyThreads() throws Exception {
+        File file = new File(TestUtils.createTempDirectory(), "export.txt.gz");
+        ExportToFileTask task = gzipTask();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < 50; i++) {
+                        ExportFileCompressor.append(file, task, (thread + "-" + i + "\n").getBytes(StandardCharsets.UTF_8));
+                    }
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        ExportFileCompressor.close(file);
+
+        assertEquals(1, ExportBatchToFileTaskTest.countGzipMembers(Files.readAllBytes(file.toPath())));
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), StandardCharsets.UTF_8))) {
+            Set<String> lines = reader.lines().collect(Collectors.toCollection(TreeSet::new));
+            assertEquals(200, lines.size());
+            assertTrue(lines.contains("3-49"));
+        }
+    }
+
+    @Test
+    public void testCloseOnlyFinishesItsFile() throws IOException {
+        File dir = TestUtils.createTempDirectory();
+        File file = new File(dir, "a.txt.gz");
+        File other = new File(dir, "b.txt.gz");
+        ExportToFileTask task = gzipTask();
+        ExportFileCompressor.append(file, task, "a\n".getBytes(StandardCharsets.UTF_8));
+        ExportFileCompressor.append(other, task, "b\n".getBytes(StandardCharsets.UTF_8));
+        ExportFileCompressor compressor = ExportFileCompressor.forFile(other, task);
+
+        ExportFileCompressor.close(file);
+        assertSame(compressor, ExportFileCompressor.forFile(other, task));
+        assertNotSame(compressor, ExportFileCompressor.forFile(file, task));
+        ExportFileCompressor.close(file);
+        ExportFileCompressor.close(other);
+        assertFalse(compressor.submit(new byte[0]));
+    }
+
+    @Test
+    public void testWriteFailureIsReported() throws Exception {
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        ExportFileCompressor compressor = new ExportFileCompressor(new File("failing.gz"), failing, 1);
+        compressor.submit(new byte[]{1});
+        try {
+            compressor.close();
+            fail();
+        } catch (IOException ex) {
+            assertEquals("disk full", ex.getCause().getMessage());
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static com.marklogic.developer.corb.TestUtils.createTempDirectory;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.marklogic.xcc.ResultItem;
+import com.marklogic.xcc.ResultSequence;
+import com.marklogic.xcc.types.XdmItem;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import org.junit.Test;
+
+public class ExportFileShardsTest {
+
+    private static final String FILE_NAME = "report.csv";
+
+    @Test
+    public void testGetShardFile() {
+        File file = new File("/tmp/out/report.csv");
+        assertEquals("report.shard-3-1.csv", ExportFileShards.getShardFile(file, 3, 1).getName());
+        assertEquals("report.shard-0-0", ExportFileShards.getShardFile(new File("report"), 0, 0).getName());
+    }
+
+    @Test
+    public void testGetShardRollsWhenFull() throws IOException {
+        ExportFileShards shards = new ExportFileShards(new File(FILE_NAME));
+        ExportFileShards.Shard shard = shards.getShard(2, 0);
+        assertTrue(shard.getFile().getName().endsWith("shard-0-0.csv"));
+        shard.append("/a", 0, 10, 2, false);
+        assertTrue(shards.getShard(2, 0).getFile().getName().endsWith("shard-0-1.csv"));
+        assertEquals(0, shard.getRecords());
+    }
+
+    @Test
+    public void testListShardsOrderedNumerically() throws IOException {
+        File dir = createTempDirectory();
+        File file = new File(dir, FILE_NAME);
+        for (String name : Arrays.asList("report.shard-10-0.csv", "report.shard-2-1.csv", "report.shard-2-0.csv", "other.shard-1-0.csv")) {
+            assertTrue(new File(dir, name).createNewFile());
+        }
+        List<File> shards = ExportFileShards.listShards(file);
+        assertEquals(3, shards.size());
+        assertEquals("report.shard-2-0.csv", shards.get(0).getName());
+        assertEquals("report.shard-2-1.csv", shards.get(1).getName());
+        assertEquals("report.shard-10-0.csv", shards.get(2).getName());
+    }
+
+    @Test
+    public void testShardedExportConcatenated() throws Exception {
+        File dir = createTempDirectory();
+        Properties props = shardProperties();
+        props.setProperty(Options.EXPORT_FILE_SHARD_MAX_RECORDS, "2");
+
+        runPreBatch(dir, props);
+        writeBatch(dir, props, "/a", "a1", "a2");
+        writeBatch(dir, props, "/b", "b1");
+        File file = new File(dir, FILE_NAME);
+        assertFalse(file.exists());
+        assertEquals(2, ExportFileShards.listShards(file).size());
+
+        runPostBatch(dir, props);
+        assertEquals(Arrays.asList("a1", "a2", "b1"), Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+        assertTrue(ExportFileShards.listShards(file).isEmpty());
+    }
+
+    @Test
+    public void testShardedExportIndexedInUriOrder() throws Exception {
+        File dir = createTempDirectory();
+        Properties props = shardProperties();
+        props.setProperty(Options.EXPORT_FILE_SHARD_INDEX, "true");
+
+        runPreBatch(dir, props);
+        writeBatch(dir, props, "/c", "c1");
+        writeBatch(dir, props, "/a", "a1", "a2");
+        Thread other = new Thread(() -> writeBatch(dir, props, "/b", "b1"));
+        other.start();
+        other.join();
+        File file = new File(dir, FILE_NAME);
+        assertEquals(2, ExportFileShards.listShards(file).size());
+
+        runPostBatch(dir, props);
+        assertEquals(Arrays.asList("a1", "a2", "b1", "c1"), Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+        assertEquals(0, dir.list((parent, name) -> name.endsWith(ExportFileShards.INDEX_EXT)).length);
+    }
+
+    @Test
+    public void testShardedExportCompressed() throws Exception {
+        File dir = createTempDirectory();
+        Properties props = shardProperties();
+        props.setProperty(Options.EXPORT_FILE_COMPRESSION, ExportToFileTask.GZIP);
+        props.setProperty(Options.EXPORT_FILE_SHARD_INDEX, "true");
+        props.setProperty(Options.EXPORT_FILE_TOP_CONTENT, "header");
+
+        runPreBatch(dir, props);
+        writeBatch(dir, props, "/b", "b1");
+        writeBatch(dir, props, "/a", "a1");
+        runPostBatch(dir, props);
+
+        File file = new File(dir, FILE_NAME);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), StandardCharsets.UTF_8))) {
+            assertEquals(Arrays.asList("header", "a1", "b1"), reader.lines().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testShardedExportCompressedAsSingleStream() throws Exception {
+        File dir = createTempDirectory();
+        Properties props = shardProperties();
+        props.setProperty(Options.EXPORT_FILE_COMPRESSION, ExportToFileTask.GZIP);
+
+        runPreBatch(dir, props);
+        writeBatch(dir, props, "/a", "a1", "a2");
+        writeBatch(dir, props, "/b", "b1");
+        List<File> shards = ExportFileShards.listShards(new File(dir, FILE_NAME));
+        assertEquals(1, shards.size());
+        ExportFileShards.close(new File(dir, FILE_NAME));
+        assertEquals(1, ExportBatchToFileTaskTest.countGzipMembers(Files.readAllBytes(shards.get(0).toPath())));
+        runPostBatch(dir, props);
+
+        File file = new File(dir, FILE_NAME);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), StandardCharsets.UTF_8))) {
+            assertEquals(Arrays.asList("a1", "a2", "b1"), reader.lines().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testShardedExportManifest() throws Exception {
+        File dir = createTempDirectory();
+        Properties props = shardProperties();
+        props.setProperty(Options.EXPORT_FILE_SHARD_MERGE, "manifest");
+
+        runPreBatch(dir, props);
+        writeBatch(dir, props, "/a", "a1");
+        runPostBatch(dir, props);
+
+        File file = new File(dir, FILE_NAME);
+        File manifest = new File(dir, FILE_NAME + ExportFileShards.MANIFEST_EXT);
+        assertEquals(Arrays.asList("report.shard-0-0.csv"), Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8));
+        assertEquals(1, ExportFileShards.listShards(file).size());
+    }
+
+    private static Properties shardProperties() {
+        Properties props = new Properties();
+        props.setProperty(Options.EXPORT_FILE_NAME, FILE_NAME);
+        props.setProperty(Options.EXPORT_FILE_SHARDS, "true");
+        return props;
+    }
+
+    private static void runPreBatch(File dir, Properties props) throws Exception {
+        PreBatchUpdateFileTask task = new PreBatchUpdateFileTask();
+        task.setProperties(props);
+        task.setExportDir(dir.toString());
+        task.setModuleType(Options.PRE_BATCH_MODULE);
+        task.call();
+    }
+
+    private static void runPostBatch(File dir, Properties props) throws Exception {
+        PostBatchUpdateFileTask task = new PostBatchUpdateFileTask();
+        task.setProperties(props);
+        task.setExportDir(dir.toString());
+        task.setModuleType(Options.POST_BATCH_MODULE);
+        task.call();
+    }
+
+    private static void writeBatch(File dir, Properties props, String uri, String... values) {
+        try {
+            ExportBatchToFileTask task = new ExportBatchToFileTask();
+            task.setProperties(props);
+            task.setExportDir(dir.toString());
+            task.setModuleType(Options.PROCESS_MODULE);
+            task.setInputURI(uri);
+            task.writeToFile(sequence(values), task.getExportFile());
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static ResultSequence sequence(String... values) {
+        ResultSequence seq = mock(ResultSequence.class);
+        Boolean[] more = new Boolean[values.length];
+        Arrays.fill(more, Boolean.TRUE);
+        more[values.length - 1] = Boolean.FALSE;
+        when(seq.hasNext()).thenReturn(true, more);
+        ResultItem[] items = new ResultItem[values.length];
+        for (int i = 0; i < values.length; i++) {
+            XdmItem item = mock(XdmItem.class);
+            when(item.asString()).thenReturn(values[i]);
+            items[i] = mock(ResultItem.class);
+            when(items[i].getItem()).thenReturn(item);
+        }
+        when(seq.next()).thenReturn(items[0], Arrays.copyOfRange(items, 1, items.length));
+        return seq;
+    }
+}
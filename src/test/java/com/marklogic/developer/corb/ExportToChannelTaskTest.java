@@ -0,0 +1,104 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import com.marklogic.xcc.ResultItem;
+import com.marklogic.xcc.ResultSequence;
+import java.util.Properties;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ExportToChannelTaskTest {
+
+    @Test
+    public void testProcessResult() throws Exception {
+        PipelineChannel channel = PipelineChannel.open("testProcessResult", 10);
+        try {
+            ResultSequence seq = mock(ResultSequence.class);
+            ResultItem first = mock(ResultItem.class);
+            ResultItem second = mock(ResultItem.class);
+            when(first.asString()).thenReturn("one");
+            when(second.asString()).thenReturn("two");
+            when(seq.hasNext()).thenReturn(true, true, true, false);
+            when(seq.next()).thenReturn(first, second);
+
+            ExportToChannelTask instance = newTask("testProcessResult", "/a.xml");
+            assertEquals(AbstractTask.TRUE, instance.processResult(seq));
+            assertEquals("one", channel.take());
+            assertEquals("two", channel.take());
+            assertEquals(2, channel.getSentCount());
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Test
+    public void testProcessEmptyResultSendsUris() throws Exception {
+        PipelineChannel channel = PipelineChannel.open("testProcessEmptyResultSendsUris", 10);
+        try {
+            ResultSequence seq = mock(ResultSequence.class);
+            when(seq.hasNext()).thenReturn(false);
+            ExportToChannelTask instance = newTask("testProcessEmptyResultSendsUris", "/a.xml", "/b.xml");
+            instance.processResult(seq);
+            assertEquals("/a.xml", channel.take());
+            assertEquals("/b.xml", channel.take());
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Test
+    public void testProcessResultSendsNothingWhenResultFails() throws Exception {
+        PipelineChannel channel = PipelineChannel.open("testProcessResultSendsNothingWhenResultFails", 10);
+        try {
+            ResultSequence seq = mock(ResultSequence.class);
+            ResultItem first = mock(ResultItem.class);
+            when(first.asString()).thenReturn("one");
+            when(seq.hasNext()).thenReturn(true);
+            when(seq.next()).thenReturn(first).thenThrow(new IllegalStateException("connection reset"));
+
+            ExportToChannelTask instance = newTask("testProcessResultSendsNothingWhenResultFails", "/a.xml");
+            try {
+                instance.processResult(seq);
+                fail();
+            } catch (IllegalStateException ex) {
+                assertEquals(0, channel.getSentCount());
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Test(expected = CorbException.class)
+    public void testProcessResultWithoutChannel() throws CorbException {
+        newTask("doesNotExist", "/a.xml").processResult(mock(ResultSequence.class));
+    }
+
+    private static ExportToChannelTask newTask(String channelName, String... uris) {
+        Properties properties = new Properties();
+        properties.setProperty(Options.PIPELINE_OUTPUT_CHANNEL, channelName);
+        ExportToChannelTask instance = new ExportToChannelTask();
+        instance.setProperties(properties);
+        instance.setInputURI(uris);
+        return instance;
+    }
+}
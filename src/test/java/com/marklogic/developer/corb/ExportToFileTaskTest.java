@@ -25,6 +25,7 @@ import com.marklogic.xcc.ResultSequence;
 import com.marklogic.xcc.types.XdmItem;
 import java.io.File;
 import java.io.IOException;
+import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.junit.After;
@@ -68,6 +69,18 @@ public class ExportToFileTaskTest {
         assertEquals(expected, filename);
     }
 
+    @Test
+    public void testGetFileNameCompressed() {
+        ExportToFileTask instance = new ExportToFileTask();
+        Properties props = new Properties();
+        props.setProperty(Options.EXPORT_FILE_COMPRESSION, ExportToFileTask.GZIP);
+        instance.setProperties(props);
+        instance.setInputURI(new String[]{"/report.xml"});
+        assertEquals("report.xml.gz", instance.getFileName());
+        instance.setInputURI(new String[]{"/report.xml.gz"});
+        assertEquals("report.xml.gz", instance.getFileName());
+    }
+
     @Test
     public void testGetFileNameWithLeadingSlash() {
         ExportToFileTask instance = new ExportToFileTask();
@@ -0,0 +1,67 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import com.marklogic.xcc.ResultItem;
+import com.marklogic.xcc.ResultSequence;
+import com.marklogic.xcc.types.XdmItem;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ExportToSinkTaskTest {
+
+    @Test
+    public void testProcessResult() throws Exception {
+        AsyncResultSinkTest.CollectingResultSink sink = new AsyncResultSinkTest.CollectingResultSink();
+        AsyncResultSink resultSink = new AsyncResultSink(sink, 1);
+        resultSink.open();
+
+        ResultSequence seq = mock(ResultSequence.class);
+        ResultItem first = mock(ResultItem.class);
+        ResultItem second = mock(ResultItem.class);
+        XdmItem firstItem = mock(XdmItem.class);
+        XdmItem secondItem = mock(XdmItem.class);
+        when(first.getItem()).thenReturn(firstItem);
+        when(second.getItem()).thenReturn(secondItem);
+        when(firstItem.asString()).thenReturn("one");
+        when(secondItem.asString()).thenReturn("two");
+        when(seq.hasNext()).thenReturn(true, true, false);
+        when(seq.next()).thenReturn(first, second);
+
+        ExportToSinkTask instance = new ExportToSinkTask();
+        instance.setInputURI("/a.xml");
+        instance.setResultSink(resultSink);
+        assertEquals(AbstractTask.TRUE, instance.processResult(seq));
+        resultSink.close();
+        assertEquals(2, sink.results.size());
+        assertEquals("one", sink.results.get(0));
+        assertEquals("two", sink.results.get(1));
+        assertEquals("/a.xml", sink.uris.get(0));
+    }
+
+    @Test(expected = CorbException.class)
+    public void testProcessResultWithoutSink() throws CorbException {
+        ExportToSinkTask instance = new ExportToSinkTask();
+        instance.setInputURI("/a.xml");
+        instance.processResult(mock(ResultSequence.class));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Properties;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class FileResultSinkTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testWrite() throws IOException {
+        File exportDir = tempFolder.newFolder();
+        Properties properties = new Properties();
+        properties.setProperty(Options.EXPORT_FILE_DIR, exportDir.getAbsolutePath());
+        properties.setProperty(Options.EXPORT_FILE_NAME, "report.txt");
+        properties.setProperty(Options.EXPORT_FILE_PART_EXT, "part");
+        File file = new File(exportDir, "report.txt.part");
+        Files.write(file.toPath(), Arrays.asList("header"), StandardCharsets.UTF_8);
+
+        FileResultSink instance = new FileResultSink();
+        instance.setProperties(properties);
+        instance.open();
+        instance.write(new String[]{"/a.xml"}, "a".getBytes(StandardCharsets.UTF_8));
+        instance.write(new String[]{"/b.xml"}, "b".getBytes(StandardCharsets.UTF_8));
+        instance.close();
+        assertEquals(file, instance.getFile());
+        assertEquals(Arrays.asList("header", "a", "b"), Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testOpenWithoutFileName() throws IOException {
+        FileResultSink instance = new FileResultSink();
+        instance.setProperties(new Properties());
+        instance.open();
+    }
+}
@@ -23,6 +23,8 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -276,6 +278,29 @@ public class FileUrisLoaderTest {
         }
     }
 
+    @Test
+    public void testNextUTF8() {
+        try (FileUrisLoader instance = new FileUrisLoader()) {
+            TransformOptions options = new TransformOptions();
+            try {
+                File file = File.createTempFile("temp", ".txt");
+                file.deleteOnExit();
+                Files.write(file.toPath(), "/em\u2014dash.xml\r\n/caf\u00e9.xml\r\n".getBytes(StandardCharsets.UTF_8));
+                options.setUrisFile(file.getAbsolutePath());
+                instance.options = options;
+                instance.open();
+
+                assertEquals(3, instance.getTotalCount());
+                assertEquals("/em\u2014dash.xml", instance.next());
+                assertEquals("/caf\u00e9.xml", instance.next());
+                assertFalse(instance.hasNext());
+            } catch (IOException | CorbException ex) {
+                LOG.log(Level.SEVERE, null, ex);
+                fail();
+            }
+        }
+    }
+
     @Test
     public void testClose() {
         FileUrisLoader instance = new FileUrisLoader();
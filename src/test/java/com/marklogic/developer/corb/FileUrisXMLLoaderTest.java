@@ -45,6 +45,7 @@ public class FileUrisXMLLoaderTest {
     private static final String ANCHOR2 = "<a href=\"test2.html\">test2</a>";
     private static final String ANCHOR3 = "<a href=\"test3.html\">test3</a>";
     private static final String ANCHOR4 = "<a href=\"\"><!----></a>";
+    private static final String ANCHOR4_WITHOUT_COMMENT = "<a href=\"\"/>";
     private static final String TEST0 = "head0";
     private static final String TEST1 = "test1";
     private static final String TEST2 = "test2";
@@ -441,6 +442,101 @@ public class FileUrisXMLLoaderTest {
         assertNull(instance.replacements);
     }
 
+    @Test
+    public void testOpenLazily() {
+        List<String> nodes;
+        try (FileUrisXMLLoader instance = getDefaultFileUrisXMLLoader()) {
+            instance.properties.setProperty(Options.XML_LAZY_LOAD, Boolean.toString(true));
+            instance.open();
+            assertNull(instance.nodeIterator);
+            assertNotNull(instance.xmlStreamReader);
+            assertEquals(4, instance.getTotalCount());
+            nodes = new ArrayList<>(4);
+            while (instance.hasNext()) {
+                nodes.add(instance.next());
+            }
+            assertEquals(4, nodes.size());
+            assertEquals(ANCHOR1, nodes.get(0));
+            assertEquals(ANCHOR2, nodes.get(1));
+            assertEquals(ANCHOR3, nodes.get(2));
+            assertEquals(ANCHOR4_WITHOUT_COMMENT, nodes.get(3));
+
+            String metadata = instance.properties.getProperty(PRE_BATCH_MODULE + '.' + METADATA);
+            assertEquals(ANCHOR0, metadata);
+        } catch (CorbException ex) {
+            LOG.log(Level.SEVERE, null, ex);
+            fail();
+        }
+    }
+
+    @Test
+    public void testOpenLazilyWithoutXPath() {
+        List<String> nodes;
+        try (FileUrisXMLLoader instance = getDefaultFileUrisXMLLoader()) {
+            instance.properties.setProperty(Options.XML_LAZY_LOAD, Boolean.toString(true));
+            instance.properties.remove(Options.XML_NODE);
+            instance.properties.remove(Options.XML_METADATA);
+            instance.open();
+            assertEquals(5, instance.getTotalCount());
+            nodes = new ArrayList<>(5);
+            while (instance.hasNext()) {
+                nodes.add(instance.next());
+            }
+            assertEquals(5, nodes.size());
+            assertEquals(ANCHOR0, nodes.get(0));
+            assertEquals(ANCHOR4_WITHOUT_COMMENT, nodes.get(4));
+            assertNull(instance.customMetadata);
+        } catch (CorbException ex) {
+            LOG.log(Level.SEVERE, null, ex);
+            fail();
+        }
+    }
+
+    @Test
+    public void testOpenLazilyWithEnvelopeAndBase64Encoded() {
+        List<String> nodes;
+        try (FileUrisXMLLoader instance = getDefaultFileUrisXMLLoader()) {
+            instance.properties.setProperty(Options.XML_LAZY_LOAD, Boolean.toString(true));
+            instance.properties.setProperty(Options.LOADER_USE_ENVELOPE, Boolean.toString(true));
+            instance.properties.setProperty(Options.LOADER_BASE64_ENCODE, Boolean.toString(true));
+            instance.open();
+            nodes = new ArrayList<>(4);
+            while (instance.hasNext()) {
+                nodes.add(instance.next());
+            }
+            assertEquals(4, nodes.stream()
+                    .filter(p -> !p.contains(ANCHOR1) && p.contains(FileUrisXMLLoader.LOADER_DOC))
+                    .count());
+        } catch (CorbException ex) {
+            LOG.log(Level.SEVERE, null, ex);
+            fail();
+        }
+    }
+
+    @Test
+    public void testOpenLazilyNoMatches() {
+        try (FileUrisXMLLoader instance = getDefaultFileUrisXMLLoader()) {
+            instance.properties.setProperty(Options.XML_LAZY_LOAD, Boolean.toString(true));
+            instance.properties.setProperty(Options.XML_NODE, "/root/missing");
+            instance.open();
+            assertEquals(0, instance.getTotalCount());
+            assertFalse(instance.hasNext());
+        } catch (CorbException ex) {
+            LOG.log(Level.SEVERE, null, ex);
+            fail();
+        }
+    }
+
+    @Test
+    public void testOpenLazilyClose() throws CorbException {
+        FileUrisXMLLoader instance = getDefaultFileUrisXMLLoader();
+        instance.properties.setProperty(Options.XML_LAZY_LOAD, Boolean.toString(true));
+        instance.open();
+        assertTrue(instance.hasNext());
+        instance.close();
+        assertNull(instance.xmlStreamReader);
+    }
+
     public List<String> testSelectNodes(String xpath) {
         return testSelectNodes(xpath, false);
     }
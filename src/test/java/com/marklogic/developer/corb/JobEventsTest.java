@@ -0,0 +1,127 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Test;
+
+public class JobEventsTest {
+
+    @After
+    public void tearDown() {
+        JobEvents.stopRecording();
+    }
+
+    @Test
+    public void testBeginWhenNotRecording() {
+        assumeTrue(JobEvents.isAvailable());
+        assertFalse(JobEvents.isRecording());
+        JobEvent event = JobEvents.begin(JobEvents.Category.TASK, "submit");
+        assertSame(JobEvent.NONE, event);
+        assertSame(JobEvent.NONE, event.detail("/a.xml").count(1));
+        event.close();
+    }
+
+    @Test
+    public void testGetRecordingFile() {
+        assertEquals("job.jfr", JobEvents.getRecordingFile(" job.jfr ").getName());
+        String name = JobEvents.getRecordingFile(null).getName();
+        assertTrue(name.startsWith("corb-"));
+        assertTrue(name.endsWith(".jfr"));
+    }
+
+    @Test
+    public void testStopRecordingWhenNotStarted() {
+        assertNull(JobEvents.stopRecording());
+    }
+
+    @Test
+    public void testRecording() throws Exception {
+        assumeTrue(JobEvents.isAvailable());
+        File destination = File.createTempFile("corb", ".jfr");
+        destination.deleteOnExit();
+        assertTrue(JobEvents.startRecording(destination));
+        assertTrue(JobEvents.isRecording());
+
+        try (JobEvent event = JobEvents.begin(JobEvents.Category.TASK, "submit")) {
+            assertNotSame(JobEvent.NONE, event);
+            event.detail("/a.xml,/b.xml").count(2);
+        }
+        try (JobEvent event = JobEvents.begin(JobEvents.Category.EXPORT, "write")) {
+            event.detail("report.csv").count(42);
+        }
+        try (JobEvent event = JobEvents.begin(JobEvents.Category.URIS_LOADER, "load")) {
+            Thread.sleep(5);
+        }
+
+        assertEquals(destination.getAbsoluteFile(), JobEvents.stopRecording());
+        assertFalse(JobEvents.isRecording());
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(destination.toPath()).stream()
+            .filter(event -> event.getEventType().getName().startsWith(JobEvents.EVENT_NAME_PREFIX))
+            .collect(Collectors.toList());
+        assertEquals(3, events.size());
+        RecordedEvent submit = find(events, "Task");
+        assertEquals("submit", submit.getString("action"));
+        assertEquals("/a.xml,/b.xml", submit.getString("detail"));
+        assertEquals(2, submit.getLong("count"));
+        assertEquals(42, find(events, "Export").getLong("count"));
+        assertEquals("load", find(events, "UrisLoader").getString("action"));
+    }
+
+    @Test
+    public void testUpdateFlightRecording() throws Exception {
+        assumeTrue(JobEvents.isAvailable());
+        File destination = File.createTempFile("corb", ".jfr");
+        destination.deleteOnExit();
+        Map<String, String> params = new HashMap<>();
+        params.put(Options.FLIGHT_RECORDING, "true");
+        JobServer.updateFlightRecording(params, destination.getPath());
+        assertTrue(JobEvents.isRecording());
+
+        params.put(Options.FLIGHT_RECORDING, "false");
+        JobServer.updateFlightRecording(params, null);
+        assertFalse(JobEvents.isRecording());
+        assertTrue(destination.length() > 0);
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, String name) {
+        RecordedEvent found = events.stream()
+            .filter(event -> event.getEventType().getName().equals(JobEvents.EVENT_NAME_PREFIX + name))
+            .findFirst().orElse(null);
+        assertNotNull(found);
+        return found;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class JobSchedulerTest {
+
+    @Test
+    public void testAcquireRelease() throws InterruptedException {
+        JobScheduler scheduler = new JobScheduler(2);
+        JobScheduler.Job job = scheduler.register("job", 1);
+        job.acquire();
+        job.acquire();
+        assertEquals(2, job.getRunning());
+        assertEquals(2, scheduler.getRunning());
+        job.release();
+        assertEquals(1, scheduler.getRunning());
+        job.release();
+        job.release();
+        assertEquals(0, job.getRunning());
+        assertEquals(0, scheduler.getRunning());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThreadCountMustBePositive() {
+        new JobScheduler(0);
+    }
+
+    @Test
+    public void testPriorityIsAtLeastOne() {
+        JobScheduler scheduler = new JobScheduler(1);
+        assertEquals(1, scheduler.register("job", -1).getPriority());
+    }
+
+    @Test
+    public void testSlotGoesToJobWithSmallestShare() throws InterruptedException {
+        JobScheduler scheduler = new JobScheduler(4);
+        JobScheduler.Job low = scheduler.register("low", 1);
+        JobScheduler.Job high = scheduler.register("high", 3);
+        low.acquire();
+        low.acquire();
+        high.acquire();
+        high.acquire();
+
+        Thread lowWaiting = acquireInBackground(low);
+        Thread highWaiting = acquireInBackground(high);
+        low.release();
+        highWaiting.join(5000);
+        assertFalse(highWaiting.isAlive());
+        assertEquals(3, high.getRunning());
+        assertEquals(1, low.getRunning());
+        assertTrue(lowWaiting.isAlive());
+
+        high.release();
+        lowWaiting.join(5000);
+        assertFalse(lowWaiting.isAlive());
+        assertEquals(2, low.getRunning());
+    }
+
+    @Test
+    public void testIncreaseThreadCount() throws InterruptedException {
+        JobScheduler scheduler = new JobScheduler(1);
+        JobScheduler.Job job = scheduler.register("job", 1);
+        job.acquire();
+        Thread waiting = acquireInBackground(job);
+        scheduler.setThreadCount(2);
+        waiting.join(5000);
+        assertFalse(waiting.isAlive());
+        assertEquals(2, job.getRunning());
+    }
+
+    @Test
+    public void testUnregisterReleasesSlots() throws InterruptedException {
+        JobScheduler scheduler = new JobScheduler(1);
+        JobScheduler.Job first = scheduler.register("first", 1);
+        JobScheduler.Job second = scheduler.register("second", 1);
+        first.acquire();
+        Thread waiting = acquireInBackground(second);
+        scheduler.unregister(first);
+        waiting.join(5000);
+        assertFalse(waiting.isAlive());
+        assertEquals(1, scheduler.getRunning());
+        first.release();
+        assertEquals(1, scheduler.getRunning());
+    }
+
+    @Test
+    public void testExecutorSharesThreads() throws InterruptedException {
+        JobScheduler scheduler = new JobScheduler(1);
+        AtomicInteger executing = new AtomicInteger();
+        AtomicInteger maxExecuting = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(8);
+        PausableThreadPoolExecutor[] pools = new PausableThreadPoolExecutor[2];
+        for (int i = 0; i < pools.length; i++) {
+            pools[i] = new PausableThreadPoolExecutor(2, 2, 1, TimeUnit.SECONDS, new ArrayBlockingQueue<>(8), new ThreadPoolExecutor.AbortPolicy());
+            pools[i].setScheduledJob(scheduler.register("job" + i, 1));
+        }
+        for (int i = 0; i < 8; i++) {
+            pools[i % 2].execute(() -> {
+                maxExecuting.accumulateAndGet(executing.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                executing.decrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (PausableThreadPoolExecutor pool : pools) {
+            pool.shutdown();
+        }
+        assertEquals(1, maxExecuting.get());
+    }
+
+    @Test
+    public void testShareContentSourcePool() throws Exception {
+        JobScheduler scheduler = new JobScheduler(1);
+        ContentSourcePool first = mock(ContentSourcePool.class);
+        ContentSourcePool second = mock(ContentSourcePool.class);
+        ContentSourcePool other = mock(ContentSourcePool.class);
+        assertEquals(first, scheduler.shareContentSourcePool("xcc://localhost:8000", first));
+        assertEquals(first, scheduler.shareContentSourcePool("xcc://localhost:8000", second));
+        assertEquals(other, scheduler.shareContentSourcePool("xcc://otherhost:8000", other));
+        verify(second).close();
+
+        assertTrue(scheduler.releaseContentSourcePool(first));
+        verify(first, never()).close();
+        assertTrue(scheduler.releaseContentSourcePool(first));
+        verify(first).close();
+        assertFalse(scheduler.releaseContentSourcePool(first));
+        assertFalse(scheduler.releaseContentSourcePool(second));
+    }
+
+    private static Thread acquireInBackground(JobScheduler.Job job) throws InterruptedException {
+        Thread thread = new Thread(() -> {
+            try {
+                job.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        while (thread.getState() != Thread.State.WAITING && thread.isAlive()) {
+            Thread.sleep(5);
+        }
+        return thread;
+    }
+}
@@ -87,6 +87,30 @@ public class JobServerTest {
         }
     }
 
+    @Test
+    public void testSchedulerThreadsOnlyChangedFromMetricsPath() throws IOException {
+        int port = 9997;
+        JobServer server = JobServer.create(port);
+        JobScheduler scheduler = new JobScheduler(4);
+        server.setJobScheduler(scheduler);
+        server.start();
+        try {
+            URL url = new URL("http://localhost:" + port + "/job?" + Options.THREAD_COUNT + "=2");
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            assertEquals(HttpURLConnection.HTTP_NOT_FOUND, conn.getResponseCode());
+            assertEquals(4, scheduler.getThreadCount());
+
+            url = new URL("http://localhost:" + port + JobServer.METRICS_PATH + "?" + Options.THREAD_COUNT + "=2");
+            conn = (HttpURLConnection) url.openConnection();
+            assertEquals(HttpURLConnection.HTTP_OK, conn.getResponseCode());
+            //read the whole response, so that the server is not stopped while writing it
+            IOUtils.toByteArray(conn.getInputStream());
+            assertEquals(2, scheduler.getThreadCount());
+        } finally {
+            server.stop(0);
+        }
+    }
+
     @Test
     public void testGetContentType() throws Exception {
         String HTML = "text/html; charset=utf-8";
@@ -168,6 +168,55 @@ public class JobServicesHandlerTest {
         assertEquals(80, manager.options.getThreadCount());
     }
 
+    @Test
+    public void updatePriority() throws Exception {
+        Map<String, String> parameters = new HashMap<>(2);
+        parameters.put(Options.JOB_PRIORITY, Integer.toString(3));
+        Manager manager = new Manager();
+        manager.options = new TransformOptions();
+        JobScheduler scheduler = new JobScheduler(4);
+        manager.scheduledJob = scheduler.register("job", 1);
+        JobServicesHandler handler = new JobServicesHandler(manager);
+        handler.updatePriority(parameters);
+        assertEquals(3, manager.options.getJobPriority());
+        assertEquals(3, manager.scheduledJob.getPriority());
+    }
+
+    @Test
+    public void updatePriorityNotNumeric() throws Exception {
+        Map<String, String> parameters = new HashMap<>(2);
+        parameters.put(Options.JOB_PRIORITY, "high");
+        Manager manager = new Manager();
+        manager.options = new TransformOptions();
+        JobServicesHandler handler = new JobServicesHandler(manager);
+        handler.updatePriority(parameters);
+        assertEquals(1, manager.options.getJobPriority());
+    }
+
+    @Test
+    public void updateRateLimit() throws Exception {
+        Map<String, String> parameters = new HashMap<>(2);
+        parameters.put(Options.RATE_LIMIT, "7.5");
+        Manager manager = new Manager();
+        manager.options = new TransformOptions();
+        manager.rateLimiter = new RateLimiter(0, false);
+        JobServicesHandler handler = new JobServicesHandler(manager);
+        handler.updateRateLimit(parameters);
+        assertEquals(0, manager.options.getRateLimit(), 0);
+        assertEquals(7.5, manager.getRateLimiter().getRate(), 0);
+    }
+
+    @Test
+    public void updateRateLimitNotNumeric() throws Exception {
+        Map<String, String> parameters = new HashMap<>(2);
+        parameters.put(Options.RATE_LIMIT, "fast");
+        Manager manager = new Manager();
+        manager.options = new TransformOptions();
+        JobServicesHandler handler = new JobServicesHandler(manager);
+        handler.updateRateLimit(parameters);
+        assertEquals(0, manager.options.getRateLimit(), 0);
+    }
+
     @Test
     public void getParameter() {
         Map<String, String> parameters = new HashMap<>(2);
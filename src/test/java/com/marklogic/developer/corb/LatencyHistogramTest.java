@@ -0,0 +1,77 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketIndex() {
+        for (long micros = 0; micros < 16; micros++) {
+            assertEquals(micros, LatencyHistogram.bucketIndex(micros));
+            assertEquals(micros, LatencyHistogram.bucketValue((int) micros), 0);
+        }
+        assertEquals(16, LatencyHistogram.bucketIndex(16));
+        assertEquals(16, LatencyHistogram.bucketIndex(17));
+        assertEquals(17, LatencyHistogram.bucketIndex(18));
+        assertTrue(LatencyHistogram.bucketIndex(Long.MAX_VALUE) < LatencyHistogram.BUCKETS);
+    }
+
+    @Test
+    public void testBucketValueIsWithinRange() {
+        for (long micros : new long[]{100, 999, 12345, 1000000, 987654321}) {
+            double value = LatencyHistogram.bucketValue(LatencyHistogram.bucketIndex(micros));
+            assertEquals(micros, value, micros * 0.125);
+        }
+    }
+
+    @Test
+    public void testPercentileMillis() {
+        LatencyHistogram instance = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            instance.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        long[] counts = instance.snapshot();
+        assertEquals(50, LatencyHistogram.percentileMillis(counts, 50), 50 * 0.125);
+        assertEquals(90, LatencyHistogram.percentileMillis(counts, 90), 90 * 0.125);
+        assertEquals(99, LatencyHistogram.percentileMillis(counts, 99), 99 * 0.125);
+        assertEquals(1, LatencyHistogram.percentileMillis(counts, 0), 0.125);
+    }
+
+    @Test
+    public void testPercentileMillisEmpty() {
+        assertEquals(-1, LatencyHistogram.percentileMillis(new LatencyHistogram().snapshot(), 50), 0);
+    }
+
+    @Test
+    public void testDifference() {
+        LatencyHistogram instance = new LatencyHistogram();
+        instance.record(TimeUnit.SECONDS.toNanos(5));
+        long[] previous = instance.snapshot();
+        instance.record(TimeUnit.MILLISECONDS.toNanos(2));
+        long[] difference = LatencyHistogram.difference(instance.snapshot(), previous);
+        assertEquals(2, LatencyHistogram.percentileMillis(difference, 99), 2 * 0.125);
+        assertEquals(5000, LatencyHistogram.percentileMillis(LatencyHistogram.difference(instance.snapshot(), null), 99), 5000 * 0.125);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * End to end throughput of the Manager against a {@link StubXdbcServer}, so
+ * that client-side overhead can be measured without a MarkLogic server.
+ * Override with -Dstub.uriCount, -Dstub.threadCount, -Dstub.batchSize,
+ * -Dstub.latencyMillis and -Dstub.payloadSize.
+ */
+public class ManagerStubPT {
+
+    private static final Logger LOG = Logger.getLogger(ManagerStubPT.class.getName());
+    private StubXdbcServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        TestUtils.clearSystemProperties();
+        server = new StubXdbcServer();
+        server.start(0);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        TestUtils.clearSystemProperties();
+    }
+
+    @Test
+    public void testThroughput() throws Exception {
+        int uriCount = Integer.getInteger("stub.uriCount", 1000000);
+        server.setUriCount(uriCount);
+        server.setLatency(Long.getLong("stub.latencyMillis", 0L), TimeUnit.MILLISECONDS);
+        server.setPayloadSize(Integer.getInteger("stub.payloadSize", 0));
+
+        Properties properties = new Properties();
+        properties.setProperty(Options.XCC_CONNECTION_URI, server.getConnectionUri("user", "password"));
+        properties.setProperty(Options.URIS_MODULE, "src/test/resources/selector.xqy|ADHOC");
+        properties.setProperty(Options.PROCESS_MODULE, "src/test/resources/transform.xqy|ADHOC");
+        properties.setProperty(Options.THREAD_COUNT, Integer.getInteger("stub.threadCount", 16).toString());
+        properties.setProperty(Options.BATCH_SIZE, Integer.getInteger("stub.batchSize", 1).toString());
+        properties.setProperty(Options.METRICS_LOG_LEVEL, "NONE");
+
+        Manager manager = new Manager();
+        manager.init(properties);
+        long start = System.nanoTime();
+        long count = manager.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        assertEquals(uriCount, count);
+        assertFalse(manager.execError);
+        LOG.info(String.format("Processed %,d URIs in %,.1f seconds: %,.0f URIs/sec, %,.0f requests/sec",
+            count, seconds, count / seconds, server.getProcessRequestCount() / seconds));
+    }
+}
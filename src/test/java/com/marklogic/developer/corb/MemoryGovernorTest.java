@@ -0,0 +1,178 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MemoryGovernorTest {
+
+    private PausableThreadPoolExecutor newPool() {
+        BlockingQueue<Runnable> queue = mock(BlockingQueue.class);
+        RejectedExecutionHandler handler = mock(RejectedExecutionHandler.class);
+        return new PausableThreadPoolExecutor(1, 1, 1000, TimeUnit.MILLISECONDS, queue, handler);
+    }
+
+    private TransformOptions newOptions() {
+        TransformOptions options = new TransformOptions();
+        options.setThreadCount(8);
+        options.setMemoryHighWatermark(80);
+        options.setMemoryCriticalWatermark(90);
+        return options;
+    }
+
+    private MemoryGovernor newGovernor(PausableThreadPoolExecutor pool) {
+        return new MemoryGovernor(pool, newOptions(), Collections.emptyList());
+    }
+
+    @Test
+    public void testUpdateHalvesAboveHighWatermark() {
+        PausableThreadPoolExecutor pool = newPool();
+        MemoryGovernor governor = newGovernor(pool);
+        assertEquals(MemoryGovernor.Level.NORMAL, governor.update(0.79));
+        assertEquals(Integer.MAX_VALUE, pool.getMemoryLimit());
+        assertEquals(MemoryGovernor.Level.HIGH, governor.update(0.8));
+        assertEquals(4, pool.getMemoryLimit());
+        assertTrue(governor.isUnderPressure());
+    }
+
+    @Test
+    public void testUpdateRestrictsToOneAboveCriticalWatermark() {
+        PausableThreadPoolExecutor pool = newPool();
+        MemoryGovernor governor = newGovernor(pool);
+        assertEquals(MemoryGovernor.Level.CRITICAL, governor.update(0.95));
+        assertEquals(1, pool.getMemoryLimit());
+    }
+
+    @Test
+    public void testUpdateResumesBelowNinetyPercentOfWatermark() {
+        PausableThreadPoolExecutor pool = newPool();
+        MemoryGovernor governor = newGovernor(pool);
+        governor.update(0.95);
+        assertEquals(MemoryGovernor.Level.CRITICAL, governor.update(0.85));
+        assertEquals(MemoryGovernor.Level.HIGH, governor.update(0.8));
+        assertEquals(MemoryGovernor.Level.HIGH, governor.update(0.75));
+        assertEquals(4, pool.getMemoryLimit());
+        assertEquals(MemoryGovernor.Level.NORMAL, governor.update(0.7));
+        assertEquals(Integer.MAX_VALUE, pool.getMemoryLimit());
+        assertFalse(governor.isUnderPressure());
+    }
+
+    @Test
+    public void testGetQueueWindow() {
+        MemoryGovernor governor = newGovernor(newPool());
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(10);
+        assertEquals(Integer.MAX_VALUE, governor.getQueueWindow(queue));
+        governor.update(0.8);
+        assertEquals(5, governor.getQueueWindow(queue));
+        governor.update(0.9);
+        assertEquals(1, governor.getQueueWindow(queue));
+    }
+
+    @Test
+    public void testAwaitCapacityUntilQueueDrains() throws InterruptedException {
+        MemoryGovernor governor = newGovernor(newPool());
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(10);
+        queue.add(() -> { });
+        governor.update(0.9);
+        new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            queue.clear();
+        }).start();
+        long start = System.currentTimeMillis();
+        governor.awaitCapacity(queue);
+        assertTrue(System.currentTimeMillis() - start >= 150);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testGetUsage() {
+        MemoryPoolMXBean oldGen = mock(MemoryPoolMXBean.class);
+        when(oldGen.getUsage()).thenReturn(new MemoryUsage(0, 60, 100, 100));
+        MemoryPoolMXBean unbounded = mock(MemoryPoolMXBean.class);
+        when(unbounded.getUsage()).thenReturn(new MemoryUsage(0, 60, 100, -1));
+        MemoryGovernor governor = new MemoryGovernor(newPool(), newOptions(), Arrays.asList(oldGen, unbounded));
+        assertEquals(0.6, governor.getUsage(), 0.001);
+    }
+
+    @Test
+    public void testRunWhenShutdown() {
+        PausableThreadPoolExecutor pool = newPool();
+        pool.shutdown();
+        MemoryPoolMXBean oldGen = mock(MemoryPoolMXBean.class);
+        when(oldGen.getUsage()).thenReturn(new MemoryUsage(0, 99, 100, 100));
+        MemoryGovernor governor = new MemoryGovernor(pool, newOptions(), Collections.singletonList(oldGen));
+        governor.run();
+        assertEquals(MemoryGovernor.Level.NORMAL, governor.getLevel());
+    }
+
+    @Test
+    public void testStartAndClose() {
+        PausableThreadPoolExecutor pool = newPool();
+        MemoryGovernor governor = new MemoryGovernor(pool, newOptions(), MemoryGovernor.heapMemoryPools());
+        governor.start();
+        governor.update(0.95);
+        governor.close();
+        assertEquals(MemoryGovernor.Level.NORMAL, governor.getLevel());
+        assertEquals(Integer.MAX_VALUE, pool.getMemoryLimit());
+        for (MemoryPoolMXBean memoryPool : MemoryGovernor.heapMemoryPools()) {
+            assertEquals(0, memoryPool.getUsageThreshold());
+        }
+    }
+
+    @Test
+    public void testStartedGovernorsShareUsageThresholds() {
+        MemoryPoolMXBean oldGen = mock(MemoryPoolMXBean.class);
+        when(oldGen.getName()).thenReturn("old");
+        when(oldGen.getUsage()).thenReturn(new MemoryUsage(0, 10, 100, 1000));
+        TransformOptions lowerOptions = newOptions();
+        lowerOptions.setMemoryHighWatermark(60);
+        MemoryGovernor governor = new MemoryGovernor(newPool(), newOptions(), Collections.singletonList(oldGen));
+        MemoryGovernor lower = new MemoryGovernor(newPool(), lowerOptions, Collections.singletonList(oldGen));
+
+        governor.start();
+        verify(oldGen).setUsageThreshold(800);
+        lower.start();
+        verify(oldGen).setUsageThreshold(600);
+        //the other governor still needs to be notified at its watermark
+        lower.close();
+        verify(oldGen, times(2)).setUsageThreshold(800);
+        governor.close();
+        verify(oldGen).setUsageThreshold(0);
+        governor.close();
+        verify(oldGen).setUsageThreshold(0);
+    }
+}
@@ -23,7 +23,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.List;
-import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
@@ -33,7 +36,10 @@ import static com.marklogic.developer.corb.TestUtils.clearSystemProperties;
 import static com.marklogic.developer.corb.TestUtils.containsLogRecord;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -56,13 +62,49 @@ public class MonitorTest {
     public void testRunWhenPaused() {
         PausableThreadPoolExecutor pool = mock(PausableThreadPoolExecutor.class);
         when(pool.isPaused()).thenReturn(true);
-        Monitor instance = new Monitor(pool, mock(CompletionService.class), mock(Manager.class));
+        Monitor instance = new Monitor(pool, new CompletionTracker(pool), mock(Manager.class));
         instance.run();
         List<LogRecord> records = testLogger.getLogRecords();
         assertFalse(containsLogRecord(records,
                 new LogRecord(Level.INFO, "CoRB2 has been paused. Resume execution by changing the state in the command file null to RESUME")));
     }
 
+    @Test
+    public void testRunCompletesWhenAllTasksComplete() throws InterruptedException {
+        PausableThreadPoolExecutor pool = new PausableThreadPoolExecutor(2, 2, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+        CompletionTracker tracker = new CompletionTracker(pool);
+        Monitor instance = new Monitor(pool, tracker, mock(Manager.class));
+        instance.setTaskCount(UrisLoader.UNKNOWN_TOTAL_COUNT);
+        Thread thread = new Thread(instance);
+        thread.start();
+        for (int i = 0; i < 10; i++) {
+            tracker.submit(() -> new String[]{"a", "b"});
+        }
+        instance.setTaskCount(20);
+        thread.join(10000);
+        assertFalse(thread.isAlive());
+        assertEquals(20, instance.getCompletedCount());
+        assertTrue(pool.isShutdown());
+    }
+
+    @Test
+    public void testRunStopsManagerOnFailure() throws InterruptedException {
+        PausableThreadPoolExecutor pool = new PausableThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+        CompletionTracker tracker = new CompletionTracker(pool);
+        Manager manager = mock(Manager.class);
+        Monitor instance = new Monitor(pool, tracker, manager);
+        instance.setTaskCount(100);
+        tracker.submit(() -> {
+            throw new CorbException("failed");
+        });
+        Thread thread = new Thread(instance);
+        thread.start();
+        thread.join(10000);
+        assertFalse(thread.isAlive());
+        verify(manager).stop(any(ExecutionException.class));
+        pool.shutdownNow();
+    }
+
     @Test
     public void testCalculateTransactionsPerSecond3args() {
         long amountCompleted = 10L;
@@ -98,6 +140,7 @@ public class MonitorTest {
     @Test
     public void testGetProgressMessage() {
         assertEquals("10/100, 4 tps(avg), 3 tps(cur), ETC 00:00:11, 2 active threads.", getProgressMessage(10, 100, 4, 3, 8, 2, false));
+        assertEquals("10/?, 4 tps(avg), 3 tps(cur), 2 active threads.", getProgressMessage(10, UrisLoader.UNKNOWN_TOTAL_COUNT, 4, 3, null, 2));
         assertEquals("10/100, 0.4 tps(avg), 3 tps(cur), ETC 00:07:30 (paused), 2 active threads.", getProgressMessage(10, 100, 0.4, 3, 0.2, 2, true));
         assertEquals("10/100, 0.49 tps(avg), 3 tps(cur), ETC 00:03:03, 2 active threads.", getProgressMessage(10, 100, 0.49, 3, 0.49, 2, false));
         assertEquals("10/100, 0.45 tps(avg), 3 tps(cur), ETC 00:03:20, 2 active threads.", getProgressMessage(10, 100, 0.449, 3, 0.449, 2, false));
@@ -167,4 +167,50 @@ public class PausableThreadPoolExecutorTest {
         assertNotNull(executor.topUriList.getData().get("URI1"));
     }
 
+    @Test
+    public void testBeforeExecuteWaitsForAdmission() {
+        BlockingQueue<Runnable> queue = mock(BlockingQueue.class);
+        RejectedExecutionHandler handler = mock(RejectedExecutionHandler.class);
+        PausableThreadPoolExecutor executor = new PausableThreadPoolExecutor(1, 1, 1000, TimeUnit.MILLISECONDS, queue, handler);
+        executor.setAdmissionLimit(1);
+        executor.beforeExecute(null, null);
+
+        LocalDateTime startedAt = LocalDateTime.now();
+        int howLongToWait = 200;
+        TimerTask deferRaiseLimit = new TimerTask() {
+                    @Override
+                    public void run() {
+                        executor.setAdmissionLimit(2);
+                    }
+                };
+        new Timer().schedule(deferRaiseLimit, howLongToWait);
+        executor.beforeExecute(null, null);
+        Duration elapsedTime = Duration.between(startedAt, LocalDateTime.now());
+        assertTrue(elapsedTime.toMillis() >= howLongToWait);
+        assertEquals(2, executor.getAdmissionLimit());
+    }
+
+    @Test
+    public void testBeforeExecuteWaitsForMemory() {
+        BlockingQueue<Runnable> queue = mock(BlockingQueue.class);
+        RejectedExecutionHandler handler = mock(RejectedExecutionHandler.class);
+        PausableThreadPoolExecutor executor = new PausableThreadPoolExecutor(1, 1, 1000, TimeUnit.MILLISECONDS, queue, handler);
+        executor.setMemoryLimit(1);
+        executor.beforeExecute(null, null);
+
+        LocalDateTime startedAt = LocalDateTime.now();
+        int howLongToWait = 200;
+        TimerTask deferRaiseLimit = new TimerTask() {
+                    @Override
+                    public void run() {
+                        executor.setMemoryLimit(Integer.MAX_VALUE);
+                    }
+                };
+        new Timer().schedule(deferRaiseLimit, howLongToWait);
+        executor.beforeExecute(null, null);
+        Duration elapsedTime = Duration.between(startedAt, LocalDateTime.now());
+        assertTrue(elapsedTime.toMillis() >= howLongToWait);
+        assertEquals(Integer.MAX_VALUE, executor.getMemoryLimit());
+    }
+
 }
@@ -0,0 +1,89 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PipelineChannelTest {
+
+    @Test
+    public void testPutTakeComplete() throws InterruptedException {
+        PipelineChannel channel = PipelineChannel.open("testPutTakeComplete", 2);
+        try {
+            assertSame(channel, PipelineChannel.get("testPutTakeComplete"));
+            channel.put("a");
+            channel.put("b");
+            assertEquals("a", channel.take());
+            channel.complete();
+            assertEquals("b", channel.take());
+            assertNull(channel.take());
+            assertNull(channel.take());
+            assertEquals(2, channel.getSentCount());
+            assertEquals(2, channel.getReceivedCount());
+        } finally {
+            channel.close();
+        }
+        assertNull(PipelineChannel.get("testPutTakeComplete"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOpenTwice() {
+        PipelineChannel channel = PipelineChannel.open("testOpenTwice", 1);
+        try {
+            PipelineChannel.open("testOpenTwice", 1);
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPutAfterComplete() throws InterruptedException {
+        PipelineChannel channel = new PipelineChannel("testPutAfterComplete", 1);
+        channel.complete();
+        channel.put("a");
+    }
+
+    @Test
+    public void testCancelReleasesProducer() throws InterruptedException {
+        PipelineChannel channel = new PipelineChannel("testCancelReleasesProducer", 1);
+        channel.put("a");
+        Thread producer = new Thread(() -> {
+            try {
+                channel.put("b");
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (IllegalStateException ex) {
+                //expected
+            }
+        });
+        producer.start();
+        channel.cancel();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertTrue(channel.isCancelled());
+        assertNull(channel.take());
+    }
+
+    @Test
+    public void testGetNull() {
+        assertNull(PipelineChannel.get(null));
+    }
+}
@@ -29,7 +29,13 @@ import com.marklogic.xcc.exceptions.RequestPermissionException;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
@@ -475,6 +481,33 @@ public class PostBatchUpdateFileTaskTest {
         fail();
     }
 
+    @Test
+    public void testCallSortCompressed() throws Exception {
+        File tempDir = createTempDirectory();
+        String filename = "export.csv.gz";
+        Properties props = new Properties();
+        props.setProperty(Options.EXPORT_FILE_NAME, filename);
+        props.setProperty(Options.EXPORT_FILE_COMPRESSION, ExportToFileTask.GZIP);
+        props.setProperty(Options.EXPORT_FILE_COMPRESSION_LEVEL, "9");
+        props.setProperty(Options.EXPORT_FILE_HEADER_LINE_COUNT, "1");
+        props.setProperty(Options.EXPORT_FILE_SORT, "ascending|" + DISTINCT);
+        props.setProperty(Options.EXPORT_FILE_BOTTOM_CONTENT, BOTTOM_CONTENT);
+        PostBatchUpdateFileTask instance = new PostBatchUpdateFileTask();
+        instance.setProperties(props);
+        instance.setExportDir(tempDir.toString());
+        //each write appends a separate gzip member
+        instance.writeToExportFile("h");
+        instance.writeToExportFile(Z + D);
+        instance.writeToExportFile(D + A + B);
+        instance.call();
+
+        File file = new File(tempDir, filename);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), StandardCharsets.UTF_8))) {
+            assertEquals(Arrays.asList("h", "a", "b", "d", "z", BOTTOM_CONTENT), reader.lines().collect(Collectors.toList()));
+        }
+        assertEquals(1, tempDir.list().length);
+    }
+
     @Test
     public void testHasRetryableMessage() {
         Request req = mock(Request.class);
@@ -511,4 +544,5 @@ public class PostBatchUpdateFileTaskTest {
             return Integer.compare(o1.length(), o2.length());
         }
     }
+
 }
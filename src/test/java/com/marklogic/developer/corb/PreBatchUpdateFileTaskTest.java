@@ -21,10 +21,12 @@ package com.marklogic.developer.corb;
 import com.marklogic.xcc.Request;
 import com.marklogic.xcc.exceptions.RequestPermissionException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
@@ -139,6 +141,26 @@ public class PreBatchUpdateFileTaskTest {
         }
     }
 
+    @Test
+    public void testCallCompressed() throws Exception {
+        File tempDir = TestUtils.createTempDirectory();
+        Properties props = new Properties();
+        props.setProperty(Options.EXPORT_FILE_TOP_CONTENT, "foo,bar\nbaz");
+        props.setProperty(Options.EXPORT_FILE_NAME, "topContent.gz");
+        props.setProperty(Options.EXPORT_FILE_COMPRESSION, ExportToFileTask.GZIP);
+
+        PreBatchUpdateFileTask instance = new PreBatchUpdateFileTask();
+        instance.setProperties(props);
+        instance.setExportDir(tempDir.toString());
+        File partFile = new File(tempDir, instance.getPartFileName());
+        instance.call();
+
+        try (GZIPInputStream in = new GZIPInputStream(new FileInputStream(partFile))) {
+            assertEquals('f', in.read());
+        }
+        assertEquals("2", props.getProperty(Options.EXPORT_FILE_HEADER_LINE_COUNT));
+    }
+
     @Test
     public void testHasRetryableMessage() {
         Request req = mock(Request.class);
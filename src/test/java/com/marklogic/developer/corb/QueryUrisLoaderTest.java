@@ -725,6 +725,27 @@ public class QueryUrisLoaderTest {
         assertFalse(queue.isEmpty());
     }
 
+    @Test
+    public void testPopulateQueueSpillsToDiskWhenMemoryIsShort() {
+        ResultSequence resultSequence = mock(ResultSequence.class);
+        ResultItem resultItem = mock(ResultItem.class);
+        when(resultSequence.hasNext()).thenReturn(true, true, true, false);
+        when(resultSequence.next()).thenReturn(resultItem);
+        when(resultItem.asString()).thenReturn("a", "b", "c");
+        MemoryGovernor memoryGovernor = mock(MemoryGovernor.class);
+        when(memoryGovernor.isUnderPressure()).thenReturn(false, true);
+
+        QueryUrisLoader instance = new QueryUrisLoader();
+        instance.setTotalCount(3);
+        instance.setMemoryGovernor(memoryGovernor);
+        Queue<String> queue = instance.createAndPopulateQueue(resultSequence);
+        assertTrue(queue instanceof DiskQueue);
+        assertEquals(3, queue.size());
+        assertEquals("a", queue.remove());
+        assertEquals("b", queue.remove());
+        assertEquals("c", queue.remove());
+    }
+
     @Test
     public void testGetPropertyNullProperties() {
         System.clearProperty(foo);
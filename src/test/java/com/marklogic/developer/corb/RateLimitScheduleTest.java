@@ -0,0 +1,126 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RateLimitScheduleTest {
+
+    //2020-06-01 is a Monday
+    private static final LocalDateTime MONDAY_NOON = LocalDateTime.of(2020, 6, 1, 12, 0);
+    private static final LocalDateTime MONDAY_NIGHT = LocalDateTime.of(2020, 6, 1, 23, 0);
+    private static final LocalDateTime SATURDAY_EARLY = LocalDateTime.of(2020, 6, 6, 2, 0);
+    private static final LocalDateTime SATURDAY_NOON = LocalDateTime.of(2020, 6, 6, 12, 0);
+
+    private RateLimitSchedule newSchedule(String... lines) throws CorbException {
+        return new RateLimitSchedule(RateLimitSchedule.parse(Arrays.asList(lines)), new RateLimiter(0, false), new TransformOptions());
+    }
+
+    @Test
+    public void testGetRate() throws CorbException {
+        RateLimitSchedule schedule = newSchedule("# business hours", "", "MON-FRI 08:00-18:00 50", "20:00-06:00 0");
+        assertEquals(50, schedule.getRate(MONDAY_NOON, 5), 0);
+        assertEquals(0, schedule.getRate(MONDAY_NIGHT, 5), 0);
+        assertEquals(5, schedule.getRate(SATURDAY_NOON, 5), 0);
+    }
+
+    @Test
+    public void testGetRateSpansMidnight() throws CorbException {
+        RateLimitSchedule schedule = newSchedule("FRI 22:00-04:00 10");
+        //Saturday morning belongs to the range that started on Friday
+        assertEquals(10, schedule.getRate(SATURDAY_EARLY, 5), 0);
+        assertEquals(5, schedule.getRate(MONDAY_NIGHT, 5), 0);
+    }
+
+    @Test
+    public void testGetRateDaysWrapAround() throws CorbException {
+        RateLimitSchedule schedule = newSchedule("SAT-MON 00:00-23:59 1");
+        assertEquals(1, schedule.getRate(SATURDAY_NOON, 5), 0);
+        assertEquals(1, schedule.getRate(MONDAY_NOON, 5), 0);
+        assertEquals(5, schedule.getRate(MONDAY_NOON.plusDays(1), 5), 0);
+    }
+
+    @Test
+    public void testGetRateFirstMatchApplies() throws CorbException {
+        RateLimitSchedule schedule = newSchedule("MONDAY 11:00-13:00 3", "00:00-23:59 4");
+        assertEquals(3, schedule.getRate(MONDAY_NOON, 5), 0);
+        assertEquals(4, schedule.getRate(SATURDAY_NOON, 5), 0);
+    }
+
+    @Test(expected = CorbException.class)
+    public void testParseMissingRate() throws CorbException {
+        RateLimitSchedule.parse(Collections.singletonList("08:00-18:00"));
+    }
+
+    @Test(expected = CorbException.class)
+    public void testParseInvalidTime() throws CorbException {
+        RateLimitSchedule.parse(Collections.singletonList("8am-6pm 10"));
+    }
+
+    @Test(expected = CorbException.class)
+    public void testParseInvalidDay() throws CorbException {
+        RateLimitSchedule.parse(Collections.singletonList("MO 08:00-18:00 10"));
+    }
+
+    @Test(expected = CorbException.class)
+    public void testParseNegativeRate() throws CorbException {
+        RateLimitSchedule.parse(Collections.singletonList("08:00-18:00 -1"));
+    }
+
+    @Test
+    public void testRunKeepsLiveRateUntilScheduleChanges() throws CorbException {
+        RateLimiter limiter = new RateLimiter(0, false);
+        TransformOptions options = new TransformOptions();
+        options.setRateLimit(7);
+        //no scheduled ranges, so the RATE-LIMIT applies
+        List<RateLimitSchedule.Entry> entries = RateLimitSchedule.parse(Collections.singletonList("# none"));
+        RateLimitSchedule schedule = new RateLimitSchedule(entries, limiter, options);
+        schedule.run();
+        assertEquals(7, limiter.getRate(), 0);
+        limiter.setRate(3);
+        schedule.run();
+        assertEquals(3, limiter.getRate(), 0);
+    }
+
+    @Test
+    public void testLoad() throws CorbException, IOException {
+        File file = File.createTempFile("schedule", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), Arrays.asList("00:00-00:00 9"), StandardCharsets.UTF_8);
+        RateLimiter limiter = new RateLimiter(0, false);
+        TransformOptions options = new TransformOptions();
+        RateLimitSchedule.load(file, limiter, options).run();
+        assertEquals(9, limiter.getRate(), 0);
+    }
+
+    @Test(expected = CorbException.class)
+    public void testLoadMissingFile() throws CorbException {
+        RateLimitSchedule.load(new File("does-not-exist.txt"), null, new TransformOptions());
+    }
+}
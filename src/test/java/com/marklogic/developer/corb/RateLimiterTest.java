@@ -0,0 +1,104 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RateLimiterTest {
+
+    @Test
+    public void testAcquireWithoutLimit() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(0, false);
+        long start = System.nanoTime();
+        for (int i = 0; i < 10000; i++) {
+            limiter.acquire(null, 1);
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+    }
+
+    @Test
+    public void testAcquireIsLimited() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(50, false);
+        long start = System.nanoTime();
+        for (int i = 0; i < 25; i++) {
+            limiter.acquire(null, 1);
+        }
+        //25 permits at 50 per second take about half a second
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed >= 400);
+        assertTrue(elapsed < 5000);
+    }
+
+    @Test
+    public void testAcquireMorePermitsThanCapacity() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(10, false);
+        long start = System.nanoTime();
+        //let through once the bucket is full, then paid for by the next request
+        limiter.acquire(null, 20);
+        limiter.acquire(null, 1);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed >= 2000);
+        assertTrue(elapsed < 10000);
+    }
+
+    @Test
+    public void testAcquirePerHost() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(2, true);
+        assertTrue(limiter.isPerHost());
+        limiter.acquire("host1", 1);
+        limiter.acquire("host1", 1);
+        long start = System.nanoTime();
+        //host2 has a bucket of its own
+        limiter.acquire("host2", 1);
+        limiter.acquire("host2", 1);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed < 2000);
+    }
+
+    @Test
+    public void testSetRateReleasesWaitingThread() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(0.01, false);
+        Thread thread = new Thread(() -> {
+            try {
+                limiter.acquire(null, 1);
+                limiter.acquire(null, 1);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        Thread.sleep(100);
+        assertTrue(thread.isAlive());
+        limiter.setRate(0);
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        assertEquals(0, limiter.getRate(), 0);
+    }
+
+    @Test
+    public void testSetRateNegative() {
+        RateLimiter limiter = new RateLimiter(-5, false);
+        assertEquals(0, limiter.getRate(), 0);
+        limiter.setRate(-1);
+        assertEquals(0, limiter.getRate(), 0);
+    }
+}
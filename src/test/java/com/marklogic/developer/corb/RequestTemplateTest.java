@@ -0,0 +1,140 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import com.marklogic.xcc.AdhocQuery;
+import com.marklogic.xcc.ModuleInvoke;
+import com.marklogic.xcc.Request;
+import com.marklogic.xcc.Session;
+import com.marklogic.xcc.ValueFactory;
+import com.marklogic.xcc.impl.AdhocImpl;
+import com.marklogic.xcc.impl.ModuleImpl;
+import com.marklogic.xcc.types.XName;
+import com.marklogic.xcc.types.XdmVariable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.TimeZone;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RequestTemplateTest {
+
+    private static final String MODULE_URI = "/module.xqy";
+
+    @Test
+    public void testCustomInputs() {
+        Properties properties = new Properties();
+        properties.setProperty(Options.PROCESS_MODULE + ".foo", " bar ");
+        properties.setProperty(Options.POST_BATCH_MODULE + ".baz", "bar");
+        properties.setProperty(Options.URIS_BATCH_REF, "ref");
+        RequestTemplate instance = new RequestTemplate(Options.PROCESS_MODULE, MODULE_URI, null, null, null, properties);
+
+        assertEquals(2, instance.getVariables().size());
+        assertEquals("bar", instance.getVariables().get("foo"));
+        assertEquals("ref", instance.getVariables().get(Options.URIS_BATCH_REF));
+    }
+
+    @Test
+    public void testCustomInputsFromSystemProperties() {
+        String key = Options.PROCESS_MODULE + ".sys";
+        Properties properties = new Properties();
+        properties.setProperty(key, "fromProperties");
+        System.setProperty(key, "fromSystem");
+        try {
+            RequestTemplate instance = new RequestTemplate(Options.PROCESS_MODULE, MODULE_URI, null, null, null, properties);
+            assertEquals("fromSystem", instance.getVariables().get("sys"));
+        } finally {
+            System.clearProperty(key);
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testVariablesAreImmutable() {
+        RequestTemplate instance = new RequestTemplate(Options.PROCESS_MODULE, MODULE_URI, null, null, null, new Properties());
+        instance.getVariables().put("foo", "bar");
+    }
+
+    @Test
+    public void testDefaults() {
+        RequestTemplate instance = new RequestTemplate(null, MODULE_URI, null, null, null, null);
+        assertTrue(instance.getVariables().isEmpty());
+        assertFalse(instance.isDocRequestVariable());
+        assertFalse(instance.isUrisRedacted());
+        assertEquals(-1, instance.getBatchSize());
+        assertEquals(Manager.DEFAULT_BATCH_URI_DELIM, instance.getBatchUriDelimiter());
+        assertEquals(AbstractTask.DEFAULT_QUERY_RETRY_LIMIT, instance.getQueryRetryLimit());
+        assertEquals(AbstractTask.DEFAULT_QUERY_RETRY_INTERVAL, instance.getQueryRetryInterval());
+        assertTrue(instance.getQueryRetryErrorCodes().isEmpty());
+        assertTrue(instance.getQueryRetryErrorMessages().isEmpty());
+    }
+
+    @Test
+    public void testSettings() {
+        Properties properties = new Properties();
+        properties.setProperty(Options.LOADER_VARIABLE, "doc");
+        properties.setProperty(Options.BATCH_SIZE, "5");
+        properties.setProperty(Options.BATCH_URI_DELIM, "|");
+        properties.setProperty(Options.QUERY_RETRY_LIMIT, "7");
+        properties.setProperty(Options.QUERY_RETRY_INTERVAL, "3");
+        properties.setProperty(Options.QUERY_RETRY_ERROR_CODES, "SVC-FOO, XDMP-BAR");
+        properties.setProperty(Options.QUERY_RETRY_ERROR_MESSAGE, "timeout");
+        properties.setProperty(Options.URIS_REDACTED, "true");
+        RequestTemplate instance = new RequestTemplate(Options.PROCESS_MODULE, MODULE_URI, null, null, null, properties);
+
+        assertTrue(instance.isDocRequestVariable());
+        assertEquals(5, instance.getBatchSize());
+        assertEquals("|", instance.getBatchUriDelimiter());
+        assertEquals(7, instance.getQueryRetryLimit());
+        assertEquals(3, instance.getQueryRetryInterval());
+        assertEquals(Arrays.asList("SVC-FOO", "XDMP-BAR"), instance.getQueryRetryErrorCodes());
+        assertEquals(Arrays.asList("timeout"), instance.getQueryRetryErrorMessages());
+        assertTrue(instance.isUrisRedacted());
+    }
+
+    @Test
+    public void testNewRequestModuleInvoke() {
+        Session session = mock(Session.class);
+        when(session.newModuleInvoke(anyString())).thenAnswer(invocation -> new ModuleImpl(null, (String) invocation.getArguments()[0], null, false));
+        Properties properties = new Properties();
+        properties.setProperty(Options.PROCESS_MODULE + ".foo", "bar");
+        TimeZone timeZone = TimeZone.getTimeZone("PST");
+        RequestTemplate instance = new RequestTemplate(Options.PROCESS_MODULE, MODULE_URI, null, "javascript", timeZone, properties);
+
+        Request first = instance.newRequest(session);
+        Request second = instance.newRequest(session);
+        assertTrue(first instanceof ModuleInvoke);
+        assertNotSame(first, second);
+        assertEquals("javascript", first.getOptions().getQueryLanguage());
+        assertEquals(timeZone, first.getOptions().getTimeZone());
+        List<XdmVariable> variables = Arrays.asList(first.getVariables());
+        assertTrue(variables.contains(ValueFactory.newVariable(new XName("foo"), ValueFactory.newXSString("bar"))));
+    }
+
+    @Test
+    public void testNewRequestAdhoc() {
+        Session session = mock(Session.class);
+        when(session.newAdhocQuery(anyString())).thenAnswer(invocation -> new AdhocImpl(null, (String) invocation.getArguments()[0], null));
+        RequestTemplate instance = new RequestTemplate(Options.PROCESS_MODULE, null, "1", null, null, new Properties());
+        assertTrue(instance.newRequest(session) instanceof AdhocQuery);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RetrySchedulerTest {
+
+    private static final String[] URIS = new String[]{"a", "b"};
+
+    @Test
+    public void testNextDelay() {
+        RetryScheduler instance = new RetryScheduler(null, () -> 0L, 8000L, 10, 1);
+        for (int i = 0; i < 100; i++) {
+            long first = instance.nextDelay(1, 1000L);
+            assertTrue(first >= 1000L && first <= 1500L);
+            long second = instance.nextDelay(2, 1000L);
+            assertTrue(second >= 2000L && second <= 3000L);
+            long capped = instance.nextDelay(10, 1000L);
+            assertTrue(capped >= 8000L && capped <= 12000L);
+        }
+        instance.shutdownNow();
+    }
+
+    @Test
+    public void testNextDelayIntervalLargerThanMax() {
+        RetryScheduler instance = new RetryScheduler(null, () -> 0L, 1000L, 10, 1);
+        long delay = instance.nextDelay(3, 5000L);
+        assertTrue(delay >= 5000L && delay <= 7500L);
+        assertEquals(0L, instance.nextDelay(2, 0L));
+        instance.shutdownNow();
+    }
+
+    @Test
+    public void testSchedule() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletionTracker completionTracker = new CompletionTracker(executor);
+            RetryScheduler instance = new RetryScheduler(completionTracker, () -> 0L, 1000L, 10, 1);
+            long delay = instance.schedule(() -> URIS, 1, 10L);
+            assertTrue(delay >= 10L && delay <= 15L);
+
+            //also woken when the retry is no longer pending, which may be before it completes
+            for (int i = 0; i < 10 && completionTracker.getCompletedTaskCount() == 0; i++) {
+                completionTracker.await(500, TimeUnit.MILLISECONDS);
+            }
+            assertEquals(1, completionTracker.getCompletedTaskCount());
+            assertEquals(URIS.length, completionTracker.getCompletedUriCount());
+            assertEquals(1, instance.getRetryCount());
+            assertEquals(delay, instance.getTotalDelayMillis());
+            assertEquals(0, instance.getPendingCount());
+            instance.shutdownNow();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testScheduleBudget() {
+        RetryScheduler instance = new RetryScheduler(null, () -> 100L, 1000L, 10, 2);
+        long retries = 0;
+        for (int i = 0; i < 20; i++) {
+            if (instance.schedule(() -> URIS, 1, 60000L) >= 0) {
+                retries++;
+            }
+        }
+        //10 percent of the 100 requests, less the retries, which are also counted as requests
+        assertEquals(9, retries);
+        assertEquals(9, instance.getRetryCount());
+        assertEquals(11, instance.getRejectedRetryCount());
+        assertEquals(9, instance.getPendingCount());
+        instance.shutdownNow();
+        assertEquals(0, instance.getPendingCount());
+    }
+
+    @Test
+    public void testScheduleMinimumBudget() {
+        RetryScheduler instance = new RetryScheduler(null, () -> 0L, 1000L, 10, 2);
+        assertTrue(instance.schedule(() -> URIS, 1, 60000L) >= 0);
+        assertTrue(instance.schedule(() -> URIS, 1, 60000L) >= 0);
+        assertEquals(-1, instance.schedule(() -> URIS, 1, 60000L));
+        instance.shutdownNow();
+    }
+
+    @Test
+    public void testScheduleAfterShutdown() {
+        RetryScheduler instance = new RetryScheduler(null, () -> 100L, 1000L, 10, 2);
+        instance.shutdownNow();
+        assertEquals(-1, instance.schedule(() -> URIS, 1, 0L));
+        assertEquals(0, instance.getRetryCount());
+        assertEquals(1, instance.getRejectedRetryCount());
+    }
+}
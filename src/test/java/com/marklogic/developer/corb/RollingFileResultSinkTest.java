@@ -0,0 +1,70 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class RollingFileResultSinkTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testWriteRollsFiles() throws IOException {
+        File exportDir = tempFolder.newFolder();
+        Properties properties = new Properties();
+        properties.setProperty(Options.EXPORT_FILE_DIR, exportDir.getAbsolutePath());
+        properties.setProperty(Options.EXPORT_FILE_NAME, "report.txt");
+        properties.setProperty(Options.RESULT_SINK_ROLL_SIZE, String.valueOf(8 + 2 * AbstractTask.NEWLINE.length));
+
+        RollingFileResultSink instance = new RollingFileResultSink();
+        instance.setProperties(properties);
+        instance.open();
+        for (String value : new String[]{"aaaa", "bbbb", "cccc", "dddddddddddd"}) {
+            instance.write(new String[]{"/a.xml"}, value.getBytes(StandardCharsets.UTF_8));
+        }
+        instance.close();
+
+        List<File> files = instance.getFiles();
+        assertEquals(3, files.size());
+        assertEquals(new File(exportDir, "report-1.txt"), files.get(0));
+        assertEquals(Arrays.asList("aaaa", "bbbb"), Files.readAllLines(files.get(0).toPath(), StandardCharsets.UTF_8));
+        assertEquals(Arrays.asList("cccc"), Files.readAllLines(files.get(1).toPath(), StandardCharsets.UTF_8));
+        //a result larger than the roll size still gets a file of its own
+        assertEquals(Arrays.asList("dddddddddddd"), Files.readAllLines(files.get(2).toPath(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testGetSequenceFileName() {
+        assertEquals("report-2.csv", RollingFileResultSink.getSequenceFileName("report.csv", 2));
+        assertEquals("report-1", RollingFileResultSink.getSequenceFileName("report", 1));
+        assertEquals(".hidden-1", RollingFileResultSink.getSequenceFileName(".hidden", 1));
+    }
+}
@@ -0,0 +1,411 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An in-process stand-in for a MarkLogic XDBC app server, speaking just enough
+ * of the XCC protocol to run a CoRB job end to end without MarkLogic.
+ * <ul>
+ * <li>Requests with the external variables <code>URIS</code> and
+ * <code>TYPE</code> are treated as the {@value Options#URIS_MODULE}, and
+ * answered with the URI count followed by that many generated URIs.</li>
+ * <li>Requests with the external variable <code>URI</code> are treated as the
+ * {@value Options#PROCESS_MODULE}. They are delayed by the configured latency,
+ * fail at the configured error rate, and otherwise return a payload of the
+ * configured size (or an empty sequence if the size is 0).</li>
+ * <li>Every other request (INIT, PRE-BATCH, POST-BATCH, metrics, inserts)
+ * returns an empty sequence.</li>
+ * </ul>
+ * Use ADHOC or INLINE modules, since modules are never actually evaluated.
+ * Connections are kept alive and served by a thread each, the same way XCC
+ * pools them, and every response is written with a single flush so that
+ * throughput is not limited by Nagle and delayed ACK.
+ *
+ * @since 2.4.6
+ */
+public class StubXdbcServer {
+
+    private static final Logger LOG = Logger.getLogger(StubXdbcServer.class.getName());
+    public static final String SERVER_VERSION = "MarkLogic 10.0-3";
+    public static final String DEFAULT_ERROR_CODE = "XDMP-STUB";
+    protected static final String BOUNDARY = "xdbc-stub-boundary";
+    protected static final String ERROR_NAMESPACE = "http://marklogic.com/xdmp/error";
+    private static final String CRLF = "\r\n";
+    private static final byte[] PART_START = ("\n--" + BOUNDARY + "\nContent-Type: text/plain\nX-Primitive: string\n\n").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SEQUENCE_END = ("\n--" + BOUNDARY + "--\n").getBytes(StandardCharsets.UTF_8);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+    private long uriCount = 1000;
+    private String uriPrefix = "/stub/";
+    private long latencyMillis = 0;
+    private double errorRate = 0;
+    private String errorCode = DEFAULT_ERROR_CODE;
+    private boolean errorRetryable = false;
+    private byte[] payload = new byte[0];
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong urisRequestCount = new AtomicLong();
+    private final AtomicLong processRequestCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+
+    /**
+     * Start listening on the port, or on any free port if 0.
+     *
+     * @param port
+     * @throws IOException
+     */
+    public void start(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "xdbc-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.submit(this::acceptConnections);
+        LOG.log(Level.INFO, "Stub XDBC server listening on port {0,number,#}", getPort());
+    }
+
+    public void stop() {
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "Unable to close server socket", ex);
+            }
+            executor.shutdownNow();
+            serverSocket = null;
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @param user
+     * @param password
+     * @return an XCC connection URI for this server
+     */
+    public String getConnectionUri(String user, String password) {
+        return "xcc://" + user + ':' + password + "@localhost:" + getPort();
+    }
+
+    public void setUriCount(long uriCount) {
+        this.uriCount = uriCount;
+    }
+
+    public void setUriPrefix(String uriPrefix) {
+        this.uriPrefix = uriPrefix;
+    }
+
+    public void setLatency(long latency, TimeUnit unit) {
+        this.latencyMillis = unit.toMillis(latency);
+    }
+
+    /**
+     * @param errorRate fraction (0.0 to 1.0) of process requests that should fail
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @param errorCode the MarkLogic error code to report for injected errors
+     * @param retryable whether the error is reported as retryable
+     */
+    public void setError(String errorCode, boolean retryable) {
+        this.errorCode = errorCode;
+        this.errorRetryable = retryable;
+    }
+
+    /**
+     * @param payloadSize number of bytes returned for each process request
+     */
+    public void setPayloadSize(int payloadSize) {
+        payload = new byte[payloadSize];
+        Arrays.fill(payload, (byte) 'x');
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getUrisRequestCount() {
+        return urisRequestCount.get();
+    }
+
+    public long getProcessRequestCount() {
+        return processRequestCount.get();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    protected void acceptConnections() {
+        ServerSocket listener = serverSocket;
+        while (listener != null && !listener.isClosed()) {
+            try {
+                Socket socket = listener.accept();
+                executor.submit(() -> handleConnection(socket));
+            } catch (IOException ex) {
+                if (!listener.isClosed()) {
+                    LOG.log(Level.WARNING, "Unable to accept connection", ex);
+                }
+            }
+        }
+    }
+
+    protected void handleConnection(Socket socket) {
+        try (Socket connection = socket;
+             InputStream in = new BufferedInputStream(connection.getInputStream(), BUFFER_SIZE);
+             OutputStream out = new BufferedOutputStream(connection.getOutputStream(), BUFFER_SIZE)) {
+            connection.setTcpNoDelay(true);
+            String body;
+            while ((body = readRequest(in)) != null) {
+                handleRequest(body, out);
+                out.flush();
+            }
+        } catch (EOFException | SocketException ex) {
+            LOG.log(Level.FINE, "Connection closed", ex);
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Unable to respond to XCC request", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    protected void handleRequest(String body, OutputStream out) throws IOException, InterruptedException {
+        requestCount.incrementAndGet();
+        Map<String, String> variables = parseExternalVariables(body);
+        if (variables.containsKey("URIS") && variables.containsKey("TYPE")) {
+            urisRequestCount.incrementAndGet();
+            sendUris(out);
+        } else if (variables.containsKey("URI")) {
+            processRequestCount.incrementAndGet();
+            handleProcessRequest(out);
+        } else {
+            sendSequence(out);
+        }
+    }
+
+    protected void handleProcessRequest(OutputStream out) throws IOException, InterruptedException {
+        if (latencyMillis > 0) {
+            Thread.sleep(latencyMillis);
+        }
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            errorCount.incrementAndGet();
+            sendError(out);
+        } else if (payload.length > 0) {
+            sendSequence(out, payload);
+        } else {
+            sendSequence(out);
+        }
+    }
+
+    protected void sendSequence(OutputStream out, byte[]... items) throws IOException {
+        long length = SEQUENCE_END.length;
+        for (byte[] item : items) {
+            length += PART_START.length + item.length;
+        }
+        writeHeaders(out, "200 OK", "multipart/mixed; boundary=" + BOUNDARY, "Content-Length: " + length);
+        for (byte[] item : items) {
+            out.write(PART_START);
+            out.write(item);
+        }
+        out.write(SEQUENCE_END);
+    }
+
+    /**
+     * Stream the URI count and URIs as a chunked response, so that very large
+     * URI lists are never held in memory.
+     *
+     * @param out
+     * @throws IOException
+     */
+    protected void sendUris(OutputStream out) throws IOException {
+        writeHeaders(out, "200 OK", "multipart/mixed; boundary=" + BOUNDARY, "Transfer-Encoding: chunked");
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream(BUFFER_SIZE + 1024);
+        chunk.write(PART_START);
+        chunk.write(Long.toString(uriCount).getBytes(StandardCharsets.UTF_8));
+        for (long i = 0; i < uriCount; i++) {
+            chunk.write(PART_START);
+            chunk.write((uriPrefix + i + ".xml").getBytes(StandardCharsets.UTF_8));
+            if (chunk.size() >= BUFFER_SIZE) {
+                writeChunk(out, chunk);
+            }
+        }
+        chunk.write(SEQUENCE_END);
+        writeChunk(out, chunk);
+        //last chunk
+        out.write(("0" + CRLF + CRLF).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    protected static void writeChunk(OutputStream out, ByteArrayOutputStream chunk) throws IOException {
+        out.write((Integer.toHexString(chunk.size()) + CRLF).getBytes(StandardCharsets.US_ASCII));
+        chunk.writeTo(out);
+        out.write(CRLF.getBytes(StandardCharsets.US_ASCII));
+        chunk.reset();
+    }
+
+    protected void sendError(OutputStream out) throws IOException {
+        String error = "<error:error xmlns:error=\"" + ERROR_NAMESPACE + "\">"
+            + "<error:code>" + errorCode + "</error:code>"
+            + "<error:name/>"
+            + "<error:xquery-version>1.0-ml</error:xquery-version>"
+            + "<error:message>Injected by " + StubXdbcServer.class.getSimpleName() + "</error:message>"
+            + "<error:format-string>" + errorCode + ": Injected error</error:format-string>"
+            + "<error:retryable>" + errorRetryable + "</error:retryable>"
+            + "<error:expr/><error:data/><error:stack/>"
+            + "</error:error>";
+        byte[] body = error.getBytes(StandardCharsets.UTF_8);
+        writeHeaders(out, "500 Internal Server Error", "application/xml", "Content-Length: " + body.length);
+        out.write(body);
+    }
+
+    protected static void writeHeaders(OutputStream out, String status, String contentType, String lengthHeader) throws IOException {
+        String headers = "HTTP/1.1 " + status + CRLF
+            + "Server: " + SERVER_VERSION + CRLF
+            + "Content-Type: " + contentType + CRLF
+            + lengthHeader + CRLF
+            + "Connection: keep-alive" + CRLF
+            + "Keep-Alive: timeout=60" + CRLF
+            + CRLF;
+        out.write(headers.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Read the request line, headers and body of the next request on the
+     * connection.
+     *
+     * @param in
+     * @return the request body, or null if the client closed the connection
+     * @throws IOException
+     */
+    protected static String readRequest(InputStream in) throws IOException {
+        String requestLine = readLine(in);
+        if (requestLine == null) {
+            return null;
+        }
+        int contentLength = -1;
+        boolean chunked = false;
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            String header = line.toLowerCase(Locale.ENGLISH);
+            if (header.startsWith("content-length:")) {
+                contentLength = Integer.parseInt(header.substring("content-length:".length()).trim());
+            } else if (header.startsWith("transfer-encoding:") && header.contains("chunked")) {
+                chunked = true;
+            }
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream(Math.max(contentLength, 256));
+        if (chunked) {
+            int size;
+            while ((size = Integer.parseInt(readLine(in).trim(), 16)) > 0) {
+                copy(in, body, size);
+                readLine(in);
+            }
+            readLine(in);
+        } else if (contentLength > 0) {
+            copy(in, body, contentLength);
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) {
+                if (line.length() == 0) {
+                    return null;
+                }
+                throw new EOFException("Premature end of request: " + line);
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
+    private static void copy(InputStream in, OutputStream out, int length) throws IOException {
+        byte[] buffer = new byte[Math.min(length, 8192)];
+        int remaining = length;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, Math.min(remaining, buffer.length));
+            if (read == -1) {
+                throw new EOFException("Premature end of request body");
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    /**
+     * Collect the external variables (evl0/evv0, evl1/evv1, ...) from a form
+     * encoded XCC request body.
+     *
+     * @param body
+     * @return map of variable local names to values
+     * @throws UnsupportedEncodingException
+     */
+    protected static Map<String, String> parseExternalVariables(String body) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        for (String pair : body.split("&")) {
+            int idx = pair.indexOf('=');
+            if (idx > 0) {
+                params.put(pair.substring(0, idx), URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8.name()));
+            }
+        }
+        Map<String, String> variables = new HashMap<>();
+        for (int i = 0; params.containsKey("evl" + i); i++) {
+            variables.put(params.get("evl" + i), params.get("evv" + i));
+        }
+        return variables;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import com.marklogic.developer.corb.util.FileUtils;
+import com.marklogic.xcc.RequestOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StubXdbcServerTest {
+
+    private static final String EXPORT_FILE_NAME = "stubExport.txt";
+    private StubXdbcServer server;
+    private File exportDir;
+
+    @Before
+    public void setUp() throws IOException {
+        TestUtils.clearSystemProperties();
+        server = new StubXdbcServer();
+        server.start(0);
+        exportDir = TestUtils.createTempDirectory();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.stop();
+        FileUtils.deleteFile(exportDir);
+        TestUtils.clearSystemProperties();
+        System.clearProperty(RequestOptions.MAX_RETRY_SYSTEM_PROPERTY);
+    }
+
+    private Properties getStubProperties() {
+        Properties properties = new Properties();
+        properties.setProperty(Options.XCC_CONNECTION_URI, server.getConnectionUri("user", "password"));
+        properties.setProperty(Options.URIS_MODULE, "src/test/resources/selector.xqy|ADHOC");
+        properties.setProperty(Options.PROCESS_MODULE, "src/test/resources/transform.xqy|ADHOC");
+        properties.setProperty(Options.PROCESS_TASK, ExportBatchToFileTask.class.getName());
+        properties.setProperty(Options.EXPORT_FILE_DIR, exportDir.getAbsolutePath());
+        properties.setProperty(Options.EXPORT_FILE_NAME, EXPORT_FILE_NAME);
+        properties.setProperty(Options.THREAD_COUNT, "4");
+        properties.setProperty(Options.XCC_CONNECTION_RETRY_LIMIT, "0");
+        properties.setProperty(Options.QUERY_RETRY_LIMIT, "0");
+        return properties;
+    }
+
+    @Test
+    public void testManagerEndToEnd() throws Exception {
+        int uriCount = 500;
+        server.setUriCount(uriCount);
+        server.setPayloadSize(10);
+        server.setLatency(1, TimeUnit.MILLISECONDS);
+
+        Manager manager = new Manager();
+        manager.init(getStubProperties());
+        assertEquals(uriCount, manager.run());
+        assertFalse(manager.execError);
+
+        assertEquals(1, server.getUrisRequestCount());
+        assertEquals(uriCount, server.getProcessRequestCount());
+        assertEquals(uriCount, FileUtils.getLineCount(new File(exportDir, EXPORT_FILE_NAME)));
+    }
+
+    @Test
+    public void testManagerEndToEndWithBatchSize() throws Exception {
+        int uriCount = 500;
+        server.setUriCount(uriCount);
+
+        Properties properties = getStubProperties();
+        properties.setProperty(Options.BATCH_SIZE, "10");
+        Manager manager = new Manager();
+        manager.init(properties);
+        assertEquals(uriCount, manager.run());
+
+        assertEquals(uriCount / 10, server.getProcessRequestCount());
+        assertEquals(0, FileUtils.getLineCount(new File(exportDir, EXPORT_FILE_NAME)));
+    }
+
+    @Test
+    public void testManagerEndToEndWithErrors() throws Exception {
+        int uriCount = 200;
+        server.setUriCount(uriCount);
+        server.setErrorRate(1);
+
+        Properties properties = getStubProperties();
+        properties.setProperty(Options.FAIL_ON_ERROR, Boolean.FALSE.toString());
+        Manager manager = new Manager();
+        manager.init(properties);
+        manager.run();
+
+        assertEquals(uriCount, server.getErrorCount());
+        assertEquals(uriCount, manager.pool.getNumFailedUris());
+    }
+
+    @Test
+    public void testManagerEndToEndWithRetries() throws Exception {
+        System.setProperty(RequestOptions.MAX_RETRY_SYSTEM_PROPERTY, "0"); //only count the retries made by CoRB
+        int uriCount = 100;
+        server.setUriCount(uriCount);
+        server.setErrorRate(1);
+        server.setError("XDMP-EXTIME", true);
+
+        Properties properties = getStubProperties();
+        properties.setProperty(Options.FAIL_ON_ERROR, Boolean.FALSE.toString());
+        properties.setProperty(Options.QUERY_RETRY_LIMIT, "2");
+        properties.setProperty(Options.QUERY_RETRY_INTERVAL, "0");
+        properties.setProperty(Options.QUERY_RETRY_BUDGET, "1000");
+        Manager manager = new Manager();
+        manager.init(properties);
+        manager.run();
+
+        assertEquals(2L * uriCount, manager.getRetryScheduler().getRetryCount());
+        assertEquals(0, manager.getRetryScheduler().getPendingCount());
+        assertEquals(3L * uriCount, server.getErrorCount());
+        assertEquals(uriCount, manager.pool.getNumFailedUris());
+        assertEquals(0, manager.pool.getNumSucceededUris());
+    }
+
+    @Test
+    public void testManagerEndToEndWithRetryBudget() throws Exception {
+        System.setProperty(RequestOptions.MAX_RETRY_SYSTEM_PROPERTY, "0"); //only count the retries made by CoRB
+        int uriCount = 100;
+        server.setUriCount(uriCount);
+        server.setErrorRate(1);
+        server.setError("XDMP-EXTIME", true);
+
+        Properties properties = getStubProperties();
+        properties.setProperty(Options.FAIL_ON_ERROR, Boolean.FALSE.toString());
+        properties.setProperty(Options.QUERY_RETRY_LIMIT, "2");
+        properties.setProperty(Options.QUERY_RETRY_INTERVAL, "0");
+        properties.setProperty(Options.QUERY_RETRY_BUDGET, "10");
+        Manager manager = new Manager();
+        manager.init(properties);
+        manager.run();
+
+        RetryScheduler retryScheduler = manager.getRetryScheduler();
+        assertTrue(retryScheduler.getRetryCount() <= uriCount / 10 + 4);
+        assertTrue(retryScheduler.getRejectedRetryCount() > 0);
+        assertEquals(uriCount + retryScheduler.getRetryCount(), server.getErrorCount());
+        assertEquals(uriCount, manager.pool.getNumFailedUris());
+    }
+
+    @Test
+    public void testManagerEndToEndFailOnError() throws Exception {
+        server.setUriCount(100);
+        server.setErrorRate(1);
+
+        Manager manager = new Manager();
+        manager.init(getStubProperties());
+        manager.run();
+        assertTrue(manager.execError);
+    }
+
+    @Test
+    public void testParseExternalVariables() throws IOException {
+        assertEquals("/a.xml;/b.xml", StubXdbcServer.parseExternalVariables("xquery=1&evn0=&evl0=URI&evt0=xs%3Astring&evv0=%2Fa.xml%3B%2Fb.xml").get("URI"));
+        assertTrue(StubXdbcServer.parseExternalVariables("xquery=1&locale=en").isEmpty());
+    }
+}
@@ -110,6 +110,49 @@ public class TaskFactoryTest {
         assertNotNull(result);
     }
 
+    @Test
+    public void testNewProcessTaskSharesRequestTemplate() {
+        Manager manager = new Manager();
+        manager.options.setProcessModule(MODULE);
+        manager.csp = mock(ContentSourcePool.class);
+        manager.getProperties().setProperty(Options.PROCESS_MODULE + ".foo", "bar");
+
+        TaskFactory instance = new TaskFactory(manager);
+        AbstractTask first = (AbstractTask) instance.newProcessTask(new String[]{"a"});
+        AbstractTask second = (AbstractTask) instance.newProcessTask(new String[]{"b"});
+        assertNotNull(first.requestTemplate);
+        assertSame(first.requestTemplate, second.requestTemplate);
+        assertEquals("bar", first.requestTemplate.getVariables().get("foo"));
+        assertEquals(first.moduleUri, first.requestTemplate.getModuleUri());
+    }
+
+    @Test
+    public void testNewProcessTaskInvokesInstalledAdhocModule() {
+        String module = "INLINE-XQUERY|xquery version '1.0-ml'; 1";
+        Manager manager = new Manager();
+        manager.options.setProcessModule(module);
+        manager.csp = mock(ContentSourcePool.class);
+        manager.installedAdhocModules.put(module, "/corb-adhoc-abc.xqy");
+
+        TaskFactory instance = new TaskFactory(manager);
+        AbstractTask task = (AbstractTask) instance.newProcessTask(new String[]{"a"});
+        assertEquals("/corb-adhoc-abc.xqy", task.moduleUri);
+        assertNull(task.adhocQuery);
+    }
+
+    @Test
+    public void testNewProcessTaskSetsResultSink() {
+        Manager manager = new Manager();
+        manager.options.setProcessModule(MODULE);
+        manager.options.setProcessTaskClass(ExportToSinkTask.class);
+        manager.csp = mock(ContentSourcePool.class);
+        manager.resultSink = new AsyncResultSink(new AggregatingResultSink(), 1);
+
+        TaskFactory instance = new TaskFactory(manager);
+        ExportToSinkTask task = (ExportToSinkTask) instance.newProcessTask(new String[]{"a"});
+        assertSame(manager.resultSink, task.resultSink);
+    }
+
     @Test
     public void testCustomTimeZone() {
         String[] uris = new String[]{"testCustomTimeZone"};
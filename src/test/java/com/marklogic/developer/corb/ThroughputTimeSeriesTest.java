@@ -0,0 +1,219 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class ThroughputTimeSeriesTest {
+
+    @Test
+    public void testSample() {
+        ThroughputTimeSeries instance = new ThroughputTimeSeries(4);
+        instance.recordCompleted(TimeUnit.MILLISECONDS.toNanos(10));
+        instance.recordCompleted(TimeUnit.MILLISECONDS.toNanos(30));
+        instance.recordFailed();
+        instance.run();
+        instance.run();
+
+        List<ThroughputTimeSeries.Sample> samples = instance.getSamples(-1);
+        assertEquals(2, samples.size());
+        ThroughputTimeSeries.Sample sample = samples.get(0);
+        assertEquals(0, sample.getSequence());
+        assertEquals(2, sample.getCompleted());
+        assertEquals(1, sample.getFailed());
+        assertEquals(20d, sample.getAverageLatencyMillis(), 0.001);
+        assertEquals(0, samples.get(1).getCompleted());
+        assertEquals(0d, samples.get(1).getAverageLatencyMillis(), 0.001);
+        assertTrue(sample.toJson().contains("\"completed\":2,\"failed\":1,\"averageLatencyMillis\":20.00"));
+    }
+
+    @Test
+    public void testGetSamplesWrapsAround() {
+        ThroughputTimeSeries instance = new ThroughputTimeSeries(3);
+        for (int i = 0; i < 5; i++) {
+            instance.run();
+        }
+        assertEquals(5, instance.getSequence());
+        List<ThroughputTimeSeries.Sample> samples = instance.getSamples(-1);
+        assertEquals(3, samples.size());
+        assertEquals(2, samples.get(0).getSequence());
+        assertEquals(4, samples.get(2).getSequence());
+        assertEquals(1, instance.getSamples(3).size());
+        assertTrue(instance.getSamples(4).isEmpty());
+    }
+
+    @Test
+    public void testSubscribe() throws IOException {
+        ThroughputTimeSeries instance = new ThroughputTimeSeries(10, Runnable::run);
+        instance.run();
+        instance.run();
+        Headers requestHeaders = new Headers();
+        requestHeaders.add(ThroughputTimeSeries.HEADER_LAST_EVENT_ID, "0");
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        HttpExchange exchange = mockExchange(requestHeaders, body);
+
+        instance.subscribe(exchange);
+        verify(exchange).sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+        assertEquals(ThroughputTimeSeries.MIME_EVENT_STREAM, exchange.getResponseHeaders().getFirst(JobServer.HEADER_CONTENT_TYPE));
+        assertEquals(1, instance.getSubscriberCount());
+        String content = body.toString(StandardCharsets.UTF_8.name());
+        assertFalse(content.contains("id: 0\n"));
+        assertTrue(content.startsWith("id: 1\ndata: {"));
+
+        instance.recordCompleted(1);
+        instance.run();
+        content = body.toString(StandardCharsets.UTF_8.name());
+        assertTrue(content.contains("id: 2\ndata: {\"time\":"));
+        assertTrue(content.contains("\"completed\":1,"));
+
+        instance.close();
+        content = body.toString(StandardCharsets.UTF_8.name());
+        assertTrue(content.endsWith("event: end\ndata: {}\n\n"));
+        assertEquals(0, instance.getSubscriberCount());
+        verify(exchange).close();
+    }
+
+    @Test
+    public void testSubscribeAfterClose() throws IOException {
+        ThroughputTimeSeries instance = new ThroughputTimeSeries(10, Runnable::run);
+        instance.close();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        HttpExchange exchange = mockExchange(new Headers(), body);
+        instance.subscribe(exchange);
+        String content = body.toString(StandardCharsets.UTF_8.name());
+        assertTrue(content.startsWith("id: 0\n"));
+        assertTrue(content.endsWith("event: end\ndata: {}\n\n"));
+        assertEquals(0, instance.getSubscriberCount());
+        verify(exchange).close();
+    }
+
+    @Test
+    public void testBroadcastRemovesDisconnectedSubscriber() throws IOException {
+        ThroughputTimeSeries instance = new ThroughputTimeSeries(10, Runnable::run);
+        OutputStream failing = new OutputStream() {
+            private boolean connected = true;
+            @Override
+            public void write(int b) throws IOException {
+                if (!connected) {
+                    throw new IOException("disconnected");
+                }
+            }
+            @Override
+            public void flush() {
+                connected = false;
+            }
+        };
+        HttpExchange exchange = mockExchange(new Headers(), failing);
+        instance.subscribe(exchange);
+        assertEquals(1, instance.getSubscriberCount());
+        instance.run();
+        assertEquals(0, instance.getSubscriberCount());
+        verify(exchange).close();
+    }
+
+    @Test
+    public void testSlowSubscriberDoesNotBlockSampling() throws Exception {
+        ThroughputTimeSeries instance = new ThroughputTimeSeries(10);
+        CountDownLatch release = new CountDownLatch(1);
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        OutputStream blocking = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(ex);
+                }
+                received.write(b);
+            }
+        };
+        HttpExchange exchange = mockExchange(new Headers(), blocking);
+        instance.subscribe(exchange);
+        Thread sampler = new Thread(() -> {
+            for (int i = 0; i < 3; i++) {
+                instance.run();
+            }
+            instance.close();
+        });
+        sampler.start();
+        sampler.join(5000);
+        assertFalse(sampler.isAlive());
+        assertEquals(4, instance.getSequence());
+
+        release.countDown();
+        verify(exchange, timeout(5000)).close();
+        String content = received.toString(StandardCharsets.UTF_8.name());
+        assertTrue(content.startsWith("id: 0\n"));
+        assertTrue(content.contains("id: 3\n"));
+        assertTrue(content.endsWith("event: end\ndata: {}\n\n"));
+    }
+
+    @Test
+    public void testSubscriberTooFarBehindIsDisconnected() throws IOException {
+        List<Runnable> writes = new ArrayList<>();
+        ThroughputTimeSeries instance = new ThroughputTimeSeries(2, writes::add);
+        HttpExchange exchange = mockExchange(new Headers(), new ByteArrayOutputStream());
+        instance.subscribe(exchange);
+        for (int i = 0; i < 4; i++) {
+            instance.run();
+        }
+        assertEquals(1, instance.getSubscriberCount());
+        instance.run();
+        assertEquals(0, instance.getSubscriberCount());
+        //the events that were queued are written before the client is disconnected
+        writes.get(0).run();
+        verify(exchange).close();
+    }
+
+    @Test
+    public void testSubscribeToEventsBeforeJobStarted() throws IOException {
+        HttpExchange exchange = mockExchange(new Headers(), new ByteArrayOutputStream());
+        JobServicesHandler.subscribeToEvents(exchange, new Manager());
+        verify(exchange).sendResponseHeaders(HttpURLConnection.HTTP_NO_CONTENT, -1);
+    }
+
+    private static HttpExchange mockExchange(Headers requestHeaders, OutputStream body) {
+        HttpExchange exchange = mock(HttpExchange.class);
+        Headers responseHeaders = new Headers();
+        when(exchange.getRequestHeaders()).thenReturn(requestHeaders);
+        when(exchange.getResponseHeaders()).thenReturn(responseHeaders);
+        when(exchange.getResponseBody()).thenReturn(body);
+        return exchange;
+    }
+}
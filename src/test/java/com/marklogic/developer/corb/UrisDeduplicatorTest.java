@@ -0,0 +1,131 @@
+/*
+  * * Copyright (c) 2004-2020 MarkLogic Corporation
+  * *
+  * * Licensed under the Apache License, Version 2.0 (the "License");
+  * * you may not use this file except in compliance with the License.
+  * * You may obtain a copy of the License at
+  * *
+  * * http://www.apache.org/licenses/LICENSE-2.0
+  * *
+  * * Unless required by applicable law or agreed to in writing, software
+  * * distributed under the License is distributed on an "AS IS" BASIS,
+  * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * * See the License for the specific language governing permissions and
+  * * limitations under the License.
+  * *
+  * * The use of the Apache License does not indicate that this project is
+  * * affiliated with the Apache Software Foundation.
+ */
+package com.marklogic.developer.corb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class UrisDeduplicatorTest {
+
+    @Test
+    public void testExact() {
+        assertDeduplicates(UrisDeduplicator.newInstance(UrisDeduplicator.EXACT, 0, 0));
+    }
+
+    @Test
+    public void testHash() {
+        assertDeduplicates(UrisDeduplicator.newInstance("HASH", 0, 0));
+    }
+
+    @Test
+    public void testBloom() {
+        assertDeduplicates(UrisDeduplicator.newInstance(UrisDeduplicator.BLOOM, 1000, 0.001));
+    }
+
+    @Test
+    public void testHashResize() {
+        UrisDeduplicator instance = UrisDeduplicator.newInstance(UrisDeduplicator.HASH, 0, 0);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(instance.add("/doc/" + i + ".xml"));
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertFalse(instance.add("/doc/" + i + ".xml"));
+        }
+        assertEquals(10000, instance.getDuplicateCount());
+    }
+
+    @Test
+    public void testBloomFalsePositiveRate() {
+        UrisDeduplicator instance = UrisDeduplicator.newInstance(UrisDeduplicator.BLOOM, 10000, 0.01);
+        for (int i = 0; i < 9000; i++) {
+            instance.add("/doc/" + i + ".xml");
+        }
+        //every probe is also added, so stay within the expected count
+        int falsePositives = 0;
+        for (int i = 9000; i < 10000; i++) {
+            if (!instance.add("/doc/" + i + ".xml")) {
+                falsePositives++;
+            }
+        }
+        //a generous bound, the expected number is under 10
+        assertTrue(falsePositives < 30);
+    }
+
+    @Test
+    public void testBloomSize() {
+        UrisDeduplicator.Bloom instance = new UrisDeduplicator.Bloom(1000000, 0.000001);
+        //about 29 bits, and 20 hash functions, per URI
+        assertEquals(28755176, instance.getBitCount(), 64);
+        assertEquals(20, instance.getHashCount());
+    }
+
+    @Test
+    public void testBloomSizeIsLimited() {
+        UrisDeduplicator.Bloom instance = new UrisDeduplicator.Bloom(1000000, 0.000001, 1024);
+        assertEquals(1024 * 8, instance.getBitCount());
+        assertEquals(1, instance.getHashCount());
+    }
+
+    @Test
+    public void testBloomProcessPolicy() {
+        UrisDeduplicator instance = UrisDeduplicator.newInstance(UrisDeduplicator.BLOOM, 1000, 0.001, "PROCESS");
+        assertTrue(instance.hasFalsePositives());
+        assertTrue(instance.add("/a.xml"));
+        assertTrue(instance.add("/a.xml"));
+        assertEquals(0, instance.getDuplicateCount());
+        assertEquals(1, instance.getProcessedPositiveCount());
+    }
+
+    @Test
+    public void testProcessPolicyWithoutFalsePositives() {
+        UrisDeduplicator instance = UrisDeduplicator.newInstance(UrisDeduplicator.HASH, 0, 0, UrisDeduplicator.PROCESS);
+        assertFalse(instance.hasFalsePositives());
+        assertDeduplicates(instance);
+        assertEquals(0, instance.getProcessedPositiveCount());
+    }
+
+    @Test
+    public void testIsProcessPolicy() {
+        assertFalse(UrisDeduplicator.isProcessPolicy(null));
+        assertFalse(UrisDeduplicator.isProcessPolicy(UrisDeduplicator.SKIP));
+        assertTrue(UrisDeduplicator.isProcessPolicy(" Process "));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidFalsePositivePolicy() {
+        UrisDeduplicator.newInstance(UrisDeduplicator.BLOOM, 1000, 0.001, "retry");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMode() {
+        UrisDeduplicator.newInstance("sort", 0, 0);
+    }
+
+    private static void assertDeduplicates(UrisDeduplicator instance) {
+        assertTrue(instance.add("/a.xml"));
+        assertTrue(instance.add("/b.xml"));
+        assertFalse(instance.add("/a.xml"));
+        assertTrue(instance.add(""));
+        assertFalse(instance.add(""));
+        assertEquals(2, instance.getDuplicateCount());
+    }
+}
@@ -135,6 +135,34 @@ public class FileUtilsTest {
         assertEquals(12, FileUtils.getLineCount(exampleContentFile));
     }
 
+    @Test
+    public void testCountLineTerminatorsMixedLineEndings() throws IOException {
+        File file = File.createTempFile("countLines", TEXT_FILE_EXT);
+        file.deleteOnExit();
+        Files.write(file.toPath(), "a\nb\r\nc\rd\r\n\ne".getBytes());
+        assertEquals(5, FileUtils.countLineTerminators(file));
+    }
+
+    @Test
+    public void testCountLineTerminatorsTrailingCarriageReturn() throws IOException {
+        File file = File.createTempFile("countLines", TEXT_FILE_EXT);
+        file.deleteOnExit();
+        Files.write(file.toPath(), "a\r".getBytes());
+        assertEquals(1, FileUtils.countLineTerminators(file));
+    }
+
+    @Test
+    public void testCountLineTerminatorsEmptyFile() throws IOException {
+        File file = File.createTempFile("countLines", TEXT_FILE_EXT);
+        file.deleteOnExit();
+        assertEquals(0, FileUtils.countLineTerminators(file));
+    }
+
+    @Test(expected = IOException.class)
+    public void testCountLineTerminatorsFileDoesNotExist() throws IOException {
+        FileUtils.countLineTerminators(new File("does/not/exist"));
+    }
+
     @Test
     public void testMoveFile() throws IOException {
         File file = File.createTempFile("moveFile", TEXT_FILE_EXT);
@@ -50,4 +50,15 @@ public class NumberUtilsTest {
         int result = NumberUtils.toInt("seven", -1);
         assertEquals(-1, result);
     }
+
+    @Test
+    public void testToLongStringLong() {
+        assertEquals(5000000000L, NumberUtils.toLong(" 5000000000 ", -1));
+    }
+
+    @Test
+    public void testToLongStringLongInvalid() {
+        assertEquals(-1, NumberUtils.toLong("five", -1));
+        assertEquals(-1, NumberUtils.toLong(null, -1));
+    }
 }